@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that can run the blocking calls of a delegate client on an executor, so that callers get a
+ * {@link CompletableFuture} instead of tying up their own threads while requests are in flight. The synchronous
+ * {@link InfluxDbClient} methods call the delegate directly.
+ * <p>
+ * With {@link #onVirtualThreads}, each call runs on its own JDK 21 virtual thread, so any number of concurrent
+ * writes only block cheap virtual threads, and only as many carrier (platform) threads as there are cores are
+ * used. The client's own code paths don't hold monitors while doing I/O, so they don't pin carrier threads; with
+ * {@link com.spanning.influxdb.client.http.InfluxDbHttpClient}, prefer the
+ * {@link com.spanning.influxdb.client.http.JdkHttpTransport}, which doesn't block in {@code synchronized} code either.
+ * Run with {@code -Djdk.tracePinnedThreads=full} to check other delegates for pinning.
+ */
+public class AsyncInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncInfluxDbClient.class);
+    
+    private final InfluxDbClient delegate;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Create an {@link AsyncInfluxDbClient} that runs calls on an executor. The executor isn't shut down when this
+     * client is closed.
+     * @param delegate The client whose calls are run asynchronously.
+     * @param executor The executor on which calls are run.
+     */
+    public AsyncInfluxDbClient(InfluxDbClient delegate, ExecutorService executor) {
+        this(delegate, executor, false);
+    }
+    
+    private AsyncInfluxDbClient(InfluxDbClient delegate, ExecutorService executor, boolean ownsExecutor) {
+        checkArgument(delegate != null, "delegate can't be null");
+        checkArgument(executor != null, "executor can't be null");
+        this.delegate = delegate;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Create an {@link AsyncInfluxDbClient} that runs each call on a new virtual thread. On JDKs without virtual
+     * threads, calls run on a cached pool of daemon platform threads instead. The executor is shut down when this
+     * client is closed.
+     * @param delegate The client whose calls are run asynchronously.
+     * @return An {@link AsyncInfluxDbClient}.
+     */
+    public static AsyncInfluxDbClient onVirtualThreads(InfluxDbClient delegate) {
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor().orElseGet(() -> {
+            logger.warn("Virtual threads aren't supported by this JDK, so platform threads will be used.");
+            return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("influxdb-async-%d")
+                    .setDaemon(true)
+                    .build());
+        });
+        return new AsyncInfluxDbClient(delegate, executor, true);
+    }
+
+    public CompletableFuture<Void> writePointsAsync(String database, String retentionPolicy, List<DataPoint> points) {
+        return CompletableFuture.runAsync(() -> delegate.writePoints(database, retentionPolicy, points), executor);
+    }
+
+    /**
+     * Asynchronously write line protocol strings.
+     * @param database The database to which the lines should be written.
+     * @param retentionPolicy An optional retention policy.
+     * @param precision The precision of the points' timestamps.
+     * @param lines A buffer containing newline-separated line protocol strings, which must not be modified until the
+     * returned future completes.
+     * @return A future that completes when the lines have been written.
+     */
+    public CompletableFuture<Void> writeLineProtocolAsync(String database, String retentionPolicy,
+                                                          TimestampPrecision precision, LineProtocolBuffer lines) {
+        return CompletableFuture.runAsync(
+                () -> delegate.writeLineProtocol(database, retentionPolicy, precision, lines), executor);
+    }
+
+    public CompletableFuture<Void> writeBatchAsync(String database, String retentionPolicy, PointBatch batch) {
+        return CompletableFuture.runAsync(() -> delegate.writeBatch(database, retentionPolicy, batch), executor);
+    }
+
+    public CompletableFuture<List<QueryResult>> executeQueryAsync(String database, String query) {
+        return CompletableFuture.supplyAsync(() -> delegate.executeQuery(database, query), executor);
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        delegate.writePoint(database, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        delegate.writePoint(database, retentionPolicy, point);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        delegate.writePoints(database, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        delegate.writePoints(database, retentionPolicy, points);
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        delegate.writeBatch(database, retentionPolicy, batch);
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Shut down the executor if it was created by this client. Calls that were already submitted still run.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+    
+}
@@ -17,10 +17,15 @@
 package com.spanning.influxdb.client;
 
 import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
 import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
 
 import java.util.List;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * Client used to read/write from InfluxDB.
  */
@@ -66,6 +71,64 @@ public interface InfluxDbClient {
      */
     void writePoints(String database, String retentionPolicy, List<DataPoint> points);
 
+    /**
+     * Write data points that have already been encoded as InfluxDB line protocol (e.g., with
+     * {@link DataPoint.Builder#writeLineProtocol}) to InfluxDB in bulk.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy The retention policy (see
+     * <a href="https://influxdb.com/docs/v0.9/concepts/glossary.html#retention-policy">
+     *  https://influxdb.com/docs/v0.9/concepts/glossary.html#retention-policy</a>), or null to use the database's
+     *  default retention policy.
+     * @param precision The precision of the timestamps of all points in {@code lines}.
+     * @param lines A buffer containing one or more newline-separated line protocol strings.
+     */
+    void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                           LineProtocolBuffer lines);
+
+    /**
+     * Write several buffers of encoded line protocol strings to InfluxDB in a single request, as if they were
+     * concatenated with newlines. By default, the buffers are copied into one buffer and written with
+     * {@link #writeLineProtocol(String, String, TimestampPrecision, LineProtocolBuffer)}; clients that can send the
+     * buffers without copying them override this.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy The retention policy, or null to use the database's default retention policy.
+     * @param precision The precision of the timestamps of all points in {@code lines}.
+     * @param lines Non-empty buffers, each containing one or more newline-separated line protocol strings.
+     */
+    default void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                          List<LineProtocolBuffer> lines) {
+        if (lines.size() == 1) {
+            writeLineProtocol(database, retentionPolicy, precision, lines.get(0));
+            return;
+        }
+        int size = lines.size() - 1;
+        for (LineProtocolBuffer buffer : lines) {
+            size += buffer.size();
+        }
+        LineProtocolBuffer concatenated = new LineProtocolBuffer(size);
+        for (LineProtocolBuffer buffer : lines) {
+            concatenated.beginLine().write(buffer, 0, buffer.size());
+        }
+        writeLineProtocol(database, retentionPolicy, precision, concatenated);
+    }
+
+    /**
+     * Write a columnar {@link PointBatch} to InfluxDB in bulk. The points are encoded straight from the batch's
+     * columns, using the precision of the batch's {@link com.spanning.influxdb.model.PointTemplate}.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy The retention policy (see
+     * <a href="https://influxdb.com/docs/v0.9/concepts/glossary.html#retention-policy">
+     *  https://influxdb.com/docs/v0.9/concepts/glossary.html#retention-policy</a>), or null to use the database's
+     *  default retention policy.
+     * @param batch A non-empty {@link PointBatch}.
+     */
+    default void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        checkArgument(batch != null && !batch.isEmpty(), "batch must contain at least one point");
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        batch.writeLineProtocol(lines);
+        writeLineProtocol(database, retentionPolicy, batch.getTemplate().getTimestampPrecision(), lines);
+    }
+
     /**
      * Execute an InfluxDB query.
      * @param database The database against which the query will be run.
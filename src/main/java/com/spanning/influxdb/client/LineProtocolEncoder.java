@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Encodes lists of {@link DataPoint DataPoints} as InfluxDB line protocol. Small lists are encoded into a single
+ * buffer on the calling thread. Lists with at least {@code parallelismThreshold} points are split into chunks of
+ * {@code chunkSize} points, which are encoded into separate buffers in parallel on a {@link ForkJoinPool}, so that
+ * encoding large (e.g., backfill) batches scales with the number of cores.
+ */
+public class LineProtocolEncoder {
+
+    public static final int DEFAULT_PARALLELISM_THRESHOLD = 10_000;
+    public static final int DEFAULT_CHUNK_SIZE = 4_096;
+    
+    private static final LineProtocolEncoder SEQUENTIAL = new LineProtocolEncoder(null, Integer.MAX_VALUE, 1);
+    
+    private final ForkJoinPool pool;
+    private final int parallelismThreshold;
+    private final int chunkSize;
+
+    /**
+     * Create a {@link LineProtocolEncoder} that encodes large lists of points on the common {@link ForkJoinPool}
+     * with the default threshold and chunk size.
+     */
+    public LineProtocolEncoder() {
+        this(ForkJoinPool.commonPool(), DEFAULT_PARALLELISM_THRESHOLD, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a {@link LineProtocolEncoder}.
+     * @param pool The {@link ForkJoinPool} used to encode large lists of points.
+     * @param parallelismThreshold The minimum number of points for a list to be encoded in parallel.
+     * @param chunkSize The number of points encoded by each parallel task.
+     */
+    public LineProtocolEncoder(ForkJoinPool pool, int parallelismThreshold, int chunkSize) {
+        checkArgument(pool != null || parallelismThreshold == Integer.MAX_VALUE, "pool can't be null");
+        checkArgument(parallelismThreshold > 0, "parallelismThreshold must be positive");
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.pool = pool;
+        this.parallelismThreshold = parallelismThreshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get an encoder that always encodes on the calling thread.
+     * @return A {@link LineProtocolEncoder}.
+     */
+    public static LineProtocolEncoder sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Encode a list of points.
+     * @param points The points.
+     * @return One or more buffers of newline-separated line protocol strings which, joined with newlines in order,
+     * contain every point in {@code points}.
+     */
+    public List<LineProtocolBuffer> encode(List<DataPoint> points) {
+        if (points.size() < parallelismThreshold) {
+            return Collections.singletonList(encodeRange(points, 0, points.size()));
+        }
+        LineProtocolBuffer[] chunks = new LineProtocolBuffer[(points.size() + chunkSize - 1) / chunkSize];
+        pool.invoke(new EncodeChunksTask(points, chunks, 0, chunks.length));
+        return Arrays.asList(chunks);
+    }
+
+    private static LineProtocolBuffer encodeRange(List<DataPoint> points, int from, int to) {
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        for (int i = from; i < to; i++) {
+            points.get(i).writeLineProtocol(buffer.beginLine());
+        }
+        return buffer;
+    }
+
+    /**
+     * Task that encodes a range of chunks, splitting the range in half until each task encodes a single chunk.
+     */
+    private class EncodeChunksTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<DataPoint> points;
+        private final LineProtocolBuffer[] chunks;
+        private final int fromChunk;
+        private final int toChunk;
+
+        EncodeChunksTask(List<DataPoint> points, LineProtocolBuffer[] chunks, int fromChunk, int toChunk) {
+            this.points = points;
+            this.chunks = chunks;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                int from = fromChunk * chunkSize;
+                chunks[fromChunk] = encodeRange(points, from, Math.min(from + chunkSize, points.size()));
+            } else {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new EncodeChunksTask(points, chunks, fromChunk, middle),
+                        new EncodeChunksTask(points, chunks, middle, toChunk));
+            }
+        }
+        
+    }
+    
+}
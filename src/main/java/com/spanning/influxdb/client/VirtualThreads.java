@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to JDK 21 virtual threads from code compiled for older JDKs. The JDK methods are looked up reflectively
+ * once; on older JDKs, virtual threads are reported as unsupported.
+ */
+public final class VirtualThreads {
+    
+    private static final Optional<MethodHandle> NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+            findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+    private static final Optional<MethodHandle> IS_VIRTUAL =
+            findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+    
+    private VirtualThreads() {}
+
+    /**
+     * Check whether the running JDK supports virtual threads.
+     * @return true if virtual threads are supported.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.isPresent();
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task.
+     * @return An {@link ExecutorService}, or an empty optional if virtual threads aren't supported.
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.map(handle -> {
+            try {
+                return (ExecutorService) handle.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create a virtual thread executor", e);
+            }
+        });
+    }
+
+    /**
+     * Check whether a thread is a virtual thread.
+     * @param thread A thread.
+     * @return true if the thread is a virtual thread.
+     */
+    public static boolean isVirtual(Thread thread) {
+        return IS_VIRTUAL.map(handle -> {
+            try {
+                return (boolean) handle.invokeExact(thread);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to check whether a thread is virtual", e);
+            }
+        }).orElse(false);
+    }
+
+    private static Optional<MethodHandle> findStatic(Class<?> type, String name, MethodType methodType) {
+        try {
+            return Optional.of(MethodHandles.publicLookup().findStatic(type, name, methodType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<MethodHandle> findVirtual(Class<?> type, String name, MethodType methodType) {
+        try {
+            return Optional.of(MethodHandles.publicLookup().findVirtual(type, name, methodType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Optional.empty();
+        }
+    }
+    
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controls the batch size and the number of concurrent writes of a {@link BatchingInfluxDbClient} with additive
+ * increase, multiplicative decrease (AIMD), as TCP does with its congestion window.
+ * <p>
+ * Each time as many writes as the current concurrency limit have succeeded within the target latency, the batch size
+ * grows by the minimum batch size (if batches were full) and the concurrency limit by one (if batches were waiting
+ * to be written). A write that's slower than the target, or that fails because
+ * InfluxDB is overloaded (a 5xx response or an I/O error), halves both. Only writes that started after the last
+ * decrease can cause another one, so the requests that were already in flight when InfluxDB slowed down don't
+ * collapse the settings to their minimum.
+ * <p>
+ * A fixed controller keeps the batch size and concurrency it was created with, and only tracks latency.
+ */
+class AdaptiveBatchController {
+    
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    
+    private final boolean adaptive;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int batchSizeStep;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private volatile int batchSize;
+    private volatile int concurrency;
+    private volatile long smoothedLatencyNanos;
+    // Guarded by this.
+    private int successesInRound;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+    private long increases;
+    private long decreases;
+
+    private AdaptiveBatchController(boolean adaptive, int minBatchSize, int maxBatchSize, int initialBatchSize,
+                                    int initialConcurrency, int maxConcurrency, long targetLatencyNanos) {
+        this.adaptive = adaptive;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizeStep = minBatchSize;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.batchSize = initialBatchSize;
+        this.concurrency = initialConcurrency;
+    }
+
+    /**
+     * Create a controller that keeps the same settings.
+     */
+    static AdaptiveBatchController fixed(int batchSize, int concurrency) {
+        return new AdaptiveBatchController(false, batchSize, batchSize, batchSize, concurrency, concurrency,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a controller that starts at the minimum batch size and a single write at a time, and adapts them to
+     * keep write latency under a target.
+     */
+    static AdaptiveBatchController adaptive(int minBatchSize, int maxBatchSize, int maxConcurrency,
+                                            long targetLatencyNanos) {
+        return new AdaptiveBatchController(true, minBatchSize, maxBatchSize, minBatchSize, 1, maxConcurrency,
+                targetLatencyNanos);
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getSmoothedLatencyNanos() {
+        return smoothedLatencyNanos;
+    }
+
+    long getTargetLatencyNanos() {
+        return targetLatencyNanos;
+    }
+
+    synchronized long getIncreaseCount() {
+        return increases;
+    }
+
+    synchronized long getDecreaseCount() {
+        return decreases;
+    }
+
+    /**
+     * Start a write if fewer writes than the concurrency limit are in flight.
+     * @return true if the write can start, in which case {@link #onWriteCompleted} must be called when it's done.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= concurrency) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give up a write acquired with {@link #tryAcquire()} without making it.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Record the outcome of a write acquired with {@link #tryAcquire()}, and adjust the settings.
+     * @param startNanos When the write started, according to {@link System#nanoTime()}.
+     * @param endNanos When the write completed.
+     * @param overloaded Whether the write failed in a way that suggests InfluxDB is overloaded.
+     * @param batchFull Whether the batch was full, i.e., a larger batch size would have been used.
+     * @param backlogged Whether batches were waiting to be written, i.e., more concurrency would have been used.
+     */
+    void onWriteCompleted(long startNanos, long endNanos, boolean overloaded, boolean batchFull, boolean backlogged) {
+        inFlight.decrementAndGet();
+        long latencyNanos = endNanos - startNanos;
+        long smoothed = smoothedLatencyNanos;
+        smoothedLatencyNanos = smoothed == 0 ? latencyNanos :
+                (long) (smoothed + LATENCY_SMOOTHING * (latencyNanos - smoothed));
+        if (!adaptive) {
+            return;
+        }
+        
+        synchronized (this) {
+            if (overloaded || latencyNanos > targetLatencyNanos) {
+                if (!decreased || startNanos - lastDecreaseNanos >= 0) {
+                    batchSize = Math.max(minBatchSize, (int) (batchSize * DECREASE_FACTOR));
+                    concurrency = Math.max(1, (int) (concurrency * DECREASE_FACTOR));
+                    successesInRound = 0;
+                    decreased = true;
+                    lastDecreaseNanos = endNanos;
+                    decreases++;
+                }
+            } else if (++successesInRound >= concurrency) {
+                successesInRound = 0;
+                boolean increased = false;
+                if (batchFull && batchSize < maxBatchSize) {
+                    batchSize = Math.min(maxBatchSize, batchSize + batchSizeStep);
+                    increased = true;
+                }
+                if (backlogged && concurrency < maxConcurrency) {
+                    concurrency++;
+                    increased = true;
+                }
+                if (increased) {
+                    increases++;
+                }
+            }
+        }
+    }
+    
+}
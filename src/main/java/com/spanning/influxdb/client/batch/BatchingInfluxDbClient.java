@@ -0,0 +1,1058 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link InfluxDbClient} that writes points in the background: {@link #writePoint} and {@link #writePoints} encode
+ * points into a lock-free {@link MpscRingBuffer} and return immediately. A single writer thread drains the ring
+ * buffer into batches, and sender threads write the batches to a delegate client with
+ * {@link InfluxDbClient#writeLineProtocol}.
+ * <p>
+ * A batch is sent when it reaches the maximum batch size, when the flush interval has passed since the last flush,
+ * or when {@link #flush()} is called. Failures to write a batch are logged and counted, and the batch is dropped.
+ * <p>
+ * With {@link Builder#withAdaptiveBatching}, the batch size and the number of concurrent writes adapt to write
+ * latency: they grow while writes complete within a target latency, and are halved when a write is slow or InfluxDB
+ * is overloaded. {@link #getMetrics()} reports the current settings.
+ * <p>
+ * With {@link Builder#withRateLimit} and {@link Builder#withDefaultRateLimit}, the points and bytes written to each
+ * database and retention policy are limited to a rate. A batch that would exceed it is held back until the rate allows
+ * it, while sender threads go on writing batches to other databases, so bursts accumulate in the buffer rather than
+ * being rejected, up to its limits.
+ * <p>
+ * The points waiting to be written (in the ring buffer, in batches, and in requests that are in flight) are limited by
+ * count and by encoded size, so memory use stays bounded when InfluxDB slows down. Once either limit is reached, new
+ * points are handled according to the {@link OverflowPolicy}, and points that are dropped are counted per policy.
+ * The limits are approximate: concurrent writers can each add a point after the limit is checked.
+ * <p>
+ * With {@link Builder#withCoalescing}, points with the same series and timestamp that end up in the same batch are
+ * merged into one point before the batch is written, as {@link com.spanning.influxdb.client.write.PointCoalescer}
+ * does: for each field, the value from the last point wins. Points are encoded as soon as they're written, so this
+ * merges their encoded lines on the writer thread.
+ * <p>
+ * Points can be written to separate lanes, set up with {@link Builder#withLane} and written to through
+ * {@link #lane(String)}, so that critical points aren't held up by bulk writes. Each lane has its own queue of
+ * batches, its own limits on pending points (and overflow handling), a limit on how many of its batches are written
+ * at the same time, and optionally its own delegate (e.g. an HTTP client with its own connection pool). The lanes'
+ * limits can't add up to more than the number of sender threads, so every lane always has a sender thread that other
+ * lanes can't take. Sender threads take batches from the lanes with weighted round-robin, so every lane gets a share
+ * of the writes in proportion to its weight. Points written to this client directly go to the {@link #DEFAULT_LANE}.
+ * <p>
+ * {@link #writeLineProtocol}, {@link #writeBatch} and {@link #executeQuery} aren't buffered, and call the delegate
+ * directly.
+ */
+public class BatchingInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BatchingInfluxDbClient.class);
+    /**
+     * The name of the lane to which points written to the client itself (rather than through {@link #lane(String)})
+     * are written.
+     */
+    public static final String DEFAULT_LANE = "default";
+    static final int DEFAULT_RING_BUFFER_SIZE = 64 * 1024;
+    static final int DEFAULT_SLOT_CAPACITY = 256;
+    static final int DEFAULT_MAX_BATCH_SIZE = 5_000;
+    static final long DEFAULT_FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final long DEFAULT_MAX_PENDING_POINTS = 500_000;
+    static final long DEFAULT_MAX_PENDING_BYTES = 64 * 1024 * 1024;
+    static final long DEFAULT_BLOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final double DEFAULT_SAMPLE_THRESHOLD = 0.5;
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long SENDER_POLL_MILLIS = 100;
+    private static final long SENDER_THROTTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private final InfluxDbClient delegate;
+    private final MpscRingBuffer ringBuffer;
+    private final AdaptiveBatchController controller;
+    private final WriteRateLimiter rateLimiter;
+    private final long flushIntervalNanos;
+    private final PendingLimits limits;
+    private final boolean coalesce;
+    private final Thread writerThread;
+    private final List<Thread> senderThreads = new ArrayList<>();
+    private final Lane[] lanes;
+    private final Map<String, Lane> lanesByName = new HashMap<>();
+    private final Lane defaultLane;
+    private final WeightedLaneScheduler<Batch> scheduler;
+    private final ConcurrentLinkedQueue<LineProtocolBuffer> spareBuffers = new ConcurrentLinkedQueue<>();
+    private final MpscRingBuffer.SlotHandler appendToBatch = this::appendToBatch;
+    
+    // Ring buffer slots that have been written or dropped, and the number a flush is waiting for.
+    private final AtomicLong completedSlots = new AtomicLong();
+    private final AtomicLong flushRequestedSlots = new AtomicLong();
+    private final LongAdder failedPoints = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder pointsWritten = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder coalescedPoints = new LongAdder();
+    private volatile boolean evictionRequested;
+    private volatile boolean writerDone;
+    private volatile boolean closed;
+    
+    // Only used by the writer thread.
+    private final List<Batch> openBatches = new ArrayList<>();
+    private long flushedSlots;
+
+    private BatchingInfluxDbClient(Builder builder) {
+        this.delegate = builder.delegate;
+        this.ringBuffer = new MpscRingBuffer(builder.ringBufferSize, builder.slotCapacity, builder.waitStrategy);
+        this.controller = builder.targetLatencyNanos > 0 ?
+                AdaptiveBatchController.adaptive(builder.minBatchSize, builder.maxBatchSize, builder.senderThreads,
+                        builder.targetLatencyNanos) :
+                AdaptiveBatchController.fixed(builder.maxBatchSize, builder.senderThreads);
+        this.rateLimiter = new WriteRateLimiter(builder.rateLimits, builder.defaultRateLimit);
+        this.flushIntervalNanos = builder.flushIntervalNanos;
+        this.limits = new PendingLimits(builder.maxPendingPoints, builder.maxPendingBytes, builder.overflowPolicy,
+                builder.blockTimeoutNanos, builder.sampleThreshold);
+        this.coalesce = builder.coalesce;
+        this.lanes = new Lane[builder.lanes.size()];
+        int[] weights = new int[lanes.length];
+        int[] maxConcurrency = new int[lanes.length];
+        for (Builder.LaneSpec spec : builder.lanes.values()) {
+            int index = lanesByName.size();
+            Lane lane = new Lane(spec.name, index, spec.delegate != null ? spec.delegate : delegate);
+            lanes[index] = lane;
+            lanesByName.put(spec.name, lane);
+            weights[index] = spec.weight;
+            maxConcurrency[index] = builder.maxConcurrency(spec);
+        }
+        this.defaultLane = lanesByName.get(DEFAULT_LANE);
+        this.scheduler = new WeightedLaneScheduler<>(weights, maxConcurrency,
+                rateLimiter.isEnabled() ? batch -> batch.readyAtNanos : null);
+        
+        this.writerThread = builder.threadFactory.newThread(this::runWriter);
+        for (int i = 0; i < builder.senderThreads; i++) {
+            senderThreads.add(builder.threadFactory.newThread(this::runSender));
+        }
+        writerThread.start();
+        senderThreads.forEach(Thread::start);
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoint(database, null, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        writePoint(defaultLane, database, retentionPolicy, point);
+    }
+
+    /**
+     * Write the point being built by a {@link DataPoint.Builder} without building a {@link DataPoint}. Together with
+     * {@link DataPoint.Builder#forCurrentThread}, this records points without allocating.
+     * @param database The database to which the point should be written.
+     * @param retentionPolicy An optional retention policy, or null to use the database's default.
+     * @param builder The builder of the point, which can be reset as soon as this method returns.
+     */
+    public void writePoint(String database, String retentionPolicy, DataPoint.Builder builder) {
+        writePoint(defaultLane, database, retentionPolicy, builder);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        writePoints(defaultLane, database, retentionPolicy, points);
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        delegate.writeBatch(database, retentionPolicy, batch);
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Get a client that writes points to a lane.
+     * @param name The name of a lane set up with {@link Builder#withLane}, or {@link #DEFAULT_LANE}.
+     * @return A {@link LaneClient}.
+     */
+    public LaneClient lane(String name) {
+        Lane lane = lanesByName.get(name);
+        checkArgument(lane != null, "unknown lane: %s", name);
+        return lane.client;
+    }
+
+    /**
+     * Send the points that were written to this client before this call, and wait until as many points as that have
+     * been written (or dropped).
+     */
+    public void flush() {
+        long slots = requestFlush();
+        while (completedSlots.get() < slots && isRunning()) {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    /**
+     * Stop accepting points, write the points that are still buffered, and stop the writer and sender threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ringBuffer.signal();
+        try {
+            writerThread.join();
+            for (Thread senderThread : senderThreads) {
+                senderThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the number of points that have been accepted, and not yet written or dropped.
+     * @return The number of pending points.
+     */
+    public long getPendingPointCount() {
+        long points = 0;
+        for (Lane lane : lanes) {
+            points += lane.pendingPoints.get();
+        }
+        return points;
+    }
+
+    /**
+     * Get the encoded size of the points that have been accepted, and not yet written or dropped.
+     * @return The number of pending bytes.
+     */
+    public long getPendingBytes() {
+        long bytes = 0;
+        for (Lane lane : lanes) {
+            bytes += lane.pendingBytes.get();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the number of points dropped because the buffer was full, for each {@link OverflowPolicy}.
+     * @return A map from policy to the number of points dropped under it.
+     */
+    public Map<OverflowPolicy, Long> getDroppedPointCounts() {
+        return limits.getDroppedPointCounts();
+    }
+
+    /**
+     * Get the number of points dropped because writing them to the delegate failed.
+     * @return The number of points in failed writes.
+     */
+    public long getFailedPointCount() {
+        return failedPoints.sum();
+    }
+
+    /**
+     * Get a snapshot of this client's batch size, concurrency and counters.
+     * @return A {@link BatchingMetrics}.
+     */
+    public BatchingMetrics getMetrics() {
+        return new BatchingMetrics(controller, getPendingPointCount(), getPendingBytes(), batchesWritten.sum(),
+                pointsWritten.sum(), failedPoints.sum(), getDroppedPointCounts(), throttledNanos.sum(),
+                coalescedPoints.sum());
+    }
+
+    private void writePoint(Lane lane, String database, String retentionPolicy, DataPoint point) {
+        checkArgument(point != null, "point can't be null");
+        checkWritable(database);
+        if (!admit(lane)) {
+            return;
+        }
+        long sequence = claim();
+        PointSlot slot = ringBuffer.get(sequence);
+        try {
+            point.writeLineProtocol(slot.lines);
+            slot.set(database, retentionPolicy, point.getTimestampPrecision(), lane.index);
+            reserve(lane, slot);
+        } finally {
+            // The slot is published even if encoding failed, so the writer thread doesn't stop at it.
+            ringBuffer.publish(sequence);
+        }
+        requestEvictionIfFull(lane);
+    }
+
+    private void writePoint(Lane lane, String database, String retentionPolicy, DataPoint.Builder builder) {
+        checkArgument(builder != null, "builder can't be null");
+        checkWritable(database);
+        if (!admit(lane)) {
+            return;
+        }
+        long sequence = claim();
+        PointSlot slot = ringBuffer.get(sequence);
+        try {
+            builder.writeLineProtocol(slot.lines);
+            slot.set(database, retentionPolicy, builder.getTimestampPrecision(), lane.index);
+            reserve(lane, slot);
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+        requestEvictionIfFull(lane);
+    }
+
+    private void writePoints(Lane lane, String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null, "points can't be null");
+        for (DataPoint point : points) {
+            writePoint(lane, database, retentionPolicy, point);
+        }
+    }
+
+    /**
+     * Claim a ring buffer slot.
+     * @throws IllegalStateException If the ring buffer is full and the writer thread has stopped, because the client
+     * was closed after the point was checked.
+     */
+    private long claim() {
+        long sequence = ringBuffer.claim();
+        checkState(sequence >= 0, "client is closed");
+        return sequence;
+    }
+
+    private void checkWritable(String database) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkState(!closed, "client is closed");
+    }
+
+    /**
+     * Decide whether to accept a point in a lane, applying the overflow policy if the lane's buffer is full.
+     * @return true if the point should be written, false if it was dropped.
+     */
+    private boolean admit(Lane lane) {
+        // A blocked writer requests a flush, so that it doesn't wait for the flush interval while senders are idle.
+        return limits.admit(lane.pendingPoints, lane.pendingBytes, this::requestFlush, () -> closed);
+    }
+
+    /**
+     * Ask the writer thread to send the open batches once it has drained the points claimed so far.
+     * @return The number of ring buffer slots claimed so far.
+     */
+    private long requestFlush() {
+        long slots = ringBuffer.getClaimedSequence() + 1;
+        flushRequestedSlots.accumulateAndGet(slots, Math::max);
+        ringBuffer.signal();
+        return slots;
+    }
+
+    private void requestEvictionIfFull(Lane lane) {
+        if (limits.shouldEvict(lane.pendingPoints, lane.pendingBytes)) {
+            evictionRequested = true;
+            ringBuffer.signal();
+        }
+    }
+
+    private void reserve(Lane lane, PointSlot slot) {
+        lane.pendingPoints.incrementAndGet();
+        lane.pendingBytes.addAndGet(slot.lines.size());
+    }
+
+    private boolean isRunning() {
+        if (writerThread.isAlive()) {
+            return true;
+        }
+        for (Thread senderThread : senderThreads) {
+            if (senderThread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writer thread loop: drain the ring buffer into batches, and queue them to be sent when they're full or due.
+     */
+    private void runWriter() {
+        long lastFlushNanos = System.nanoTime();
+        int idleCount = 0;
+        while (true) {
+            // Check whether the client is closed before draining, so that points claimed before closing are drained.
+            boolean closing = closed;
+            // Likewise for evictions, so that the point that requested an eviction is drained before it happens.
+            boolean evict = evictionRequested;
+            if (evict) {
+                evictionRequested = false;
+            }
+            int drained = ringBuffer.drain(appendToBatch, controller.getBatchSize());
+            long consumedSlots = ringBuffer.getConsumedSequence() + 1;
+            boolean empty = consumedSlots == ringBuffer.getClaimedSequence() + 1;
+            
+            long now = System.nanoTime();
+            long flushRequested = flushRequestedSlots.get();
+            if (now - lastFlushNanos >= flushIntervalNanos || (closing && empty) ||
+                    (flushRequested > flushedSlots && consumedSlots >= flushRequested)) {
+                for (Batch batch : openBatches) {
+                    seal(batch);
+                }
+                openBatches.clear();
+                flushedSlots = consumedSlots;
+                lastFlushNanos = now;
+            }
+            if (evict) {
+                evictOldestBatches();
+            }
+            if (closing && empty) {
+                ringBuffer.markConsumerDone();
+                writerDone = true;
+                return;
+            }
+            
+            if (drained > 0) {
+                idleCount = 0;
+            } else {
+                ringBuffer.idle(idleCount++, Math.max(flushIntervalNanos - (now - lastFlushNanos), 0));
+            }
+        }
+    }
+
+    private void appendToBatch(PointSlot slot) {
+        if (!slot.hasPoint()) {
+            completedSlots.incrementAndGet();
+            return;
+        }
+        Batch batch = openBatch(slot);
+        if (batch.coalescer == null) {
+            batch.lines.beginLine().write(slot.lines, 0, slot.lines.size());
+        } else if (batch.coalescer.add(slot.lines.toByteArray())) {
+            coalescedPoints.increment();
+        }
+        batch.byteCount += slot.lines.size();
+        if (++batch.pointCount >= controller.getBatchSize()) {
+            batch.full = true;
+            openBatches.remove(batch);
+            seal(batch);
+        }
+    }
+
+    /**
+     * Queue a batch to be sent, writing its coalesced lines first if coalescing is enabled. If its database and
+     * retention policy are rate limited, the batch isn't handed to a sender thread until the rate allows it.
+     */
+    private void seal(Batch batch) {
+        if (batch.coalescer != null) {
+            batch.coalescer.writeTo(batch.lines);
+        }
+        if (rateLimiter.isEnabled()) {
+            long nowNanos = System.nanoTime();
+            long waitNanos = rateLimiter.acquire(batch.database, batch.retentionPolicy, batch.pointCount,
+                    batch.byteCount, nowNanos);
+            throttledNanos.add(waitNanos);
+            batch.readyAtNanos = nowNanos + waitNanos;
+        }
+        scheduler.offer(batch.lane.index, batch);
+    }
+
+    private Batch openBatch(PointSlot slot) {
+        // Points are usually written to a handful of destinations, so a linear search beats hashing.
+        for (Batch batch : openBatches) {
+            if (batch.database.equals(slot.database) &&
+                    Objects.equals(batch.retentionPolicy, slot.retentionPolicy) &&
+                    batch.precision == slot.precision &&
+                    batch.lane.index == slot.lane) {
+                return batch;
+            }
+        }
+        LineProtocolBuffer lines = spareBuffers.poll();
+        Batch batch = new Batch(lanes[slot.lane], slot.database, slot.retentionPolicy, slot.precision,
+                lines != null ? lines : new LineProtocolBuffer(), coalesce ? new LineCoalescer() : null);
+        openBatches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Drop the oldest batches waiting to be sent in each lane until its pending points are within the limits again.
+     * Batches that are being sent can't be dropped; if no batch is waiting, the lane's open batches are dropped.
+     */
+    private void evictOldestBatches() {
+        for (Lane lane : lanes) {
+            while (limits.isOverLimit(lane.pendingPoints, lane.pendingBytes)) {
+                Batch batch = scheduler.pollOldest(lane.index);
+                if (batch == null) {
+                    batch = removeOpenBatch(lane);
+                    if (batch == null) {
+                        break;
+                    }
+                }
+                limits.drop(OverflowPolicy.DROP_OLDEST, batch.pointCount);
+                release(batch);
+            }
+        }
+    }
+
+    private Batch removeOpenBatch(Lane lane) {
+        for (int i = 0; i < openBatches.size(); i++) {
+            if (openBatches.get(i).lane == lane) {
+                return openBatches.remove(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sender thread loop: write queued batches until the writer thread is done and the lanes are empty. Sender threads
+     * beyond the controller's concurrency limit wait for it to be raised.
+     */
+    private void runSender() {
+        while (true) {
+            Batch batch = null;
+            if (controller.tryAcquire()) {
+                try {
+                    batch = scheduler.poll(SENDER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // Checked below, like a timeout.
+                }
+                if (batch != null) {
+                    send(batch);
+                } else {
+                    controller.release();
+                }
+            } else {
+                LockSupport.parkNanos(SENDER_THROTTLE_NANOS);
+            }
+            if (batch == null && writerDone && scheduler.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        long startNanos = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            batch.lane.delegate.writeLineProtocol(batch.database, batch.retentionPolicy, batch.precision,
+                    batch.lines);
+            batchesWritten.increment();
+            pointsWritten.add(batch.pointCount);
+        } catch (RuntimeException e) {
+            overloaded = isOverloaded(e);
+            failedPoints.add(batch.pointCount);
+            logger.warn("Failed to write a batch of {} points to InfluxDB database {}.", batch.pointCount,
+                    batch.database, e);
+        } finally {
+            controller.onWriteCompleted(startNanos, System.nanoTime(), overloaded, batch.full, !scheduler.isEmpty());
+            scheduler.complete(batch.lane.index);
+            release(batch);
+        }
+    }
+
+    /**
+     * Whether a write failure suggests that InfluxDB is overloaded: a 5xx response, or a failure to get a response
+     * at all. Other responses (e.g. a 400 for a malformed point) say nothing about load.
+     */
+    private static boolean isOverloaded(RuntimeException e) {
+        if (e instanceof InfluxDbHttpWriteException) {
+            return ((InfluxDbHttpWriteException) e).getStatusCode() >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * Release a batch that was written or dropped: free its room in the buffer, and recycle its line buffer.
+     */
+    private void release(Batch batch) {
+        batch.lane.pendingPoints.addAndGet(-batch.pointCount);
+        batch.lane.pendingBytes.addAndGet(-batch.byteCount);
+        completedSlots.addAndGet(batch.pointCount);
+        batch.lines.reset();
+        spareBuffers.offer(batch.lines);
+    }
+
+    /**
+     * A lane's state: the points (and their encoded bytes) that have been accepted, and not yet written or dropped.
+     * The lane's queue of batches is kept by the scheduler.
+     */
+    private class Lane {
+        
+        private final String name;
+        private final int index;
+        private final InfluxDbClient delegate;
+        private final AtomicLong pendingPoints = new AtomicLong();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final LaneClient client;
+
+        Lane(String name, int index, InfluxDbClient delegate) {
+            this.name = name;
+            this.index = index;
+            this.delegate = delegate;
+            this.client = new LaneClient(this);
+        }
+        
+    }
+
+    /**
+     * {@link InfluxDbClient} that writes points to one of a {@link BatchingInfluxDbClient}'s lanes. Like the
+     * {@link BatchingInfluxDbClient}, it calls the lane's delegate directly for writes and queries that aren't
+     * buffered.
+     */
+    public final class LaneClient implements InfluxDbClient {
+        
+        private final Lane lane;
+
+        private LaneClient(Lane lane) {
+            this.lane = lane;
+        }
+
+        public String getName() {
+            return lane.name;
+        }
+
+        @Override
+        public void writePoint(String database, DataPoint point) {
+            writePoint(database, null, point);
+        }
+
+        @Override
+        public void writePoint(String database, String retentionPolicy, DataPoint point) {
+            BatchingInfluxDbClient.this.writePoint(lane, database, retentionPolicy, point);
+        }
+
+        /**
+         * Write the point being built by a {@link DataPoint.Builder} without building a {@link DataPoint}.
+         * @see BatchingInfluxDbClient#writePoint(String, String, DataPoint.Builder)
+         */
+        public void writePoint(String database, String retentionPolicy, DataPoint.Builder builder) {
+            BatchingInfluxDbClient.this.writePoint(lane, database, retentionPolicy, builder);
+        }
+
+        @Override
+        public void writePoints(String database, List<DataPoint> points) {
+            writePoints(database, null, points);
+        }
+
+        @Override
+        public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+            BatchingInfluxDbClient.this.writePoints(lane, database, retentionPolicy, points);
+        }
+
+        @Override
+        public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                      LineProtocolBuffer lines) {
+            lane.delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+        }
+
+        @Override
+        public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                             List<LineProtocolBuffer> lines) {
+            lane.delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+        }
+
+        @Override
+        public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+            lane.delegate.writeBatch(database, retentionPolicy, batch);
+        }
+
+        @Override
+        public List<QueryResult> executeQuery(String database, String query) {
+            return lane.delegate.executeQuery(database, query);
+        }
+
+        /**
+         * Get the number of points in this lane that have been accepted, and not yet written or dropped.
+         * @return The number of pending points.
+         */
+        public long getPendingPointCount() {
+            return lane.pendingPoints.get();
+        }
+        
+    }
+
+    /**
+     * Points waiting to be written to a database and retention policy with a timestamp precision.
+     */
+    private static class Batch {
+        
+        private final Lane lane;
+        private final String database;
+        private final String retentionPolicy;
+        private final TimestampPrecision precision;
+        private final LineProtocolBuffer lines;
+        // Holds the lines until the batch is sealed when coalescing is enabled, or null.
+        private final LineCoalescer coalescer;
+        private int pointCount;
+        private long byteCount;
+        private boolean full;
+        // When the rate limit allows the batch to be written, according to System.nanoTime().
+        private long readyAtNanos;
+
+        Batch(Lane lane, String database, String retentionPolicy, TimestampPrecision precision,
+              LineProtocolBuffer lines, LineCoalescer coalescer) {
+            this.lane = lane;
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.precision = precision;
+            this.lines = lines;
+            this.coalescer = coalescer;
+        }
+        
+    }
+
+    /**
+     * Builder used to create a {@link BatchingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        // The default lane's concurrency limit unless it's set: the sender threads that other lanes don't reserve.
+        private static final int SPARE_SENDER_THREADS = 0;
+        
+        private final InfluxDbClient delegate;
+        private int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+        private int slotCapacity = DEFAULT_SLOT_CAPACITY;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private int minBatchSize;
+        private long targetLatencyNanos;
+        private long flushIntervalNanos = DEFAULT_FLUSH_INTERVAL_NANOS;
+        private long maxPendingPoints = DEFAULT_MAX_PENDING_POINTS;
+        private long maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private long blockTimeoutNanos = DEFAULT_BLOCK_TIMEOUT_NANOS;
+        private double sampleThreshold = DEFAULT_SAMPLE_THRESHOLD;
+        private boolean coalesce;
+        private int senderThreads = 1;
+        private final Map<WriteRateLimiter.Key, WriteRateLimiter.Limit> rateLimits = new HashMap<>();
+        private WriteRateLimiter.Limit defaultRateLimit;
+        private final Map<String, LaneSpec> lanes = new LinkedHashMap<>();
+        private WaitStrategy waitStrategy = WaitStrategies.sleeping();
+        private ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("influxdb-batch-writer-%d")
+                .setDaemon(true)
+                .build();
+
+        /**
+         * Create a builder.
+         * @param delegate The client to which batches are written.
+         */
+        public Builder(InfluxDbClient delegate) {
+            checkArgument(delegate != null, "delegate can't be null");
+            this.delegate = delegate;
+            lanes.put(DEFAULT_LANE, new LaneSpec(DEFAULT_LANE, 1, SPARE_SENDER_THREADS, null));
+        }
+
+        /**
+         * Set the size of the ring buffer through which points are handed to the writer thread. The ring buffer's
+         * slots are allocated up front. Writers wait for a free slot if the writer thread falls behind.
+         * @param ringBufferSize The number of slots, which must be a power of 2 (default 65536).
+         * @return This builder.
+         */
+        public Builder withRingBufferSize(int ringBufferSize) {
+            checkArgument(ringBufferSize > 0 && Integer.bitCount(ringBufferSize) == 1,
+                    "ringBufferSize must be a power of 2");
+            this.ringBufferSize = ringBufferSize;
+            return this;
+        }
+
+        /**
+         * Set the initial capacity of each slot's buffer. Slots grow to fit larger points.
+         * @param slotCapacity The capacity in bytes (default 256).
+         * @return This builder.
+         */
+        public Builder withSlotCapacity(int slotCapacity) {
+            checkArgument(slotCapacity > 0, "slotCapacity must be positive");
+            this.slotCapacity = slotCapacity;
+            return this;
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Adapt the batch size and the number of concurrent writes to write latency. Writing starts with batches of
+         * {@code minBatchSize} points, one at a time, and grows up to the maximum batch size and the number of sender
+         * threads while writes complete within {@code targetLatency}. Both are halved when a write is slower than
+         * that or fails with a 5xx response or an I/O error.
+         * @param minBatchSize The smallest batch size, which is also the step by which it grows.
+         * @param targetLatency The write latency to stay under.
+         * @param unit The unit of {@code targetLatency}.
+         * @return This builder.
+         */
+        public Builder withAdaptiveBatching(int minBatchSize, long targetLatency, TimeUnit unit) {
+            checkArgument(minBatchSize > 0, "minBatchSize must be positive");
+            checkArgument(targetLatency > 0, "targetLatency must be positive");
+            checkArgument(unit != null, "unit can't be null");
+            this.minBatchSize = minBatchSize;
+            this.targetLatencyNanos = unit.toNanos(targetLatency);
+            return this;
+        }
+
+        public Builder withFlushInterval(long flushInterval, TimeUnit unit) {
+            checkArgument(flushInterval > 0, "flushInterval must be positive");
+            checkArgument(unit != null, "unit can't be null");
+            this.flushIntervalNanos = unit.toNanos(flushInterval);
+            return this;
+        }
+
+        /**
+         * Set the limits on the points waiting to be written, which apply to each lane separately.
+         * @param maxPendingPoints The maximum number of points (default 500,000).
+         * @param maxPendingBytes The maximum encoded size of the points, in bytes (default 64 MiB).
+         * @return This builder.
+         */
+        public Builder withMaxPending(long maxPendingPoints, long maxPendingBytes) {
+            checkArgument(maxPendingPoints > 0, "maxPendingPoints must be positive");
+            checkArgument(maxPendingBytes > 0, "maxPendingBytes must be positive");
+            this.maxPendingPoints = maxPendingPoints;
+            this.maxPendingBytes = maxPendingBytes;
+            return this;
+        }
+
+        /**
+         * Set what happens to points written while the buffer is full (by default, {@link OverflowPolicy#BLOCK}).
+         * @param overflowPolicy An {@link OverflowPolicy}.
+         * @return This builder.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            checkArgument(overflowPolicy != null, "overflowPolicy can't be null");
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set how long writers wait for room in the buffer with {@link OverflowPolicy#BLOCK} (default 1 second).
+         * @param blockTimeout The timeout.
+         * @param unit The unit of {@code blockTimeout}.
+         * @return This builder.
+         */
+        public Builder withBlockTimeout(long blockTimeout, TimeUnit unit) {
+            checkArgument(blockTimeout >= 0, "blockTimeout can't be negative");
+            checkArgument(unit != null, "unit can't be null");
+            this.blockTimeoutNanos = unit.toNanos(blockTimeout);
+            return this;
+        }
+
+        /**
+         * Set how full the buffer is when {@link OverflowPolicy#SAMPLE} starts dropping points.
+         * @param sampleThreshold The fraction of either limit, between 0 (inclusive) and 1 (exclusive) (default 0.5).
+         * @return This builder.
+         */
+        public Builder withSampleThreshold(double sampleThreshold) {
+            checkArgument(sampleThreshold >= 0 && sampleThreshold < 1, "sampleThreshold must be in [0, 1)");
+            this.sampleThreshold = sampleThreshold;
+            return this;
+        }
+
+        /**
+         * Set whether points with the same series key and timestamp in a batch are merged into one point before the
+         * batch is written (by default, they aren't). For each field, the value from the last point wins, and fields
+         * that only appear in some of the points are merged. This reduces the size of writes when the same series is
+         * written several times per timestamp (e.g., one field at a time), at the cost of hashing each point on the
+         * writer thread.
+         * @param coalesce Whether to coalesce points.
+         * @return This builder.
+         */
+        public Builder withCoalescing(boolean coalesce) {
+            this.coalesce = coalesce;
+            return this;
+        }
+
+        /**
+         * Set the number of threads that send batches to the delegate, which is the maximum number of concurrent
+         * writes. The lanes' concurrency limits (see {@link #withLane}) can't add up to more than this.
+         * @param senderThreads The number of sender threads (default 1).
+         * @return This builder.
+         */
+        public Builder withSenderThreads(int senderThreads) {
+            checkArgument(senderThreads > 0, "senderThreads must be positive");
+            this.senderThreads = senderThreads;
+            return this;
+        }
+
+        /**
+         * Limit the rate at which points are written to a database and retention policy. Up to a second's worth of
+         * points and bytes can be written at once; after that, batches are held back until the rate allows them,
+         * without delaying batches to other databases.
+         * @param database The database.
+         * @param retentionPolicy The retention policy, or null for the database's default.
+         * @param pointsPerSecond The maximum points per second, or {@link Long#MAX_VALUE} to not limit points.
+         * @param bytesPerSecond The maximum bytes per second, or {@link Long#MAX_VALUE} to not limit bytes.
+         * @return This builder.
+         */
+        public Builder withRateLimit(String database, String retentionPolicy, long pointsPerSecond,
+                                     long bytesPerSecond) {
+            checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+            rateLimits.put(new WriteRateLimiter.Key(database, retentionPolicy),
+                    rateLimit(pointsPerSecond, bytesPerSecond));
+            return this;
+        }
+
+        /**
+         * Limit the rate at which points are written to each database and retention policy that doesn't have a limit
+         * set with {@link #withRateLimit}. Each database and retention policy is limited separately.
+         * @param pointsPerSecond The maximum points per second, or {@link Long#MAX_VALUE} to not limit points.
+         * @param bytesPerSecond The maximum bytes per second, or {@link Long#MAX_VALUE} to not limit bytes.
+         * @return This builder.
+         */
+        public Builder withDefaultRateLimit(long pointsPerSecond, long bytesPerSecond) {
+            this.defaultRateLimit = rateLimit(pointsPerSecond, bytesPerSecond);
+            return this;
+        }
+
+        private static WriteRateLimiter.Limit rateLimit(long pointsPerSecond, long bytesPerSecond) {
+            checkArgument(pointsPerSecond > 0, "pointsPerSecond must be positive");
+            checkArgument(bytesPerSecond > 0, "bytesPerSecond must be positive");
+            return new WriteRateLimiter.Limit(pointsPerSecond, bytesPerSecond);
+        }
+
+        /**
+         * Add a lane, or change the {@link #DEFAULT_LANE} (which has a weight of 1, and by default may use the sender
+         * threads that other lanes' concurrency limits leave over). Each lane has its own pending points limits, set
+         * with {@link #withMaxPending}.
+         * <p>
+         * The lanes' concurrency limits can't add up to more than the number of sender threads (set with
+         * {@link #withSenderThreads}), so each lane's limit is also the number of sender threads reserved for it, and
+         * bulk writes in one lane never hold up critical ones in another. With {@link #withAdaptiveBatching}, the
+         * number of concurrent writes can drop below the number of sender threads while InfluxDB is slow, and the
+         * lanes then share the writes by weight.
+         * @param name The name of the lane.
+         * @param weight The lane's share of writes relative to other lanes with batches waiting.
+         * @param maxConcurrency The maximum number of the lane's batches written at the same time.
+         * @return This builder.
+         */
+        public Builder withLane(String name, int weight, int maxConcurrency) {
+            return withLane(name, weight, maxConcurrency, null);
+        }
+
+        /**
+         * Add a lane that writes to its own delegate, e.g. an
+         * {@link com.spanning.influxdb.client.http.InfluxDbHttpClient} with its own connection pool and request limit.
+         * @param name The name of the lane.
+         * @param weight The lane's share of writes relative to other lanes with batches waiting.
+         * @param maxConcurrency The maximum number of the lane's batches written at the same time.
+         * @param delegate The client to which the lane's batches are written, or null to use the client's delegate.
+         * @return This builder.
+         * @see #withLane(String, int, int)
+         */
+        public Builder withLane(String name, int weight, int maxConcurrency, InfluxDbClient delegate) {
+            checkArgument(!Strings.isNullOrEmpty(name), "name can't be null or empty");
+            checkArgument(weight > 0, "weight must be positive");
+            checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+            lanes.put(name, new LaneSpec(name, weight, maxConcurrency, delegate));
+            return this;
+        }
+
+        /**
+         * Set how the writer thread waits for points. By default, it uses {@link WaitStrategies#sleeping()}.
+         * @param waitStrategy A {@link WaitStrategy}.
+         * @return This builder.
+         */
+        public Builder withWaitStrategy(WaitStrategy waitStrategy) {
+            checkArgument(waitStrategy != null, "waitStrategy can't be null");
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder withThreadFactory(ThreadFactory threadFactory) {
+            checkArgument(threadFactory != null, "threadFactory can't be null");
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        private static class LaneSpec {
+            
+            private final String name;
+            private final int weight;
+            private final int maxConcurrency;
+            private final InfluxDbClient delegate;
+
+            LaneSpec(String name, int weight, int maxConcurrency, InfluxDbClient delegate) {
+                this.name = name;
+                this.weight = weight;
+                this.maxConcurrency = maxConcurrency;
+                this.delegate = delegate;
+            }
+            
+        }
+
+        public BatchingInfluxDbClient build() {
+            checkState(minBatchSize <= maxBatchSize, "minBatchSize can't be greater than maxBatchSize");
+            checkState(maxPendingPoints >= maxBatchSize, "maxPendingPoints can't be less than maxBatchSize");
+            long reservedSenderThreads = reservedSenderThreads();
+            checkState(reservedSenderThreads <= senderThreads,
+                    "the lanes' maxConcurrency can't add up to more than senderThreads");
+            checkState(lanes.get(DEFAULT_LANE).maxConcurrency != SPARE_SENDER_THREADS ||
+                            reservedSenderThreads < senderThreads,
+                    "the other lanes' maxConcurrency must leave a sender thread for the default lane");
+            return new BatchingInfluxDbClient(this);
+        }
+
+        /**
+         * The concurrency limit of a lane.
+         */
+        private int maxConcurrency(LaneSpec spec) {
+            return spec.maxConcurrency != SPARE_SENDER_THREADS ? spec.maxConcurrency :
+                    (int) (senderThreads - reservedSenderThreads());
+        }
+
+        /**
+         * The number of sender threads reserved by lanes whose concurrency limit is set.
+         */
+        private long reservedSenderThreads() {
+            long reserved = 0;
+            for (LaneSpec spec : lanes.values()) {
+                reserved += spec.maxConcurrency;
+            }
+            return reserved;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the state and counters of a {@link BatchingInfluxDbClient}: the current batch size and concurrency
+ * limit (which change over time when adaptive batching is enabled), the points waiting to be written, and what
+ * happened to the points that were written.
+ */
+public class BatchingMetrics {
+    
+    private final int batchSize;
+    private final int concurrency;
+    private final int writesInFlight;
+    private final long smoothedLatencyNanos;
+    private final long targetLatencyNanos;
+    private final long increases;
+    private final long decreases;
+    private final long pendingPoints;
+    private final long pendingBytes;
+    private final long batchesWritten;
+    private final long pointsWritten;
+    private final long failedPoints;
+    private final Map<OverflowPolicy, Long> droppedPoints;
+    private final long throttledNanos;
+    private final long coalescedPoints;
+
+    BatchingMetrics(AdaptiveBatchController controller, long pendingPoints, long pendingBytes, long batchesWritten,
+                    long pointsWritten, long failedPoints, Map<OverflowPolicy, Long> droppedPoints,
+                    long throttledNanos, long coalescedPoints) {
+        this.batchSize = controller.getBatchSize();
+        this.concurrency = controller.getConcurrency();
+        this.writesInFlight = controller.getInFlight();
+        this.smoothedLatencyNanos = controller.getSmoothedLatencyNanos();
+        this.targetLatencyNanos = controller.getTargetLatencyNanos();
+        this.increases = controller.getIncreaseCount();
+        this.decreases = controller.getDecreaseCount();
+        this.pendingPoints = pendingPoints;
+        this.pendingBytes = pendingBytes;
+        this.batchesWritten = batchesWritten;
+        this.pointsWritten = pointsWritten;
+        this.failedPoints = failedPoints;
+        this.droppedPoints = Collections.unmodifiableMap(droppedPoints);
+        this.throttledNanos = throttledNanos;
+        this.coalescedPoints = coalescedPoints;
+    }
+
+    /**
+     * Get the number of points at which a batch is sent.
+     * @return The current batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Get the maximum number of batches that can be written at the same time.
+     * @return The current concurrency limit.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getWritesInFlight() {
+        return writesInFlight;
+    }
+
+    /**
+     * Get the exponentially weighted moving average of write latency.
+     * @return The smoothed latency in nanoseconds, or 0 if nothing has been written yet.
+     */
+    public long getSmoothedLatencyNanos() {
+        return smoothedLatencyNanos;
+    }
+
+    /**
+     * Get the write latency that adaptive batching aims to stay under.
+     * @return The target latency in nanoseconds, or {@link Long#MAX_VALUE} if adaptive batching isn't enabled.
+     */
+    public long getTargetLatencyNanos() {
+        return targetLatencyNanos;
+    }
+
+    /**
+     * Get the number of times adaptive batching increased the batch size or concurrency limit.
+     * @return The number of increases.
+     */
+    public long getIncreaseCount() {
+        return increases;
+    }
+
+    /**
+     * Get the number of times adaptive batching backed off because of slow or overloaded writes.
+     * @return The number of decreases.
+     */
+    public long getDecreaseCount() {
+        return decreases;
+    }
+
+    public long getPendingPoints() {
+        return pendingPoints;
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten;
+    }
+
+    public long getPointsWritten() {
+        return pointsWritten;
+    }
+
+    /**
+     * Get the number of points dropped because writing them to the delegate failed.
+     * @return The number of points in failed writes.
+     */
+    public long getFailedPoints() {
+        return failedPoints;
+    }
+
+    /**
+     * Get the number of points dropped because the buffer was full, for each {@link OverflowPolicy}.
+     * @return A map from policy to the number of points dropped under it.
+     */
+    public Map<OverflowPolicy, Long> getDroppedPoints() {
+        return droppedPoints;
+    }
+
+    /**
+     * Get the total time batches have been held back before being written because of rate limits.
+     * @return The time in nanoseconds.
+     */
+    public long getThrottledNanos() {
+        return throttledNanos;
+    }
+
+    /**
+     * Get the number of points that were merged into an earlier point with the same series and timestamp, when
+     * coalescing is enabled with {@link BatchingInfluxDbClient.Builder#withCoalescing}.
+     * @return The number of coalesced points.
+     */
+    public long getCoalescedPoints() {
+        return coalescedPoints;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchingMetrics{" +
+                "batchSize=" + batchSize +
+                ", concurrency=" + concurrency +
+                ", writesInFlight=" + writesInFlight +
+                ", smoothedLatencyNanos=" + smoothedLatencyNanos +
+                ", targetLatencyNanos=" + targetLatencyNanos +
+                ", increases=" + increases +
+                ", decreases=" + decreases +
+                ", pendingPoints=" + pendingPoints +
+                ", pendingBytes=" + pendingBytes +
+                ", batchesWritten=" + batchesWritten +
+                ", pointsWritten=" + pointsWritten +
+                ", failedPoints=" + failedPoints +
+                ", droppedPoints=" + droppedPoints +
+                ", throttledNanos=" + throttledNanos +
+                ", coalescedPoints=" + coalescedPoints +
+                '}';
+    }
+    
+}
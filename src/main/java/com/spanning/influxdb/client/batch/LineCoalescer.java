@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Coalesces encoded line protocol lines that share a series key and a timestamp into a single line, the way
+ * {@link com.spanning.influxdb.client.write.PointCoalescer} coalesces {@link com.spanning.influxdb.model.DataPoint
+ * DataPoints}: for each field, the value from the last line wins, and fields that only appear in some of the lines
+ * are merged. Lines are written out in the order in which each series and timestamp first appeared.
+ * <p>
+ * A line's fields are only parsed once a second line with the same series key and timestamp is added, so lines
+ * without duplicates are just copied.
+ * Note: This class is not thread-safe.
+ */
+class LineCoalescer {
+    
+    private final Map<Key, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Add a line.
+     * @param line The bytes of a single line, without a trailing newline.
+     * @return true if the line was merged into an earlier line with the same series key and timestamp.
+     */
+    boolean add(byte[] line) {
+        int keyEnd = indexOfUnescaped(line, 0, ' ', false);
+        int fieldsEnd = indexOfUnescaped(line, keyEnd + 1, ' ', true);
+        Key key = new Key(line, keyEnd, fieldsEnd);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entries.put(key, new Entry(line, keyEnd, fieldsEnd));
+            return false;
+        }
+        entry.merge(line, keyEnd + 1, fieldsEnd);
+        return true;
+    }
+
+    /**
+     * Get the number of distinct series and timestamps that have been added.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Append the coalesced lines to a buffer, one per line, and clear this coalescer.
+     * @param buffer The buffer to which the lines should be written.
+     */
+    void writeTo(LineProtocolBuffer buffer) {
+        for (Entry entry : entries.values()) {
+            entry.writeTo(buffer.beginLine());
+        }
+        entries.clear();
+    }
+
+    /**
+     * Get the index of the first occurrence of a byte that isn't escaped with a backslash (or, in the field set, inside
+     * a quoted string value), or the end of the line if there is none.
+     * @param fields Whether the search is in the field set, where a quote right after an unescaped '=' starts a
+     *               string value. Quotes in the measurement, tags and field names aren't escaped, and don't quote.
+     */
+    private static int indexOfUnescaped(byte[] line, int from, char b, boolean fields) {
+        boolean quoted = false;
+        boolean afterEquals = false;
+        for (int i = from; i < line.length; i++) {
+            byte c = line[i];
+            boolean equals = false;
+            if (c == '\\') {
+                i++;
+            } else if (quoted) {
+                quoted = c != '"';
+            } else if (c == '"' && fields && afterEquals) {
+                quoted = true;
+            } else if (c == b) {
+                return i;
+            } else {
+                equals = c == '=';
+            }
+            afterEquals = equals;
+        }
+        return line.length;
+    }
+
+    /**
+     * A line's series key and timestamp (everything but its fields).
+     */
+    private static class Key {
+        
+        private final byte[] line;
+        private final int keyEnd;
+        private final int fieldsEnd;
+        private final int hash;
+
+        Key(byte[] line, int keyEnd, int fieldsEnd) {
+            this.line = line;
+            this.keyEnd = keyEnd;
+            this.fieldsEnd = fieldsEnd;
+            this.hash = 31 * hash(line, 0, keyEnd) + hash(line, fieldsEnd, line.length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash &&
+                    Arrays.equals(line, 0, keyEnd, other.line, 0, other.keyEnd) &&
+                    Arrays.equals(line, fieldsEnd, line.length, other.line, other.fieldsEnd, other.line.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash;
+        }
+        
+    }
+
+    /**
+     * The first line with a series key and timestamp, and the merged fields once there's a duplicate.
+     */
+    private static class Entry {
+        
+        private final byte[] line;
+        private final int keyEnd;
+        private final int fieldsEnd;
+        // Field name to the field's "name=value" bytes, in the order the fields first appeared.
+        private Map<String, byte[]> fields;
+
+        Entry(byte[] line, int keyEnd, int fieldsEnd) {
+            this.line = line;
+            this.keyEnd = keyEnd;
+            this.fieldsEnd = fieldsEnd;
+        }
+
+        void merge(byte[] duplicate, int fieldsStart, int duplicateFieldsEnd) {
+            if (fields == null) {
+                fields = new LinkedHashMap<>();
+                putFields(line, keyEnd + 1, fieldsEnd);
+            }
+            putFields(duplicate, fieldsStart, duplicateFieldsEnd);
+        }
+
+        private void putFields(byte[] bytes, int from, int to) {
+            int start = from;
+            while (start < to) {
+                int end = Math.min(indexOfUnescaped(bytes, start, ',', true), to);
+                int nameEnd = Math.min(indexOfUnescaped(bytes, start, '=', true), end);
+                // Field names are escaped the same way in every line, so their bytes identify them.
+                fields.put(new String(bytes, start, nameEnd - start, StandardCharsets.ISO_8859_1),
+                        Arrays.copyOfRange(bytes, start, end));
+                start = end + 1;
+            }
+        }
+
+        void writeTo(LineProtocolBuffer buffer) {
+            if (fields == null) {
+                buffer.write(line);
+                return;
+            }
+            buffer.write(line, 0, keyEnd).writeByte(' ');
+            boolean first = true;
+            for (byte[] field : fields.values()) {
+                if (!first) {
+                    buffer.writeByte(',');
+                }
+                buffer.write(field);
+                first = false;
+            }
+            buffer.write(line, fieldsEnd, line.length - fieldsEnd);
+        }
+        
+    }
+    
+}
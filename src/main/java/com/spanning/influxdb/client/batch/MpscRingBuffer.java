@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded multi-producer/single-consumer ring buffer of preallocated {@link PointSlot PointSlots}, in the style of
+ * the LMAX Disruptor. Producers claim a sequence number with a CAS, encode a point into the claimed slot, and publish
+ * it; the consumer reads published slots in sequence order. Neither side takes locks, and neither allocates once the
+ * slots' buffers have grown to fit the points.
+ * <p>
+ * Each slot records the "lap" (sequence / capacity) in which it was last published, so the consumer can tell when
+ * the next slot has been published without producers publishing in order.
+ */
+class MpscRingBuffer {
+    
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int CLAIM_SPIN_TRIES = 100;
+    private static final int CLAIM_YIELD_TRIES = 100;
+    private static final long CLAIM_PARK_NANOS = 1_000;
+    
+    private final PointSlot[] slots;
+    private final int[] publishedLaps;
+    private final int mask;
+    private final int lapShift;
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier nextPublished = this::isNextPublished;
+    
+    // The last sequence claimed by a producer.
+    private final Sequence claimed = new Sequence(-1);
+    // The last sequence the consumer is done with, after which slots can be reused.
+    private final Sequence consumed = new Sequence(-1);
+    // Producers' cached copy of consumed, so they don't all read the consumer's cache line on every claim.
+    private final Sequence consumedCache = new Sequence(-1);
+    // Set once the consumer has stopped, after which a full ring buffer never frees up.
+    private volatile boolean consumerDone;
+
+    /**
+     * Create a ring buffer.
+     * @param capacity The number of slots, which must be a power of 2.
+     * @param slotCapacity The initial capacity of each slot's buffer, in bytes.
+     * @param waitStrategy The strategy the consumer uses to wait for points.
+     */
+    MpscRingBuffer(int capacity, int slotCapacity, WaitStrategy waitStrategy) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of 2");
+        checkArgument(waitStrategy != null, "waitStrategy can't be null");
+        this.slots = new PointSlot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new PointSlot(slotCapacity);
+        }
+        this.publishedLaps = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            publishedLaps[i] = -1;
+        }
+        this.mask = capacity - 1;
+        this.lapShift = Integer.numberOfTrailingZeros(capacity);
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Try to claim the next slot.
+     * @return The slot's sequence, or -1 if the ring buffer is full.
+     */
+    long tryClaim() {
+        long current;
+        long next;
+        do {
+            current = claimed.get();
+            next = current + 1;
+            
+            // The slot is free once the consumer is done with the sequence one lap behind it.
+            long wrapPoint = next - slots.length;
+            if (wrapPoint > consumedCache.get()) {
+                long consumedSequence = consumed.get();
+                consumedCache.setRelease(consumedSequence);
+                if (wrapPoint > consumedSequence) {
+                    return -1;
+                }
+            }
+        } while (!claimed.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * Claim the next slot, waiting for the consumer to free one if the ring buffer is full.
+     * @return The slot's sequence, or -1 if the ring buffer is full and the consumer is done (see
+     * {@link #markConsumerDone()}).
+     */
+    long claim() {
+        int tries = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            if (consumerDone) {
+                return -1;
+            }
+            if (tries < CLAIM_SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (tries < CLAIM_SPIN_TRIES + CLAIM_YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(CLAIM_PARK_NANOS);
+            }
+            tries++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Get the slot for a claimed sequence.
+     * @param sequence A sequence returned by {@link #claim} or {@link #tryClaim}.
+     * @return The {@link PointSlot}.
+     */
+    PointSlot get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Publish a claimed slot, making it visible to the consumer. Every claimed slot must be published, even if
+     * nothing was written to it, or the consumer will stop at it.
+     * @param sequence The slot's sequence.
+     */
+    void publish(long sequence) {
+        PUBLISHED.setRelease(publishedLaps, (int) sequence & mask, lap(sequence));
+        waitStrategy.signal();
+    }
+
+    /**
+     * Pass published slots to a handler, in sequence order, and then release them to producers. Only called by the
+     * consumer thread.
+     * @param handler The handler for each slot, which must not keep a reference to the slot.
+     * @param limit The maximum number of slots to handle.
+     * @return The number of slots handled.
+     */
+    int drain(SlotHandler handler, int limit) {
+        long next = consumed.get() + 1;
+        int count = 0;
+        while (count < limit && isPublished(next)) {
+            PointSlot slot = get(next);
+            handler.onSlot(slot);
+            slot.clear();
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            consumed.setRelease(next - 1);
+        }
+        return count;
+    }
+
+    /**
+     * Wait for a point to be published with the ring buffer's {@link WaitStrategy}. Only called by the consumer
+     * thread.
+     * @param idleCount The number of consecutive times the consumer has found the ring buffer empty.
+     * @param maxWaitNanos The longest the consumer can wait.
+     */
+    void idle(int idleCount, long maxWaitNanos) {
+        waitStrategy.idle(idleCount, maxWaitNanos, nextPublished);
+    }
+
+    /**
+     * Record that the consumer has stopped draining, so producers waiting for a free slot give up. Only called by the
+     * consumer thread.
+     */
+    void markConsumerDone() {
+        consumerDone = true;
+    }
+
+    /**
+     * Wake up the consumer, if it's waiting.
+     */
+    void signal() {
+        waitStrategy.signal();
+    }
+
+    /**
+     * Get the last claimed sequence.
+     * @return The sequence, or -1 if no slot has been claimed.
+     */
+    long getClaimedSequence() {
+        return claimed.get();
+    }
+
+    /**
+     * Get the last sequence the consumer is done with.
+     * @return The sequence, or -1 if no slot has been consumed.
+     */
+    long getConsumedSequence() {
+        return consumed.get();
+    }
+
+    /**
+     * Get the number of slots that are claimed but not yet consumed.
+     * @return The number of slots in use.
+     */
+    int size() {
+        return (int) (claimed.get() - consumed.get());
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    private boolean isNextPublished() {
+        return isPublished(consumed.get() + 1);
+    }
+
+    private boolean isPublished(long sequence) {
+        return (int) PUBLISHED.getAcquire(publishedLaps, (int) sequence & mask) == lap(sequence);
+    }
+
+    private int lap(long sequence) {
+        return (int) (sequence >>> lapShift);
+    }
+
+    /**
+     * Handler for slots drained from the ring buffer.
+     */
+    @FunctionalInterface
+    interface SlotHandler {
+        void onSlot(PointSlot slot);
+    }
+    
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+/**
+ * What a {@link BatchingInfluxDbClient} or {@link StripedBatchingInfluxDbClient} does with a point that's written
+ * while its buffer is full (i.e., the points or bytes waiting to be written have reached their limits).
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for the buffer to have room, up to a timeout, and then drop the point.
+     */
+    BLOCK,
+
+    /**
+     * Drop the point that's being written.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Accept the point that's being written, and drop the oldest batch waiting to be written to make room
+     * (with {@link StripedBatchingInfluxDbClient}, a stripe's buffered points).
+     */
+    DROP_OLDEST,
+
+    /**
+     * Start dropping a random sample of points before the buffer is full: above the sampling threshold, the fraction
+     * of points that's kept falls linearly from all of them to none as the buffer fills up. This spreads the loss
+     * evenly across series and writers instead of dropping everything once the buffer is full.
+     */
+    SAMPLE
+    
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Limits on the points (and their encoded bytes) that a batching client has accepted and not yet written or
+ * dropped, and the {@link OverflowPolicy} applied to points written once a limit is reached. The pending counts
+ * themselves are kept by the client (e.g., per lane), and passed in; this class counts the points that are dropped.
+ */
+class PendingLimits {
+    
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    
+    private final long maxPoints;
+    private final long maxBytes;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final double sampleThreshold;
+    private final Map<OverflowPolicy, LongAdder> droppedPoints = new EnumMap<>(OverflowPolicy.class);
+
+    PendingLimits(long maxPoints, long maxBytes, OverflowPolicy policy, long blockTimeoutNanos,
+                  double sampleThreshold) {
+        this.maxPoints = maxPoints;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.sampleThreshold = sampleThreshold;
+        for (OverflowPolicy overflowPolicy : OverflowPolicy.values()) {
+            droppedPoints.put(overflowPolicy, new LongAdder());
+        }
+    }
+
+    /**
+     * Decide whether to accept a point, applying the overflow policy if the limits have been reached.
+     * @param points The number of pending points.
+     * @param bytes The number of pending bytes.
+     * @param onFull Called before waiting for room with {@link OverflowPolicy#BLOCK}, e.g. to flush early.
+     * @param closed Whether the client has been closed, which stops waiting for room.
+     * @return true if the point should be written, false if it was dropped.
+     */
+    boolean admit(AtomicLong points, AtomicLong bytes, Runnable onFull, BooleanSupplier closed) {
+        long pendingPoints = points.get();
+        long pendingBytes = bytes.get();
+        if (pendingPoints < maxPoints && pendingBytes < maxBytes) {
+            if (policy != OverflowPolicy.SAMPLE) {
+                return true;
+            }
+            double fill = Math.max((double) pendingPoints / maxPoints, (double) pendingBytes / maxBytes);
+            return fill < sampleThreshold ||
+                    ThreadLocalRandom.current().nextDouble() * (1 - sampleThreshold) < 1 - fill ||
+                    drop(OverflowPolicy.SAMPLE, 1);
+        }
+        switch (policy) {
+            case BLOCK:
+                onFull.run();
+                return awaitRoom(points, bytes, closed) || drop(OverflowPolicy.BLOCK, 1);
+            case DROP_OLDEST:
+                // Accepted; the client evicts the oldest points once this one has been added.
+                return true;
+            default:
+                return drop(policy, 1);
+        }
+    }
+
+    /**
+     * Whether the pending points are over the limits, so that the oldest ones should be evicted with
+     * {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    boolean shouldEvict(AtomicLong points, AtomicLong bytes) {
+        return policy == OverflowPolicy.DROP_OLDEST && isOverLimit(points, bytes);
+    }
+
+    boolean isOverLimit(AtomicLong points, AtomicLong bytes) {
+        return points.get() > maxPoints || bytes.get() > maxBytes;
+    }
+
+    /**
+     * Count points dropped under a policy.
+     * @return false, so that a drop can end a condition.
+     */
+    boolean drop(OverflowPolicy policy, long count) {
+        droppedPoints.get(policy).add(count);
+        return false;
+    }
+
+    Map<OverflowPolicy, Long> getDroppedPointCounts() {
+        Map<OverflowPolicy, Long> counts = new EnumMap<>(OverflowPolicy.class);
+        droppedPoints.forEach((policy, count) -> counts.put(policy, count.sum()));
+        return counts;
+    }
+
+    private boolean awaitRoom(AtomicLong points, AtomicLong bytes, BooleanSupplier closed) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (points.get() >= maxPoints || bytes.get() >= maxBytes) {
+            if (System.nanoTime() - deadline >= 0 || closed.getAsBoolean()) {
+                return false;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        return true;
+    }
+    
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+/**
+ * Preallocated slot of an {@link MpscRingBuffer}, holding one encoded point and where it should be written. Slots
+ * (and their buffers) are reused, so once a buffer has grown to fit the largest point, publishing doesn't allocate.
+ */
+class PointSlot {
+    
+    final LineProtocolBuffer lines;
+    String database;
+    String retentionPolicy;
+    TimestampPrecision precision;
+    int lane;
+
+    PointSlot(int initialCapacity) {
+        this.lines = new LineProtocolBuffer(initialCapacity);
+    }
+
+    /**
+     * Check whether the slot holds a point. A slot is empty if encoding its point failed after it was claimed.
+     * @return true if the slot holds a point.
+     */
+    boolean hasPoint() {
+        return database != null;
+    }
+
+    void set(String database, String retentionPolicy, TimestampPrecision precision, int lane) {
+        this.database = database;
+        this.retentionPolicy = retentionPolicy;
+        this.precision = precision;
+        this.lane = lane;
+    }
+
+    void clear() {
+        database = null;
+        retentionPolicy = null;
+        precision = null;
+        lane = 0;
+        lines.reset();
+    }
+    
+}
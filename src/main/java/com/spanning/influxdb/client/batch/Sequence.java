@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Left padding of a {@link Sequence}, so that the value doesn't share a cache line with the fields of objects
+ * allocated before it.
+ */
+@SuppressWarnings("unused")
+abstract class SequenceLeftPadding {
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * The value of a {@link Sequence}.
+ */
+abstract class SequenceValue extends SequenceLeftPadding {
+    volatile long value;
+}
+
+/**
+ * A sequence number in an {@link MpscRingBuffer}, padded to its own cache line so that producers updating one
+ * sequence don't invalidate the cache line of another (false sharing).
+ */
+@SuppressWarnings("unused")
+class Sequence extends SequenceValue {
+    
+    private static final VarHandle VALUE;
+    
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+    long get() {
+        return value;
+    }
+
+    /**
+     * Set the value with release semantics, which is cheaper than a volatile write: it's ordered after all previous
+     * writes, which is all a single writer needs to publish its progress.
+     */
+    void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    boolean compareAndSet(long expectedValue, long newValue) {
+        return VALUE.compareAndSet(this, expectedValue, newValue);
+    }
+    
+}
@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link InfluxDbClient} that writes points in the background, with the encoding spread across the writing threads:
+ * {@link #writePoint} and {@link #writePoints} encode points straight into one of several striped buffers, picked by
+ * the writing thread, and a flusher periodically swaps out the filled buffers and writes them, per destination, as
+ * one request body with {@link InfluxDbClient#writeLineProtocolBuffers}. Points
+ * are never copied after they're encoded (with {@link com.spanning.influxdb.client.http.InfluxDbHttpClient}, the
+ * buffers are streamed into the request body).
+ * <p>
+ * Each stripe has its own lock. A thread that finds its stripe locked moves on to the next one, so writers rarely
+ * wait for each other, and the flusher only holds a stripe's lock long enough to swap its buffers.
+ * <p>
+ * The points (and bytes) buffered or being written are bounded, as with {@link BatchingInfluxDbClient}, and an
+ * {@link OverflowPolicy} decides what happens to points written once a limit is reached. With
+ * {@link OverflowPolicy#DROP_OLDEST}, whole stripes' buffered points are dropped, in stripe order, since points aren't
+ * ordered across stripes; points that are already being written aren't dropped.
+ * <p>
+ * Compared to {@link BatchingInfluxDbClient}, the flusher does no per-point work, so throughput isn't limited by a
+ * single consumer thread; in exchange, points from different threads may be written out of order. Failures to write a
+ * batch are logged, and the batch is dropped.
+ */
+public class StripedBatchingInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StripedBatchingInfluxDbClient.class);
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    static final int DEFAULT_FLUSH_THRESHOLD_BYTES = 1024 * 1024;
+    static final int DEFAULT_MAX_BATCH_BYTES = 5 * 1024 * 1024;
+    
+    private final InfluxDbClient delegate;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int flushThresholdBytes;
+    private final int maxBatchBytes;
+    private final PendingLimits limits;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final ScheduledFuture<?> flushTask;
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+    private final Lock flushLock = new ReentrantLock();
+    // Points (and their bytes) appended to a stripe and not yet written or dropped.
+    private final AtomicLong pendingPoints = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean closed;
+    
+    // Empty buffers swapped into stripes at flush time, only used while holding flushLock.
+    private final ArrayDeque<LineProtocolBuffer> spareBuffers = new ArrayDeque<>();
+
+    private StripedBatchingInfluxDbClient(Builder builder) {
+        this.delegate = builder.delegate;
+        this.stripes = new Stripe[builder.stripes];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripes.length - 1;
+        this.flushThresholdBytes = builder.flushThresholdBytes;
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.limits = new PendingLimits(builder.maxPendingPoints, builder.maxPendingBytes, builder.overflowPolicy,
+                builder.blockTimeoutNanos, builder.sampleThreshold);
+        this.ownsScheduler = builder.scheduler == null;
+        this.scheduler = ownsScheduler ?
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("influxdb-striped-flusher-%d")
+                        .setDaemon(true)
+                        .build()) :
+                builder.scheduler;
+        this.flushTask = scheduler.scheduleWithFixedDelay(this::flushQuietly, builder.flushIntervalMillis,
+                builder.flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoint(database, null, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        checkArgument(point != null, "point can't be null");
+        checkWritable(database);
+        if (!limits.admit(pendingPoints, pendingBytes, this::scheduleEarlyFlush, () -> closed)) {
+            return;
+        }
+        Stripe stripe = lockStripe();
+        int bufferedBytes;
+        try {
+            bufferedBytes = append(stripe, database, retentionPolicy, point.getTimestampPrecision(), point, null);
+        } finally {
+            stripe.lock.unlock();
+        }
+        afterAppend(bufferedBytes);
+    }
+
+    /**
+     * Write the point being built by a {@link DataPoint.Builder} without building a {@link DataPoint}.
+     * @param database The database to which the point should be written.
+     * @param retentionPolicy An optional retention policy, or null to use the database's default.
+     * @param builder The builder of the point, which can be reset as soon as this method returns.
+     */
+    public void writePoint(String database, String retentionPolicy, DataPoint.Builder builder) {
+        checkArgument(builder != null, "builder can't be null");
+        checkWritable(database);
+        if (!limits.admit(pendingPoints, pendingBytes, this::scheduleEarlyFlush, () -> closed)) {
+            return;
+        }
+        Stripe stripe = lockStripe();
+        int bufferedBytes;
+        try {
+            bufferedBytes = append(stripe, database, retentionPolicy, builder.getTimestampPrecision(), null, builder);
+        } finally {
+            stripe.lock.unlock();
+        }
+        afterAppend(bufferedBytes);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null, "points can't be null");
+        for (DataPoint point : points) {
+            writePoint(database, retentionPolicy, point);
+        }
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        delegate.writeBatch(database, retentionPolicy, batch);
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Get the number of points that have been written to this client and not yet written to the delegate (or dropped).
+     * @return The number of pending points.
+     */
+    public long getPendingPointCount() {
+        return pendingPoints.get();
+    }
+
+    /**
+     * Get the size of the encoded points that have been written to this client and not yet written to the delegate
+     * (or dropped).
+     * @return The number of pending bytes.
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Get the number of points dropped because the buffer was full, for each {@link OverflowPolicy}.
+     * @return A map from policy to the number of points dropped under it.
+     */
+    public Map<OverflowPolicy, Long> getDroppedPointCounts() {
+        return limits.getDroppedPointCounts();
+    }
+
+    /**
+     * Write all buffered points, and wait until they've been written (or dropped, if the write failed).
+     */
+    public void flush() {
+        flushLock.lock();
+        long swappedPoints = 0;
+        long swappedBytes = 0;
+        try {
+            // Swap the filled buffers out of each stripe, grouped by destination.
+            Map<Destination, List<LineProtocolBuffer>> filledBuffers = new LinkedHashMap<>();
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    swappedPoints += stripe.bufferedPoints;
+                    swappedBytes += stripe.bufferedBytes;
+                    stripe.swapFilledBuffers(filledBuffers, spareBuffers);
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            
+            // Write each destination's buffers, in requests of up to maxBatchBytes, and recycle them.
+            filledBuffers.forEach((destination, buffers) -> {
+                int start = 0;
+                int batchBytes = 0;
+                for (int i = 0; i < buffers.size(); i++) {
+                    if (i > start && batchBytes + buffers.get(i).size() > maxBatchBytes) {
+                        write(destination, buffers.subList(start, i));
+                        start = i;
+                        batchBytes = 0;
+                    }
+                    batchBytes += buffers.get(i).size() + 1;
+                }
+                write(destination, buffers.subList(start, buffers.size()));
+                for (LineProtocolBuffer buffer : buffers) {
+                    buffer.reset();
+                    spareBuffers.add(buffer);
+                }
+            });
+        } finally {
+            // The swapped points have been written (or dropped), which makes room for blocked writers.
+            pendingPoints.addAndGet(-swappedPoints);
+            pendingBytes.addAndGet(-swappedBytes);
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting points, stop flushing periodically, and flush the buffered points.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flushTask.cancel(false);
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    private void checkWritable(String database) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkState(!closed, "client is closed");
+    }
+
+    /**
+     * Lock the calling thread's stripe, or, if another thread holds it, the first unlocked stripe after it.
+     */
+    private Stripe lockStripe() {
+        int home = stripeIndex(Thread.currentThread());
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(home + i) & stripeMask];
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+        Stripe stripe = stripes[home];
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    private int stripeIndex(Thread thread) {
+        // Spread sequential thread ids across the stripes.
+        long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & stripeMask;
+    }
+
+    /**
+     * Encode a point into a stripe, which must be locked, and count it as pending.
+     * @return The number of bytes buffered in the stripe.
+     */
+    private int append(Stripe stripe, String database, String retentionPolicy, TimestampPrecision precision,
+                       DataPoint point, DataPoint.Builder builder) {
+        int appendedBytes = stripe.append(database, retentionPolicy, precision, point, builder);
+        pendingPoints.incrementAndGet();
+        pendingBytes.addAndGet(appendedBytes);
+        return stripe.bufferedBytes;
+    }
+
+    private void afterAppend(int stripeBufferedBytes) {
+        if (limits.shouldEvict(pendingPoints, pendingBytes)) {
+            evictBufferedPoints();
+        }
+        if (stripeBufferedBytes >= flushThresholdBytes) {
+            scheduleEarlyFlush();
+        }
+    }
+
+    /**
+     * Drop stripes' buffered points, in stripe order, until the pending points are within the limits.
+     */
+    private void evictBufferedPoints() {
+        for (int i = 0; i < stripes.length && limits.isOverLimit(pendingPoints, pendingBytes); i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                if (stripe.bufferedPoints > 0) {
+                    pendingPoints.addAndGet(-stripe.bufferedPoints);
+                    pendingBytes.addAndGet(-stripe.bufferedBytes);
+                    limits.drop(OverflowPolicy.DROP_OLDEST, stripe.bufferedPoints);
+                    stripe.clear();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private void scheduleEarlyFlush() {
+        if (earlyFlushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    earlyFlushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // The client was closed concurrently, and close() flushes.
+                earlyFlushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush buffered points.", e);
+        }
+    }
+
+    private void write(Destination destination, List<LineProtocolBuffer> buffers) {
+        try {
+            delegate.writeLineProtocolBuffers(destination.database, destination.retentionPolicy,
+                    destination.precision, buffers);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write a batch of {} buffers to InfluxDB database {}.", buffers.size(),
+                    destination.database, e);
+        }
+    }
+
+    /**
+     * One stripe of encode buffers, with one buffer per destination.
+     */
+    private static class Stripe {
+        
+        private final Lock lock = new ReentrantLock();
+        private final List<Destination> destinations = new ArrayList<>();
+        private final List<LineProtocolBuffer> buffers = new ArrayList<>();
+        private int bufferedPoints;
+        private int bufferedBytes;
+
+        /**
+         * Encode a point (or the point being built by a builder) into this stripe's buffer for its destination.
+         * @return The number of bytes appended.
+         */
+        int append(String database, String retentionPolicy, TimestampPrecision precision, DataPoint point,
+                   DataPoint.Builder builder) {
+            LineProtocolBuffer buffer = buffer(database, retentionPolicy, precision);
+            int sizeBefore = buffer.size();
+            try {
+                buffer.beginLine();
+                if (point != null) {
+                    point.writeLineProtocol(buffer);
+                } else {
+                    builder.writeLineProtocol(buffer);
+                }
+            } catch (RuntimeException e) {
+                // Don't leave a partially encoded line in the buffer.
+                buffer.truncate(sizeBefore);
+                throw e;
+            }
+            int appendedBytes = buffer.size() - sizeBefore;
+            bufferedPoints++;
+            bufferedBytes += appendedBytes;
+            return appendedBytes;
+        }
+
+        /**
+         * Move the non-empty buffers into {@code filledBuffers}, replacing them with spare buffers.
+         */
+        void swapFilledBuffers(Map<Destination, List<LineProtocolBuffer>> filledBuffers,
+                               ArrayDeque<LineProtocolBuffer> spareBuffers) {
+            for (int i = 0; i < buffers.size(); i++) {
+                LineProtocolBuffer buffer = buffers.get(i);
+                if (buffer.size() > 0) {
+                    filledBuffers.computeIfAbsent(destinations.get(i), destination -> new ArrayList<>()).add(buffer);
+                    LineProtocolBuffer spare = spareBuffers.poll();
+                    buffers.set(i, spare != null ? spare : new LineProtocolBuffer());
+                }
+            }
+            bufferedPoints = 0;
+            bufferedBytes = 0;
+        }
+
+        /**
+         * Drop the buffered points.
+         */
+        void clear() {
+            for (LineProtocolBuffer buffer : buffers) {
+                buffer.reset();
+            }
+            bufferedPoints = 0;
+            bufferedBytes = 0;
+        }
+
+        private LineProtocolBuffer buffer(String database, String retentionPolicy, TimestampPrecision precision) {
+            for (int i = 0; i < destinations.size(); i++) {
+                Destination destination = destinations.get(i);
+                if (destination.matches(database, retentionPolicy, precision)) {
+                    return buffers.get(i);
+                }
+            }
+            destinations.add(new Destination(database, retentionPolicy, precision));
+            LineProtocolBuffer buffer = new LineProtocolBuffer();
+            buffers.add(buffer);
+            return buffer;
+        }
+        
+    }
+
+    /**
+     * Database, retention policy and timestamp precision to which points are written.
+     */
+    private static class Destination {
+        
+        private final String database;
+        private final String retentionPolicy;
+        private final TimestampPrecision precision;
+
+        Destination(String database, String retentionPolicy, TimestampPrecision precision) {
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.precision = precision;
+        }
+
+        boolean matches(String database, String retentionPolicy, TimestampPrecision precision) {
+            return this.database.equals(database) && Objects.equals(this.retentionPolicy, retentionPolicy) &&
+                    this.precision == precision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Destination that = (Destination) o;
+            return matches(that.database, that.retentionPolicy, that.precision);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, retentionPolicy, precision);
+        }
+        
+    }
+
+    /**
+     * Builder used to create a {@link StripedBatchingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        private final InfluxDbClient delegate;
+        private int stripes = defaultStripes();
+        private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        private int flushThresholdBytes = DEFAULT_FLUSH_THRESHOLD_BYTES;
+        private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        private long maxPendingPoints = BatchingInfluxDbClient.DEFAULT_MAX_PENDING_POINTS;
+        private long maxPendingBytes = BatchingInfluxDbClient.DEFAULT_MAX_PENDING_BYTES;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private long blockTimeoutNanos = BatchingInfluxDbClient.DEFAULT_BLOCK_TIMEOUT_NANOS;
+        private double sampleThreshold = BatchingInfluxDbClient.DEFAULT_SAMPLE_THRESHOLD;
+        private ScheduledExecutorService scheduler;
+
+        /**
+         * Create a builder.
+         * @param delegate The client to which batches are written.
+         */
+        public Builder(InfluxDbClient delegate) {
+            checkArgument(delegate != null, "delegate can't be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * Set the number of stripes. By default, there are 4 stripes per available processor (rounded up to a power
+         * of 2), so that concurrent writers rarely share a stripe.
+         * @param stripes The number of stripes, which must be a power of 2.
+         * @return This builder.
+         */
+        public Builder withStripes(int stripes) {
+            checkArgument(stripes > 0 && Integer.bitCount(stripes) == 1, "stripes must be a power of 2");
+            this.stripes = stripes;
+            return this;
+        }
+
+        public Builder withFlushInterval(long flushInterval, TimeUnit unit) {
+            checkArgument(flushInterval > 0, "flushInterval must be positive");
+            checkArgument(unit != null, "unit can't be null");
+            this.flushIntervalMillis = Math.max(unit.toMillis(flushInterval), 1);
+            return this;
+        }
+
+        /**
+         * Set how many bytes a stripe can buffer before a flush is triggered ahead of the flush interval.
+         * @param flushThresholdBytes The threshold in bytes (default 1 MiB).
+         * @return This builder.
+         */
+        public Builder withFlushThresholdBytes(int flushThresholdBytes) {
+            checkArgument(flushThresholdBytes > 0, "flushThresholdBytes must be positive");
+            this.flushThresholdBytes = flushThresholdBytes;
+            return this;
+        }
+
+        /**
+         * Set the maximum size of a request body. A single stripe's buffer is never split, so a request can be
+         * larger if a stripe buffered more than this between flushes.
+         * @param maxBatchBytes The maximum size in bytes (default 5 MiB).
+         * @return This builder.
+         */
+        public Builder withMaxBatchBytes(int maxBatchBytes) {
+            checkArgument(maxBatchBytes > 0, "maxBatchBytes must be positive");
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * Set the limits on the points that have been written to the client and not yet written to the delegate
+         * (default 500,000 points and 64 MiB). Once either limit is reached, the overflow policy applies.
+         * @param maxPendingPoints The maximum number of points.
+         * @param maxPendingBytes The maximum size of the encoded points in bytes.
+         * @return This builder.
+         */
+        public Builder withMaxPending(long maxPendingPoints, long maxPendingBytes) {
+            checkArgument(maxPendingPoints > 0, "maxPendingPoints must be positive");
+            checkArgument(maxPendingBytes > 0, "maxPendingBytes must be positive");
+            this.maxPendingPoints = maxPendingPoints;
+            this.maxPendingBytes = maxPendingBytes;
+            return this;
+        }
+
+        /**
+         * Set what happens to points written while the buffer is full (by default, {@link OverflowPolicy#BLOCK}).
+         * @param overflowPolicy An {@link OverflowPolicy}.
+         * @return This builder.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            checkArgument(overflowPolicy != null, "overflowPolicy can't be null");
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Set how long writers wait for room in the buffer with {@link OverflowPolicy#BLOCK} (default 1 second).
+         * Blocked writers trigger a flush ahead of the flush interval.
+         * @param blockTimeout The timeout.
+         * @param unit The unit of {@code blockTimeout}.
+         * @return This builder.
+         */
+        public Builder withBlockTimeout(long blockTimeout, TimeUnit unit) {
+            checkArgument(blockTimeout >= 0, "blockTimeout can't be negative");
+            checkArgument(unit != null, "unit can't be null");
+            this.blockTimeoutNanos = unit.toNanos(blockTimeout);
+            return this;
+        }
+
+        /**
+         * Set how full the buffer is when {@link OverflowPolicy#SAMPLE} starts dropping points.
+         * @param sampleThreshold The fraction of either limit, between 0 (inclusive) and 1 (exclusive) (default 0.5).
+         * @return This builder.
+         */
+        public Builder withSampleThreshold(double sampleThreshold) {
+            checkArgument(sampleThreshold >= 0 && sampleThreshold < 1, "sampleThreshold must be in [0, 1)");
+            this.sampleThreshold = sampleThreshold;
+            return this;
+        }
+
+        /**
+         * Set the scheduler used to flush. By default, the client creates its own single daemon thread, which is
+         * shut down by {@link StripedBatchingInfluxDbClient#close()}; a scheduler set here isn't shut down.
+         * @param scheduler A {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder withScheduler(ScheduledExecutorService scheduler) {
+            checkArgument(scheduler != null, "scheduler can't be null");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public StripedBatchingInfluxDbClient build() {
+            return new StripedBatchingInfluxDbClient(this);
+        }
+
+        private static int defaultStripes() {
+            int stripes = 4 * Runtime.getRuntime().availableProcessors();
+            return Integer.highestOneBit(stripes - 1) << 1;
+        }
+        
+    }
+    
+}
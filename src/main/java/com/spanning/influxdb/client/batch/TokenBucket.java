@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Lock-free token bucket that refills at a fixed rate and holds up to one second's worth of tokens.
+ * <p>
+ * Rather than a token count and a refill timestamp, which can't be updated together atomically, the bucket stores a
+ * single value: the time at which the tokens taken so far will have been refilled. Taking tokens advances it with a
+ * compare-and-set, and tokens are available as long as it's no more than one second ahead of the current time. A
+ * caller that takes more tokens than are available is told how long to wait, so requests larger than the bucket are
+ * still allowed, at the configured rate.
+ */
+class TokenBucket {
+    
+    private static final long CAPACITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final double nanosPerToken;
+    private final AtomicLong refilledAtNanos;
+
+    /**
+     * Create a full bucket.
+     * @param tokensPerSecond The refill rate.
+     * @param nowNanos The current time, according to {@link System#nanoTime()}.
+     */
+    TokenBucket(long tokensPerSecond, long nowNanos) {
+        checkArgument(tokensPerSecond > 0, "tokensPerSecond must be positive");
+        this.nanosPerToken = (double) CAPACITY_NANOS / tokensPerSecond;
+        this.refilledAtNanos = new AtomicLong(nowNanos - CAPACITY_NANOS);
+    }
+
+    /**
+     * Take tokens from the bucket.
+     * @param tokens The number of tokens to take.
+     * @param nowNanos The current time, according to {@link System#nanoTime()}.
+     * @return How long the caller should wait before using the tokens, in nanoseconds, or 0 if they were available.
+     */
+    long take(long tokens, long nowNanos) {
+        long cost = (long) Math.ceil(tokens * nanosPerToken);
+        while (true) {
+            long refilledAt = refilledAtNanos.get();
+            // The bucket never holds more than a second's worth of tokens, however long it's been idle.
+            long start = Math.max(refilledAt, nowNanos - CAPACITY_NANOS);
+            long next = start + cost;
+            if (refilledAtNanos.compareAndSet(refilledAt, next)) {
+                return Math.max(0, next - nowNanos);
+            }
+        }
+    }
+    
+}
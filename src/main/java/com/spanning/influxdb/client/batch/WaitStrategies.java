@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Built-in {@link WaitStrategy WaitStrategies}.
+ */
+public final class WaitStrategies {
+    
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    
+    private WaitStrategies() {}
+
+    /**
+     * Spin on the CPU. Lowest latency, but the consumer keeps a core busy even when no points are written.
+     * @return A {@link WaitStrategy}.
+     */
+    public static WaitStrategy busySpin() {
+        return (idleCount, maxWaitNanos, published) -> Thread.onSpinWait();
+    }
+
+    /**
+     * Spin briefly, then yield the CPU to other threads between checks.
+     * @return A {@link WaitStrategy}.
+     */
+    public static WaitStrategy yielding() {
+        return (idleCount, maxWaitNanos, published) -> {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * Spin, then yield, then sleep for 100 microseconds between checks. A good default: the consumer uses almost no
+     * CPU when idle, and picks up points within a fraction of a millisecond.
+     * @return A {@link WaitStrategy}.
+     */
+    public static WaitStrategy sleeping() {
+        return (idleCount, maxWaitNanos, published) -> {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(SLEEP_NANOS, maxWaitNanos));
+            }
+        };
+    }
+
+    /**
+     * Park the consumer until a producer publishes a point, without locks: producers only unpark the consumer if it's
+     * parked. The consumer uses no CPU when idle, at the cost of a wake-up on the producer side after idle periods.
+     * @return A {@link WaitStrategy}, which can only be used by one ring buffer.
+     */
+    public static WaitStrategy parking() {
+        return new ParkingWaitStrategy();
+    }
+
+    /**
+     * Wait strategy that parks the consumer thread until it's signalled.
+     */
+    private static class ParkingWaitStrategy implements WaitStrategy {
+        
+        private volatile Thread parkedConsumer;
+
+        @Override
+        public void idle(int idleCount, long maxWaitNanos, BooleanSupplier published) {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+                return;
+            }
+            
+            // Producers check parkedConsumer after publishing, so either the producer sees the consumer is about to
+            // park and unparks it, or the consumer sees the published point here and doesn't park.
+            parkedConsumer = Thread.currentThread();
+            if (!published.getAsBoolean()) {
+                LockSupport.parkNanos(this, maxWaitNanos);
+            }
+            parkedConsumer = null;
+        }
+
+        @Override
+        public void signal() {
+            // Publishing is a release store, which may be reordered with the following load without a full fence.
+            VarHandle.fullFence();
+            Thread consumer = parkedConsumer;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Strategy used by the consumer of an {@link MpscRingBuffer} to wait for producers to publish points. Strategies
+ * trade latency against CPU use: spinning picks up new points fastest, but keeps a core busy.
+ * @see WaitStrategies
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait for points to be published. Called by the consumer thread each time it finds the ring buffer empty. It's
+     * fine to return before a point has been published; the consumer checks again.
+     * @param idleCount The number of consecutive times the consumer has found the ring buffer empty, starting at 0.
+     * @param maxWaitNanos The longest the consumer can wait, so that it can flush partial batches on time.
+     * @param published Checks whether a point has been published since the consumer found the ring buffer empty.
+     */
+    void idle(int idleCount, long maxWaitNanos, BooleanSupplier published);
+
+    /**
+     * Wake up the consumer after a point has been published. Called by producer threads, so it must not block or
+     * allocate.
+     */
+    default void signal() {}
+    
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Queues items in separate lanes, and hands them out with smooth weighted round-robin among the lanes that have items
+ * and fewer items in flight than their concurrency limit.
+ * <p>
+ * Each time an item is taken, every eligible lane's current weight grows by its weight, and the lane with the largest
+ * current weight is chosen and has its current weight reduced by the total. Over any stretch of time, each lane gets
+ * a share of the items proportional to its weight, and the choices are spread out (weights 5 and 1 give AAABAA rather
+ * than AAAAAB), so a lane with a small weight never waits for a run of another lane's items. Items are taken in order
+ * within a lane.
+ * <p>
+ * Items can also have a time before which they aren't handed out (e.g., to respect a rate limit). An item that isn't
+ * ready is skipped, and the items behind it in its lane can be taken first, so callers should give items that must
+ * stay in order non-decreasing ready times.
+ *
+ * @param <T> The type of the queued items.
+ */
+class WeightedLaneScheduler<T> {
+    
+    private final int[] weights;
+    private final int[] maxConcurrency;
+    // When each item is ready to be taken, according to System.nanoTime(), or null if items are always ready.
+    private final ToLongFunction<? super T> readyAtNanos;
+    private final List<ArrayDeque<T>> queues;
+    // Guarded by lock.
+    private final int[] inFlight;
+    private final long[] currentWeights;
+    private int size;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    /**
+     * Create a scheduler whose items are always ready.
+     * @param weights The weight of each lane.
+     * @param maxConcurrency The maximum number of items in flight for each lane.
+     */
+    WeightedLaneScheduler(int[] weights, int[] maxConcurrency) {
+        this(weights, maxConcurrency, null);
+    }
+
+    /**
+     * Create a scheduler.
+     * @param weights The weight of each lane.
+     * @param maxConcurrency The maximum number of items in flight for each lane.
+     * @param readyAtNanos When each item is ready to be taken, according to {@link System#nanoTime()}, or null if
+     *                     items are always ready.
+     */
+    WeightedLaneScheduler(int[] weights, int[] maxConcurrency, ToLongFunction<? super T> readyAtNanos) {
+        checkArgument(weights.length == maxConcurrency.length, "weights and maxConcurrency must have the same length");
+        this.weights = weights.clone();
+        this.maxConcurrency = maxConcurrency.clone();
+        this.readyAtNanos = readyAtNanos;
+        this.queues = new ArrayList<>(weights.length);
+        for (int i = 0; i < weights.length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+        this.inFlight = new int[weights.length];
+        this.currentWeights = new long[weights.length];
+    }
+
+    /**
+     * Add an item to the end of a lane.
+     */
+    void offer(int lane, T item) {
+        lock.lock();
+        try {
+            queues.get(lane).addLast(item);
+            size++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the next item that's ready, waiting for one to be available. The item is in flight until {@link #complete}
+     * is called.
+     * @param timeout How long to wait.
+     * @param unit The unit of {@code timeout}.
+     * @return The next item, or null if none was available before the timeout.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                int lane = nextLane(now);
+                if (lane >= 0) {
+                    inFlight[lane]++;
+                    size--;
+                    return pollReady(lane, now);
+                }
+                long remainingNanos = deadline - now;
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                available.awaitNanos(Math.min(remainingNanos, nanosUntilReady(now)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record that an item taken from a lane with {@link #poll} is no longer in flight.
+     */
+    void complete(int lane) {
+        lock.lock();
+        try {
+            inFlight[lane]--;
+            if (size > 0) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the oldest item from a lane without it being in flight.
+     * @return The oldest item, or null if the lane is empty.
+     */
+    T pollOldest(int lane) {
+        lock.lock();
+        try {
+            T item = queues.get(lane).pollFirst();
+            if (item != null) {
+                size--;
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return size == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int nextLane(long nowNanos) {
+        long totalWeight = 0;
+        int next = -1;
+        for (int lane = 0; lane < queues.size(); lane++) {
+            if (inFlight[lane] < maxConcurrency[lane] && hasReady(lane, nowNanos)) {
+                currentWeights[lane] += weights[lane];
+                totalWeight += weights[lane];
+                if (next < 0 || currentWeights[lane] > currentWeights[next]) {
+                    next = lane;
+                }
+            }
+        }
+        if (next >= 0) {
+            currentWeights[next] -= totalWeight;
+        }
+        return next;
+    }
+
+    private boolean hasReady(int lane, long nowNanos) {
+        for (T item : queues.get(lane)) {
+            if (isReady(item, nowNanos)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the first item that's ready from a lane, which must have one.
+     */
+    private T pollReady(int lane, long nowNanos) {
+        Iterator<T> items = queues.get(lane).iterator();
+        while (true) {
+            T item = items.next();
+            if (isReady(item, nowNanos)) {
+                items.remove();
+                return item;
+            }
+        }
+    }
+
+    /**
+     * How long until an item in a lane that has room for it becomes ready, or {@link Long#MAX_VALUE} if none will.
+     */
+    private long nanosUntilReady(long nowNanos) {
+        long nanos = Long.MAX_VALUE;
+        if (readyAtNanos != null) {
+            for (int lane = 0; lane < queues.size(); lane++) {
+                if (inFlight[lane] < maxConcurrency[lane]) {
+                    for (T item : queues.get(lane)) {
+                        nanos = Math.min(nanos, readyAtNanos.applyAsLong(item) - nowNanos);
+                    }
+                }
+            }
+        }
+        return nanos;
+    }
+
+    private boolean isReady(T item, long nowNanos) {
+        return readyAtNanos == null || readyAtNanos.applyAsLong(item) - nowNanos <= 0;
+    }
+    
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Limits the rate at which points and bytes are written to each database and retention policy, with a pair of
+ * {@link TokenBucket}s per database and retention policy.
+ */
+class WriteRateLimiter {
+    
+    private final Map<Key, Limit> limits;
+    private final Limit defaultLimit;
+    private final ConcurrentMap<Key, Buckets> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Create a rate limiter.
+     * @param limits The limits for specific databases and retention policies.
+     * @param defaultLimit The limit for every other database and retention policy, or null to not limit them.
+     */
+    WriteRateLimiter(Map<Key, Limit> limits, Limit defaultLimit) {
+        this.limits = new HashMap<>(limits);
+        this.defaultLimit = defaultLimit;
+    }
+
+    boolean isEnabled() {
+        return defaultLimit != null || !limits.isEmpty();
+    }
+
+    /**
+     * Take permission to write points to a database and retention policy.
+     * @param database The database.
+     * @param retentionPolicy The retention policy, or null for the database's default.
+     * @param points The number of points.
+     * @param bytes The encoded size of the points.
+     * @param nowNanos The current time, according to {@link System#nanoTime()}.
+     * @return How long to wait before writing the points, in nanoseconds, or 0 to write them now.
+     */
+    long acquire(String database, String retentionPolicy, long points, long bytes, long nowNanos) {
+        Key key = new Key(database, retentionPolicy);
+        Buckets destinationBuckets = buckets.computeIfAbsent(key,
+                k -> new Buckets(limits.getOrDefault(k, defaultLimit), nowNanos));
+        long waitNanos = 0;
+        if (destinationBuckets.points != null) {
+            waitNanos = destinationBuckets.points.take(points, nowNanos);
+        }
+        if (destinationBuckets.bytes != null) {
+            waitNanos = Math.max(waitNanos, destinationBuckets.bytes.take(bytes, nowNanos));
+        }
+        return waitNanos;
+    }
+
+    /**
+     * A database and retention policy.
+     */
+    static class Key {
+        
+        private final String database;
+        private final String retentionPolicy;
+
+        Key(String database, String retentionPolicy) {
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return database.equals(that.database) && Objects.equals(retentionPolicy, that.retentionPolicy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, retentionPolicy);
+        }
+        
+    }
+
+    /**
+     * The maximum rates of points and bytes. {@link Long#MAX_VALUE} means unlimited.
+     */
+    static class Limit {
+        
+        private final long pointsPerSecond;
+        private final long bytesPerSecond;
+
+        Limit(long pointsPerSecond, long bytesPerSecond) {
+            this.pointsPerSecond = pointsPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+        
+    }
+
+    /**
+     * The token buckets of a database and retention policy. A bucket is null if its rate isn't limited.
+     */
+    private static class Buckets {
+        
+        private final TokenBucket points;
+        private final TokenBucket bytes;
+
+        Buckets(Limit limit, long nowNanos) {
+            this.points = limit != null && limit.pointsPerSecond != Long.MAX_VALUE ?
+                    new TokenBucket(limit.pointsPerSecond, nowNanos) : null;
+            this.bytes = limit != null && limit.bytesPerSecond != Long.MAX_VALUE ?
+                    new TokenBucket(limit.bytesPerSecond, nowNanos) : null;
+        }
+        
+    }
+    
+}
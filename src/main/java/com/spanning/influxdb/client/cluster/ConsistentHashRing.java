@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Immutable consistent-hash ring that maps 64-bit key hashes to nodes.
+ * <p>
+ * Each node is placed on the ring at a number of points (virtual nodes) derived from its name, and a key belongs to
+ * the node at the first point at or after the key's hash, wrapping around. Adding a node only takes over the keys
+ * just before its points, about {@code 1 / (n + 1)} of them, from the other nodes, and removing a node only hands
+ * its keys to the other nodes; every other key stays where it was. With enough virtual nodes per node, the keys are
+ * spread evenly.
+ *
+ * @param <T> The type of the nodes.
+ */
+class ConsistentHashRing<T> {
+    
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    
+    private final List<T> nodes;
+    private final long[] points;
+    private final List<T> owners;
+
+    /**
+     * Create a ring.
+     * @param nodes The nodes, by name. A node's position on the ring depends only on its name.
+     * @param virtualNodes The number of points at which each node is placed on the ring.
+     */
+    ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        checkArgument(!nodes.isEmpty(), "nodes can't be empty");
+        checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+        this.nodes = new ArrayList<>(nodes.values());
+        List<Point<T>> ring = new ArrayList<>(nodes.size() * virtualNodes);
+        nodes.forEach((name, node) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.add(new Point<>(hash(name + "#" + i), name, node));
+            }
+        });
+        // Ties between nodes' points (which are very unlikely) are broken by name, so the ring doesn't depend on the
+        // order of the nodes.
+        ring.sort(Comparator.<Point<T>>comparingLong(point -> point.hash).thenComparing(point -> point.name));
+        
+        this.points = new long[ring.size()];
+        this.owners = new ArrayList<>(ring.size());
+        for (int i = 0; i < points.length; i++) {
+            points[i] = ring.get(i).hash;
+            owners.add(ring.get(i).node);
+        }
+    }
+
+    /**
+     * Get the node that owns a key.
+     * @param keyHash The key's hash, from {@link #hash(ByteBuffer)}.
+     * @return The node.
+     */
+    T get(long keyHash) {
+        int index = Arrays.binarySearch(points, keyHash);
+        if (index < 0) {
+            // Not found: binarySearch returns -(insertion point) - 1, and the insertion point is the next point.
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return owners.get(index);
+    }
+
+    /**
+     * Get the nodes on this ring.
+     * @return The nodes, in the order they were given.
+     */
+    List<T> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Hash a key's bytes.
+     * @param key The bytes of the key (its remaining bytes); the buffer's position isn't changed.
+     * @return The hash.
+     */
+    static long hash(ByteBuffer key) {
+        return HASH_FUNCTION.hashBytes(key.duplicate()).asLong();
+    }
+
+    private static long hash(String string) {
+        return HASH_FUNCTION.hashString(string, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static class Point<T> {
+        
+        private final long hash;
+        private final String name;
+        private final T node;
+
+        Point(long hash, String name, T node) {
+            this.hash = hash;
+            this.name = name;
+            this.node = node;
+        }
+        
+    }
+    
+}
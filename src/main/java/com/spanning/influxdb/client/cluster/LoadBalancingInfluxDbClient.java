@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbHttpQueryException;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.client.http.InfluxDbHttpClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that spreads requests over several InfluxDB endpoints that hold the same data (e.g., behind
+ * InfluxDB relays), and fails over between them.
+ * <p>
+ * Each node is checked in the background with a request to its {@code /ping} endpoint. The health checks measure each
+ * node's latency, which is used together with its outstanding requests to choose where requests go (see
+ * {@link LoadBalancingStrategy}). A node is ejected after a number of consecutive failed requests or health checks,
+ * and readmitted after a number of consecutive successful health checks. If every node has been ejected, requests are
+ * sent to ejected nodes rather than failing outright.
+ * <p>
+ * A request that fails because a node is down or overloaded (an I/O error or a 5xx response) is retried on another
+ * node. Writes are idempotent in InfluxDB, so a write that's retried after it actually succeeded does no harm. Other
+ * errors (e.g., a 400 for a malformed point) would fail on any node, so they're thrown without retrying.
+ */
+public class LoadBalancingInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoadBalancingInfluxDbClient.class);
+    static final long DEFAULT_HEALTH_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    static final int DEFAULT_READMIT_THRESHOLD = 2;
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final int MAX_NODES = Long.SIZE;
+    
+    private final Node[] nodes;
+    private final LoadBalancingStrategy strategy;
+    private final int failureThreshold;
+    private final int readmitThreshold;
+    private final int maxAttempts;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final List<ScheduledFuture<?>> healthChecks = new ArrayList<>();
+
+    private LoadBalancingInfluxDbClient(Builder builder) {
+        this.nodes = new Node[builder.baseUrls.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            String baseUrl = builder.baseUrls.get(i);
+            nodes[i] = new Node(baseUrl, builder.clientFactory.apply(baseUrl));
+        }
+        this.strategy = builder.strategy;
+        this.failureThreshold = builder.failureThreshold;
+        this.readmitThreshold = builder.readmitThreshold;
+        this.maxAttempts = Math.min(builder.maxAttempts, nodes.length);
+        this.ownsScheduler = builder.scheduler == null;
+        // A thread per node, so that a node that doesn't respond doesn't delay the other nodes' health checks.
+        this.scheduler = ownsScheduler ?
+                Executors.newScheduledThreadPool(nodes.length, new ThreadFactoryBuilder()
+                        .setNameFormat("influxdb-health-check-%d")
+                        .setDaemon(true)
+                        .build()) :
+                builder.scheduler;
+        for (Node node : nodes) {
+            healthChecks.add(scheduler.scheduleWithFixedDelay(() -> checkHealth(node), 0,
+                    builder.healthCheckIntervalNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        execute(client -> {
+            client.writePoint(database, point);
+            return null;
+        });
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        execute(client -> {
+            client.writePoint(database, retentionPolicy, point);
+            return null;
+        });
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        execute(client -> {
+            client.writePoints(database, points);
+            return null;
+        });
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        execute(client -> {
+            client.writePoints(database, retentionPolicy, points);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        execute(client -> {
+            client.writeLineProtocol(database, retentionPolicy, precision, lines);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        execute(client -> {
+            client.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        execute(client -> {
+            client.writeBatch(database, retentionPolicy, batch);
+            return null;
+        });
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return execute(client -> client.executeQuery(database, query));
+    }
+
+    /**
+     * Get the state of each node, in the order their base URLs were given.
+     * @return A list of {@link NodeStatus NodeStatuses}.
+     */
+    public List<NodeStatus> getNodeStatuses() {
+        List<NodeStatus> statuses = new ArrayList<>(nodes.length);
+        for (Node node : nodes) {
+            statuses.add(node.getStatus());
+        }
+        return statuses;
+    }
+
+    /**
+     * Stop checking the nodes' health.
+     */
+    @Override
+    public void close() {
+        healthChecks.forEach(healthCheck -> healthCheck.cancel(false));
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Make a request to one node after another, until it succeeds, fails in a way that isn't the node's fault, or the
+     * maximum number of attempts has been made.
+     */
+    private <T> T execute(Function<InfluxDbClient, T> request) {
+        long tried = 0;
+        RuntimeException failure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            int index = select(tried);
+            tried |= 1L << index;
+            Node node = nodes[index];
+            node.onRequestStarted();
+            try {
+                T result = request.apply(node.client);
+                node.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                if (!isNodeFailure(e)) {
+                    node.onSuccess();
+                    throw e;
+                }
+                if (node.onFailure(failureThreshold)) {
+                    logger.warn("Ejected InfluxDB node {} after {} consecutive failures.", node.baseUrl,
+                            failureThreshold);
+                }
+                logger.debug("Request to InfluxDB node {} failed.", node.baseUrl, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            } finally {
+                node.onRequestCompleted();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Choose the node to which a request is sent, out of the healthy nodes that haven't been tried yet (or, if there
+     * are none, the ejected nodes that haven't been tried yet).
+     * @param tried A bit mask of the indexes of the nodes that have been tried.
+     * @return The index of a node.
+     */
+    private int select(long tried) {
+        int candidates = countCandidates(tried, false);
+        boolean includeEjected = candidates == 0;
+        if (includeEjected) {
+            candidates = countCandidates(tried, true);
+        }
+        if (candidates == 1 || strategy == LoadBalancingStrategy.LEAST_OUTSTANDING) {
+            int best = -1;
+            for (int i = 0; i < nodes.length; i++) {
+                if (isCandidate(i, tried, includeEjected) && (best < 0 || nodes[i].cost() < nodes[best].cost())) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+        
+        // Power of two choices: pick two different candidates at random, and keep the cheaper one.
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates);
+        int second = random.nextInt(candidates - 1);
+        if (second >= first) {
+            second++;
+        }
+        int a = nthCandidate(first, tried, includeEjected);
+        int b = nthCandidate(second, tried, includeEjected);
+        return nodes[a].cost() <= nodes[b].cost() ? a : b;
+    }
+
+    private int countCandidates(long tried, boolean includeEjected) {
+        int count = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (isCandidate(i, tried, includeEjected)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int nthCandidate(int n, long tried, boolean includeEjected) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (isCandidate(i, tried, includeEjected) && n-- == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("no candidate " + n);
+    }
+
+    private boolean isCandidate(int index, long tried, boolean includeEjected) {
+        return (tried & (1L << index)) == 0 && (includeEjected || !nodes[index].isEjected());
+    }
+
+    private void checkHealth(Node node) {
+        long start = System.nanoTime();
+        boolean healthy;
+        try {
+            healthy = node.client.ping();
+        } catch (RuntimeException e) {
+            logger.debug("Health check of InfluxDB node {} failed.", node.baseUrl, e);
+            healthy = false;
+        }
+        int change = node.onHealthCheck(healthy, System.nanoTime() - start, failureThreshold, readmitThreshold);
+        if (change < 0) {
+            logger.warn("Ejected InfluxDB node {} after {} consecutive failures.", node.baseUrl, failureThreshold);
+        } else if (change > 0) {
+            logger.info("Readmitted InfluxDB node {} after {} successful health checks.", node.baseUrl,
+                    readmitThreshold);
+        }
+    }
+
+    /**
+     * Whether a request failure means that the node is down or overloaded: an I/O error or a 5xx response.
+     */
+    private static boolean isNodeFailure(RuntimeException e) {
+        if (e instanceof UncheckedIOException) {
+            return true;
+        }
+        if (e instanceof InfluxDbHttpWriteException) {
+            return ((InfluxDbHttpWriteException) e).getStatusCode() >= 500;
+        }
+        if (e instanceof InfluxDbHttpQueryException) {
+            return ((InfluxDbHttpQueryException) e).getStatusCode() >= 500;
+        }
+        return false;
+    }
+
+    /**
+     * Builder used to create a {@link LoadBalancingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        private final List<String> baseUrls;
+        private Function<String, InfluxDbHttpClient> clientFactory = InfluxDbHttpClient::new;
+        private LoadBalancingStrategy strategy = LoadBalancingStrategy.POWER_OF_TWO_CHOICES;
+        private long healthCheckIntervalNanos = DEFAULT_HEALTH_CHECK_INTERVAL_NANOS;
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        private int readmitThreshold = DEFAULT_READMIT_THRESHOLD;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private ScheduledExecutorService scheduler;
+
+        /**
+         * Create a builder.
+         * @param baseUrls The base URLs of the InfluxDB nodes' HTTP APIs (e.g., http://influxdb-1:8086).
+         */
+        public Builder(List<String> baseUrls) {
+            checkArgument(baseUrls != null && !baseUrls.isEmpty(), "baseUrls must contain at least one URL");
+            checkArgument(baseUrls.size() <= MAX_NODES, "baseUrls can't contain more than %s URLs", MAX_NODES);
+            this.baseUrls = new ArrayList<>(baseUrls);
+        }
+
+        /**
+         * Set how the client for each node is created, e.g., to set credentials or connection pool settings with an
+         * {@link InfluxDbHttpClient.Builder}. By default, {@link InfluxDbHttpClient#InfluxDbHttpClient(String)} is
+         * used.
+         * @param clientFactory A function that creates a client for a base URL.
+         * @return This builder.
+         */
+        public Builder withClientFactory(Function<String, InfluxDbHttpClient> clientFactory) {
+            checkArgument(clientFactory != null, "clientFactory can't be null");
+            this.clientFactory = clientFactory;
+            return this;
+        }
+
+        /**
+         * Set how nodes are chosen (by default, {@link LoadBalancingStrategy#POWER_OF_TWO_CHOICES}).
+         * @param strategy A {@link LoadBalancingStrategy}.
+         * @return This builder.
+         */
+        public Builder withStrategy(LoadBalancingStrategy strategy) {
+            checkArgument(strategy != null, "strategy can't be null");
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Set how often each node's health is checked (default 5 seconds).
+         * @param interval The time between the end of a health check and the start of the next one.
+         * @param unit The unit of {@code interval}.
+         * @return This builder.
+         */
+        public Builder withHealthCheckInterval(long interval, TimeUnit unit) {
+            checkArgument(interval > 0, "interval must be positive");
+            checkArgument(unit != null, "unit can't be null");
+            this.healthCheckIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive failed requests or health checks after which a node is ejected (default 3).
+         * @param failureThreshold The number of failures.
+         * @return This builder.
+         */
+        public Builder withFailureThreshold(int failureThreshold) {
+            checkArgument(failureThreshold > 0, "failureThreshold must be positive");
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive successful health checks after which an ejected node is readmitted
+         * (default 2).
+         * @param readmitThreshold The number of health checks.
+         * @return This builder.
+         */
+        public Builder withReadmitThreshold(int readmitThreshold) {
+            checkArgument(readmitThreshold > 0, "readmitThreshold must be positive");
+            this.readmitThreshold = readmitThreshold;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of nodes a request is sent to before its failure is thrown (default 3, or the number
+         * of nodes if there are fewer).
+         * @param maxAttempts The maximum number of attempts.
+         * @return This builder.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Set the scheduler used to check the nodes' health. By default, the client creates its own daemon threads,
+         * which are shut down by {@link LoadBalancingInfluxDbClient#close()}; a scheduler set here isn't shut down.
+         * @param scheduler A {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder withScheduler(ScheduledExecutorService scheduler) {
+            checkArgument(scheduler != null, "scheduler can't be null");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public LoadBalancingInfluxDbClient build() {
+            return new LoadBalancingInfluxDbClient(this);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+/**
+ * How a {@link LoadBalancingInfluxDbClient} chooses the node to which a request is sent. Both strategies only choose
+ * among healthy nodes, and weigh a node's outstanding requests by its measured latency, so that a slow node gets fewer
+ * requests than a fast one.
+ */
+public enum LoadBalancingStrategy {
+
+    /**
+     * Send each request to the node with the lowest cost (outstanding requests, weighted by latency), out of all
+     * healthy nodes.
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * Pick two healthy nodes at random, and send the request to the one with the lower cost. This is almost as good
+     * as {@link #LEAST_OUTSTANDING} at avoiding busy nodes, and avoids sending every request to the same node while
+     * the costs that were just read are stale, when many requests start at once.
+     */
+    POWER_OF_TWO_CHOICES
+    
+}
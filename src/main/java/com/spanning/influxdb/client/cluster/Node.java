@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.spanning.influxdb.client.http.InfluxDbHttpClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An InfluxDB node of a {@link LoadBalancingInfluxDbClient}: its client, and the state used to choose between nodes
+ * and to eject and readmit it.
+ */
+class Node {
+    
+    private static final double LATENCY_SMOOTHING = 0.3;
+    
+    final String baseUrl;
+    final InfluxDbHttpClient client;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean ejected;
+    // Only used by the node's health check.
+    private int consecutivePings;
+
+    Node(String baseUrl, InfluxDbHttpClient client) {
+        this.baseUrl = baseUrl;
+        this.client = client;
+    }
+
+    boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * Get the cost of sending a request to this node: the requests it would have outstanding, weighted by its
+     * latency. Until the node's latency has been measured, only outstanding requests count.
+     * @return The cost.
+     */
+    double cost() {
+        return Math.max(latencyNanos.get(), 1) * (double) (outstanding.get() + 1);
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void onRequestStarted() {
+        requests.increment();
+        outstanding.incrementAndGet();
+    }
+
+    void onRequestCompleted() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Record that the node responded (even if the response was an error that isn't the node's fault).
+     */
+    void onSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Record that a request or health check failed because the node was down or overloaded.
+     * @param failureThreshold The number of consecutive failures after which the node is ejected.
+     * @return true if the node was ejected by this failure.
+     */
+    boolean onFailure(int failureThreshold) {
+        failures.increment();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && !ejected) {
+            ejected = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the outcome of a health check.
+     * @param healthy Whether the node responded successfully.
+     * @param pingNanos How long the health check took.
+     * @param failureThreshold The number of consecutive failures after which the node is ejected.
+     * @param readmitThreshold The number of consecutive successful health checks after which an ejected node is
+     * readmitted.
+     * @return The change to the node's state: 1 if it was readmitted, -1 if it was ejected, 0 otherwise.
+     */
+    int onHealthCheck(boolean healthy, long pingNanos, int failureThreshold, int readmitThreshold) {
+        if (!healthy) {
+            consecutivePings = 0;
+            return onFailure(failureThreshold) ? -1 : 0;
+        }
+        latencyNanos.getAndUpdate(latency -> latency == 0 ? pingNanos :
+                (long) (latency + LATENCY_SMOOTHING * (pingNanos - latency)));
+        onSuccess();
+        if (ejected && ++consecutivePings >= readmitThreshold) {
+            consecutivePings = 0;
+            ejected = false;
+            return 1;
+        }
+        return 0;
+    }
+
+    NodeStatus getStatus() {
+        return new NodeStatus(baseUrl, !ejected, outstanding.get(), latencyNanos.get(), requests.sum(),
+                failures.sum());
+    }
+    
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+/**
+ * Snapshot of the state of a node of a {@link LoadBalancingInfluxDbClient}.
+ */
+public class NodeStatus {
+    
+    private final String baseUrl;
+    private final boolean healthy;
+    private final int outstandingRequests;
+    private final long latencyNanos;
+    private final long requests;
+    private final long failures;
+
+    NodeStatus(String baseUrl, boolean healthy, int outstandingRequests, long latencyNanos, long requests,
+               long failures) {
+        this.baseUrl = baseUrl;
+        this.healthy = healthy;
+        this.outstandingRequests = outstandingRequests;
+        this.latencyNanos = latencyNanos;
+        this.requests = requests;
+        this.failures = failures;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Determine whether the node is healthy. Nodes that aren't healthy have been ejected, and don't get requests until
+     * their health checks succeed again (unless no node is healthy).
+     * @return true if the node is healthy.
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getOutstandingRequests() {
+        return outstandingRequests;
+    }
+
+    /**
+     * Get the moving average of the node's health check latency.
+     * @return The latency in nanoseconds, or 0 if no health check has succeeded yet.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Get the number of requests and health checks that failed because the node was down or overloaded.
+     * @return The number of failures.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeStatus{" +
+                "baseUrl='" + baseUrl + '\'' +
+                ", healthy=" + healthy +
+                ", outstandingRequests=" + outstandingRequests +
+                ", latencyNanos=" + latencyNanos +
+                ", requests=" + requests +
+                ", failures=" + failures +
+                '}';
+    }
+    
+}
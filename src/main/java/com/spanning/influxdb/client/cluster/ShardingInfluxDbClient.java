@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.Series;
+import com.spanning.influxdb.model.SeriesKey;
+import com.spanning.influxdb.model.SeriesKeyCache;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link InfluxDbClient} that shards series over several InfluxDB nodes that each hold part of the data.
+ * <p>
+ * Each point is written to the node that owns its series key (its measurement name and tags, encoded as in line
+ * protocol) on a {@link ConsistentHashRing}, so all of a series' points end up on the same node. A bulk write is split
+ * into one request per node, and the requests are sent concurrently. Points that have already been encoded as line
+ * protocol are routed by the bytes before the first unescaped space of each line, which is the same series key as long
+ * as the lines were encoded by this library (or otherwise have their tags sorted by key). Nodes can be added and
+ * removed while the client is in use; a node that's added takes over about {@code 1 / n} of the series, and the other
+ * series stay where they were. Data that was written before a node was added isn't moved.
+ * <p>
+ * Queries are sent to every node concurrently, and each statement's results are merged: series with the same name,
+ * tags and columns are combined. If {@code time} is the first column, the nodes' rows are merged by time, keeping
+ * the order in which each node returned them (descending for {@code ORDER BY time DESC}); otherwise (e.g.,
+ * {@code SHOW MEASUREMENTS}), rows that more than one node returned are only kept once. Aggregates across series
+ * (e.g., a {@code count} without a {@code GROUP BY} on tags that cover the shard key) are returned per node rather
+ * than recombined, so such queries should group by the series' tags. Likewise, {@code LIMIT} and {@code SLIMIT}
+ * apply on each node, so a series can have up to {@code n} rows from each node.
+ */
+public class ShardingInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final String TIME_COLUMN = "time";
+    private static final Pattern ORDER_BY_TIME_DESC = Pattern.compile("\\bORDER\\s+BY\\s+time\\s+DESC\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final ThreadLocal<LineProtocolBuffer> SERIES_KEY_BUFFER =
+            ThreadLocal.withInitial(LineProtocolBuffer::new);
+
+    /**
+     * Orders time values, which are epoch numbers or RFC3339 strings depending on the query's epoch parameter.
+     */
+    private static final Comparator<Object> TIME_ORDER = Comparator.nullsFirst((a, b) -> {
+        if (a instanceof Number && b instanceof Number) {
+            return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        return a.toString().compareTo(b.toString());
+    });
+    
+    private final Map<String, InfluxDbClient> nodes = new LinkedHashMap<>();
+    private final int virtualNodes;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private volatile ConsistentHashRing<Node> ring;
+
+    private ShardingInfluxDbClient(Builder builder) {
+        this.nodes.putAll(builder.nodes);
+        this.virtualNodes = builder.virtualNodes;
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ?
+                Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                        .setNameFormat("influxdb-shard-%d")
+                        .setDaemon(true)
+                        .build()) :
+                builder.executor;
+        rebuildRing();
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoint(database, null, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        ring.get(hash(point.getSeriesKey())).client.writePoint(database, retentionPolicy, point);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        ConsistentHashRing<Node> ring = this.ring;
+        Map<Node, List<DataPoint>> pointsByNode = new LinkedHashMap<>();
+        for (DataPoint point : points) {
+            pointsByNode.computeIfAbsent(ring.get(hash(point.getSeriesKey())), node -> new ArrayList<>()).add(point);
+        }
+        scatter(pointsByNode, (client, nodePoints) -> {
+            client.writePoints(database, retentionPolicy, nodePoints);
+            return null;
+        });
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        checkArgument(lines != null && lines.size() > 0, "lines must contain at least one line protocol string");
+        writeLineProtocolBuffers(database, retentionPolicy, precision, Collections.singletonList(lines));
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        checkArgument(lines != null && !lines.isEmpty(), "lines must contain at least one buffer");
+        ConsistentHashRing<Node> ring = this.ring;
+        Map<Node, LineProtocolBuffer> linesByNode = new LinkedHashMap<>();
+        for (LineProtocolBuffer buffer : lines) {
+            split(buffer, ring, linesByNode);
+        }
+        scatter(linesByNode, (client, nodeLines) -> {
+            client.writeLineProtocol(database, retentionPolicy, precision, nodeLines);
+            return null;
+        });
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        Map<Node, String> queryByNode = new LinkedHashMap<>();
+        ring.getNodes().forEach(node -> queryByNode.put(node, query));
+        return merge(scatter(queryByNode, (client, nodeQuery) -> client.executeQuery(database, nodeQuery)),
+                ORDER_BY_TIME_DESC.matcher(query).find());
+    }
+
+    /**
+     * Add a node. About {@code 1 / n} of the series (where {@code n} is the new number of nodes) are written to the
+     * new node from now on.
+     * @param name The node's name, which determines its position on the ring, so it should stay the same when the
+     *             client is recreated.
+     * @param client The node's client.
+     */
+    public synchronized void addNode(String name, InfluxDbClient client) {
+        checkArgument(name != null && client != null, "name and client can't be null");
+        checkArgument(!nodes.containsKey(name), "node %s already exists", name);
+        nodes.put(name, client);
+        rebuildRing();
+    }
+
+    /**
+     * Remove a node. The series it owned are written to the other nodes from now on.
+     * @param name The node's name.
+     * @return The node's client, which isn't closed.
+     */
+    public synchronized InfluxDbClient removeNode(String name) {
+        checkArgument(nodes.containsKey(name), "unknown node: %s", name);
+        checkState(nodes.size() > 1, "can't remove the last node");
+        InfluxDbClient client = nodes.remove(name);
+        rebuildRing();
+        return client;
+    }
+
+    /**
+     * Get the name of the node to which a series' points are written.
+     * @param seriesKey A {@link SeriesKey}.
+     * @return The node's name.
+     */
+    public String getNodeName(SeriesKey seriesKey) {
+        return ring.get(hash(seriesKey)).name;
+    }
+
+    /**
+     * Shut down the client's executor, if it wasn't provided with {@link Builder#withExecutor}. The nodes' clients
+     * aren't closed.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized void rebuildRing() {
+        Map<String, Node> ringNodes = new LinkedHashMap<>();
+        nodes.forEach((name, client) -> ringNodes.put(name, new Node(name, client)));
+        ring = new ConsistentHashRing<>(ringNodes, virtualNodes);
+    }
+
+    /**
+     * Run a request against each node concurrently (the first node's request on the calling thread), and wait for all
+     * of them to complete.
+     * @return The results, in the order of {@code requests}.
+     * @throws RuntimeException The first failure, with any other failures suppressed.
+     */
+    private <R, T> List<T> scatter(Map<Node, R> requests, BiFunction<InfluxDbClient, R, T> request) {
+        if (requests.isEmpty()) {
+            // E.g. the buffers to write were all empty.
+            return Collections.emptyList();
+        }
+        List<Map.Entry<Node, R>> entries = new ArrayList<>(requests.entrySet());
+        if (entries.size() == 1) {
+            Map.Entry<Node, R> entry = entries.get(0);
+            return Collections.singletonList(request.apply(entry.getKey().client, entry.getValue()));
+        }
+        
+        List<CompletableFuture<T>> futures = new ArrayList<>(entries.size());
+        for (int i = 1; i < entries.size(); i++) {
+            Map.Entry<Node, R> entry = entries.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> request.apply(entry.getKey().client, entry.getValue()),
+                    executor));
+        }
+        List<T> results = new ArrayList<>(entries.size());
+        RuntimeException failure = null;
+        try {
+            results.add(request.apply(entries.get(0).getKey().client, entries.get(0).getValue()));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException ?
+                        (RuntimeException) e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Copy each line of a buffer to the buffer of the node that owns its series key.
+     */
+    private static void split(LineProtocolBuffer lines, ConsistentHashRing<Node> ring,
+                              Map<Node, LineProtocolBuffer> linesByNode) {
+        ByteBuffer view = lines.asReadOnlyByteBuffer();
+        int size = lines.size();
+        int start = 0;
+        while (start < size) {
+            int end = lines.indexOf('\n', start);
+            if (end < 0) {
+                end = size;
+            }
+            if (end > start) {
+                int keyEnd = seriesKeyEnd(view, start, end);
+                Node node = ring.get(ConsistentHashRing.hash(view.slice(start, keyEnd - start)));
+                linesByNode.computeIfAbsent(node, n -> new LineProtocolBuffer())
+                        .beginLine()
+                        .write(lines, start, end - start);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Get the index of the first unescaped space in a line, which ends its series key.
+     */
+    private static int seriesKeyEnd(ByteBuffer view, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = view.get(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == ' ') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static long hash(SeriesKey seriesKey) {
+        LineProtocolBuffer buffer = SERIES_KEY_BUFFER.get();
+        buffer.reset();
+        SeriesKeyCache.getDefault().writeSeriesKey(seriesKey, buffer);
+        return ConsistentHashRing.hash(buffer.asReadOnlyByteBuffer());
+    }
+
+    /**
+     * Merge the nodes' results statement by statement.
+     * @param resultsByNode Each node's results.
+     * @param descending Whether the query orders rows by descending time. Rows are also merged in descending order if
+     *                   any node returned them that way.
+     */
+    static List<QueryResult> merge(List<List<QueryResult>> resultsByNode, boolean descending) {
+        int statements = 0;
+        for (List<QueryResult> results : resultsByNode) {
+            statements = Math.max(statements, results.size());
+        }
+        List<QueryResult> merged = new ArrayList<>(statements);
+        for (int statement = 0; statement < statements; statement++) {
+            // Each series' rows, as returned by each node that has the series.
+            Map<SeriesId, List<List<List<Object>>>> valuesBySeries = new LinkedHashMap<>();
+            String error = null;
+            for (List<QueryResult> results : resultsByNode) {
+                if (statement >= results.size()) {
+                    continue;
+                }
+                QueryResult result = results.get(statement);
+                if (error == null) {
+                    error = result.getError();
+                }
+                for (Series series : result.getSeries()) {
+                    valuesBySeries.computeIfAbsent(new SeriesId(series), id -> new ArrayList<>())
+                            .add(series.getValues());
+                }
+            }
+            List<Series> series = new ArrayList<>(valuesBySeries.size());
+            valuesBySeries.forEach((id, valuesByNode) -> series.add(new Series(id.name, id.tags, id.columns,
+                    mergeValues(id.columns, valuesByNode, descending))));
+            merged.add(new QueryResult(series, error));
+        }
+        return merged;
+    }
+
+    /**
+     * Merge the rows that each node returned for a series: by time, if the first column is the time, keeping each
+     * node's order, or else by concatenating them without duplicates.
+     */
+    private static List<List<Object>> mergeValues(List<String> columns, List<List<List<Object>>> valuesByNode,
+                                                  boolean descending) {
+        if (valuesByNode.size() == 1) {
+            return valuesByNode.get(0);
+        }
+        if (columns.isEmpty() || !TIME_COLUMN.equals(columns.get(0))) {
+            // E.g. SHOW MEASUREMENTS or SHOW TAG VALUES, which every node answers with the rows it has.
+            Set<List<Object>> rows = new LinkedHashSet<>();
+            valuesByNode.forEach(rows::addAll);
+            return new ArrayList<>(rows);
+        }
+        
+        Comparator<List<Object>> ascending = Comparator.comparing(row -> row.isEmpty() ? null : row.get(0), TIME_ORDER);
+        Comparator<List<Object>> order =
+                descending || valuesByNode.stream().anyMatch(values -> isDescending(values, ascending)) ?
+                        ascending.reversed() : ascending;
+        // k-way merge; ties go to the node that comes first.
+        int total = 0;
+        for (List<List<Object>> values : valuesByNode) {
+            total += values.size();
+        }
+        List<List<Object>> merged = new ArrayList<>(total);
+        int[] positions = new int[valuesByNode.size()];
+        while (merged.size() < total) {
+            int next = -1;
+            for (int node = 0; node < positions.length; node++) {
+                List<List<Object>> values = valuesByNode.get(node);
+                if (positions[node] < values.size() && (next < 0 ||
+                        order.compare(values.get(positions[node]), valuesByNode.get(next).get(positions[next])) < 0)) {
+                    next = node;
+                }
+            }
+            merged.add(valuesByNode.get(next).get(positions[next]++));
+        }
+        return merged;
+    }
+
+    private static boolean isDescending(List<List<Object>> values, Comparator<List<Object>> order) {
+        return values.size() > 1 && order.compare(values.get(0), values.get(values.size() - 1)) > 0;
+    }
+
+    private static class Node {
+        
+        private final String name;
+        private final InfluxDbClient client;
+
+        Node(String name, InfluxDbClient client) {
+            this.name = name;
+            this.client = client;
+        }
+        
+    }
+
+    /**
+     * Identifies the series in different nodes' results that are merged.
+     */
+    private static class SeriesId {
+        
+        private final String name;
+        private final Map<String, String> tags;
+        private final List<String> columns;
+
+        SeriesId(Series series) {
+            this.name = series.getName();
+            this.tags = series.getTags();
+            this.columns = series.getColumns();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesId)) {
+                return false;
+            }
+            SeriesId other = (SeriesId) o;
+            return Objects.equals(name, other.name) && tags.equals(other.tags) && columns.equals(other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, tags, columns);
+        }
+        
+    }
+
+    /**
+     * Builder used to create a {@link ShardingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        private final Map<String, InfluxDbClient> nodes = new LinkedHashMap<>();
+        private int virtualNodes = DEFAULT_VIRTUAL_NODES;
+        private ExecutorService executor;
+
+        /**
+         * Add a node.
+         * @param name The node's name, which determines its position on the ring, so it should stay the same when
+         *             the client is recreated.
+         * @param client The node's client (e.g., an {@link com.spanning.influxdb.client.http.InfluxDbHttpClient}, or
+         *               a {@link LoadBalancingInfluxDbClient} over the node's replicas).
+         * @return This builder.
+         */
+        public Builder withNode(String name, InfluxDbClient client) {
+            checkArgument(name != null && client != null, "name and client can't be null");
+            checkArgument(!nodes.containsKey(name), "node %s already exists", name);
+            nodes.put(name, client);
+            return this;
+        }
+
+        /**
+         * Set the number of points at which each node is placed on the ring (default 128). More points spread the
+         * series more evenly, at the cost of a larger ring.
+         * @param virtualNodes The number of points per node.
+         * @return This builder.
+         */
+        public Builder withVirtualNodes(int virtualNodes) {
+            checkArgument(virtualNodes > 0, "virtualNodes must be positive");
+            this.virtualNodes = virtualNodes;
+            return this;
+        }
+
+        /**
+         * Set the executor on which requests to the nodes are sent concurrently. By default, the client creates a
+         * cached thread pool, which is shut down when it's closed; a provided executor isn't shut down.
+         * @param executor An {@link ExecutorService}.
+         * @return This builder.
+         */
+        public Builder withExecutor(ExecutorService executor) {
+            checkArgument(executor != null, "executor can't be null");
+            this.executor = executor;
+            return this;
+        }
+
+        public ShardingInfluxDbClient build() {
+            checkState(!nodes.isEmpty(), "at least one node is required");
+            return new ShardingInfluxDbClient(this);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.exception;
+
+import com.spanning.influxdb.client.write.ChunkedWriteResult;
+
+public class InfluxDbChunkedWriteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+    public static final String MESSAGE_FORMAT = "Failed to write %d of %d chunks to InfluxDB";
+    private final ChunkedWriteResult result;
+
+    public InfluxDbChunkedWriteException(ChunkedWriteResult result) {
+        super(String.format(MESSAGE_FORMAT, result.getFailedChunks().size(), result.getChunks().size()),
+                result.getFailedChunks().get(0).getFailure().orElse(null));
+        this.result = result;
+    }
+
+    public ChunkedWriteResult getResult() {
+        return result;
+    }
+
+}
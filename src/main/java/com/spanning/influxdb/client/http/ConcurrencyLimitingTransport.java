@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link HttpTransport} that limits the number of requests that are in flight on a delegate transport at the same
+ * time. A request holds a permit until its response is closed; callers beyond the limit wait for a permit.
+ */
+class ConcurrencyLimitingTransport implements HttpTransport {
+    
+    private final HttpTransport delegate;
+    private final Semaphore permits;
+
+    ConcurrencyLimitingTransport(HttpTransport delegate, int maxConcurrentRequests) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    @Override
+    public RequestTemplate prepare(String url, Optional<String> authorization) {
+        return delegate.prepare(url, authorization);
+    }
+
+    @Override
+    public HttpTransportResponse get(RequestTemplate template) throws IOException {
+        acquire();
+        try {
+            return new PermitReleasingResponse(delegate.get(template));
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public HttpTransportResponse post(RequestTemplate template, List<LineProtocolBuffer> lines) throws IOException {
+        acquire();
+        try {
+            return new PermitReleasingResponse(delegate.post(template, lines));
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc} The caller waits for a permit before the request is queued, so callers that send faster than
+     * responses arrive are slowed down rather than queueing an unbounded number of requests.
+     */
+    @Override
+    public CompletableFuture<HttpTransportResponse> postAsync(RequestTemplate template,
+                                                              List<LineProtocolBuffer> lines) {
+        try {
+            acquire();
+        } catch (InterruptedIOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpTransportResponse> future;
+        try {
+            future = delegate.postAsync(template, lines);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return future.<HttpTransportResponse>handle((response, failure) -> {
+            if (failure != null) {
+                permits.release();
+                throw failure instanceof CompletionException ? (CompletionException) failure :
+                        new CompletionException(failure);
+            }
+            return new PermitReleasingResponse(response);
+        });
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("Interrupted while waiting to send request")
+                    .initCause(e);
+        }
+    }
+
+    /**
+     * Response that releases its permit when it's closed.
+     */
+    private class PermitReleasingResponse implements HttpTransportResponse {
+        
+        private final HttpTransportResponse response;
+        private boolean closed;
+
+        PermitReleasingResponse(HttpTransportResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getBodyString() throws IOException {
+            return response.getBodyString();
+        }
+
+        @Override
+        public <T> T readBody(ObjectMapper objectMapper, Class<T> type) throws IOException {
+            return response.readBody(objectMapper, type);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    response.close();
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return response.toString();
+        }
+        
+    }
+    
+}
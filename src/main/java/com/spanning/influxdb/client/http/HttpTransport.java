@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP implementation used by {@link InfluxDbHttpClient} to send requests to the InfluxDB API.
+ * @see OkHttpTransport
+ * @see JdkHttpTransport
+ */
+public interface HttpTransport {
+
+    /**
+     * Prepare an immutable template for requests to a URL, so that the URL and headers are only parsed and built
+     * once, and sending a request only requires attaching a body.
+     * @param url The request URL, including query parameters.
+     * @param authorization The value of the {@code Authorization} header, if any.
+     * @return A {@link RequestTemplate}, which can be shared by any number of threads.
+     */
+    RequestTemplate prepare(String url, Optional<String> authorization);
+
+    /**
+     * Send a GET request.
+     * @param template A template returned by {@link #prepare}.
+     * @return The response, which must be closed by the caller.
+     * @throws IOException If the request couldn't be sent or the response couldn't be received.
+     */
+    HttpTransportResponse get(RequestTemplate template) throws IOException;
+
+    /**
+     * Send a POST request with a line protocol body.
+     * @param template A template returned by {@link #prepare}.
+     * @param lines Buffers containing newline-separated line protocol strings, which are sent in order, separated by
+     * newlines, without being copied into a single buffer.
+     * @return The response, which must be closed by the caller.
+     * @throws IOException If the request couldn't be sent or the response couldn't be received.
+     */
+    HttpTransportResponse post(RequestTemplate template, List<LineProtocolBuffer> lines) throws IOException;
+
+    /**
+     * Send a POST request with a line protocol body without waiting for the response. Transports that support
+     * non-blocking I/O complete the future from their own callback threads; by default, the request is sent with
+     * {@link #post} on the calling thread, and the returned future is already complete.
+     * @param template A template returned by {@link #prepare}.
+     * @param lines Buffers containing newline-separated line protocol strings, which must not be modified until the
+     * future completes.
+     * @return A future for the response, which must be closed by the caller. The future completes exceptionally with an
+     * {@link IOException} if the request couldn't be sent or the response couldn't be received.
+     */
+    default CompletableFuture<HttpTransportResponse> postAsync(RequestTemplate template,
+                                                               List<LineProtocolBuffer> lines) {
+        try {
+            return CompletableFuture.completedFuture(post(template, lines));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Transport-specific request template, created by {@link #prepare}.
+     */
+    interface RequestTemplate {
+
+        /**
+         * Get the URL to which requests are sent.
+         * @return The request URL.
+         */
+        String getUrl();
+        
+    }
+    
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Response to a request sent with an {@link HttpTransport}. Closing the response releases its connection.
+ */
+public interface HttpTransportResponse extends Closeable {
+
+    /**
+     * Get the status code of the response.
+     * @return The status code.
+     */
+    int getStatusCode();
+
+    /**
+     * Determine whether the status code of the response indicates success.
+     * @return true if the status code is in the range [200, 300).
+     */
+    default boolean isSuccessful() {
+        return getStatusCode() >= 200 && getStatusCode() < 300;
+    }
+
+    /**
+     * Read the response body as a string.
+     * @return The response body, or an empty string if there is no body.
+     * @throws IOException If the body couldn't be read.
+     */
+    String getBodyString() throws IOException;
+
+    /**
+     * Parse the JSON response body.
+     * @param objectMapper The {@link ObjectMapper} used to parse the body.
+     * @param type The type to which the body should be parsed.
+     * @param <T> The type to which the body should be parsed.
+     * @return The parsed body.
+     * @throws IOException If the body couldn't be read or parsed.
+     */
+    <T> T readBody(ObjectMapper objectMapper, Class<T> type) throws IOException;
+    
+}
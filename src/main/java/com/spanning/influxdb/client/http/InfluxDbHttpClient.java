@@ -19,28 +19,33 @@ package com.spanning.influxdb.client.http;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.LineProtocolEncoder;
 import com.spanning.influxdb.client.exception.InfluxDbHttpQueryException;
 import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
 import com.spanning.influxdb.model.DataPoint;
 import com.spanning.influxdb.model.QueryResponse;
 import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Credentials;
+import com.squareup.okhttp.Dispatcher;
 import com.squareup.okhttp.HttpUrl;
-import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.Request;
-import com.squareup.okhttp.RequestBody;
-import com.squareup.okhttp.Response;
-import com.squareup.okhttp.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.SocketFactory;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -52,12 +57,17 @@ public class InfluxDbHttpClient implements InfluxDbClient {
     private static final Logger logger = LoggerFactory.getLogger(InfluxDbHttpClient.class);
     static final int NO_CONTENT_STATUS_CODE = 204;
     static final String AUTH_HEADER_NAME = "Authorization";
-    static final MediaType TEXT_PLAIN = MediaType.parse("text/plain");
+    static final int DEFAULT_MAX_IDLE_CONNECTIONS = 32;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long DEFAULT_WRITE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
 
     /**
      * InfluxDB endpoints.
      */
     public interface Endpoint {
+        String PING = "ping";
         String QUERY = "query";
         String WRITE = "write";
     }
@@ -74,8 +84,20 @@ public class InfluxDbHttpClient implements InfluxDbClient {
 
     protected final String baseUrl;
     protected final Optional<InfluxDbCredentials> credentials;
+    protected final HttpTransport transport;
+    /**
+     * The {@link OkHttpClient} used by the transport, or null if the transport isn't an {@link OkHttpTransport}.
+     * @deprecated Requests are sent with {@link #transport}; this is only kept for subclasses that used it.
+     */
+    @Deprecated
     protected final OkHttpClient httpClient;
     protected final ObjectMapper objectMapper;
+    protected final LineProtocolEncoder encoder;
+    private final HttpUrl parsedBaseUrl;
+    private final Optional<String> authorization;
+    private final ConcurrentMap<WriteTemplateKey, HttpTransport.RequestTemplate> writeTemplates =
+            new ConcurrentHashMap<>();
+    private volatile HttpTransport.RequestTemplate pingTemplate;
 
     /**
      * Create an {@link InfluxDbHttpClient} that makes requests without auth credentials. 
@@ -94,14 +116,56 @@ public class InfluxDbHttpClient implements InfluxDbClient {
     public InfluxDbHttpClient(String baseUrl, String username, String password) {
         this(baseUrl, Optional.of(new InfluxDbCredentials(username, password)), new OkHttpClient(), new ObjectMapper());
     }
+
+    /**
+     * Create an {@link InfluxDbHttpClient} that makes requests without auth credentials, using a specific
+     * {@link HttpTransport} (e.g., a {@link JdkHttpTransport} for HTTP/2).
+     * @param baseUrl The base URL for the InfluxDB http(s) API (e.g., http://localhost:8086).
+     * @param transport The {@link HttpTransport} used to send requests.
+     */
+    public InfluxDbHttpClient(String baseUrl, HttpTransport transport) {
+        this(baseUrl, Optional.empty(), transport, new ObjectMapper(), new LineProtocolEncoder());
+    }
+
+    /**
+     * Create an {@link InfluxDbHttpClient} that makes requests using basic auth credentials, using a specific
+     * {@link HttpTransport} (e.g., a {@link JdkHttpTransport} for HTTP/2).
+     * @param baseUrl The base URL for the InfluxDB http(s) API (e.g., http://localhost:8086).
+     * @param username The user name to use when making requests.
+     * @param password The password to use when making requests.
+     * @param transport The {@link HttpTransport} used to send requests.
+     */
+    public InfluxDbHttpClient(String baseUrl, String username, String password, HttpTransport transport) {
+        this(baseUrl, Optional.of(new InfluxDbCredentials(username, password)), transport, new ObjectMapper(),
+                new LineProtocolEncoder());
+    }
     
     protected InfluxDbHttpClient(String baseUrl, Optional<InfluxDbCredentials> credentials, OkHttpClient httpClient,
                                  ObjectMapper objectMapper) {
+        this(baseUrl, credentials, httpClient, objectMapper, new LineProtocolEncoder());
+    }
+    
+    protected InfluxDbHttpClient(String baseUrl, Optional<InfluxDbCredentials> credentials, OkHttpClient httpClient,
+                                 ObjectMapper objectMapper, LineProtocolEncoder encoder) {
+        this(baseUrl, credentials, new OkHttpTransport(httpClient), objectMapper, encoder);
+    }
+    
+    protected InfluxDbHttpClient(String baseUrl, Optional<InfluxDbCredentials> credentials, HttpTransport transport,
+                                 ObjectMapper objectMapper, LineProtocolEncoder encoder) {
         checkArgument(baseUrl != null, "baseUrl can't be null");
+        checkArgument(transport != null, "transport can't be null");
+        checkArgument(encoder != null, "encoder can't be null");
         this.baseUrl = baseUrl;
         this.credentials = credentials;
-        this.httpClient = httpClient;
+        this.transport = transport;
+        this.httpClient = transport instanceof OkHttpTransport ? ((OkHttpTransport) transport).getHttpClient() : null;
         this.objectMapper = objectMapper;
+        this.encoder = encoder;
+        this.parsedBaseUrl = HttpUrl.parse(baseUrl);
+        checkArgument(parsedBaseUrl != null, "baseUrl must be an http(s) URL");
+        
+        // The auth header value doesn't change, so only compute it once.
+        this.authorization = credentials.map(creds -> Credentials.basic(creds.username, creds.password));
     }
 
     @Override
@@ -124,6 +188,26 @@ public class InfluxDbHttpClient implements InfluxDbClient {
         writePoints(database, Optional.ofNullable(retentionPolicy), points);
     }
 
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        checkArgument(precision != null, "precision can't be null");
+        checkArgument(lines != null && lines.size() > 0, "lines must contain at least one line protocol string");
+        writeLineProtocol(database, Optional.ofNullable(retentionPolicy), precision,
+                Collections.singletonList(lines));
+    }
+
+    /**
+     * {@inheritDoc} The buffers are streamed into the request body one after another, without being copied.
+     */
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        checkArgument(precision != null, "precision can't be null");
+        checkArgument(lines != null && !lines.isEmpty(), "lines must contain at least one buffer");
+        writeLineProtocol(database, Optional.ofNullable(retentionPolicy), precision, lines);
+    }
+
     @Override
     public List<QueryResult> executeQuery(String database, String query) {
         checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
@@ -135,37 +219,81 @@ public class InfluxDbHttpClient implements InfluxDbClient {
                 .addQueryParameter(QueryParam.QUERY, query)
                 .build();
         
-        // Build the request.
-        Request request = requestBuilder(url)
-                .get()
-                .build();
-        
-        logger.debug("InfluxDB query request: {}", request);
+        // Build the request. The query varies from call to call, so its template isn't cached.
+        HttpTransport.RequestTemplate template = transport.prepare(url.toString(), authorization);
+        logger.debug("InfluxDB query request: {}", template);
         
-        // Execute the request.
-        Response response;
-        try {
-            response = httpClient.newCall(request).execute();
+        // Execute the request, and parse the response body into a QueryResponse.
+        QueryResponse queryResponse;
+        try (HttpTransportResponse response = transport.get(template)) {
+            logger.debug("InfluxDB query response: {}", response);
+            queryResponse = response.readBody(objectMapper, QueryResponse.class);
+            
+            // If the status code is not successful or there is an error message in the response, throw an exception.
+            if (!response.isSuccessful() || queryResponse.hasError()) {
+                throw new InfluxDbHttpQueryException(response.getStatusCode(), queryResponse.getError());
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
         
-        logger.debug("InfluxDB query response: {}", response);
+        return queryResponse.getResults();
+    }
+
+    /**
+     * Check whether InfluxDB is up, with a request to its {@code /ping} endpoint.
+     * @return true if InfluxDB responded with a successful status code (204), false otherwise.
+     * @throws UncheckedIOException If the request couldn't be sent or the response couldn't be received.
+     */
+    public boolean ping() {
+        // The template doesn't change, so it's only built once (or a few times, if threads race to build it).
+        HttpTransport.RequestTemplate template = pingTemplate;
+        if (template == null) {
+            template = transport.prepare(urlBuilder(Endpoint.PING).build().toString(), authorization);
+            pingTemplate = template;
+        }
         
-        // Parse the response body into a QueryResponse.
-        QueryResponse queryResponse;
-        try {
-            queryResponse = objectMapper.readValue(getResponseBodyString(response), QueryResponse.class);
+        try (HttpTransportResponse response = transport.get(template)) {
+            logger.debug("InfluxDB ping response: {}", response);
+            return response.isSuccessful();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        
-        // If the status code is not successful or there is an error message in the response, throw an exception.
-        if (!response.isSuccessful() || queryResponse.hasError()) {
-            throw new InfluxDbHttpQueryException(response.code(), queryResponse.getError());
-        }
-        
-        return queryResponse.getResults();
+    }
+
+    /**
+     * Write {@link DataPoint DataPoints} to InfluxDB without blocking the calling thread on network I/O. The request is
+     * sent with {@link HttpTransport#postAsync}, so the thread that completes the returned future depends on the
+     * transport (e.g., an OkHttp dispatcher thread, or the JDK client's executor). Callbacks attached to the future
+     * shouldn't block.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy An optional retention policy, or null to use the database's default.
+     * @param points A list of {@link DataPoint DataPoints}, all with the same timestamp precision.
+     * @return A future that completes when the points have been written, or completes exceptionally with an
+     * {@link InfluxDbHttpWriteException} or {@link UncheckedIOException} if the write failed.
+     */
+    public CompletableFuture<Void> writePointsAsync(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        return writeLineProtocolAsync(database, Optional.ofNullable(retentionPolicy),
+                points.get(0).getTimestampPrecision(), encoder.encode(points));
+    }
+
+    /**
+     * Write encoded line protocol strings to InfluxDB without blocking the calling thread on network I/O.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy An optional retention policy, or null to use the database's default.
+     * @param precision The precision of the points' timestamps.
+     * @param lines A buffer containing newline-separated line protocol strings, which must not be modified until the
+     * returned future completes.
+     * @return A future that completes when the lines have been written.
+     * @see #writePointsAsync
+     */
+    public CompletableFuture<Void> writeLineProtocolAsync(String database, String retentionPolicy,
+                                                          TimestampPrecision precision, LineProtocolBuffer lines) {
+        checkArgument(precision != null, "precision can't be null");
+        checkArgument(lines != null && lines.size() > 0, "lines must contain at least one line protocol string");
+        return writeLineProtocolAsync(database, Optional.ofNullable(retentionPolicy), precision,
+                Collections.singletonList(lines));
     }
 
     /**
@@ -184,61 +312,106 @@ public class InfluxDbHttpClient implements InfluxDbClient {
         checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
         
         // Use the precision from the first point in points.
-        String precisionString = points.get(0).getTimestampPrecision().getStringValue();
+        TimestampPrecision precision = points.get(0).getTimestampPrecision();
         
-        // Get the line protocol string for each point and join with newlines.
-        String lineProtocolString = points.stream()
-                .map(DataPoint::lineProtocolString)
-                .collect(Collectors.joining("\n"));
+        // Encode the points' line protocol strings into one or more buffers (large lists are encoded in parallel).
+        writeLineProtocol(database, retentionPolicy, precision, encoder.encode(points));
+    }
 
-        // Build the URL.
-        HttpUrl.Builder urlBuilder = urlBuilder(Endpoint.WRITE)
-                .addQueryParameter(QueryParam.DATABASE, database)
-                .addQueryParameter(QueryParam.PRECISION, precisionString);
-        
-        // If a retention policy was specified, add it as a query param.
-        retentionPolicy.ifPresent(rp -> urlBuilder.addQueryParameter(QueryParam.RETENTION_POLICY, rp));
-        
-        // Build the request.
-        Request request = requestBuilder(urlBuilder.build())
-                .post(RequestBody.create(TEXT_PLAIN, lineProtocolString))
-                .build();
-        
-        logger.debug("InfluxDB write request: {}", request);
+    /**
+     * Write encoded line protocol strings to InfluxDB, optionally with a specific retention policy.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy An optional retention policy.
+     * @param precision The precision of the points' timestamps.
+     * @param lines Buffers containing newline-separated line protocol strings, which are sent in order, separated
+     * by newlines.
+     */
+    private void writeLineProtocol(String database, Optional<String> retentionPolicy, TimestampPrecision precision,
+                                   List<LineProtocolBuffer> lines) {
+        HttpTransport.RequestTemplate template = writeTemplate(database, retentionPolicy, precision);
         
         // Execute the request.
-        Response response;
-        try {
-            response = httpClient.newCall(request).execute();
+        try (HttpTransportResponse response = transport.post(template, lines)) {
+            checkWriteResponse(response);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        
+    }
+
+    /**
+     * Asynchronously write encoded line protocol strings to InfluxDB, optionally with a specific retention policy.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy An optional retention policy.
+     * @param precision The precision of the points' timestamps.
+     * @param lines Buffers containing newline-separated line protocol strings.
+     * @return A future that completes when the write completes.
+     */
+    private CompletableFuture<Void> writeLineProtocolAsync(String database, Optional<String> retentionPolicy,
+                                                           TimestampPrecision precision,
+                                                           List<LineProtocolBuffer> lines) {
+        HttpTransport.RequestTemplate template = writeTemplate(database, retentionPolicy, precision);
+        return transport.postAsync(template, lines).thenAccept(response -> {
+            try (HttpTransportResponse closeableResponse = response) {
+                checkWriteResponse(closeableResponse);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Get the (cached) request template for writes to a database and retention policy with a timestamp precision.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy An optional retention policy.
+     * @param precision The precision of the points' timestamps.
+     * @return A {@link HttpTransport.RequestTemplate}.
+     */
+    private HttpTransport.RequestTemplate writeTemplate(String database, Optional<String> retentionPolicy,
+                                                        TimestampPrecision precision) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        HttpTransport.RequestTemplate template = writeTemplates.computeIfAbsent(
+                new WriteTemplateKey(database, retentionPolicy.orElse(null), precision), this::writeTemplate);
+        logger.debug("InfluxDB write request: {}", template);
+        return template;
+    }
+
+    /**
+     * Check the response to a write request.
+     * @param response The response.
+     * @throws InfluxDbHttpWriteException If the response status code isn't 204 (no content).
+     * @throws IOException If the response body couldn't be read.
+     */
+    private static void checkWriteResponse(HttpTransportResponse response) throws IOException {
         logger.debug("InfluxDB write response: {}", response);
         
         // The response status code should be 204 (no content). If not, throw an exception.
-        if (response.code() != NO_CONTENT_STATUS_CODE) {
+        if (response.getStatusCode() != NO_CONTENT_STATUS_CODE) {
             logger.debug("Expected {} status code, but got {} in response to InfluxDB write request.",
-                    NO_CONTENT_STATUS_CODE, response.code());
+                    NO_CONTENT_STATUS_CODE, response.getStatusCode());
             
-            // Get the response body as a string, because it probably contains some info about the error that occurred.
-            throw new InfluxDbHttpWriteException(response.code(), getResponseBodyString(response));
+            // Get the response body as a string, because it probably contains some info about the error that
+            // occurred.
+            throw new InfluxDbHttpWriteException(response.getStatusCode(), response.getBodyString());
         }
     }
 
     /**
-     * Get a builder for an InfluxDB API request with basic auth header added, if applicable.
-     * @param url The url.
-     * @return A {@link Request.Builder}.
+     * Build the request template for writes to a database and retention policy with a timestamp precision.
+     * @param key The database, retention policy and precision.
+     * @return A {@link HttpTransport.RequestTemplate}.
      */
-    private Request.Builder requestBuilder(HttpUrl url) {
-        Request.Builder builder = new Request.Builder().url(url);
+    private HttpTransport.RequestTemplate writeTemplate(WriteTemplateKey key) {
+        // Build the URL.
+        HttpUrl.Builder urlBuilder = urlBuilder(Endpoint.WRITE)
+                .addQueryParameter(QueryParam.DATABASE, key.database)
+                .addQueryParameter(QueryParam.PRECISION, key.precision.getStringValue());
         
-        // If credentials provided, add a basic auth header to the request builder.
-        credentials.ifPresent(credentials ->
-                builder.addHeader(AUTH_HEADER_NAME, Credentials.basic(credentials.username, credentials.password)));
-
-        return builder;
+        // If a retention policy was specified, add it as a query param.
+        if (key.retentionPolicy != null) {
+            urlBuilder.addQueryParameter(QueryParam.RETENTION_POLICY, key.retentionPolicy);
+        }
+        
+        return transport.prepare(urlBuilder.build().toString(), authorization);
     }
 
     /**
@@ -247,35 +420,253 @@ public class InfluxDbHttpClient implements InfluxDbClient {
      * @return A {@link HttpUrl.Builder}.
      */
     private HttpUrl.Builder urlBuilder(String endpoint) {
-        return HttpUrl.parse(baseUrl)
-                .newBuilder()
+        return parsedBaseUrl.newBuilder()
                 .addPathSegment(endpoint);
     }
 
     /**
-     * Get the response body of a {@link Response} as a string, rethrowing any {@link IOException} that occurs as an
-     * {@link UncheckedIOException}.
-     * @param response A {@link Response}.
-     * @return A string containing the response body, or an empty optional if there was no body.
+     * Key of a cached write request template.
      */
-    private static String getResponseBodyString(Response response) {
-        return Optional.ofNullable(response.body())
-                .map(InfluxDbHttpClient::getResponseBodyString)
-                .orElse("");
+    private static class WriteTemplateKey {
+        
+        private final String database;
+        private final String retentionPolicy;
+        private final TimestampPrecision precision;
+
+        WriteTemplateKey(String database, String retentionPolicy, TimestampPrecision precision) {
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.precision = precision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            WriteTemplateKey that = (WriteTemplateKey) o;
+            return database.equals(that.database) &&
+                    Objects.equals(retentionPolicy, that.retentionPolicy) &&
+                    precision == that.precision;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(database, retentionPolicy, precision);
+        }
+        
     }
 
     /**
-     * Get the string content of a {@link ResponseBody}, rethrowing any {@link IOException} that occurs as an
-     * {@link UncheckedIOException}.
-     * @param responseBody A {@link ResponseBody}.
-     * @return The string value of the response body.
+     * Builder used to create an {@link InfluxDbHttpClient} with a tuned OkHttp connection pool, timeouts and socket
+     * options. The defaults suit high-throughput ingest:
+     * <ul>
+     *     <li>Up to {@value #DEFAULT_MAX_IDLE_CONNECTIONS} idle connections are kept alive for 5 minutes, so bursts of
+     *     concurrent writes don't pay for new TCP (and TLS) handshakes.</li>
+     *     <li>Connects time out after 10 seconds; reads and writes time out after 30 seconds, which leaves room for
+     *     large batches on a busy server.</li>
+     *     <li>TCP_NODELAY is enabled, so the last segment of a request body isn't held back by Nagle's algorithm.</li>
+     *     <li>Socket buffer sizes are left to the OS, which auto-tunes them on most platforms.</li>
+     *     <li>The number of requests in flight is not limited.</li>
+     * </ul>
+     * To share connections across many clients (e.g., one client per database), pass the same
+     * {@link ConnectionPool} to each builder with {@link #withConnectionPool(ConnectionPool)}.
      */
-    private static String getResponseBodyString(ResponseBody responseBody) {
-        try {
-            return responseBody.string();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    public static class Builder {
+        
+        private final String baseUrl;
+        private Optional<InfluxDbCredentials> credentials = Optional.empty();
+        private ConnectionPool connectionPool;
+        private Dispatcher dispatcher;
+        private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        private long writeTimeoutMillis = DEFAULT_WRITE_TIMEOUT_MILLIS;
+        private boolean tcpNoDelay = true;
+        private int socketSendBufferSize;
+        private int socketReceiveBufferSize;
+        private int maxConcurrentRequests;
+        private HttpTransport transport;
+        private ObjectMapper objectMapper;
+        private LineProtocolEncoder encoder;
+
+        /**
+         * Create a builder.
+         * @param baseUrl The base URL for the InfluxDB http(s) API (e.g., http://localhost:8086).
+         */
+        public Builder(String baseUrl) {
+            checkArgument(baseUrl != null, "baseUrl can't be null");
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * Make requests using basic auth credentials.
+         * @param username The user name to use when making requests.
+         * @param password The password to use when making requests.
+         * @return This builder.
+         */
+        public Builder withCredentials(String username, String password) {
+            checkArgument(username != null, "username can't be null");
+            checkArgument(password != null, "password can't be null");
+            this.credentials = Optional.of(new InfluxDbCredentials(username, password));
+            return this;
+        }
+
+        /**
+         * Use a new connection pool for this client.
+         * @param maxIdleConnections The maximum number of idle connections kept in the pool.
+         * @param keepAlive How long an idle connection is kept in the pool.
+         * @param unit The unit of {@code keepAlive}.
+         * @return This builder.
+         */
+        public Builder withConnectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+            checkArgument(maxIdleConnections >= 0, "maxIdleConnections can't be negative");
+            checkArgument(keepAlive > 0, "keepAlive must be positive");
+            checkArgument(unit != null, "unit can't be null");
+            return withConnectionPool(new ConnectionPool(maxIdleConnections, unit.toMillis(keepAlive)));
+        }
+
+        /**
+         * Use an existing connection pool, which may be shared with other clients.
+         * @param connectionPool A {@link ConnectionPool}.
+         * @return This builder.
+         */
+        public Builder withConnectionPool(ConnectionPool connectionPool) {
+            checkArgument(connectionPool != null, "connectionPool can't be null");
+            this.connectionPool = connectionPool;
+            return this;
+        }
+
+        /**
+         * Use an existing OkHttp dispatcher, which may be shared with other clients. Note: OkHttp only applies a
+         * dispatcher's request limits to asynchronous calls; use {@link #withMaxConcurrentRequests(int)} to limit the
+         * requests this client makes.
+         * @param dispatcher A {@link Dispatcher}.
+         * @return This builder.
+         */
+        public Builder withDispatcher(Dispatcher dispatcher) {
+            checkArgument(dispatcher != null, "dispatcher can't be null");
+            this.dispatcher = dispatcher;
+            return this;
+        }
+
+        public Builder withConnectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeoutMillis = toMillis(timeout, unit);
+            return this;
+        }
+
+        public Builder withReadTimeout(long timeout, TimeUnit unit) {
+            this.readTimeoutMillis = toMillis(timeout, unit);
+            return this;
+        }
+
+        public Builder withWriteTimeout(long timeout, TimeUnit unit) {
+            this.writeTimeoutMillis = toMillis(timeout, unit);
+            return this;
+        }
+
+        public Builder withTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * Set the SO_SNDBUF size of new connections. Larger buffers help when writing large batches over links with a
+         * high bandwidth-delay product.
+         * @param socketSendBufferSize The buffer size in bytes.
+         * @return This builder.
+         */
+        public Builder withSocketSendBufferSize(int socketSendBufferSize) {
+            checkArgument(socketSendBufferSize > 0, "socketSendBufferSize must be positive");
+            this.socketSendBufferSize = socketSendBufferSize;
+            return this;
         }
+
+        /**
+         * Set the SO_RCVBUF size of new connections.
+         * @param socketReceiveBufferSize The buffer size in bytes.
+         * @return This builder.
+         */
+        public Builder withSocketReceiveBufferSize(int socketReceiveBufferSize) {
+            checkArgument(socketReceiveBufferSize > 0, "socketReceiveBufferSize must be positive");
+            this.socketReceiveBufferSize = socketReceiveBufferSize;
+            return this;
+        }
+
+        /**
+         * Limit the number of requests this client has in flight at the same time. Callers beyond the limit wait
+         * until a request completes.
+         * @param maxConcurrentRequests The maximum number of concurrent requests.
+         * @return This builder.
+         */
+        public Builder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive");
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Send requests with a specific {@link HttpTransport} (e.g., a {@link JdkHttpTransport} for HTTP/2). Note: The
+         * connection pool, dispatcher, timeout and socket settings only configure the default OkHttp transport, so
+         * they're ignored when a transport is set.
+         * @param transport An {@link HttpTransport}.
+         * @return This builder.
+         */
+        public Builder withTransport(HttpTransport transport) {
+            checkArgument(transport != null, "transport can't be null");
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder withObjectMapper(ObjectMapper objectMapper) {
+            checkArgument(objectMapper != null, "objectMapper can't be null");
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        public Builder withEncoder(LineProtocolEncoder encoder) {
+            checkArgument(encoder != null, "encoder can't be null");
+            this.encoder = encoder;
+            return this;
+        }
+
+        public InfluxDbHttpClient build() {
+            HttpTransport builtTransport = transport != null ? transport : new OkHttpTransport(buildOkHttpClient());
+            if (maxConcurrentRequests > 0) {
+                builtTransport = new ConcurrencyLimitingTransport(builtTransport, maxConcurrentRequests);
+            }
+            return new InfluxDbHttpClient(baseUrl, credentials, builtTransport,
+                    objectMapper != null ? objectMapper : new ObjectMapper(),
+                    encoder != null ? encoder : new LineProtocolEncoder());
+        }
+
+        /**
+         * Build the {@link OkHttpClient} used by the default transport.
+         * @return An {@link OkHttpClient}.
+         */
+        OkHttpClient buildOkHttpClient() {
+            OkHttpClient httpClient = new OkHttpClient();
+            httpClient.setConnectionPool(connectionPool != null ? connectionPool :
+                    new ConnectionPool(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS));
+            if (dispatcher != null) {
+                httpClient.setDispatcher(dispatcher);
+            }
+            httpClient.setConnectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            httpClient.setReadTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+            httpClient.setWriteTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+            httpClient.setSocketFactory(new SocketOptionsSocketFactory(SocketFactory.getDefault(), tcpNoDelay,
+                    socketSendBufferSize, socketReceiveBufferSize));
+            return httpClient;
+        }
+
+        private static long toMillis(long timeout, TimeUnit unit) {
+            checkArgument(timeout >= 0, "timeout can't be negative");
+            checkArgument(unit != null, "unit can't be null");
+            return unit.toMillis(timeout);
+        }
+        
     }
 
     /**
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link HttpTransport} implementation that uses the JDK's {@link HttpClient}. By default, the client prefers HTTP/2:
+ * it's negotiated with ALPN for https URLs, and with an h2c upgrade for http URLs if the server supports it, so
+ * concurrent requests are multiplexed over a single connection. Servers that don't support HTTP/2 are sent HTTP/1.1
+ * requests.
+ * <p>
+ * Write bodies are streamed from the line protocol buffers without being copied, and query responses are parsed
+ * as they're streamed from the connection rather than being buffered as a string first.
+ */
+public class JdkHttpTransport implements HttpTransport {
+    
+    static final String CONTENT_TYPE_HEADER_NAME = "Content-Type";
+    static final String TEXT_PLAIN_UTF_8 = "text/plain; charset=utf-8";
+    
+    private final HttpClient httpClient;
+    private final Optional<Duration> requestTimeout;
+
+    /**
+     * Create a {@link JdkHttpTransport} that prefers HTTP/2, without a request timeout.
+     */
+    public JdkHttpTransport() {
+        this(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build(), Optional.empty());
+    }
+
+    /**
+     * Create a {@link JdkHttpTransport}.
+     * @param httpClient The {@link HttpClient} used to send requests.
+     * @param requestTimeout The timeout for each request, if any.
+     */
+    public JdkHttpTransport(HttpClient httpClient, Optional<Duration> requestTimeout) {
+        checkArgument(httpClient != null, "httpClient can't be null");
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public RequestTemplate prepare(String url, Optional<String> authorization) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        authorization.ifPresent(value -> builder.header(InfluxDbHttpClient.AUTH_HEADER_NAME, value));
+        requestTimeout.ifPresent(builder::timeout);
+        return new JdkRequestTemplate(url, builder);
+    }
+
+    @Override
+    public HttpTransportResponse get(RequestTemplate template) throws IOException {
+        return send(requestBuilder(template)
+                .GET()
+                .build());
+    }
+
+    @Override
+    public HttpTransportResponse post(RequestTemplate template, List<LineProtocolBuffer> lines) throws IOException {
+        return send(writeRequest(template, lines));
+    }
+
+    @Override
+    public CompletableFuture<HttpTransportResponse> postAsync(RequestTemplate template,
+                                                              List<LineProtocolBuffer> lines) {
+        return httpClient.sendAsync(writeRequest(template, lines), HttpResponse.BodyHandlers.ofInputStream())
+                .<HttpTransportResponse>thenApply(JdkHttpTransportResponse::new);
+    }
+
+    private static HttpRequest writeRequest(RequestTemplate template, List<LineProtocolBuffer> lines) {
+        return requestBuilder(template)
+                .header(CONTENT_TYPE_HEADER_NAME, TEXT_PLAIN_UTF_8)
+                .POST(new LineProtocolBodyPublisher(lines))
+                .build();
+    }
+
+    /**
+     * Get a new builder with the URL and headers of a template.
+     */
+    private static HttpRequest.Builder requestBuilder(RequestTemplate template) {
+        checkArgument(template instanceof JdkRequestTemplate, "template wasn't prepared by this transport");
+        return ((JdkRequestTemplate) template).builder.copy();
+    }
+
+    private HttpTransportResponse send(HttpRequest request) throws IOException {
+        try {
+            return new JdkHttpTransportResponse(httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while sending request").initCause(e);
+        }
+    }
+
+    /**
+     * {@link RequestTemplate} holding a request builder with the template's URL and headers, which is copied for each
+     * request and never modified.
+     */
+    private static class JdkRequestTemplate implements RequestTemplate {
+        
+        private final String url;
+        private final HttpRequest.Builder builder;
+
+        JdkRequestTemplate(String url, HttpRequest.Builder builder) {
+            this.url = url;
+            this.builder = builder;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public String toString() {
+            return "JdkRequestTemplate{" +
+                    "url='" + url + '\'' +
+                    '}';
+        }
+        
+    }
+
+    /**
+     * {@link HttpTransportResponse} whose body is streamed from the connection.
+     */
+    private static class JdkHttpTransportResponse implements HttpTransportResponse {
+        
+        private final HttpResponse<InputStream> response;
+
+        JdkHttpTransportResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String getBodyString() throws IOException {
+            try (InputStream body = response.body()) {
+                return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public <T> T readBody(ObjectMapper objectMapper, Class<T> type) throws IOException {
+            try (InputStream body = response.body()) {
+                return objectMapper.readValue(body, type);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.body().close();
+        }
+
+        @Override
+        public String toString() {
+            return "JdkHttpTransportResponse{" +
+                    "version=" + response.version() +
+                    ", statusCode=" + response.statusCode() +
+                    ", uri=" + response.uri() +
+                    '}';
+        }
+        
+    }
+    
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpRequest.BodyPublisher} that streams the contents of {@link LineProtocolBuffer LineProtocolBuffers},
+ * joined with newlines, as read-only views of the buffers, so the body is never copied. Items are only published as
+ * the subscriber requests them.
+ */
+class LineProtocolBodyPublisher implements HttpRequest.BodyPublisher {
+    
+    private static final byte[] NEWLINE = { '\n' };
+    
+    private final List<LineProtocolBuffer> lines;
+
+    LineProtocolBodyPublisher(List<LineProtocolBuffer> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public long contentLength() {
+        long contentLength = lines.size() - 1;
+        for (LineProtocolBuffer buffer : lines) {
+            contentLength += buffer.size();
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        // Each subscription (e.g., when a request is retried) gets its own views of the buffers.
+        List<ByteBuffer> items = new ArrayList<>(lines.size() * 2);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                items.add(ByteBuffer.wrap(NEWLINE).asReadOnlyBuffer());
+            }
+            items.add(lines.get(i).asReadOnlyByteBuffer());
+        }
+        subscriber.onSubscribe(new BufferSubscription(subscriber, items));
+    }
+
+    /**
+     * Subscription that publishes a list of buffers as they're requested.
+     */
+    private static class BufferSubscription implements Flow.Subscription {
+        
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final List<ByteBuffer> items;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private int nextItem;
+        private volatile boolean done;
+
+        BufferSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, List<ByteBuffer> items) {
+            this.subscriber = subscriber;
+            this.items = items;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                done = true;
+                subscriber.onError(new IllegalArgumentException("Requested items must be positive"));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, requested) -> current + requested < 0 ?
+                    Long.MAX_VALUE : current + requested);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        /**
+         * Publish as many items as have been requested. Only one thread publishes at a time; a request made while
+         * publishing (e.g., from onNext) is picked up by the publishing thread.
+         */
+        private void drain() {
+            if (workInProgress.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done && demand.get() > 0 && nextItem < items.size()) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(items.get(nextItem++));
+                }
+                if (!done && nextItem == items.size()) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+            } while (workInProgress.decrementAndGet() != 0);
+        }
+        
+    }
+    
+}
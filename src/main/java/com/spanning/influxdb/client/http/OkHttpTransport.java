@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link HttpTransport} implementation that uses an {@link OkHttpClient} (HTTP/1.1).
+ * <p>
+ * Asynchronous requests are queued on the client's {@link com.squareup.okhttp.Dispatcher}, which by default runs at
+ * most 5 requests per host at a time; configure a dispatcher with a higher limit to send more concurrent writes.
+ */
+public class OkHttpTransport implements HttpTransport {
+    
+    static final MediaType TEXT_PLAIN_UTF_8 = MediaType.parse("text/plain; charset=utf-8");
+    
+    private final OkHttpClient httpClient;
+
+    /**
+     * Create an {@link OkHttpTransport}.
+     * @param httpClient The {@link OkHttpClient} used to send requests.
+     */
+    public OkHttpTransport(OkHttpClient httpClient) {
+        checkArgument(httpClient != null, "httpClient can't be null");
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Get the {@link OkHttpClient} used to send requests.
+     * @return The {@link OkHttpClient}.
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public RequestTemplate prepare(String url, Optional<String> authorization) {
+        Request.Builder builder = new Request.Builder().url(url);
+        authorization.ifPresent(value -> builder.addHeader(InfluxDbHttpClient.AUTH_HEADER_NAME, value));
+        return new OkHttpRequestTemplate(builder.build());
+    }
+
+    @Override
+    public HttpTransportResponse get(RequestTemplate template) throws IOException {
+        return execute(request(template));
+    }
+
+    @Override
+    public HttpTransportResponse post(RequestTemplate template, List<LineProtocolBuffer> lines) throws IOException {
+        return execute(writeRequest(template, lines));
+    }
+
+    @Override
+    public CompletableFuture<HttpTransportResponse> postAsync(RequestTemplate template,
+                                                              List<LineProtocolBuffer> lines) {
+        CompletableFuture<HttpTransportResponse> future = new CompletableFuture<>();
+        httpClient.newCall(writeRequest(template, lines)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Request request, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Response response) {
+                future.complete(new OkHttpTransportResponse(response));
+            }
+        });
+        return future;
+    }
+
+    private HttpTransportResponse execute(Request request) throws IOException {
+        return new OkHttpTransportResponse(httpClient.newCall(request).execute());
+    }
+
+    private static Request writeRequest(RequestTemplate template, List<LineProtocolBuffer> lines) {
+        return request(template).newBuilder()
+                .post(lineProtocolRequestBody(lines))
+                .build();
+    }
+
+    private static Request request(RequestTemplate template) {
+        checkArgument(template instanceof OkHttpRequestTemplate, "template wasn't prepared by this transport");
+        return ((OkHttpRequestTemplate) template).request;
+    }
+
+    /**
+     * Get a {@link RequestBody} that writes the contents of {@link LineProtocolBuffer LineProtocolBuffers}, joined
+     * with newlines, without copying them.
+     * @param lines Buffers containing newline-separated line protocol strings.
+     * @return A {@link RequestBody}.
+     */
+    private static RequestBody lineProtocolRequestBody(List<LineProtocolBuffer> lines) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return TEXT_PLAIN_UTF_8;
+            }
+
+            @Override
+            public long contentLength() {
+                long contentLength = lines.size() - 1;
+                for (LineProtocolBuffer buffer : lines) {
+                    contentLength += buffer.size();
+                }
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                for (int i = 0; i < lines.size(); i++) {
+                    if (i > 0) {
+                        sink.writeByte('\n');
+                    }
+                    lines.get(i).writeTo(sink.outputStream());
+                }
+            }
+        };
+    }
+
+    /**
+     * {@link RequestTemplate} holding a GET request with the template's URL and headers, from which other requests
+     * are derived.
+     */
+    private static class OkHttpRequestTemplate implements RequestTemplate {
+        
+        private final Request request;
+
+        OkHttpRequestTemplate(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public String getUrl() {
+            return request.urlString();
+        }
+
+        @Override
+        public String toString() {
+            return request.toString();
+        }
+        
+    }
+
+    /**
+     * {@link HttpTransportResponse} that wraps an OkHttp {@link Response}.
+     */
+    private static class OkHttpTransportResponse implements HttpTransportResponse {
+        
+        private final Response response;
+
+        OkHttpTransportResponse(Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.code();
+        }
+
+        @Override
+        public String getBodyString() throws IOException {
+            ResponseBody body = response.body();
+            return body != null ? body.string() : "";
+        }
+
+        @Override
+        public <T> T readBody(ObjectMapper objectMapper, Class<T> type) throws IOException {
+            return objectMapper.readValue(getBodyString(), type);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ResponseBody body = response.body();
+            if (body != null) {
+                body.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return response.toString();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * {@link SocketFactory} that sets TCP_NODELAY and, optionally, the socket buffer sizes on every socket it creates.
+ */
+class SocketOptionsSocketFactory extends SocketFactory {
+    
+    private final SocketFactory delegate;
+    private final boolean tcpNoDelay;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+
+    /**
+     * Create a {@link SocketOptionsSocketFactory}.
+     * @param delegate The factory that creates the sockets.
+     * @param tcpNoDelay Whether to disable Nagle's algorithm.
+     * @param sendBufferSize The SO_SNDBUF size in bytes, or 0 to use the OS default.
+     * @param receiveBufferSize The SO_RCVBUF size in bytes, or 0 to use the OS default.
+     */
+    SocketOptionsSocketFactory(SocketFactory delegate, boolean tcpNoDelay, int sendBufferSize,
+                               int receiveBufferSize) {
+        this.delegate = delegate;
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+            throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket configure(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            // Set before connecting, so that a window scale large enough for the buffer is negotiated.
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        return socket;
+    }
+    
+}
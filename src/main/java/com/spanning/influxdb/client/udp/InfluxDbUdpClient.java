@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.udp;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} implementation that sends line protocol to an InfluxDB UDP listener. Writes are
+ * fire-and-forget: lines are packed into as few datagrams as possible (each no larger than the configured MTU allows),
+ * and send failures are counted in {@link #getMetrics()} rather than thrown.
+ * <p>
+ * The database, retention policy and timestamp precision of the points are determined by the UDP listener's
+ * configuration, so the {@code database} and {@code retentionPolicy} arguments of the write methods are ignored, and
+ * the points' timestamps must have the listener's precision. Queries aren't supported over UDP.
+ */
+public class InfluxDbUdpClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InfluxDbUdpClient.class);
+    public static final int DEFAULT_MTU = 1500;
+    static final int IP_AND_UDP_HEADER_SIZE = 28;
+    
+    private final DatagramChannel channel;
+    private final int maxPayloadSize;
+    private final Queue<ByteBuffer> datagramBuffers = new ConcurrentLinkedQueue<>();
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder datagramsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder linesSent = new LongAdder();
+    private final LongAdder linesDropped = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+
+    /**
+     * Create an {@link InfluxDbUdpClient} that sends datagrams sized for the default MTU.
+     * @param host The host of the InfluxDB UDP listener.
+     * @param port The port of the InfluxDB UDP listener.
+     */
+    public InfluxDbUdpClient(String host, int port) {
+        this(new InetSocketAddress(host, port), DEFAULT_MTU);
+    }
+
+    /**
+     * Create an {@link InfluxDbUdpClient}.
+     * @param address The address of the InfluxDB UDP listener.
+     * @param mtu The MTU of the network path to the listener; datagram payloads are limited to the MTU minus the
+     * IP and UDP header sizes, so datagrams aren't fragmented.
+     */
+    public InfluxDbUdpClient(InetSocketAddress address, int mtu) {
+        checkArgument(address != null, "address can't be null");
+        checkArgument(mtu > IP_AND_UDP_HEADER_SIZE, "mtu must be greater than %s", IP_AND_UDP_HEADER_SIZE);
+        this.maxPayloadSize = mtu - IP_AND_UDP_HEADER_SIZE;
+        try {
+            this.channel = DatagramChannel.open().connect(address);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoints(database, null, Collections.singletonList(point));
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        writePoints(database, retentionPolicy, Collections.singletonList(point));
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        for (DataPoint point : points) {
+            point.writeLineProtocol(lines.beginLine());
+        }
+        send(lines);
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        checkArgument(lines != null, "lines can't be null");
+        send(lines);
+    }
+
+    /**
+     * Queries aren't supported over UDP.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        throw new UnsupportedOperationException("InfluxDB can't be queried over UDP");
+    }
+
+    /**
+     * Get a snapshot of this client's send counters.
+     * @return A {@link UdpClientMetrics}.
+     */
+    public UdpClientMetrics getMetrics() {
+        return new UdpClientMetrics(datagramsSent.sum(), bytesSent.sum(), linesSent.sum(), linesDropped.sum(),
+                sendErrors.sum(), System.nanoTime() - createdNanos);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Pack newline-separated lines into datagrams and send them. Lines are never split across datagrams, and lines
+     * that don't fit in a datagram on their own are dropped.
+     */
+    private void send(LineProtocolBuffer lines) {
+        ByteBuffer datagram = acquireDatagramBuffer();
+        try {
+            int linesInDatagram = 0;
+            int offset = 0;
+            while (offset < lines.size()) {
+                int newline = lines.indexOf('\n', offset);
+                int end = newline < 0 ? lines.size() : newline;
+                int length = end - offset;
+                if (length > maxPayloadSize) {
+                    linesDropped.increment();
+                    logger.warn("Dropping {} byte line that doesn't fit in a {} byte datagram.", length,
+                            maxPayloadSize);
+                } else if (length > 0) {
+                    // Send the datagram if the line (and its separator) doesn't fit.
+                    if (linesInDatagram > 0 && length + 1 > datagram.remaining()) {
+                        sendDatagram(datagram, linesInDatagram);
+                        linesInDatagram = 0;
+                    }
+                    if (linesInDatagram > 0) {
+                        datagram.put((byte) '\n');
+                    }
+                    lines.writeTo(offset, length, datagram);
+                    linesInDatagram++;
+                }
+                offset = end + 1;
+            }
+            if (linesInDatagram > 0) {
+                sendDatagram(datagram, linesInDatagram);
+            }
+        } finally {
+            datagram.clear();
+            datagramBuffers.offer(datagram);
+        }
+    }
+
+    private void sendDatagram(ByteBuffer datagram, int lineCount) {
+        datagram.flip();
+        int size = datagram.remaining();
+        try {
+            channel.write(datagram);
+            datagramsSent.increment();
+            bytesSent.add(size);
+            linesSent.add(lineCount);
+        } catch (IOException e) {
+            sendErrors.increment();
+            logger.debug("Failed to send {} byte datagram to InfluxDB.", size, e);
+        }
+        datagram.clear();
+    }
+
+    /**
+     * Get a direct buffer for packing a datagram, reusing one that was released by an earlier send if possible.
+     */
+    private ByteBuffer acquireDatagramBuffer() {
+        ByteBuffer datagram = datagramBuffers.poll();
+        return datagram != null ? datagram : ByteBuffer.allocateDirect(maxPayloadSize);
+    }
+    
+}
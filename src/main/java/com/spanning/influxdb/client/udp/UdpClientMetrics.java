@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.udp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the send counters of an {@link InfluxDbUdpClient}. Rates are averaged over the client's lifetime.
+ */
+public class UdpClientMetrics {
+    
+    private final long datagramsSent;
+    private final long bytesSent;
+    private final long linesSent;
+    private final long linesDropped;
+    private final long sendErrors;
+    private final long elapsedNanos;
+
+    UdpClientMetrics(long datagramsSent, long bytesSent, long linesSent, long linesDropped, long sendErrors,
+                     long elapsedNanos) {
+        this.datagramsSent = datagramsSent;
+        this.bytesSent = bytesSent;
+        this.linesSent = linesSent;
+        this.linesDropped = linesDropped;
+        this.sendErrors = sendErrors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getLinesSent() {
+        return linesSent;
+    }
+
+    /**
+     * Get the number of lines that weren't sent because they didn't fit in a single datagram.
+     * @return The number of dropped lines.
+     */
+    public long getLinesDropped() {
+        return linesDropped;
+    }
+
+    /**
+     * Get the number of datagrams that couldn't be sent because of an I/O error.
+     * @return The number of failed sends.
+     */
+    public long getSendErrors() {
+        return sendErrors;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getDatagramsPerSecond() {
+        return perSecond(datagramsSent);
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(bytesSent);
+    }
+
+    public double getLinesPerSecond() {
+        return perSecond(linesSent);
+    }
+
+    private double perSecond(long count) {
+        return elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "UdpClientMetrics{" +
+                "datagramsSent=" + datagramsSent +
+                ", bytesSent=" + bytesSent +
+                ", linesSent=" + linesSent +
+                ", linesDropped=" + linesDropped +
+                ", sendErrors=" + sendErrors +
+                ", elapsedNanos=" + elapsedNanos +
+                '}';
+    }
+    
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.Field;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.SeriesKey;
+import com.spanning.influxdb.model.Tag;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that aggregates points written with {@link #writePoint} and {@link #writePoints} on the
+ * client, and writes one point per series per interval to a delegate client. For each numeric field {@code f} of a
+ * series, the flushed point has the fields {@code f_sum}, {@code f_count}, {@code f_min}, {@code f_max} and
+ * {@code f_last} (depending on the configured {@link Aggregation Aggregations}), plus estimated quantiles such as
+ * {@code f_p99} if quantiles are configured. String and boolean fields keep their names and their last value.
+ * <p>
+ * Flushed points are timestamped (with millisecond precision) at the start of the interval in which their samples
+ * were written; the samples' own timestamps are ignored. Each flush moves on to a new window, so a flush that follows
+ * another within the same interval (e.g. a manual {@link #flush()}) is timestamped at the start of the next interval,
+ * rather than writing points that would overwrite the previous flush's. Pre-encoded writes ({@link #writeLineProtocol} and
+ * {@link #writeBatch}) and queries are passed straight to the delegate. {@link #close()} flushes any remaining
+ * samples.
+ */
+public class AggregatingInfluxDbClient implements InfluxDbClient, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AggregatingInfluxDbClient.class);
+    public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    public static final double DEFAULT_QUANTILE_ACCURACY = 0.01;
+
+    /**
+     * Aggregations computed for each numeric field.
+     */
+    public enum Aggregation {
+        SUM("sum"),
+        COUNT("count"),
+        MIN("min"),
+        MAX("max"),
+        LAST("last");
+        
+        private final String suffix;
+
+        Aggregation(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+    
+    private final InfluxDbClient delegate;
+    private final long intervalMillis;
+    private final Set<Aggregation> aggregations;
+    private final double[] quantiles;
+    private final String[] quantileSuffixes;
+    private final double quantileAccuracy;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final ScheduledFuture<?> flushTask;
+    private final ConcurrentHashMap<AggregationKey, SeriesAccumulator> accumulators = new ConcurrentHashMap<>();
+    // Not a monitor, because the lock is held while writing to the delegate, and blocking I/O inside a monitor pins
+    // a virtual thread to its carrier thread.
+    private final Lock flushLock = new ReentrantLock();
+    private long windowStartMillis;
+
+    private AggregatingInfluxDbClient(Builder builder) {
+        this.delegate = builder.delegate;
+        this.intervalMillis = builder.intervalMillis;
+        this.aggregations = EnumSet.copyOf(builder.aggregations);
+        this.quantiles = builder.quantiles.clone();
+        this.quantileSuffixes = new String[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            quantileSuffixes[i] = "p" + BigDecimal.valueOf(quantiles[i]).movePointRight(2).stripTrailingZeros()
+                    .toPlainString();
+        }
+        this.quantileAccuracy = builder.quantileAccuracy;
+        this.ownsScheduler = builder.scheduler == null;
+        this.scheduler = ownsScheduler ?
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("influxdb-aggregation-flusher-%d")
+                        .setDaemon(true)
+                        .build()) :
+                builder.scheduler;
+        
+        // Align flushes to multiples of the interval.
+        long now = System.currentTimeMillis();
+        this.windowStartMillis = now - now % intervalMillis;
+        this.flushTask = scheduler.scheduleAtFixedRate(this::flush, windowStartMillis + intervalMillis - now,
+                intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoint(database, null, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkArgument(point != null, "point can't be null");
+        aggregate(database, retentionPolicy, point);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        for (DataPoint point : points) {
+            aggregate(database, retentionPolicy, point);
+        }
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        delegate.writeBatch(database, retentionPolicy, batch);
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Write one aggregated point per series for the samples written since the last flush. Flushes happen
+     * automatically once per interval, but can also be triggered manually. Failures to write the aggregated points are
+     * logged, and the points are dropped.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            long timestamp = windowStartMillis;
+            long now = System.currentTimeMillis();
+            // Never reuse a flushed window's timestamp, even if the scheduled flush runs just before the boundary.
+            windowStartMillis = Math.max(timestamp + intervalMillis, now - now % intervalMillis);
+            
+            // Drain each accumulator. Samples written to an accumulator after it's drained go into a new accumulator,
+            // which is flushed next time.
+            Map<AggregationKey, DataPoint> points = new LinkedHashMap<>();
+            accumulators.forEach((key, accumulator) -> {
+                accumulators.remove(key, accumulator);
+                accumulator.drain(key.seriesKey, timestamp).ifPresent(point -> points.put(key, point));
+            });
+            
+            // Write the aggregated points, grouped by database and retention policy.
+            Map<AggregationKey, List<DataPoint>> pointsByDestination = new HashMap<>();
+            points.forEach((key, point) -> pointsByDestination
+                    .computeIfAbsent(new AggregationKey(key.database, key.retentionPolicy, null),
+                            destination -> new ArrayList<>())
+                    .add(point));
+            pointsByDestination.forEach((destination, destinationPoints) -> {
+                try {
+                    delegate.writePoints(destination.database, destination.retentionPolicy, destinationPoints);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to write {} aggregated points to InfluxDB database {}.",
+                            destinationPoints.size(), destination.database, e);
+                }
+            });
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop flushing periodically, and flush any remaining samples.
+     */
+    @Override
+    public void close() {
+        flushTask.cancel(false);
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    private void aggregate(String database, String retentionPolicy, DataPoint point) {
+        AggregationKey key = new AggregationKey(database, retentionPolicy, point.getSeriesKey());
+        
+        // If the accumulator is drained by a concurrent flush, retry with a new accumulator.
+        while (!accumulators.computeIfAbsent(key, k -> new SeriesAccumulator()).add(point)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * The series (or, if {@link #seriesKey} is null, the destination) of aggregated points.
+     */
+    private static class AggregationKey {
+        
+        private final String database;
+        private final String retentionPolicy;
+        private final SeriesKey seriesKey;
+        private final int hashCode;
+
+        AggregationKey(String database, String retentionPolicy, SeriesKey seriesKey) {
+            this.database = database;
+            this.retentionPolicy = retentionPolicy;
+            this.seriesKey = seriesKey;
+            this.hashCode = Objects.hash(database, retentionPolicy, seriesKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AggregationKey that = (AggregationKey) o;
+            return hashCode == that.hashCode &&
+                    database.equals(that.database) &&
+                    Objects.equals(retentionPolicy, that.retentionPolicy) &&
+                    Objects.equals(seriesKey, that.seriesKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+    }
+
+    /**
+     * Accumulates the fields of one series' samples. Each series has its own lock, so writers to different series
+     * don't contend with each other.
+     */
+    private class SeriesAccumulator {
+        
+        private final Map<String, FieldAccumulator> fields = new LinkedHashMap<>();
+        private boolean drained;
+
+        /**
+         * Add a sample's fields.
+         * @return false if this accumulator was already drained, in which case the sample wasn't added.
+         */
+        synchronized boolean add(DataPoint point) {
+            if (drained) {
+                return false;
+            }
+            for (Field field : point.getFields()) {
+                fields.computeIfAbsent(field.getFieldName(), name -> new FieldAccumulator()).add(field.getFieldValue());
+            }
+            return true;
+        }
+
+        /**
+         * Build the aggregated point for this series, and stop accepting samples.
+         */
+        synchronized Optional<DataPoint> drain(SeriesKey seriesKey, long timestamp) {
+            drained = true;
+            if (fields.isEmpty()) {
+                return Optional.empty();
+            }
+            DataPoint.Builder builder = new DataPoint.Builder(seriesKey.getMeasurementName())
+                    .withTimestamp(timestamp, TimestampPrecision.MILLISECONDS);
+            for (Tag tag : seriesKey.getTags().asList()) {
+                builder.withTag(tag);
+            }
+            fields.forEach((name, field) -> field.writeFields(name, builder));
+            return Optional.of(builder.build());
+        }
+        
+    }
+
+    /**
+     * Accumulates the values of one field. Numeric values are aggregated; for other values, only the last value is
+     * kept.
+     */
+    private class FieldAccumulator {
+        
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double last;
+        private Object lastNonNumeric;
+        private QuantileSketch sketch;
+
+        void add(Object value) {
+            if (!(value instanceof Number)) {
+                lastNonNumeric = value;
+                return;
+            }
+            double doubleValue = ((Number) value).doubleValue();
+            count++;
+            sum += doubleValue;
+            min = Math.min(min, doubleValue);
+            max = Math.max(max, doubleValue);
+            last = doubleValue;
+            if (quantiles.length > 0) {
+                if (sketch == null) {
+                    sketch = new QuantileSketch(quantileAccuracy);
+                }
+                sketch.add(doubleValue);
+            }
+        }
+
+        void writeFields(String name, DataPoint.Builder builder) {
+            if (count == 0) {
+                if (lastNonNumeric instanceof Boolean) {
+                    builder.withField(name, (Boolean) lastNonNumeric);
+                } else if (lastNonNumeric != null) {
+                    builder.withField(name, String.valueOf(lastNonNumeric));
+                }
+                return;
+            }
+            for (Aggregation aggregation : aggregations) {
+                String fieldName = name + "_" + aggregation.getSuffix();
+                switch (aggregation) {
+                    case SUM:
+                        builder.withField(fieldName, sum);
+                        break;
+                    case COUNT:
+                        builder.withField(fieldName, count);
+                        break;
+                    case MIN:
+                        builder.withField(fieldName, min);
+                        break;
+                    case MAX:
+                        builder.withField(fieldName, max);
+                        break;
+                    case LAST:
+                        builder.withField(fieldName, last);
+                        break;
+                }
+            }
+            for (int i = 0; i < quantiles.length; i++) {
+                builder.withField(name + "_" + quantileSuffixes[i], sketch.getQuantile(quantiles[i]));
+            }
+        }
+        
+    }
+
+    /**
+     * Builder used to create an {@link AggregatingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        private final InfluxDbClient delegate;
+        private long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+        private Set<Aggregation> aggregations = EnumSet.allOf(Aggregation.class);
+        private double[] quantiles = new double[0];
+        private double quantileAccuracy = DEFAULT_QUANTILE_ACCURACY;
+        private ScheduledExecutorService scheduler;
+
+        /**
+         * Create a builder.
+         * @param delegate The client to which aggregated points are written.
+         */
+        public Builder(InfluxDbClient delegate) {
+            checkArgument(delegate != null, "delegate can't be null");
+            this.delegate = delegate;
+        }
+
+        public Builder withInterval(long interval, TimeUnit unit) {
+            checkArgument(unit.toMillis(interval) > 0, "interval must be at least 1 millisecond");
+            this.intervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        public Builder withAggregations(Set<Aggregation> aggregations) {
+            checkArgument(aggregations != null && !aggregations.isEmpty(), "aggregations can't be null or empty");
+            this.aggregations = aggregations;
+            return this;
+        }
+
+        /**
+         * Estimate quantiles of each numeric field with a {@link QuantileSketch}.
+         * @param quantiles The quantiles (e.g., 0.5 and 0.99), which are written as fields with suffixes such as
+         * {@code _p50} and {@code _p99}.
+         * @return This builder.
+         */
+        public Builder withQuantiles(double... quantiles) {
+            for (double quantile : quantiles) {
+                checkArgument(quantile >= 0 && quantile <= 1, "quantiles must be between 0 and 1");
+            }
+            this.quantiles = quantiles.clone();
+            return this;
+        }
+
+        public Builder withQuantileAccuracy(double quantileAccuracy) {
+            checkArgument(quantileAccuracy > 0 && quantileAccuracy < 1, "quantileAccuracy must be between 0 and 1");
+            this.quantileAccuracy = quantileAccuracy;
+            return this;
+        }
+
+        /**
+         * Set the scheduler used to flush periodically. By default, the client creates its own single daemon thread,
+         * which is shut down by {@link AggregatingInfluxDbClient#close()}; a scheduler set here isn't shut down.
+         * @param scheduler A {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder withScheduler(ScheduledExecutorService scheduler) {
+            checkArgument(scheduler != null, "scheduler can't be null");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public AggregatingInfluxDbClient build() {
+            return new AggregatingInfluxDbClient(this);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The result of a write that was split into chunks by a {@link ChunkingInfluxDbClient}, reporting the outcome of
+ * each chunk.
+ */
+public class ChunkedWriteResult {
+    
+    private final List<ChunkResult> chunks;
+
+    ChunkedWriteResult(List<ChunkResult> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Get the results of all chunks, in the order in which the chunks' points appeared in the write.
+     * @return A list of {@link ChunkResult}.
+     */
+    public List<ChunkResult> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the results of the chunks that couldn't be written.
+     * @return A list of {@link ChunkResult}.
+     */
+    public List<ChunkResult> getFailedChunks() {
+        return chunks.stream()
+                .filter(chunk -> !chunk.isSuccessful())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Determine whether all chunks were written successfully.
+     * @return true if every chunk was written.
+     */
+    public boolean isSuccessful() {
+        return chunks.stream().allMatch(ChunkResult::isSuccessful);
+    }
+
+    /**
+     * Get the total number of points in all chunks.
+     * @return The number of points.
+     */
+    public int getPointCount() {
+        return chunks.stream().mapToInt(ChunkResult::getPointCount).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkedWriteResult{" +
+                "chunks=" + chunks +
+                '}';
+    }
+
+    /**
+     * The outcome of writing a single chunk.
+     */
+    public static class ChunkResult {
+        
+        private final int index;
+        private final int pointCount;
+        private final int byteCount;
+        private final int attempts;
+        private final Optional<RuntimeException> failure;
+
+        ChunkResult(int index, int pointCount, int byteCount, int attempts, Optional<RuntimeException> failure) {
+            this.index = index;
+            this.pointCount = pointCount;
+            this.byteCount = byteCount;
+            this.attempts = attempts;
+            this.failure = failure;
+        }
+
+        /**
+         * Get the index of this chunk in the write.
+         * @return The chunk index.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the number of points in this chunk.
+         * @return The number of points.
+         */
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        /**
+         * Get the size of this chunk's request body.
+         * @return The number of encoded bytes.
+         */
+        public int getByteCount() {
+            return byteCount;
+        }
+
+        /**
+         * Get the number of times this chunk was sent, including retries.
+         * @return The number of attempts.
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Get the exception thrown by the last attempt to write this chunk, if it couldn't be written.
+         * @return The exception, or an empty optional if the chunk was written successfully.
+         */
+        public Optional<RuntimeException> getFailure() {
+            return failure;
+        }
+
+        /**
+         * Determine whether this chunk was written successfully.
+         * @return true if the chunk was written.
+         */
+        public boolean isSuccessful() {
+            return !failure.isPresent();
+        }
+
+        @Override
+        public String toString() {
+            return "ChunkResult{" +
+                    "index=" + index +
+                    ", pointCount=" + pointCount +
+                    ", byteCount=" + byteCount +
+                    ", attempts=" + attempts +
+                    ", failure=" + failure +
+                    '}';
+        }
+        
+    }
+    
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.google.common.base.Strings;
+import com.google.common.math.LongMath;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.write.ChunkedWriteResult.ChunkResult;
+import com.spanning.influxdb.client.exception.InfluxDbChunkedWriteException;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that splits large writes into chunks with a maximum number of points and a maximum
+ * number of encoded bytes, and sends the chunks to a delegate client with bounded concurrency. Each chunk that fails
+ * with a retryable error (an I/O error or a 5xx response) is retried on its own, so one failure doesn't cause the
+ * whole write to be resent.
+ * <p>
+ * The {@code write*Chunked} methods report the outcome of every chunk in a {@link ChunkedWriteResult}. The
+ * {@link InfluxDbClient} write methods throw an {@link InfluxDbChunkedWriteException} if any chunk couldn't be
+ * written.
+ */
+public class ChunkingInfluxDbClient implements InfluxDbClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChunkingInfluxDbClient.class);
+    public static final int DEFAULT_MAX_POINTS_PER_CHUNK = 5_000;
+    public static final int DEFAULT_MAX_BYTES_PER_CHUNK = 5 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 100L;
+    
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("influxdb-chunk-writer-%d")
+            .setDaemon(true)
+            .build());
+    
+    private final InfluxDbClient delegate;
+    private final int maxPointsPerChunk;
+    private final int maxBytesPerChunk;
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    private ChunkingInfluxDbClient(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxPointsPerChunk = builder.maxPointsPerChunk;
+        this.maxBytesPerChunk = builder.maxBytesPerChunk;
+        this.executor = builder.executor;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoffMillis;
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        delegate.writePoint(database, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        delegate.writePoint(database, retentionPolicy, point);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkSuccessful(writePointsChunked(database, retentionPolicy, points));
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        checkSuccessful(writeLineProtocolChunked(database, retentionPolicy, precision, lines));
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Write {@link DataPoint DataPoints} to InfluxDB in chunks. As with {@link #writePoints}, the precision of the
+     * first point is used for all points.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy The retention policy, or null to use the database's default retention policy.
+     * @param points A list of {@link DataPoint DataPoints}.
+     * @return The outcome of each chunk.
+     */
+    public ChunkedWriteResult writePointsChunked(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        
+        ChunkSplitter splitter = new ChunkSplitter();
+        for (DataPoint point : points) {
+            int lineStart = splitter.beginLine();
+            point.writeLineProtocol(splitter.current);
+            splitter.endLine(lineStart);
+        }
+        return writeChunks(database, retentionPolicy, points.get(0).getTimestampPrecision(), splitter.finish());
+    }
+
+    /**
+     * Write data points that have already been encoded as line protocol to InfluxDB in chunks. {@code lines} is
+     * split at its newline characters.
+     * @param database The database to which the points should be written.
+     * @param retentionPolicy The retention policy, or null to use the database's default retention policy.
+     * @param precision The precision of the timestamps of all points in {@code lines}.
+     * @param lines A buffer containing one or more newline-separated line protocol strings.
+     * @return The outcome of each chunk.
+     */
+    public ChunkedWriteResult writeLineProtocolChunked(String database, String retentionPolicy,
+                                                       TimestampPrecision precision, LineProtocolBuffer lines) {
+        checkArgument(!Strings.isNullOrEmpty(database), "database can't be null or empty");
+        checkArgument(precision != null, "precision can't be null");
+        checkArgument(lines != null && lines.size() > 0, "lines must contain at least one line protocol string");
+        
+        ChunkSplitter splitter = new ChunkSplitter();
+        int offset = 0;
+        while (offset < lines.size()) {
+            int newline = lines.indexOf('\n', offset);
+            int end = newline < 0 ? lines.size() : newline;
+            if (end > offset) {
+                int lineStart = splitter.beginLine();
+                splitter.current.write(lines, offset, end - offset);
+                splitter.endLine(lineStart);
+            }
+            offset = end + 1;
+        }
+        return writeChunks(database, retentionPolicy, precision, splitter.finish());
+    }
+
+    /**
+     * Send chunks to the delegate client, using up to {@link #maxConcurrency} threads (including the calling thread).
+     */
+    private ChunkedWriteResult writeChunks(String database, String retentionPolicy, TimestampPrecision precision,
+                                           List<Chunk> chunks) {
+        ChunkResult[] results = new ChunkResult[chunks.size()];
+        AtomicInteger nextChunk = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = nextChunk.getAndIncrement(); i < results.length; i = nextChunk.getAndIncrement()) {
+                results[i] = writeChunk(database, retentionPolicy, precision, i, chunks.get(i));
+            }
+        };
+        
+        // Start additional workers on the executor, then help out on the calling thread.
+        List<Future<?>> futures = new ArrayList<>();
+        int additionalWorkers = Math.min(maxConcurrency, chunks.size()) - 1;
+        try {
+            for (int i = 0; i < additionalWorkers; i++) {
+                futures.add(executor.submit(worker));
+            }
+        } catch (RejectedExecutionException e) {
+            logger.debug("Executor rejected chunk writer; writing with {} concurrent workers.", futures.size() + 1);
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Chunk writer failed", e.getCause());
+            }
+        }
+        return new ChunkedWriteResult(Arrays.asList(results));
+    }
+
+    /**
+     * Write a single chunk, retrying retryable failures with exponential backoff.
+     */
+    private ChunkResult writeChunk(String database, String retentionPolicy, TimestampPrecision precision,
+                                   int index, Chunk chunk) {
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            try {
+                delegate.writeLineProtocol(database, retentionPolicy, precision, chunk.lines);
+                return new ChunkResult(index, chunk.pointCount, chunk.lines.size(), attempts, Optional.empty());
+            } catch (RuntimeException e) {
+                if (attempts > maxRetries || !isRetryable(e) || !backOff(attempts)) {
+                    logger.debug("Failed to write chunk {} after {} attempts.", index, attempts, e);
+                    return new ChunkResult(index, chunk.pointCount, chunk.lines.size(), attempts, Optional.of(e));
+                }
+                logger.debug("Retrying chunk {} after failed attempt {}.", index, attempts, e);
+            }
+        }
+    }
+
+    /**
+     * Sleep before retrying a chunk.
+     * @return false if the thread was interrupted, in which case the chunk shouldn't be retried.
+     */
+    private boolean backOff(int attempts) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoffMillis(retryBackoffMillis, attempts));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Get the delay before retrying a chunk: the initial backoff, doubled for each retry after the first (up to 16
+     * times), saturating at {@link Long#MAX_VALUE} rather than overflowing.
+     */
+    static long backoffMillis(long retryBackoffMillis, int attempts) {
+        return LongMath.saturatedMultiply(retryBackoffMillis, 1L << Math.min(attempts - 1, 16));
+    }
+
+    /**
+     * Determine whether a failed write might succeed if it's retried. I/O errors and server errors are retryable;
+     * other errors (e.g., malformed points or a missing database) aren't.
+     */
+    private static boolean isRetryable(RuntimeException e) {
+        return e instanceof UncheckedIOException ||
+                (e instanceof InfluxDbHttpWriteException && ((InfluxDbHttpWriteException) e).getStatusCode() >= 500);
+    }
+
+    private static void checkSuccessful(ChunkedWriteResult result) {
+        if (!result.isSuccessful()) {
+            throw new InfluxDbChunkedWriteException(result);
+        }
+    }
+
+    /**
+     * Encoded lines and the number of points they contain.
+     */
+    private static class Chunk {
+        
+        private final LineProtocolBuffer lines;
+        private final int pointCount;
+
+        Chunk(LineProtocolBuffer lines, int pointCount) {
+            this.lines = lines;
+            this.pointCount = pointCount;
+        }
+        
+    }
+
+    /**
+     * Accumulates encoded lines into chunks, starting a new chunk whenever the current chunk reaches
+     * {@link #maxPointsPerChunk} points, or a line would push it past {@link #maxBytesPerChunk} bytes. A single line
+     * that is larger than {@link #maxBytesPerChunk} is sent in a chunk of its own.
+     */
+    private class ChunkSplitter {
+        
+        private final List<Chunk> chunks = new ArrayList<>();
+        private LineProtocolBuffer current = new LineProtocolBuffer();
+        private int pointCount;
+
+        /**
+         * Start a line in the current chunk.
+         * @return The size of the current chunk before the line was started.
+         */
+        int beginLine() {
+            int lineStart = current.size();
+            current.beginLine();
+            return lineStart;
+        }
+
+        /**
+         * Finish the line that was written to the current chunk after {@link #beginLine()}.
+         * @param lineStart The value returned by {@link #beginLine()}.
+         */
+        void endLine(int lineStart) {
+            pointCount++;
+            if (pointCount > 1 && current.size() > maxBytesPerChunk) {
+                // Move the line into a new chunk.
+                LineProtocolBuffer next = new LineProtocolBuffer(current.size() - lineStart);
+                next.write(current, lineStart + 1, current.size() - lineStart - 1);
+                current.truncate(lineStart);
+                pointCount--;
+                flush();
+                current = next;
+                pointCount = 1;
+            }
+            if (pointCount >= maxPointsPerChunk) {
+                flush();
+            }
+        }
+
+        List<Chunk> finish() {
+            flush();
+            return chunks;
+        }
+
+        private void flush() {
+            if (pointCount > 0) {
+                chunks.add(new Chunk(current, pointCount));
+                current = new LineProtocolBuffer();
+                pointCount = 0;
+            }
+        }
+        
+    }
+
+    /**
+     * Builder used to create a {@link ChunkingInfluxDbClient}.
+     */
+    public static class Builder {
+        
+        private final InfluxDbClient delegate;
+        private int maxPointsPerChunk = DEFAULT_MAX_POINTS_PER_CHUNK;
+        private int maxBytesPerChunk = DEFAULT_MAX_BYTES_PER_CHUNK;
+        private ExecutorService executor = DEFAULT_EXECUTOR;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+
+        /**
+         * Create a builder.
+         * @param delegate The client used to send each chunk.
+         */
+        public Builder(InfluxDbClient delegate) {
+            checkArgument(delegate != null, "delegate can't be null");
+            this.delegate = delegate;
+        }
+
+        public Builder withMaxPointsPerChunk(int maxPointsPerChunk) {
+            checkArgument(maxPointsPerChunk > 0, "maxPointsPerChunk must be positive");
+            this.maxPointsPerChunk = maxPointsPerChunk;
+            return this;
+        }
+
+        public Builder withMaxBytesPerChunk(int maxBytesPerChunk) {
+            checkArgument(maxBytesPerChunk > 0, "maxBytesPerChunk must be positive");
+            this.maxBytesPerChunk = maxBytesPerChunk;
+            return this;
+        }
+
+        /**
+         * Set the executor used to send chunks concurrently. By default, a shared pool of daemon threads is used.
+         * @param executor An {@link ExecutorService}.
+         * @return This builder.
+         */
+        public Builder withExecutor(ExecutorService executor) {
+            checkArgument(executor != null, "executor can't be null");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of chunks of a single write that are sent at the same time.
+         * @param maxConcurrency The maximum number of concurrent requests per write.
+         * @return This builder.
+         */
+        public Builder withMaxConcurrency(int maxConcurrency) {
+            checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Set how many times a chunk that failed with a retryable error is resent.
+         * @param maxRetries The maximum number of retries per chunk.
+         * @param retryBackoffMillis The delay before the first retry, which doubles with each subsequent retry.
+         * @return This builder.
+         */
+        public Builder withRetries(int maxRetries, long retryBackoffMillis) {
+            checkArgument(maxRetries >= 0, "maxRetries can't be negative");
+            checkArgument(retryBackoffMillis >= 0, "retryBackoffMillis can't be negative");
+            this.maxRetries = maxRetries;
+            this.retryBackoffMillis = retryBackoffMillis;
+            return this;
+        }
+
+        public ChunkingInfluxDbClient build() {
+            return new ChunkingInfluxDbClient(this);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that coalesces points with the same series and timestamp in each {@link #writePoints} batch
+ * with a {@link PointCoalescer} before writing them to a delegate client, so only one line is encoded and sent per
+ * series and timestamp.
+ */
+public class CoalescingInfluxDbClient implements InfluxDbClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingInfluxDbClient.class);
+    
+    private final InfluxDbClient delegate;
+    private final ThreadLocal<PointCoalescer> coalescers = ThreadLocal.withInitial(PointCoalescer::new);
+
+    /**
+     * Create a {@link CoalescingInfluxDbClient}.
+     * @param delegate The client to which coalesced points are written.
+     */
+    public CoalescingInfluxDbClient(InfluxDbClient delegate) {
+        checkArgument(delegate != null, "delegate can't be null");
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        delegate.writePoint(database, point);
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        delegate.writePoint(database, retentionPolicy, point);
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        delegate.writePoints(database, coalesce(points));
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        delegate.writePoints(database, retentionPolicy, coalesce(points));
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeLineProtocolBuffers(String database, String retentionPolicy, TimestampPrecision precision,
+                                         List<LineProtocolBuffer> lines) {
+        delegate.writeLineProtocolBuffers(database, retentionPolicy, precision, lines);
+    }
+
+    @Override
+    public void writeBatch(String database, String retentionPolicy, PointBatch batch) {
+        delegate.writeBatch(database, retentionPolicy, batch);
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    private List<DataPoint> coalesce(List<DataPoint> points) {
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        List<DataPoint> coalesced = coalescers.get().coalesce(points);
+        if (coalesced.size() < points.size()) {
+            logger.debug("Coalesced {} points into {}.", points.size(), coalesced.size());
+        }
+        return coalesced;
+    }
+    
+}
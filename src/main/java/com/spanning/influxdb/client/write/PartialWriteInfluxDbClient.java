@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link InfluxDbClient} that handles writes that InfluxDB rejects because some of their lines are invalid (parse
+ * errors or field type conflicts). The rejected lines are identified from the error in the response body and passed
+ * to a {@link RejectedLinesHandler}, and the write doesn't fail:
+ * <ul>
+ *     <li>If the error is a {@code partial write}, the server has already stored the other lines, so nothing is
+ *     resent.</li>
+ *     <li>Otherwise, the server rejected the whole write, so the remaining lines are resent once.</li>
+ * </ul>
+ * Errors that don't identify any rejected lines are rethrown. When used with a {@link ChunkingInfluxDbClient}, this
+ * client should be the chunking client's delegate, so partial writes are handled per chunk.
+ */
+public class PartialWriteInfluxDbClient implements InfluxDbClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PartialWriteInfluxDbClient.class);
+    static final int BAD_REQUEST_STATUS_CODE = 400;
+    private static final String ERROR_FIELD = "error";
+    
+    private final InfluxDbClient delegate;
+    private final RejectedLinesHandler rejectedLinesHandler;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create a {@link PartialWriteInfluxDbClient}.
+     * @param delegate The client used to write points.
+     * @param rejectedLinesHandler The handler to which rejected lines are passed.
+     */
+    public PartialWriteInfluxDbClient(InfluxDbClient delegate, RejectedLinesHandler rejectedLinesHandler) {
+        this(delegate, rejectedLinesHandler, new ObjectMapper());
+    }
+    
+    protected PartialWriteInfluxDbClient(InfluxDbClient delegate, RejectedLinesHandler rejectedLinesHandler,
+                                         ObjectMapper objectMapper) {
+        checkArgument(delegate != null, "delegate can't be null");
+        checkArgument(rejectedLinesHandler != null, "rejectedLinesHandler can't be null");
+        this.delegate = delegate;
+        this.rejectedLinesHandler = rejectedLinesHandler;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void writePoint(String database, DataPoint point) {
+        writePoints(database, null, Collections.singletonList(point));
+    }
+
+    @Override
+    public void writePoint(String database, String retentionPolicy, DataPoint point) {
+        writePoints(database, retentionPolicy, Collections.singletonList(point));
+    }
+
+    @Override
+    public void writePoints(String database, List<DataPoint> points) {
+        writePoints(database, null, points);
+    }
+
+    @Override
+    public void writePoints(String database, String retentionPolicy, List<DataPoint> points) {
+        checkArgument(points != null && !points.isEmpty(), "points must contain at least one DataPoint");
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        for (DataPoint point : points) {
+            point.writeLineProtocol(lines.beginLine());
+        }
+        writeLineProtocol(database, retentionPolicy, points.get(0).getTimestampPrecision(), lines);
+    }
+
+    @Override
+    public void writeLineProtocol(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines) {
+        try {
+            delegate.writeLineProtocol(database, retentionPolicy, precision, lines);
+        } catch (InfluxDbHttpWriteException e) {
+            Optional<WriteError> writeError = e.getStatusCode() == BAD_REQUEST_STATUS_CODE ?
+                    WriteError.parse(getErrorMessage(e.getResponseBody())) : Optional.empty();
+            if (!writeError.isPresent()) {
+                throw e;
+            }
+            handleWriteError(database, retentionPolicy, precision, lines, writeError.get(), e);
+        }
+    }
+
+    @Override
+    public List<QueryResult> executeQuery(String database, String query) {
+        return delegate.executeQuery(database, query);
+    }
+
+    /**
+     * Separate the rejected lines of a failed write from the remaining lines, pass the rejected lines to the
+     * {@link #rejectedLinesHandler}, and resend the remaining lines if the server didn't store them.
+     */
+    private void handleWriteError(String database, String retentionPolicy, TimestampPrecision precision,
+                                  LineProtocolBuffer lines, WriteError writeError, InfluxDbHttpWriteException e) {
+        List<String> rejected = new ArrayList<>();
+        LineProtocolBuffer remaining = new LineProtocolBuffer(lines.size());
+        for (String line : lines.toString().split("\n")) {
+            if (writeError.rejects(line)) {
+                rejected.add(line);
+            } else if (!line.isEmpty()) {
+                remaining.beginLine().writeUtf8(line);
+            }
+        }
+        
+        // If the server rejected the whole write and none of the lines can be blamed, resending would fail again.
+        if (!writeError.isPartialWrite() && rejected.isEmpty()) {
+            throw e;
+        }
+        
+        logger.debug("InfluxDB rejected {} lines: {}", rejected.size(), writeError.getMessage());
+        rejectedLinesHandler.onRejected(database, retentionPolicy, Collections.unmodifiableList(rejected),
+                writeError.getMessage());
+        
+        if (!writeError.isPartialWrite() && remaining.size() > 0) {
+            delegate.writeLineProtocol(database, retentionPolicy, precision, remaining);
+        }
+    }
+
+    /**
+     * Get the error message from a write response body, which is either a JSON object with an {@code error} field or
+     * a plain string.
+     */
+    private String getErrorMessage(String responseBody) {
+        if (Strings.isNullOrEmpty(responseBody)) {
+            return "";
+        }
+        try {
+            JsonNode error = objectMapper.readTree(responseBody).get(ERROR_FIELD);
+            return error != null && error.isTextual() ? error.asText() : responseBody;
+        } catch (IOException e) {
+            return responseBody;
+        }
+    }
+    
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.Field;
+import com.spanning.influxdb.model.Tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces points that share a series and a timestamp into a single point, as InfluxDB would when storing them:
+ * for each field, the value from the last point wins, and fields that only appear in some of the points are merged.
+ * Points are keyed in an open-addressing hash table (with linear probing) whose arrays are reused between calls, so
+ * coalescing a batch without duplicates allocates only the result list. Only the slots a call used are cleared
+ * afterwards, and the table is shrunk when a call needs far less than its capacity, so one large batch doesn't make
+ * every later small batch slower or keep a large table alive.
+ * Note: This class is not thread-safe.
+ */
+public class PointCoalescer {
+    
+    private static final int MIN_CAPACITY = 16;
+    // The table is reallocated when it's more than this many times larger than a call needs.
+    private static final int SHRINK_FACTOR = 8;
+    
+    // slots[i] holds 1 + the index of the entry in slot i, or 0 if the slot is empty.
+    private int[] slots = new int[MIN_CAPACITY];
+    private int[] hashes = new int[MIN_CAPACITY / 2];
+    private DataPoint[] points = new DataPoint[MIN_CAPACITY / 2];
+    private List<Map<String, Field>> mergedFields = new ArrayList<>();
+
+    /**
+     * Coalesce points with the same series and timestamp.
+     * @param batch A list of {@link DataPoint DataPoints}.
+     * @return A list with one point per distinct series and timestamp, in the order in which each series and
+     * timestamp first appeared in {@code batch}. If {@code batch} has no duplicates, the points are returned as is.
+     */
+    public List<DataPoint> coalesce(List<DataPoint> batch) {
+        int size = batch.size();
+        ensureCapacity(size);
+        int mask = slots.length - 1;
+        int entries = 0;
+        boolean hasDuplicates = false;
+        
+        try {
+            for (DataPoint point : batch) {
+                int hash = hash(point);
+                int slot = hash & mask;
+                while (true) {
+                    int entry = slots[slot] - 1;
+                    if (entry < 0) {
+                        // New series and timestamp.
+                        slots[slot] = entries + 1;
+                        hashes[entries] = hash;
+                        points[entries++] = point;
+                        break;
+                    }
+                    if (hashes[entry] == hash && isSameSeriesAndTimestamp(points[entry], point)) {
+                        merge(entry, point);
+                        hasDuplicates = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+            return hasDuplicates ? coalescedPoints(entries) : batch;
+        } finally {
+            clearSlots(entries);
+            Arrays.fill(points, 0, entries, null);
+            mergedFields.clear();
+        }
+    }
+
+    /**
+     * Get the number of slots in the hash table.
+     */
+    int getTableCapacity() {
+        return slots.length;
+    }
+
+    private void ensureCapacity(int size) {
+        // Keep the load factor of the table at or below 1/2.
+        int capacity = Integer.highestOneBit(Math.max(size * 2, MIN_CAPACITY) - 1) << 1;
+        if (capacity > slots.length || capacity * SHRINK_FACTOR < slots.length) {
+            slots = new int[capacity];
+        }
+        int entries = Math.max(size, MIN_CAPACITY / 2);
+        if (entries > points.length || entries * SHRINK_FACTOR < points.length) {
+            hashes = new int[entries];
+            points = new DataPoint[entries];
+            mergedFields = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Empty the slots of the first {@code entries} entries, by probing for each entry from its hash as it was
+     * inserted. Slots emptied along the way are skipped, since each entry's own slot is only emptied once it's found.
+     */
+    private void clearSlots(int entries) {
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < entries; entry++) {
+            int slot = hashes[entry] & mask;
+            while (slots[slot] != entry + 1) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = 0;
+        }
+    }
+
+    /**
+     * Merge the fields of a duplicate point into an entry, replacing the values of fields that the entry already has.
+     */
+    private void merge(int entry, DataPoint duplicate) {
+        while (mergedFields.size() <= entry) {
+            mergedFields.add(null);
+        }
+        Map<String, Field> fields = mergedFields.get(entry);
+        if (fields == null) {
+            fields = new LinkedHashMap<>();
+            for (Field field : points[entry].getFields()) {
+                fields.put(field.getFieldName(), field);
+            }
+            mergedFields.set(entry, fields);
+        }
+        for (Field field : duplicate.getFields()) {
+            fields.put(field.getFieldName(), field);
+        }
+    }
+
+    private List<DataPoint> coalescedPoints(int entries) {
+        List<DataPoint> coalesced = new ArrayList<>(entries);
+        for (int entry = 0; entry < entries; entry++) {
+            Map<String, Field> fields = entry < mergedFields.size() ? mergedFields.get(entry) : null;
+            coalesced.add(fields == null ? points[entry] : mergedPoint(points[entry], fields));
+        }
+        return coalesced;
+    }
+
+    private static DataPoint mergedPoint(DataPoint first, Map<String, Field> fields) {
+        DataPoint.Builder builder = new DataPoint.Builder(first.getMeasurementName())
+                .withTimestamp(first.getTimestamp(), first.getTimestampPrecision());
+        for (Tag tag : first.getTags()) {
+            builder.withTag(tag);
+        }
+        for (Field field : fields.values()) {
+            builder.withField(field);
+        }
+        return builder.build();
+    }
+
+    private static int hash(DataPoint point) {
+        int hash = 31 * point.getSeriesKey().hashCode() + Long.hashCode(point.getTimestamp());
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isSameSeriesAndTimestamp(DataPoint point, DataPoint other) {
+        return point.getTimestamp() == other.getTimestamp() && point.getSeriesKey().equals(other.getSeriesKey());
+    }
+    
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Fixed-accuracy quantile sketch with logarithmically sized buckets: every value is counted in the bucket
+ * {@code ceil(log(|value|) / log(gamma))}, where {@code gamma = (1 + accuracy) / (1 - accuracy)}, so any quantile
+ * can be estimated with a relative error of at most {@code accuracy}. Memory grows with the logarithm of the range of
+ * the values rather than with their number.
+ * Note: This class is not thread-safe.
+ */
+public class QuantileSketch {
+    
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Create a {@link QuantileSketch}.
+     * @param relativeAccuracy The maximum relative error of estimated quantiles, between 0 and 1 (exclusive).
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "relativeAccuracy must be between 0 and 1");
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    /**
+     * Add a value to this sketch.
+     * @param value A finite value.
+     */
+    public void add(double value) {
+        if (value > Double.MIN_NORMAL) {
+            positive.increment(index(value));
+        } else if (value < -Double.MIN_NORMAL) {
+            negative.increment(index(-value));
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    /**
+     * Estimate a quantile of the values added to this sketch.
+     * @param quantile The quantile, between 0 and 1 (inclusive).
+     * @return The estimated value, or {@link Double#NaN} if the sketch is empty.
+     */
+    public double getQuantile(double quantile) {
+        checkArgument(quantile >= 0 && quantile <= 1, "quantile must be between 0 and 1");
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        
+        // Negative values are ordered from the largest magnitude to the smallest.
+        if (rank < negative.total) {
+            return -value(negative.indexOfRank(negative.total - 1 - rank));
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        return value(positive.indexOfRank(rank - zeroCount));
+    }
+
+    /**
+     * Get the number of values added to this sketch.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{" +
+                "relativeAccuracy=" + relativeAccuracy +
+                ", count=" + count +
+                '}';
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /**
+     * Get the value that represents a bucket (the value with the same relative error to both bucket bounds).
+     */
+    private double value(int index) {
+        double gamma = Math.exp(logGamma);
+        return 2 * Math.exp(index * logGamma) / (gamma + 1);
+    }
+
+    /**
+     * Dense array of bucket counts covering a contiguous range of bucket indexes, which grows as needed.
+     */
+    private static class Buckets {
+        
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        void increment(int index) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+            } else if (index < offset || index >= offset + counts.length) {
+                grow(index);
+            }
+            counts[index - offset]++;
+            total++;
+        }
+
+        /**
+         * Get the index of the bucket that contains the value with a given rank (in ascending order).
+         */
+        int indexOfRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return i + offset;
+                }
+            }
+            throw new IllegalStateException("rank exceeds bucket counts");
+        }
+
+        private void grow(int index) {
+            int newMin = Math.min(offset, index);
+            int newMax = Math.max(offset + counts.length - 1, index);
+            int newLength = Math.max(newMax - newMin + 1, counts.length * 2);
+            
+            // Leave room to grow in the direction the range was extended.
+            int newOffset = index < offset ? newMax - newLength + 1 : newMin;
+            long[] newCounts = new long[newLength];
+            System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+            counts = newCounts;
+            offset = newOffset;
+        }
+        
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import java.util.List;
+
+/**
+ * Dead-letter callback for line protocol strings that InfluxDB rejected.
+ */
+@FunctionalInterface
+public interface RejectedLinesHandler {
+
+    /**
+     * Handle lines that InfluxDB rejected.
+     * @param database The database to which the lines were written.
+     * @param retentionPolicy The retention policy to which the lines were written, or null for the database's default
+     * retention policy.
+     * @param lines The rejected line protocol strings (may be empty if the server reported a partial write without
+     * identifying the rejected lines).
+     * @param error The error message returned by the server.
+     */
+    void onRejected(String database, String retentionPolicy, List<String> lines, String error);
+    
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.util.LineProtocolStringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed InfluxDB write error message that identifies the lines the server rejected. Two kinds of errors are
+ * recognized:
+ * <ul>
+ *     <li>Parse errors, e.g. {@code unable to parse 'cpu value=': missing field value}, which quote the rejected
+ *     line.</li>
+ *     <li>Field type conflicts, e.g. {@code field type conflict: input field "value" on measurement "cpu" is type
+ *     integer, already exists as type float}, which reject every line that writes that field with that type.</li>
+ * </ul>
+ * If the message starts with {@code partial write:}, the server has already stored every line that wasn't rejected.
+ */
+public class WriteError {
+    
+    static final String PARTIAL_WRITE_PREFIX = "partial write:";
+    private static final Pattern UNABLE_TO_PARSE_PATTERN = Pattern.compile("unable to parse '(.*)': ");
+    private static final Pattern FIELD_TYPE_CONFLICT_PATTERN = Pattern.compile(
+            "field type conflict: input field \"((?:[^\"\\\\]|\\\\.)*)\" on measurement \"((?:[^\"\\\\]|\\\\.)*)\" " +
+                    "is type (\\w+)");
+    
+    private final String message;
+    private final boolean partialWrite;
+    private final Set<String> unparsableLines;
+    private final List<FieldTypeConflict> fieldTypeConflicts;
+
+    private WriteError(String message, boolean partialWrite, Set<String> unparsableLines,
+                       List<FieldTypeConflict> fieldTypeConflicts) {
+        this.message = message;
+        this.partialWrite = partialWrite;
+        this.unparsableLines = unparsableLines;
+        this.fieldTypeConflicts = fieldTypeConflicts;
+    }
+
+    /**
+     * Parse an InfluxDB write error message.
+     * @param message The error message (i.e., the {@code error} value of the response body).
+     * @return A {@link WriteError}, or an empty optional if the message doesn't identify any rejected lines.
+     */
+    public static Optional<WriteError> parse(String message) {
+        Set<String> unparsableLines = new HashSet<>();
+        List<FieldTypeConflict> fieldTypeConflicts = new ArrayList<>();
+        
+        // Multiple errors are separated by newlines.
+        for (String error : message.split("\n")) {
+            Matcher unableToParse = UNABLE_TO_PARSE_PATTERN.matcher(error);
+            if (unableToParse.find()) {
+                unparsableLines.add(unableToParse.group(1));
+            }
+            Matcher fieldTypeConflict = FIELD_TYPE_CONFLICT_PATTERN.matcher(error);
+            while (fieldTypeConflict.find()) {
+                fieldTypeConflicts.add(new FieldTypeConflict(unescapeQuoted(fieldTypeConflict.group(2)),
+                        unescapeQuoted(fieldTypeConflict.group(1)), fieldTypeConflict.group(3)));
+            }
+        }
+        
+        if (unparsableLines.isEmpty() && fieldTypeConflicts.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new WriteError(message, message.startsWith(PARTIAL_WRITE_PREFIX),
+                Collections.unmodifiableSet(unparsableLines), Collections.unmodifiableList(fieldTypeConflicts)));
+    }
+
+    /**
+     * Get the error message.
+     * @return The error message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Determine whether the server stored the lines that weren't rejected.
+     * @return true if the error is a partial write.
+     */
+    public boolean isPartialWrite() {
+        return partialWrite;
+    }
+
+    /**
+     * Determine whether a line was rejected by the server.
+     * @param line A line protocol string from the failed write.
+     * @return true if {@code line} was rejected.
+     */
+    public boolean rejects(String line) {
+        if (unparsableLines.contains(line)) {
+            return true;
+        }
+        for (FieldTypeConflict conflict : fieldTypeConflicts) {
+            if (conflict.matches(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteError{" +
+                "message='" + message + '\'' +
+                '}';
+    }
+
+    /**
+     * Undo the escaping of backslashes and double quotes in a quoted Go string.
+     */
+    private static String unescapeQuoted(String quoted) {
+        return quoted.replaceAll("\\\\(.)", "$1");
+    }
+
+    /**
+     * A field that was written with a type that differs from the type already stored for it.
+     */
+    private static class FieldTypeConflict {
+        
+        private final String measurementName;
+        private final String fieldKey;
+        private final String inputType;
+
+        FieldTypeConflict(String measurementName, String fieldKey, String inputType) {
+            this.measurementName = measurementName;
+            this.fieldKey = fieldKey;
+            this.inputType = inputType;
+        }
+
+        /**
+         * Determine whether a line writes the conflicting field with the conflicting type.
+         */
+        boolean matches(String line) {
+            if (!measurementName.equals(LineProtocolStringUtils.unescape(line.substring(0, measurementEnd(line))))) {
+                return false;
+            }
+            return fieldValue(line, fieldKey)
+                    .map(value -> inputType.equals(fieldType(value)))
+                    .orElse(false);
+        }
+        
+    }
+
+    /**
+     * Get the index of the character that ends the measurement name of a line (an unescaped comma or space).
+     */
+    private static int measurementEnd(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ',' || c == ' ') {
+                return i;
+            }
+        }
+        return line.length();
+    }
+
+    /**
+     * Get the raw value of a field in a line.
+     */
+    static Optional<String> fieldValue(String line, String fieldKey) {
+        // The field set starts after the first unescaped space.
+        int i = 0;
+        while (i < line.length() && line.charAt(i) != ' ') {
+            i += line.charAt(i) == '\\' ? 2 : 1;
+        }
+        
+        while (++i < line.length()) {
+            // Read the field key, up to an unescaped equals sign.
+            int keyStart = i;
+            while (i < line.length() && line.charAt(i) != '=') {
+                i += line.charAt(i) == '\\' ? 2 : 1;
+            }
+            String key = LineProtocolStringUtils.unescape(line.substring(keyStart, Math.min(i, line.length())));
+            
+            // Read the field value, which is either a quoted string or ends at a comma or space.
+            int valueStart = ++i;
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (i < line.length() && line.charAt(i) != '"') {
+                    i += line.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else {
+                while (i < line.length() && line.charAt(i) != ',' && line.charAt(i) != ' ') {
+                    i++;
+                }
+            }
+            if (key.equals(fieldKey)) {
+                return Optional.of(line.substring(Math.min(valueStart, line.length()), Math.min(i, line.length())));
+            }
+            if (i >= line.length() || line.charAt(i) == ' ') {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Get the InfluxDB type name of a raw field value.
+     */
+    static String fieldType(String value) {
+        if (value.startsWith("\"")) {
+            return "string";
+        }
+        switch (value) {
+            case "t":
+            case "T":
+            case "true":
+            case "True":
+            case "TRUE":
+            case "f":
+            case "F":
+            case "false":
+            case "False":
+            case "FALSE":
+                return "boolean";
+            default:
+                if (value.endsWith("i")) {
+                    return "integer";
+                } else if (value.endsWith("u")) {
+                    return "unsigned";
+                }
+                return "float";
+        }
+    }
+    
+}
@@ -17,14 +17,11 @@
 package com.spanning.influxdb.model;
 
 import com.google.common.base.Strings;
-import com.spanning.influxdb.util.LineProtocolStringUtils;
+import com.spanning.influxdb.util.LineProtocolBuffer;
 
-import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -34,31 +31,49 @@ import static com.google.common.base.Preconditions.checkState;
  */
 public class DataPoint {
     
-    private final String measurementName;
-    private final List<Tag> tags;
-    private final List<Field> fields;
+    private final SeriesKey seriesKey;
+    private final Field[] fields;
+    private final int fieldCount;
     private final long timestamp;
     private final TimestampPrecision timestampPrecision;
 
     DataPoint(String measurementName, List<Tag> tags, List<Field> fields, long timestamp,
               TimestampPrecision timestampPrecision) {
-        this.measurementName = measurementName;
-        this.tags = tags;
+        this(new SeriesKey(measurementName, TagSet.of(tags)), fields.toArray(new Field[0]), fields.size(), timestamp,
+                timestampPrecision);
+    }
+
+    private DataPoint(SeriesKey seriesKey, Field[] fields, int fieldCount, long timestamp,
+                      TimestampPrecision timestampPrecision) {
+        this.seriesKey = seriesKey;
         this.fields = fields;
+        this.fieldCount = fieldCount;
         this.timestamp = timestamp;
         this.timestampPrecision = timestampPrecision;
     }
 
     public String getMeasurementName() {
-        return measurementName;
+        return seriesKey.getMeasurementName();
     }
 
+    /**
+     * Get the tags of this data point.
+     * @return An unmodifiable list of {@link Tag Tags}, sorted by name.
+     */
     public List<Tag> getTags() {
-        return Collections.unmodifiableList(tags);
+        return seriesKey.getTags().asList();
+    }
+
+    /**
+     * Get the key of the series to which this data point belongs.
+     * @return A {@link SeriesKey}.
+     */
+    public SeriesKey getSeriesKey() {
+        return seriesKey;
     }
 
     public List<Field> getFields() {
-        return Collections.unmodifiableList(fields);
+        return Collections.unmodifiableList(Arrays.asList(fields).subList(0, fieldCount));
     }
 
     public long getTimestamp() {
@@ -76,93 +91,250 @@ public class DataPoint {
      *     https://influxdb.com/docs/v0.9/write_protocols/line.html</a>
      */
     public String lineProtocolString() {
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        writeLineProtocol(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Append the InfluxDB line protocol representation of this data point to a buffer.
+     * @param buffer The buffer to which this data point should be written.
+     * @see #lineProtocolString()
+     */
+    public void writeLineProtocol(LineProtocolBuffer buffer) {
         // The line protocol string is made up of 3 "sections":
-        // 1) The "key" section, a comma-separated list of measurement name and tag strings.
-        Stream<String> tagStringsSeq = tags.stream().map(Tag::lineProtocolString);
-        String escapedMeasurementName = LineProtocolStringUtils.escapeSpacesAndCommas(measurementName);
-        String keyString = Stream.concat(Stream.of(escapedMeasurementName), tagStringsSeq)
-                .collect(Collectors.joining(","));
+        // 1) The "key" section, a comma-separated list of measurement name and tag strings. Since the same series are
+        //    typically written over and over, the encoded key is memoized by the default SeriesKeyCache.
+        SeriesKeyCache.getDefault().writeSeriesKey(seriesKey, buffer);
+        writeFieldsAndTimestamp(fields, fieldCount, timestamp, buffer);
+    }
+
+    /**
+     * Append the fields and timestamp sections of a line protocol string to a buffer that already contains the key
+     * section.
+     * @param fields The fields array.
+     * @param fieldCount The number of fields in {@code fields}.
+     * @param timestamp The timestamp.
+     * @param buffer The buffer.
+     */
+    private static void writeFieldsAndTimestamp(Field[] fields, int fieldCount, long timestamp,
+                                                LineProtocolBuffer buffer) {
+        buffer.writeByte(' ');
 
         // 2) The "fields" section, a comma-separated list of field strings.
-        String fieldsString = fields.stream()
-                .map(Field::lineProtocolString)
-                .collect(Collectors.joining(","));
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                buffer.writeByte(',');
+            }
+            fields[i].writeLineProtocol(buffer);
+        }
+        buffer.writeByte(' ');
 
         // 3) The timestamp section, which is the string value of the timestamp, in "duration since epoch", where the
         //    duration's precision is either nanoseconds, microseconds, milliseconds, seconds, minutes, or hours. The
         //    duration's precision is determined by the timestampPrecision member.
-        String timestampString = String.valueOf(timestamp);
-
-        // The three line protocol sections are joined with spaces to create a complete data point.
-        return String.join(" ", keyString, fieldsString, timestampString);
+        buffer.writeLong(timestamp);
     }
 
     /**
      * Class used to build a {@link DataPoint}.
+     * <p>
+     * A builder can be reused for any number of points by calling {@link #reset(String)} between them (see also
+     * {@link #forCurrentThread(String)}). {@link #build()} hands the builder's tag and field arrays to the point
+     * rather than copying them; the builder only allocates new arrays if it's modified again before being reset.
+     * Points can also be encoded straight into a {@link LineProtocolBuffer} with {@link #writeLineProtocol}, without
+     * building a {@link DataPoint} at all.
+     * <p>
+     * Note: Builders are not thread-safe.
      */
     public static class Builder {
         
-        private final String measurementName;
-        private final List<Tag> tags = new ArrayList<>();
-        private final List<Field> fields = new ArrayList<>();
-        private long timestamp = Instant.now().toEpochMilli();
+        private static final int INITIAL_CAPACITY = 4;
+        private static final ThreadLocal<Builder> THREAD_LOCAL_BUILDER =
+                ThreadLocal.withInitial(() -> new Builder("measurementName"));
+        
+        private String measurementName;
+        private Tag[] tags = new Tag[INITIAL_CAPACITY];
+        private int tagCount;
+        private Field[] fields = new Field[INITIAL_CAPACITY];
+        private int fieldCount;
+        // True if the tags/fields arrays have been handed to a built DataPoint, and must be copied before modifying.
+        private boolean arraysShared;
+        private boolean timestampSet;
+        private long timestamp;
         private TimestampPrecision timestampPrecision = TimestampPrecision.MILLISECONDS;
+        private TagInterner tagInterner;
         
         public Builder(String measurementName) {
             checkArgument(!Strings.isNullOrEmpty(measurementName), "measurementName can't be null or empty");
             this.measurementName = measurementName;
         }
 
+        /**
+         * Get the calling thread's reusable builder, reset for a new point. The builder must not be used after
+         * calling this method again on the same thread.
+         * @param measurementName The measurement name of the next point.
+         * @return A {@link Builder}.
+         */
+        public static Builder forCurrentThread(String measurementName) {
+            return THREAD_LOCAL_BUILDER.get().reset(measurementName);
+        }
+
+        /**
+         * Reset this builder so it can be reused to build a new point. The builder's {@link TagInterner}, if any, is
+         * kept.
+         * @param measurementName The measurement name of the next point.
+         * @return This builder.
+         */
+        public Builder reset(String measurementName) {
+            checkArgument(!Strings.isNullOrEmpty(measurementName), "measurementName can't be null or empty");
+            this.measurementName = measurementName;
+            if (arraysShared) {
+                // The arrays now belong to a DataPoint, so allocate new ones the next time a tag/field is added.
+                tags = new Tag[tags.length];
+                fields = new Field[fields.length];
+                arraysShared = false;
+            } else {
+                // Clear references so the previous point's tags/fields can be garbage collected.
+                Arrays.fill(tags, 0, tagCount, null);
+                Arrays.fill(fields, 0, fieldCount, null);
+            }
+            tagCount = 0;
+            fieldCount = 0;
+            timestampSet = false;
+            timestampPrecision = TimestampPrecision.MILLISECONDS;
+            return this;
+        }
+
+        /**
+         * Use a {@link TagInterner} to get shared {@link Tag} instances for tags added with
+         * {@link #withTag(String, String)} rather than creating a new {@link Tag} for each one.
+         * @param tagInterner The {@link TagInterner}.
+         * @return This builder.
+         */
+        public Builder withTagInterner(TagInterner tagInterner) {
+            checkArgument(tagInterner != null, "tagInterner can't be null");
+            this.tagInterner = tagInterner;
+            return this;
+        }
+
         public Builder withTag(String tagName, String tagValue) {
-            tags.add(new Tag(tagName, tagValue));
+            return withTag(tagInterner != null ? tagInterner.intern(tagName, tagValue) : new Tag(tagName, tagValue));
+        }
+
+        public Builder withTag(Tag tag) {
+            checkArgument(tag != null, "tag can't be null");
+            unshareArrays();
+            if (tagCount == tags.length) {
+                tags = Arrays.copyOf(tags, Math.max(INITIAL_CAPACITY, tagCount * 2));
+            }
+            tags[tagCount++] = tag;
             return this;
         }
 
         public Builder withField(String fieldName, String fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
-            return this;
+            return withField(new Field(fieldName, fieldValue));
         }
         
         public Builder withField(String fieldName, Integer fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
-            return this;
+            return withField(new Field(fieldName, fieldValue));
         }
 
         public Builder withField(String fieldName, Long fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
-            return this;
+            return withField(new Field(fieldName, fieldValue));
         }
 
         public Builder withField(String fieldName, Float fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
-            return this;
+            return withField(new Field(fieldName, fieldValue));
         }
         
         public Builder withField(String fieldName, Double fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
-            return this;
+            return withField(new Field(fieldName, fieldValue));
         }
         
         public Builder withField(String fieldName, Boolean fieldValue) {
-            fields.add(new Field(fieldName, fieldValue));
+            return withField(new Field(fieldName, fieldValue));
+        }
+
+        public Builder withField(Field field) {
+            checkArgument(field != null, "field can't be null");
+            unshareArrays();
+            if (fieldCount == fields.length) {
+                fields = Arrays.copyOf(fields, Math.max(INITIAL_CAPACITY, fieldCount * 2));
+            }
+            fields[fieldCount++] = field;
             return this;
         }
 
+        /**
+         * Set the timestamp of the point. If no timestamp is set, the current time (in milliseconds) is used.
+         * @param timestamp The timestamp.
+         * @param timestampPrecision The precision of {@code timestamp}.
+         * @return This builder.
+         */
         public Builder withTimestamp(long timestamp, TimestampPrecision timestampPrecision) {
             checkArgument(timestampPrecision != null, "timestampPrecision can't be null");
             this.timestamp = timestamp;
             this.timestampPrecision = timestampPrecision;
+            this.timestampSet = true;
             return this;
         }
 
         /**
-         * Build a {@link DataPoint} from this builder.
+         * Build a {@link DataPoint} from this builder. The point's tags are sorted by name, since InfluxDB can ingest
+         * points with sorted tags more efficiently.
          * @return A {@link DataPoint}.
+         * @throws IllegalArgumentException If more than one tag has the same name.
          */
         public DataPoint build() {
-            checkState(!fields.isEmpty(), "Can't build point without fields");
-            return new DataPoint(measurementName, new ArrayList<>(tags), new ArrayList<>(fields), timestamp,
-                    timestampPrecision);
+            checkState(fieldCount > 0, "Can't build point without fields");
+            SeriesKey seriesKey = new SeriesKey(measurementName, TagSet.wrap(tags, tagCount));
+            
+            // Hand the arrays to the point instead of copying them. They'll be copied if this builder is modified
+            // again before it's reset.
+            arraysShared = true;
+            return new DataPoint(seriesKey, fields, fieldCount, getTimestamp(), timestampPrecision);
+        }
+
+        /**
+         * Append the InfluxDB line protocol representation of the point being built to a buffer, without building a
+         * {@link DataPoint}. Use {@link LineProtocolBuffer#beginLine()} to separate points written to the same buffer.
+         * @param buffer The buffer to which the point should be written.
+         * @throws IllegalArgumentException If more than one tag has the same name.
+         * @see DataPoint#writeLineProtocol(LineProtocolBuffer)
+         */
+        public void writeLineProtocol(LineProtocolBuffer buffer) {
+            checkState(fieldCount > 0, "Can't write point without fields");
+            
+            // Sorting reorders the tags in place, so make sure a built point's tags aren't affected.
+            unshareArrays();
+            SeriesKey seriesKey = new SeriesKey(measurementName, TagSet.wrap(tags, tagCount));
+            SeriesKeyCache.getDefault().writeTransientSeriesKey(seriesKey, buffer);
+            writeFieldsAndTimestamp(fields, fieldCount, getTimestamp(), buffer);
+        }
+
+        /**
+         * Get the timestamp precision of the point being built.
+         * @return A {@link TimestampPrecision}.
+         */
+        public TimestampPrecision getTimestampPrecision() {
+            return timestampPrecision;
+        }
+
+        private long getTimestamp() {
+            return timestampSet ? timestamp : System.currentTimeMillis();
+        }
+
+        /**
+         * Copy the tags/fields arrays if they've been handed to a built {@link DataPoint}, so that they can be
+         * modified.
+         */
+        private void unshareArrays() {
+            if (arraysShared) {
+                tags = Arrays.copyOf(tags, tags.length);
+                fields = Arrays.copyOf(fields, fields.length);
+                arraysShared = false;
+            }
         }
         
     }
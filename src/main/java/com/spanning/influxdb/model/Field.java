@@ -17,17 +17,20 @@
 package com.spanning.influxdb.model;
 
 import com.google.common.base.Strings;
-import com.spanning.influxdb.util.LineProtocolStringUtils;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.nio.charset.StandardCharsets;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * Class representing a field of an InfluxDB data point.
+ * Note: InfluxDB doesn't accept NaN or infinite field values, so float/double fields must have finite values.
  */
 public class Field {
     
-    private static final String STRING_FIELD_VALUE_FORMAT = "\"%s\"";
-    private static final String INT_FIELD_VALUE_FORMAT = "%si";
+    private static final byte[] TRUE_BYTES = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE_BYTES = "false".getBytes(StandardCharsets.US_ASCII);
 
     private final String fieldName;
     private final Object fieldValue;
@@ -59,6 +62,10 @@ public class Field {
     Field(String fieldName, Object fieldValue) {
         checkArgument(!Strings.isNullOrEmpty(fieldName), "fieldName can't be null or empty");
         checkArgument(fieldValue != null, "fieldValue can't be null");
+        checkArgument(!(fieldValue instanceof Double) || Double.isFinite((Double) fieldValue),
+                "fieldValue must be finite");
+        checkArgument(!(fieldValue instanceof Float) || Float.isFinite((Float) fieldValue),
+                "fieldValue must be finite");
         this.fieldName = fieldName;
         this.fieldValue = fieldValue;
     }
@@ -78,22 +85,63 @@ public class Field {
      *     https://influxdb.com/docs/v0.9/write_protocols/line.html#fields</a>
      */
     public String lineProtocolString() {
-        String escapedFieldName = LineProtocolStringUtils.escapeSpacesAndCommas(fieldName);
-        return String.join("=", escapedFieldName, getFieldValueString());
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        writeLineProtocol(buffer);
+        return buffer.toString();
     }
 
-    private String getFieldValueString() {
+    /**
+     * Append the line protocol representation of this field to a buffer.
+     * @param buffer The buffer to which this field should be written.
+     * @see #lineProtocolString()
+     */
+    public void writeLineProtocol(LineProtocolBuffer buffer) {
+        buffer.writeEscapingSpacesAndCommas(fieldName).writeByte('=');
         if (fieldValue instanceof String) {
-            // The line protocol string for a string field value is the string wrapped in double quotes with quotes within
-            // the string escaped.
-            return String.format(STRING_FIELD_VALUE_FORMAT, LineProtocolStringUtils.escapeQuotes((String) fieldValue));
+            writeStringValue((String) fieldValue, buffer);
         } else if (fieldValue instanceof Integer || fieldValue instanceof Long) {
-            // Integers must be sent to InfluxDB with an "i" suffix. Otherwise, they'll be treated as floats.
-            return String.format(INT_FIELD_VALUE_FORMAT, fieldValue);
+            writeIntegerValue(((Number) fieldValue).longValue(), buffer);
+        } else if (fieldValue instanceof Double) {
+            writeFloatValue((Double) fieldValue, buffer);
+        } else if (fieldValue instanceof Float) {
+            // Format floats with the shortest decimal that identifies the float (rather than the widened double).
+            buffer.writeFloat((Float) fieldValue);
+        } else if (fieldValue instanceof Boolean) {
+            writeBooleanValue((Boolean) fieldValue, buffer);
         } else {
-            // For everything else (float types/booleans), use the string value of the field.
-            return String.valueOf(fieldValue);
+            buffer.writeUtf8(String.valueOf(fieldValue));
         }
     }
+
+    /**
+     * Write a float field value, which is formatted as the shortest decimal that rounds back to the same double.
+     */
+    static void writeFloatValue(double value, LineProtocolBuffer buffer) {
+        buffer.writeDouble(value);
+    }
+
+    /**
+     * Write an integer field value.
+     */
+    static void writeIntegerValue(long value, LineProtocolBuffer buffer) {
+        // Integers must be sent to InfluxDB with an "i" suffix. Otherwise, they'll be treated as floats.
+        buffer.writeLong(value).writeByte('i');
+    }
+
+    /**
+     * Write a string field value.
+     */
+    static void writeStringValue(String value, LineProtocolBuffer buffer) {
+        // The line protocol string for a string field value is the string wrapped in double quotes with quotes within
+        // the string escaped.
+        buffer.writeByte('"').writeEscapingQuotes(value).writeByte('"');
+    }
+
+    /**
+     * Write a boolean field value.
+     */
+    static void writeBooleanValue(boolean value, LineProtocolBuffer buffer) {
+        buffer.write(value ? TRUE_BYTES : FALSE_BYTES);
+    }
     
 }
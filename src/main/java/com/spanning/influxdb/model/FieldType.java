@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+/**
+ * Enum representing the type of an InfluxDB field value.
+ * @see <a href="https://influxdb.com/docs/v0.9/write_protocols/line.html#fields">
+ *     https://influxdb.com/docs/v0.9/write_protocols/line.html#fields</a>
+ */
+public enum FieldType {
+    
+    FLOAT,
+    INTEGER,
+    STRING,
+    BOOLEAN
+    
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.google.common.base.Strings;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Batch of data points of a single {@link PointTemplate}, stored as columns rather than as individual
+ * {@link DataPoint DataPoints}. Timestamps are stored in a {@code long[]} column, float fields in {@code double[]}
+ * columns, integer/boolean fields in {@code long[]} columns, and each tag as an {@code int[]} column of indexes into
+ * a dictionary of that tag's distinct (pre-escaped) values, so each point only costs a few bytes per tag/field.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * PointBatch batch = new PointBatch(template);
+ * for (Sample sample : samples) {
+ *     int row = batch.addRow(sample.getTimestamp());
+ *     batch.setTag(row, 0, sample.getHost());
+ *     batch.setFloat(row, 0, sample.getUsage());
+ * }
+ * client.writeBatch("databaseName", null, batch);
+ * }</pre>
+ * Tags/fields that aren't set for a row are omitted from that point. Note: This class is not thread-safe.
+ */
+public class PointBatch {
+    
+    private static final int DEFAULT_INITIAL_CAPACITY = 64;
+    
+    private final PointTemplate template;
+    private long[] timestamps;
+    // Tag value codes, indexed by tag index and then row. 0 means no value; otherwise, the value is at code - 1 in the
+    // tag's dictionary.
+    private final int[][] tagCodes;
+    private final TagDictionary[] tagDictionaries;
+    // Field columns, indexed by field index and then row. Only the column array for the field's type is non-null.
+    private final double[][] floatColumns;
+    private final long[][] integerColumns;
+    private final String[][] stringColumns;
+    // Bitmaps of the rows that have a value for each field, indexed by field index.
+    private final long[][] fieldPresence;
+    private int size;
+
+    public PointBatch(PointTemplate template) {
+        this(template, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a {@link PointBatch}.
+     * @param template The template of the points in the batch.
+     * @param initialCapacity The number of points the batch can hold before its columns need to grow.
+     */
+    public PointBatch(PointTemplate template, int initialCapacity) {
+        checkArgument(template != null, "template can't be null");
+        checkArgument(initialCapacity > 0, "initialCapacity must be positive");
+        this.template = template;
+        this.timestamps = new long[initialCapacity];
+        
+        int tagCount = template.getTagNames().size();
+        this.tagCodes = new int[tagCount][initialCapacity];
+        this.tagDictionaries = new TagDictionary[tagCount];
+        Arrays.setAll(tagDictionaries, tagIndex -> new TagDictionary());
+        
+        int fieldCount = template.getFieldNames().size();
+        this.floatColumns = new double[fieldCount][];
+        this.integerColumns = new long[fieldCount][];
+        this.stringColumns = new String[fieldCount][];
+        this.fieldPresence = new long[fieldCount][presenceLength(initialCapacity)];
+        for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+            switch (template.getFieldType(fieldIndex)) {
+                case FLOAT:
+                    floatColumns[fieldIndex] = new double[initialCapacity];
+                    break;
+                case STRING:
+                    stringColumns[fieldIndex] = new String[initialCapacity];
+                    break;
+                default:
+                    integerColumns[fieldIndex] = new long[initialCapacity];
+                    break;
+            }
+        }
+    }
+
+    public PointTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Get the number of points in this batch.
+     * @return The number of points.
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add a point to this batch.
+     * @param timestamp The timestamp of the point, in the template's precision.
+     * @return The row index of the point, used to set its tag/field values.
+     */
+    public int addRow(long timestamp) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[size] = timestamp;
+        return size++;
+    }
+
+    public void setTag(int row, int tagIndex, String value) {
+        checkElementIndex(row, size, "row");
+        checkElementIndex(tagIndex, tagCodes.length, "tagIndex");
+        checkArgument(!Strings.isNullOrEmpty(value), "value can't be null or empty");
+        tagCodes[tagIndex][row] = tagDictionaries[tagIndex].getCode(value);
+    }
+
+    public void setFloat(int row, int fieldIndex, double value) {
+        checkField(row, fieldIndex, FieldType.FLOAT);
+        checkArgument(Double.isFinite(value), "value must be finite");
+        floatColumns[fieldIndex][row] = value;
+        markFieldPresent(row, fieldIndex);
+    }
+
+    public void setInteger(int row, int fieldIndex, long value) {
+        checkField(row, fieldIndex, FieldType.INTEGER);
+        integerColumns[fieldIndex][row] = value;
+        markFieldPresent(row, fieldIndex);
+    }
+
+    public void setBoolean(int row, int fieldIndex, boolean value) {
+        checkField(row, fieldIndex, FieldType.BOOLEAN);
+        integerColumns[fieldIndex][row] = value ? 1L : 0L;
+        markFieldPresent(row, fieldIndex);
+    }
+
+    public void setString(int row, int fieldIndex, String value) {
+        checkField(row, fieldIndex, FieldType.STRING);
+        checkArgument(value != null, "value can't be null");
+        stringColumns[fieldIndex][row] = value;
+        markFieldPresent(row, fieldIndex);
+    }
+
+    /**
+     * Append the InfluxDB line protocol representation of every point in this batch to a buffer, one point per line.
+     * @param buffer The buffer to which the points should be written.
+     * @throws IllegalStateException If a point has no fields, in which case nothing is appended to the buffer.
+     */
+    public void writeLineProtocol(LineProtocolBuffer buffer) {
+        int sizeBefore = buffer.size();
+        int tagCount = tagCodes.length;
+        int fieldCount = fieldPresence.length;
+        for (int row = 0; row < size; row++) {
+            buffer.beginLine();
+            template.writeMeasurementName(buffer);
+            for (int position = 0; position < tagCount; position++) {
+                int tagIndex = template.getSortedTagIndex(position);
+                int code = tagCodes[tagIndex][row];
+                if (code != 0) {
+                    template.writeTagPrefix(tagIndex, buffer);
+                    buffer.write(tagDictionaries[tagIndex].getEncodedValue(code));
+                }
+            }
+            
+            char separator = ' ';
+            for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+                if (isFieldPresent(row, fieldIndex)) {
+                    buffer.writeByte(separator);
+                    template.writeFieldPrefix(fieldIndex, buffer);
+                    writeFieldValue(row, fieldIndex, buffer);
+                    separator = ',';
+                }
+            }
+            if (separator == ' ') {
+                // Don't leave the earlier rows, or this row's measurement and tags, in the caller's buffer.
+                buffer.truncate(sizeBefore);
+                throw new IllegalStateException(String.format("Point at row %d has no fields", row));
+            }
+            buffer.writeByte(' ').writeLong(timestamps[row]);
+        }
+    }
+
+    /**
+     * Remove all points from this batch, keeping its allocated columns so it can be reused.
+     */
+    public void clear() {
+        for (int[] codes : tagCodes) {
+            Arrays.fill(codes, 0, size, 0);
+        }
+        for (TagDictionary tagDictionary : tagDictionaries) {
+            tagDictionary.clear();
+        }
+        for (String[] strings : stringColumns) {
+            if (strings != null) {
+                Arrays.fill(strings, 0, size, null);
+            }
+        }
+        for (long[] presence : fieldPresence) {
+            Arrays.fill(presence, 0L);
+        }
+        size = 0;
+    }
+
+    private void writeFieldValue(int row, int fieldIndex, LineProtocolBuffer buffer) {
+        switch (template.getFieldType(fieldIndex)) {
+            case FLOAT:
+                Field.writeFloatValue(floatColumns[fieldIndex][row], buffer);
+                break;
+            case INTEGER:
+                Field.writeIntegerValue(integerColumns[fieldIndex][row], buffer);
+                break;
+            case BOOLEAN:
+                Field.writeBooleanValue(integerColumns[fieldIndex][row] != 0L, buffer);
+                break;
+            default:
+                Field.writeStringValue(stringColumns[fieldIndex][row], buffer);
+                break;
+        }
+    }
+
+    private void checkField(int row, int fieldIndex, FieldType fieldType) {
+        checkElementIndex(row, size, "row");
+        checkElementIndex(fieldIndex, fieldPresence.length, "fieldIndex");
+        checkArgument(template.getFieldType(fieldIndex) == fieldType, "Field %s is of type %s, not %s",
+                template.getFieldNames().get(fieldIndex), template.getFieldType(fieldIndex), fieldType);
+    }
+
+    private void markFieldPresent(int row, int fieldIndex) {
+        fieldPresence[fieldIndex][row >>> 6] |= 1L << row;
+    }
+
+    private boolean isFieldPresent(int row, int fieldIndex) {
+        return (fieldPresence[fieldIndex][row >>> 6] & (1L << row)) != 0L;
+    }
+
+    /**
+     * Double the capacity of every column.
+     */
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        for (int tagIndex = 0; tagIndex < tagCodes.length; tagIndex++) {
+            tagCodes[tagIndex] = Arrays.copyOf(tagCodes[tagIndex], capacity);
+        }
+        for (int fieldIndex = 0; fieldIndex < fieldPresence.length; fieldIndex++) {
+            fieldPresence[fieldIndex] = Arrays.copyOf(fieldPresence[fieldIndex], presenceLength(capacity));
+            if (floatColumns[fieldIndex] != null) {
+                floatColumns[fieldIndex] = Arrays.copyOf(floatColumns[fieldIndex], capacity);
+            } else if (stringColumns[fieldIndex] != null) {
+                stringColumns[fieldIndex] = Arrays.copyOf(stringColumns[fieldIndex], capacity);
+            } else {
+                integerColumns[fieldIndex] = Arrays.copyOf(integerColumns[fieldIndex], capacity);
+            }
+        }
+    }
+
+    private static int presenceLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * Dictionary of the distinct values of a tag in a batch, each escaped and encoded once.
+     */
+    private static class TagDictionary {
+        
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+        private final List<byte[]> encodedValues = new ArrayList<>();
+
+        int getCode(String value) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                encodedValues.add(new LineProtocolBuffer(value.length()).writeEscapingSpacesAndCommas(value)
+                        .toByteArray());
+                code = encodedValues.size();
+                codesByValue.put(value, code);
+            }
+            return code;
+        }
+
+        byte[] getEncodedValue(int code) {
+            return encodedValues.get(code - 1);
+        }
+
+        void clear() {
+            codesByValue.clear();
+            encodedValues.clear();
+        }
+        
+    }
+    
+}
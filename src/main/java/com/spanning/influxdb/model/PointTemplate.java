@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.google.common.base.Strings;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Schema for data points of a measurement with a fixed set of tag names and typed fields. The measurement name, tag
+ * names and field names are escaped and encoded once when the template is built, so encoding a point with a
+ * {@link PointWriter} only needs to escape its tag/field values and format its numbers.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * PointTemplate template = new PointTemplate.Builder("cpu")
+ *         .withTag("host")
+ *         .withTag("region")
+ *         .withField("usage", FieldType.FLOAT)
+ *         .withField("processes", FieldType.INTEGER)
+ *         .build();
+ * 
+ * LineProtocolBuffer lines = new LineProtocolBuffer();
+ * PointTemplate.PointWriter writer = template.newPointWriter(lines);
+ * writer.setTag(0, "server01")
+ *         .setTag(1, "us-east")
+ *         .setFloat(0, 0.64)
+ *         .setInteger(1, 120)
+ *         .write(1444940098741L);
+ * client.writeLineProtocol("databaseName", null, template.getTimestampPrecision(), lines);
+ * }</pre>
+ * Note: This class is thread-safe, but {@link PointWriter} is not.
+ */
+public class PointTemplate {
+    
+    private final String measurementName;
+    private final List<String> tagNames;
+    private final List<String> fieldNames;
+    private final FieldType[] fieldTypes;
+    private final TimestampPrecision timestampPrecision;
+    private final byte[] encodedMeasurementName;
+    // The tag indexes, in the canonical (sorted by name) order in which tags are written.
+    private final int[] sortedTagIndexes;
+    // The encoded ",tagName=" prefix of each tag, indexed by tag index.
+    private final byte[][] encodedTagPrefixes;
+    // The encoded "fieldName=" prefix of each field, indexed by field index.
+    private final byte[][] encodedFieldPrefixes;
+
+    private PointTemplate(Builder builder) {
+        this.measurementName = builder.measurementName;
+        this.tagNames = Collections.unmodifiableList(new ArrayList<>(builder.tagNames));
+        this.fieldNames = Collections.unmodifiableList(new ArrayList<>(builder.fieldNames));
+        this.fieldTypes = builder.fieldTypes.toArray(new FieldType[0]);
+        this.timestampPrecision = builder.timestampPrecision;
+        this.encodedMeasurementName = new LineProtocolBuffer()
+                .writeEscapingSpacesAndCommas(measurementName)
+                .toByteArray();
+        
+        // Sort tag indexes by tag name, since tags should be written in canonical order.
+        this.sortedTagIndexes = IntStream.range(0, tagNames.size())
+                .boxed()
+                .sorted((index1, index2) -> TagSet.compareNames(tagNames.get(index1), tagNames.get(index2)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.encodedTagPrefixes = tagNames.stream()
+                .map(tagName -> new LineProtocolBuffer()
+                        .writeByte(',')
+                        .writeEscapingSpacesAndCommas(tagName)
+                        .writeByte('=')
+                        .toByteArray())
+                .toArray(byte[][]::new);
+        this.encodedFieldPrefixes = fieldNames.stream()
+                .map(fieldName -> new LineProtocolBuffer()
+                        .writeEscapingSpacesAndCommas(fieldName)
+                        .writeByte('=')
+                        .toByteArray())
+                .toArray(byte[][]::new);
+    }
+
+    public String getMeasurementName() {
+        return measurementName;
+    }
+
+    /**
+     * Get the tag names of this template.
+     * @return An unmodifiable list of tag names, in the order they were declared (i.e., by tag index).
+     */
+    public List<String> getTagNames() {
+        return tagNames;
+    }
+
+    /**
+     * Get the field names of this template.
+     * @return An unmodifiable list of field names, in the order they were declared (i.e., by field index).
+     */
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * Get the type of a field.
+     * @param fieldIndex The index of the field.
+     * @return The field's {@link FieldType}.
+     */
+    public FieldType getFieldType(int fieldIndex) {
+        checkElementIndex(fieldIndex, fieldTypes.length, "fieldIndex");
+        return fieldTypes[fieldIndex];
+    }
+
+    public TimestampPrecision getTimestampPrecision() {
+        return timestampPrecision;
+    }
+
+    /**
+     * Create a {@link PointWriter} that encodes points of this template into a buffer.
+     * @param buffer The buffer to which points should be written.
+     * @return A {@link PointWriter}.
+     */
+    public PointWriter newPointWriter(LineProtocolBuffer buffer) {
+        checkArgument(buffer != null, "buffer can't be null");
+        return new PointWriter(buffer);
+    }
+
+    /**
+     * Write the encoded measurement name to a buffer.
+     */
+    void writeMeasurementName(LineProtocolBuffer buffer) {
+        buffer.write(encodedMeasurementName);
+    }
+
+    /**
+     * Get the index of the tag that should be written at a position in canonical (sorted by name) order.
+     */
+    int getSortedTagIndex(int position) {
+        return sortedTagIndexes[position];
+    }
+
+    /**
+     * Write the ",tagName=" prefix of a tag to a buffer.
+     */
+    void writeTagPrefix(int tagIndex, LineProtocolBuffer buffer) {
+        buffer.write(encodedTagPrefixes[tagIndex]);
+    }
+
+    /**
+     * Write the "fieldName=" prefix of a field to a buffer.
+     */
+    void writeFieldPrefix(int fieldIndex, LineProtocolBuffer buffer) {
+        buffer.write(encodedFieldPrefixes[fieldIndex]);
+    }
+
+    private void checkFieldType(int fieldIndex, FieldType fieldType) {
+        checkElementIndex(fieldIndex, fieldTypes.length, "fieldIndex");
+        checkArgument(fieldTypes[fieldIndex] == fieldType, "Field %s is of type %s, not %s",
+                fieldNames.get(fieldIndex), fieldTypes[fieldIndex], fieldType);
+    }
+
+    /**
+     * Class used to encode points of a {@link PointTemplate} into a buffer, one point at a time. Tag/field values are
+     * set by index (the order in which the tags/fields were declared), and then the point is written with
+     * {@link #write(long)}, which also clears the values for the next point. Tags/fields that haven't been set are
+     * omitted from the point.
+     * <p>
+     * Note: This class is not thread-safe.
+     */
+    public class PointWriter {
+        
+        private final LineProtocolBuffer buffer;
+        private final String[] tagValues = new String[tagNames.size()];
+        private final boolean[] fieldSet = new boolean[fieldTypes.length];
+        private final long[] numericFieldValues = new long[fieldTypes.length];
+        private final String[] stringFieldValues = new String[fieldTypes.length];
+        private int fieldSetCount;
+
+        private PointWriter(LineProtocolBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public PointWriter setTag(int tagIndex, String value) {
+            checkElementIndex(tagIndex, tagValues.length, "tagIndex");
+            checkArgument(!Strings.isNullOrEmpty(value), "value can't be null or empty");
+            tagValues[tagIndex] = value;
+            return this;
+        }
+
+        public PointWriter setFloat(int fieldIndex, double value) {
+            checkFieldType(fieldIndex, FieldType.FLOAT);
+            checkArgument(Double.isFinite(value), "value must be finite");
+            return setNumericField(fieldIndex, Double.doubleToRawLongBits(value));
+        }
+
+        public PointWriter setInteger(int fieldIndex, long value) {
+            checkFieldType(fieldIndex, FieldType.INTEGER);
+            return setNumericField(fieldIndex, value);
+        }
+
+        public PointWriter setBoolean(int fieldIndex, boolean value) {
+            checkFieldType(fieldIndex, FieldType.BOOLEAN);
+            return setNumericField(fieldIndex, value ? 1L : 0L);
+        }
+
+        public PointWriter setString(int fieldIndex, String value) {
+            checkFieldType(fieldIndex, FieldType.STRING);
+            checkArgument(value != null, "value can't be null");
+            stringFieldValues[fieldIndex] = value;
+            markFieldSet(fieldIndex);
+            return this;
+        }
+
+        /**
+         * Write the point with the tag/field values that have been set to the buffer, starting a new line if the
+         * buffer isn't empty, and clear the values.
+         * @param timestamp The timestamp of the point, in the template's precision.
+         */
+        public void write(long timestamp) {
+            checkState(fieldSetCount > 0, "Can't write point without fields");
+            buffer.beginLine();
+            writeMeasurementName(buffer);
+            for (int position = 0; position < tagValues.length; position++) {
+                int tagIndex = getSortedTagIndex(position);
+                if (tagValues[tagIndex] != null) {
+                    writeTagPrefix(tagIndex, buffer);
+                    buffer.writeEscapingSpacesAndCommas(tagValues[tagIndex]);
+                }
+            }
+            
+            char separator = ' ';
+            for (int fieldIndex = 0; fieldIndex < fieldTypes.length; fieldIndex++) {
+                if (fieldSet[fieldIndex]) {
+                    buffer.writeByte(separator);
+                    writeFieldPrefix(fieldIndex, buffer);
+                    writeFieldValue(fieldIndex);
+                    separator = ',';
+                }
+            }
+            buffer.writeByte(' ').writeLong(timestamp);
+            clear();
+        }
+
+        private void writeFieldValue(int fieldIndex) {
+            switch (fieldTypes[fieldIndex]) {
+                case FLOAT:
+                    Field.writeFloatValue(Double.longBitsToDouble(numericFieldValues[fieldIndex]), buffer);
+                    break;
+                case INTEGER:
+                    Field.writeIntegerValue(numericFieldValues[fieldIndex], buffer);
+                    break;
+                case BOOLEAN:
+                    Field.writeBooleanValue(numericFieldValues[fieldIndex] != 0L, buffer);
+                    break;
+                default:
+                    Field.writeStringValue(stringFieldValues[fieldIndex], buffer);
+                    break;
+            }
+        }
+
+        private PointWriter setNumericField(int fieldIndex, long value) {
+            numericFieldValues[fieldIndex] = value;
+            markFieldSet(fieldIndex);
+            return this;
+        }
+
+        private void markFieldSet(int fieldIndex) {
+            if (!fieldSet[fieldIndex]) {
+                fieldSet[fieldIndex] = true;
+                fieldSetCount++;
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(tagValues, null);
+            Arrays.fill(fieldSet, false);
+            Arrays.fill(stringFieldValues, null);
+            fieldSetCount = 0;
+        }
+        
+    }
+
+    /**
+     * Class used to build a {@link PointTemplate}.
+     */
+    public static class Builder {
+        
+        private final String measurementName;
+        private final List<String> tagNames = new ArrayList<>();
+        private final List<String> fieldNames = new ArrayList<>();
+        private final List<FieldType> fieldTypes = new ArrayList<>();
+        private TimestampPrecision timestampPrecision = TimestampPrecision.MILLISECONDS;
+
+        public Builder(String measurementName) {
+            checkArgument(!Strings.isNullOrEmpty(measurementName), "measurementName can't be null or empty");
+            this.measurementName = measurementName;
+        }
+
+        /**
+         * Declare a tag. Tags are indexed in the order they're declared.
+         * @param tagName The tag name.
+         * @return This builder.
+         */
+        public Builder withTag(String tagName) {
+            checkArgument(!Strings.isNullOrEmpty(tagName), "tagName can't be null or empty");
+            checkArgument(!tagNames.contains(tagName), "Duplicate tag name: %s", tagName);
+            tagNames.add(tagName);
+            return this;
+        }
+
+        /**
+         * Declare a field. Fields are indexed in the order they're declared.
+         * @param fieldName The field name.
+         * @param fieldType The type of the field's values.
+         * @return This builder.
+         */
+        public Builder withField(String fieldName, FieldType fieldType) {
+            checkArgument(!Strings.isNullOrEmpty(fieldName), "fieldName can't be null or empty");
+            checkArgument(fieldType != null, "fieldType can't be null");
+            checkArgument(!fieldNames.contains(fieldName), "Duplicate field name: %s", fieldName);
+            fieldNames.add(fieldName);
+            fieldTypes.add(fieldType);
+            return this;
+        }
+
+        public Builder withTimestampPrecision(TimestampPrecision timestampPrecision) {
+            checkArgument(timestampPrecision != null, "timestampPrecision can't be null");
+            this.timestampPrecision = timestampPrecision;
+            return this;
+        }
+
+        /**
+         * Build a {@link PointTemplate} from this builder.
+         * @return A {@link PointTemplate}.
+         */
+        public PointTemplate build() {
+            checkState(!fieldNames.isEmpty(), "Can't build template without fields");
+            return new PointTemplate(this);
+        }
+        
+    }
+    
+}
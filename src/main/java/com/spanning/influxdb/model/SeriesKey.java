@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.google.common.base.Strings;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The identity of an InfluxDB series: a measurement name and its canonically ordered {@link TagSet}. Two data points
+ * belong to the same series if and only if their series keys are equal, so a {@link SeriesKey} can be used to cache,
+ * aggregate or shard data by series.
+ */
+public class SeriesKey {
+    
+    private final String measurementName;
+    private final TagSet tags;
+    private final int hashCode;
+
+    public SeriesKey(String measurementName, TagSet tags) {
+        checkArgument(!Strings.isNullOrEmpty(measurementName), "measurementName can't be null or empty");
+        checkArgument(tags != null, "tags can't be null");
+        this.measurementName = measurementName;
+        this.tags = tags;
+        this.hashCode = 31 * measurementName.hashCode() + tags.hashCode();
+    }
+
+    public String getMeasurementName() {
+        return measurementName;
+    }
+
+    public TagSet getTags() {
+        return tags;
+    }
+
+    /**
+     * Get a copy of this series key that doesn't share any mutable state (i.e., the backing array of its tags).
+     * @return A {@link SeriesKey}.
+     */
+    SeriesKey copy() {
+        return new SeriesKey(measurementName, tags.copy());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey other = (SeriesKey) o;
+        return hashCode == other.hashCode && measurementName.equals(other.measurementName) && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+    
+}
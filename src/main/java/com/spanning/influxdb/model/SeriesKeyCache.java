@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import com.spanning.influxdb.util.LineProtocolStringUtils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded, thread-safe cache of encoded {@link SeriesKey series keys} (the escaped measurement name and tags of a
+ * data point, e.g., "measurementName,tagName=tagValue"). Repeat series are encoded with a single hash lookup and an
+ * array copy instead of escaping and joining the measurement name and every tag again. The least recently used series
+ * keys are evicted once the cache reaches its maximum size, so a cardinality explosion can't grow the cache without
+ * bound.
+ */
+public class SeriesKeyCache {
+
+    /**
+     * The maximum size of the default cache used by {@link DataPoint#lineProtocolString()}.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+    
+    private static final SeriesKeyCache DEFAULT = new SeriesKeyCache(DEFAULT_MAXIMUM_SIZE);
+    
+    private final Cache<SeriesKey, byte[]> cache;
+
+    /**
+     * Create a {@link SeriesKeyCache}.
+     * @param maximumSize The maximum number of series keys to cache. A maximum size of 0 disables caching.
+     */
+    public SeriesKeyCache(long maximumSize) {
+        checkArgument(maximumSize >= 0, "maximumSize can't be negative");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the default cache shared by all {@link DataPoint DataPoints}.
+     * @return The default {@link SeriesKeyCache}.
+     */
+    public static SeriesKeyCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Append an encoded series key to a buffer.
+     * @param seriesKey The {@link SeriesKey}.
+     * @param buffer The buffer to which the series key should be written.
+     */
+    public void writeSeriesKey(SeriesKey seriesKey, LineProtocolBuffer buffer) {
+        buffer.write(getEncodedSeriesKey(seriesKey));
+    }
+
+    /**
+     * Get an encoded series key, encoding and caching it if it isn't already cached.
+     * Note: The returned array is shared and must not be modified.
+     * @param seriesKey The {@link SeriesKey}.
+     * @return The UTF-8 encoded series key.
+     */
+    byte[] getEncodedSeriesKey(SeriesKey seriesKey) {
+        return getEncodedSeriesKey(seriesKey, false);
+    }
+
+    /**
+     * Append an encoded series key whose tags are backed by an array that may be modified later (e.g., the tags of a
+     * reused {@link DataPoint.Builder}) to a buffer. If the series key isn't cached, a copy of it is cached.
+     * @param seriesKey The {@link SeriesKey}.
+     * @param buffer The buffer to which the series key should be written.
+     */
+    void writeTransientSeriesKey(SeriesKey seriesKey, LineProtocolBuffer buffer) {
+        buffer.write(getEncodedSeriesKey(seriesKey, true));
+    }
+
+    private byte[] getEncodedSeriesKey(SeriesKey seriesKey, boolean transientKey) {
+        byte[] encodedSeriesKey = cache.getIfPresent(seriesKey);
+        if (encodedSeriesKey == null) {
+            // Racing threads may both encode the same series key, but they'll produce identical bytes, so it doesn't
+            // matter which one ends up cached.
+            encodedSeriesKey = encode(seriesKey);
+            cache.put(transientKey ? seriesKey.copy() : seriesKey, encodedSeriesKey);
+        }
+        return encodedSeriesKey;
+    }
+
+    /**
+     * Get the approximate number of series keys in this cache.
+     * @return The number of cached series keys.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get hit/miss/eviction statistics for this cache.
+     * @return A {@link CacheStats}.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Discard all cached series keys.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Encode a series key, which is the escaped measurement name and tag strings joined with commas.
+     * @param seriesKey The {@link SeriesKey}.
+     * @return The UTF-8 encoded series key.
+     */
+    private static byte[] encode(SeriesKey seriesKey) {
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        buffer.writeUtf8(LineProtocolStringUtils.escapeSpacesAndCommas(seriesKey.getMeasurementName()));
+        TagSet tags = seriesKey.getTags();
+        for (int i = 0; i < tags.size(); i++) {
+            buffer.writeByte(',').write(tags.get(i).lineProtocolBytes());
+        }
+        return buffer.toByteArray();
+    }
+    
+}
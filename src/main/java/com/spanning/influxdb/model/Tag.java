@@ -19,6 +19,9 @@ package com.spanning.influxdb.model;
 import com.google.common.base.Strings;
 import com.spanning.influxdb.util.LineProtocolStringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
 import static com.google.common.base.Preconditions.checkArgument;
 
 /**
@@ -28,6 +31,7 @@ public class Tag {
     
     private final String name;
     private final String value;
+    private volatile byte[] lineProtocolBytes;
 
     public Tag(String name, String value) {
         checkArgument(!Strings.isNullOrEmpty(name), "name can't be null or empty");
@@ -55,5 +59,37 @@ public class Tag {
         String escapedValue = LineProtocolStringUtils.escapeSpacesAndCommas(value);
         return String.join("=", escapedName, escapedValue);
     }
+
+    /**
+     * Get the UTF-8 encoded line protocol string of this tag, which is computed once and then cached.
+     * Note: The returned array is shared and must not be modified.
+     * @return The encoded line protocol string.
+     */
+    byte[] lineProtocolBytes() {
+        byte[] bytes = lineProtocolBytes;
+        if (bytes == null) {
+            // Racing threads may both encode this tag, but they'll produce identical bytes.
+            bytes = lineProtocolString().getBytes(StandardCharsets.UTF_8);
+            lineProtocolBytes = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Tag)) {
+            return false;
+        }
+        Tag other = (Tag) o;
+        return name.equals(other.name) && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, value);
+    }
     
 }
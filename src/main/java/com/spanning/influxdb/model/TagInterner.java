@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded, thread-safe dictionary of shared {@link Tag} instances. Workloads that add the same few thousand tags to
+ * every point can intern their tags to avoid allocating a new {@link Tag} (and encoding it again) for every point.
+ * Interned tags share their name string and have their escaped line protocol bytes computed up front.
+ * <p>
+ * Tags are grouped by name, and both the number of tag names and the number of values per tag name are bounded, with
+ * the least recently used entries evicted first, so a cardinality spike can't leak memory.
+ */
+public class TagInterner {
+
+    public static final long DEFAULT_MAXIMUM_TAG_NAMES = 1_000L;
+    public static final long DEFAULT_MAXIMUM_VALUES_PER_TAG_NAME = 10_000L;
+    
+    private final Cache<String, TagValues> tagValuesByName;
+    private final long maximumValuesPerTagName;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Create a {@link TagInterner} with the default size limits.
+     */
+    public TagInterner() {
+        this(DEFAULT_MAXIMUM_TAG_NAMES, DEFAULT_MAXIMUM_VALUES_PER_TAG_NAME);
+    }
+
+    /**
+     * Create a {@link TagInterner}.
+     * @param maximumTagNames The maximum number of distinct tag names to intern tags for.
+     * @param maximumValuesPerTagName The maximum number of distinct values to intern for each tag name.
+     */
+    public TagInterner(long maximumTagNames, long maximumValuesPerTagName) {
+        checkArgument(maximumTagNames > 0, "maximumTagNames must be positive");
+        checkArgument(maximumValuesPerTagName > 0, "maximumValuesPerTagName must be positive");
+        this.maximumValuesPerTagName = maximumValuesPerTagName;
+        this.tagValuesByName = CacheBuilder.newBuilder()
+                .maximumSize(maximumTagNames)
+                .removalListener((RemovalNotification<String, TagValues> notification) -> {
+                    if (notification.wasEvicted()) {
+                        evictionCount.add(notification.getValue().tagsByValue.size());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Get the shared {@link Tag} with a name and value, creating it if it hasn't been interned (or has been evicted).
+     * @param name The tag name.
+     * @param value The tag value.
+     * @return A {@link Tag}.
+     */
+    public Tag intern(String name, String value) {
+        checkArgument(name != null, "name can't be null");
+        checkArgument(value != null, "value can't be null");
+        TagValues tagValues = tagValuesByName.getIfPresent(name);
+        if (tagValues == null) {
+            tagValues = tagValuesByName.asMap().computeIfAbsent(name, TagValues::new);
+        }
+
+        Tag tag = tagValues.tagsByValue.getIfPresent(value);
+        if (tag != null) {
+            hitCount.increment();
+            return tag;
+        }
+        
+        missCount.increment();
+        
+        // Create the tag with the shared name string, and encode it now so every point sharing the tag can reuse the
+        // encoded bytes.
+        Tag newTag = new Tag(tagValues.name, value);
+        newTag.lineProtocolBytes();
+        tag = tagValues.tagsByValue.asMap().putIfAbsent(value, newTag);
+        return tag != null ? tag : newTag;
+    }
+
+    /**
+     * Get the approximate number of interned tags.
+     * @return The number of interned tags.
+     */
+    public long size() {
+        return tagValuesByName.asMap().values().stream()
+                .mapToLong(tagValues -> tagValues.tagsByValue.size())
+                .sum();
+    }
+
+    /**
+     * Get hit/miss/eviction statistics for this interner. A hit is a call to {@link #intern} that returned an
+     * existing {@link Tag}.
+     * @return A {@link CacheStats}.
+     */
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), 0L, 0L, 0L, evictionCount.sum());
+    }
+
+    /**
+     * The interned tags for a tag name.
+     */
+    private class TagValues {
+        
+        private final String name;
+        private final Cache<String, Tag> tagsByValue;
+
+        TagValues(String name) {
+            this.name = name;
+            this.tagsByValue = CacheBuilder.newBuilder()
+                    .maximumSize(maximumValuesPerTagName)
+                    .removalListener((RemovalNotification<String, Tag> notification) -> {
+                        if (notification.wasEvicted()) {
+                            evictionCount.increment();
+                        }
+                    })
+                    .build();
+        }
+        
+    }
+    
+}
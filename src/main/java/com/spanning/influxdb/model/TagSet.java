@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Immutable set of {@link Tag Tags} in canonical order (sorted by tag name). InfluxDB can skip sorting the tags of a
+ * point that are already sorted by name, and the canonical order makes two tag sets with the same tags equal
+ * regardless of the order in which the tags were added.
+ * @see <a href="https://docs.influxdata.com/influxdb/v1/write_protocols/line_protocol_reference/#performance-tips">
+ *     https://docs.influxdata.com/influxdb/v1/write_protocols/line_protocol_reference/#performance-tips</a>
+ */
+public class TagSet {
+
+    /**
+     * Orders tags by name, comparing code points so the order matches the byte order of the UTF-8 encoded names that
+     * InfluxDB sorts by.
+     */
+    static final Comparator<Tag> NAME_ORDER = (tag1, tag2) -> compareNames(tag1.getName(), tag2.getName());
+    
+    private static final TagSet EMPTY = new TagSet(new Tag[0], 0);
+    
+    private final Tag[] tags;
+    private final int size;
+    private final int hashCode;
+
+    private TagSet(Tag[] tags, int size) {
+        this.tags = tags;
+        this.size = size;
+        int hashCode = 1;
+        for (int i = 0; i < size; i++) {
+            hashCode = 31 * hashCode + tags[i].hashCode();
+        }
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Get an empty {@link TagSet}.
+     * @return An empty {@link TagSet}.
+     */
+    public static TagSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a {@link TagSet} from a collection of tags.
+     * @param tags The tags, in any order.
+     * @return A {@link TagSet} containing {@code tags} sorted by name.
+     * @throws IllegalArgumentException If more than one tag has the same name.
+     */
+    public static TagSet of(Collection<Tag> tags) {
+        checkArgument(tags != null, "tags can't be null");
+        Tag[] tagArray = tags.toArray(new Tag[0]);
+        return wrap(tagArray, tagArray.length);
+    }
+
+    /**
+     * Create a {@link TagSet} backed by the first {@code size} elements of an array, without copying it. The array
+     * is sorted in place, and it must not be modified afterwards.
+     * @param tags The tag array, in any order.
+     * @param size The number of tags in the array.
+     * @return A {@link TagSet} backed by {@code tags}.
+     * @throws IllegalArgumentException If more than one tag has the same name.
+     */
+    static TagSet wrap(Tag[] tags, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        sort(tags, size);
+        return new TagSet(tags, size);
+    }
+
+    /**
+     * Sort the first {@code size} elements of a tag array by name in place.
+     * @param tags The tag array.
+     * @param size The number of tags in the array.
+     * @throws IllegalArgumentException If more than one tag has the same name.
+     */
+    static void sort(Tag[] tags, int size) {
+        Arrays.sort(tags, 0, size, NAME_ORDER);
+        
+        // Since the tags are sorted, tags with duplicate names will be adjacent.
+        for (int i = 1; i < size; i++) {
+            checkArgument(NAME_ORDER.compare(tags[i - 1], tags[i]) != 0, "Duplicate tag name: %s",
+                    tags[i].getName());
+        }
+    }
+
+    /**
+     * Get a copy of this {@link TagSet} that doesn't share its backing array.
+     * @return A {@link TagSet}.
+     */
+    TagSet copy() {
+        return size == 0 ? EMPTY : new TagSet(Arrays.copyOf(tags, size), size);
+    }
+
+    /**
+     * Get the number of tags in this set.
+     * @return The number of tags.
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the tag at an index in canonical order.
+     * @param index The index.
+     * @return The {@link Tag}.
+     */
+    public Tag get(int index) {
+        checkElementIndex(index, size);
+        return tags[index];
+    }
+
+    /**
+     * Get the tags in this set as a list, sorted by name.
+     * @return An unmodifiable list of {@link Tag Tags}.
+     */
+    public List<Tag> asList() {
+        return Collections.unmodifiableList(Arrays.asList(tags).subList(0, size));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TagSet)) {
+            return false;
+        }
+        TagSet other = (TagSet) o;
+        return hashCode == other.hashCode && Arrays.equals(tags, 0, size, other.tags, 0, other.size);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Compare two tag names in canonical order. Names are compared by code point rather than by UTF-16 code unit
+     * (the two orders only differ for names containing supplementary characters).
+     */
+    static int compareNames(String s1, String s2) {
+        int length = Math.min(s1.length(), s2.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = s1.charAt(i);
+            char c2 = s2.charAt(i);
+            if (c1 != c2) {
+                if (Character.isSurrogate(c1) || Character.isSurrogate(c2)) {
+                    return Integer.compare(s1.codePointAt(i), s2.codePointAt(i));
+                }
+                return c1 - c2;
+            }
+        }
+        return s1.length() - s2.length();
+    }
+    
+}
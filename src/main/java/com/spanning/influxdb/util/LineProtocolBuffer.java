@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * Growable byte buffer used to encode InfluxDB line protocol without building intermediate strings.
+ * Note: This class is not thread-safe.
+ */
+public class LineProtocolBuffer {
+
+    static final int DEFAULT_INITIAL_CAPACITY = 256;
+    private static final boolean[] NO_ESCAPES = escapeTable();
+    private static final boolean[] SPACE_AND_COMMA_ESCAPES = escapeTable(' ', ',');
+    private static final boolean[] QUOTE_ESCAPES = escapeTable('"');
+    
+    private byte[] bytes;
+    private int size;
+
+    public LineProtocolBuffer() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public LineProtocolBuffer(int initialCapacity) {
+        checkArgument(initialCapacity >= 0, "initialCapacity can't be negative");
+        this.bytes = new byte[initialCapacity];
+    }
+
+    /**
+     * Append all bytes of a byte array to this buffer.
+     * @param src The bytes to append.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer write(byte[] src) {
+        return write(src, 0, src.length);
+    }
+
+    /**
+     * Append a range of a byte array to this buffer.
+     * @param src The bytes to append.
+     * @param offset The offset of the first byte in {@code src} to append.
+     * @param length The number of bytes to append.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer write(byte[] src, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(src, offset, bytes, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Append a range of another buffer's contents to this buffer.
+     * @param src The buffer whose bytes should be appended.
+     * @param offset The offset of the first byte in {@code src} to append.
+     * @param length The number of bytes to append.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer write(LineProtocolBuffer src, int offset, int length) {
+        checkPositionIndexes(offset, offset + length, src.size);
+        return write(src.bytes, offset, length);
+    }
+
+    /**
+     * Append a single byte to this buffer.
+     * @param b The byte to append (only the low 8 bits are used).
+     * @return This buffer.
+     */
+    public LineProtocolBuffer writeByte(int b) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Append the UTF-8 encoding of a string to this buffer.
+     * @param string The string.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer writeUtf8(String string) {
+        return writeUtf8(string, NO_ESCAPES);
+    }
+
+    /**
+     * Append the UTF-8 encoding of a string to this buffer with all spaces and commas escaped with a backslash.
+     * @param string The string.
+     * @return This buffer.
+     * @see LineProtocolStringUtils#escapeSpacesAndCommas(String)
+     */
+    public LineProtocolBuffer writeEscapingSpacesAndCommas(String string) {
+        return writeUtf8(string, SPACE_AND_COMMA_ESCAPES);
+    }
+
+    /**
+     * Append the UTF-8 encoding of a string to this buffer with all double quotes escaped with a backslash.
+     * @param string The string.
+     * @return This buffer.
+     * @see LineProtocolStringUtils#escapeQuotes(String)
+     */
+    public LineProtocolBuffer writeEscapingQuotes(String string) {
+        return writeUtf8(string, QUOTE_ESCAPES);
+    }
+
+    /**
+     * Append the decimal representation of a long to this buffer.
+     * @param value The value.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            // Can't be negated, so just write its (constant) string value.
+            return writeUtf8(String.valueOf(value));
+        }
+        
+        // Count the digits so they can be written right-to-left directly into the backing array.
+        boolean negative = value < 0;
+        long remaining = negative ? -value : value;
+        int digits = 1;
+        for (long limit = 10; digits < 19 && remaining >= limit; limit *= 10) {
+            digits++;
+        }
+        
+        int length = negative ? digits + 1 : digits;
+        ensureCapacity(size + length);
+        int position = size + length;
+        do {
+            bytes[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            bytes[--position] = '-';
+        }
+        size += length;
+        return this;
+    }
+
+    /**
+     * Append the shortest decimal representation of a double that rounds back to the same double to this buffer.
+     * @param value The value.
+     * @return This buffer.
+     * @throws IllegalArgumentException If {@code value} is NaN or infinite, since InfluxDB doesn't accept them.
+     */
+    public LineProtocolBuffer writeDouble(double value) {
+        ensureCapacity(size + ShortestDecimal.MAX_CHARS);
+        size = ShortestDecimal.write(value, bytes, size);
+        return this;
+    }
+
+    /**
+     * Append the shortest decimal representation of a float that rounds back to the same float to this buffer.
+     * @param value The value.
+     * @return This buffer.
+     * @throws IllegalArgumentException If {@code value} is NaN or infinite, since InfluxDB doesn't accept them.
+     */
+    public LineProtocolBuffer writeFloat(float value) {
+        ensureCapacity(size + ShortestDecimal.MAX_CHARS);
+        size = ShortestDecimal.write(value, bytes, size);
+        return this;
+    }
+
+    /**
+     * Start a new line in this buffer, which separates the line protocol strings of multiple data points. A newline is
+     * only written if the buffer isn't empty, so the buffer doesn't end up with a leading blank line.
+     * @return This buffer.
+     */
+    public LineProtocolBuffer beginLine() {
+        return size > 0 ? writeByte('\n') : this;
+    }
+
+    /**
+     * Get the index of the first occurrence of a byte in this buffer, starting at a given index.
+     * @param b The byte to search for (only the low 8 bits are used).
+     * @param fromIndex The index at which to start searching.
+     * @return The index of the first occurrence of {@code b} at or after {@code fromIndex}, or -1 if there is none.
+     */
+    public int indexOf(int b, int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); i < size; i++) {
+            if (bytes[i] == (byte) b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of bytes that have been written to this buffer.
+     * @return The number of bytes in this buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a copy of the bytes written to this buffer.
+     * @return A new byte array containing the contents of this buffer.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Write the contents of this buffer to an output stream.
+     * @param out The output stream.
+     * @throws IOException If an error occurs writing to {@code out}.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    /**
+     * Get a read-only {@link ByteBuffer} view of this buffer's contents, without copying them. The view is only valid
+     * until this buffer is next modified.
+     * @return A read-only {@link ByteBuffer} whose remaining bytes are the contents of this buffer.
+     */
+    public ByteBuffer asReadOnlyByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copy a range of this buffer's contents into a {@link ByteBuffer} at its current position.
+     * @param offset The offset of the first byte to copy.
+     * @param length The number of bytes to copy.
+     * @param target The byte buffer, which must have at least {@code length} bytes remaining.
+     */
+    public void writeTo(int offset, int length, ByteBuffer target) {
+        checkPositionIndexes(offset, offset + length, size);
+        target.put(bytes, offset, length);
+    }
+
+    /**
+     * Discard the contents of this buffer, keeping its allocated capacity for reuse.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Discard the bytes at the end of this buffer, keeping only the first {@code newSize} bytes.
+     * @param newSize The number of bytes to keep.
+     */
+    public void truncate(int newSize) {
+        checkPositionIndex(newSize, size);
+        size = newSize;
+    }
+
+    /**
+     * Get the contents of this buffer decoded as a UTF-8 string.
+     * @return The string value of this buffer.
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Append the UTF-8 encoding of a string to this buffer, escaping ASCII characters with a backslash.
+     * @param string The string.
+     * @param escapes A table indexed by ASCII character indicating whether the character should be escaped.
+     * @return This buffer.
+     */
+    private LineProtocolBuffer writeUtf8(String string, boolean[] escapes) {
+        // Reserve enough space for the worst case (every character escaped, or encoded as 3 bytes) up front.
+        int length = string.length();
+        ensureCapacity(size + length * 3);
+        byte[] bytes = this.bytes;
+        int position = size;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                if (escapes[c]) {
+                    bytes[position++] = '\\';
+                }
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(string.charAt(i + 1))) {
+                // A surrogate pair is encoded as 4 bytes, which fits in the 6 bytes reserved for the 2 chars.
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced with '?', like String.getBytes does.
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xe0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        size = position;
+        return this;
+    }
+
+    private static boolean[] escapeTable(char... escapedChars) {
+        boolean[] escapes = new boolean[0x80];
+        for (char c : escapedChars) {
+            escapes[c] = true;
+        }
+        return escapes;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(minCapacity, bytes.length * 2));
+        }
+    }
+    
+}
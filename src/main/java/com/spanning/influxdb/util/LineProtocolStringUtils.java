@@ -44,6 +44,30 @@ public class LineProtocolStringUtils {
         return escapeWithBackslashes(rawString, "\"");
     }
     
+    /**
+     * Remove the backslashes that escape spaces, commas, equals signs and double quotes in a string.
+     * @param escapedString The escaped string (e.g., a measurement name or field key from a line protocol string).
+     * @return The unescaped string.
+     */
+    public static String unescape(String escapedString) {
+        if (escapedString.indexOf('\\') < 0) {
+            return escapedString;
+        }
+        StringBuilder builder = new StringBuilder(escapedString.length());
+        for (int i = 0; i < escapedString.length(); i++) {
+            char c = escapedString.charAt(i);
+            if (c == '\\' && i + 1 < escapedString.length() && isEscapable(escapedString.charAt(i + 1))) {
+                c = escapedString.charAt(++i);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isEscapable(char c) {
+        return c == ' ' || c == ',' || c == '=' || c == '"';
+    }
+    
     /**
      * Escape substrings in a string with backslashes.
      * @param rawString The string in which instances of {@code escapedSubstrings} should be replaced.
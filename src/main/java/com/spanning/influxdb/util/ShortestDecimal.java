@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.util;
+
+import java.math.BigInteger;
+
+/**
+ * Formats {@code double}/{@code float} values as the shortest decimal that rounds back to the same value, writing the
+ * characters straight into a byte array. The decimal is selected with the Schubfach algorithm, and laid out like
+ * {@link Double#toString(double)} (e.g., "1234.4321", "1.0E-5"), but unlike {@link Double#toString(double)} before
+ * JDK 19, it never produces more digits than necessary.
+ * <p>
+ * Only finite values can be formatted, since InfluxDB doesn't accept NaN or infinite field values.
+ * @see <a href="https://drive.google.com/file/d/1IEeATSVnEE6TkrHlCYNY2GjaraBjOT4f">
+ *     R. Giulietti, "The Schubfach way to render doubles"</a>
+ */
+final class ShortestDecimal {
+
+    /**
+     * The maximum number of characters needed to format a double (e.g., "-2.2250738585072014E-308").
+     */
+    static final int MAX_CHARS = 24;
+
+    // Constants for doubles.
+    private static final int DOUBLE_P = 53;
+    private static final int DOUBLE_Q_MIN = -1074;
+    private static final long DOUBLE_C_MIN = 1L << (DOUBLE_P - 1);
+    private static final long DOUBLE_C_TINY = 3;
+    private static final long DOUBLE_T_MASK = DOUBLE_C_MIN - 1;
+    private static final int DOUBLE_BQ_MASK = 0x7ff;
+
+    // Constants for floats.
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+    private static final int FLOAT_C_TINY = 8;
+    private static final int FLOAT_T_MASK = FLOAT_C_MIN - 1;
+    private static final int FLOAT_BQ_MASK = 0xff;
+
+    private static final byte[] DIGIT_PAIRS = digitPairs();
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+
+    // The range of decimal exponents k of the powers of ten 10^-k that are needed to format any double.
+    private static final int K_MIN = flog10pow2(DOUBLE_Q_MIN);
+    private static final int K_MAX = flog10pow2(Double.MAX_EXPONENT - DOUBLE_P + 1);
+
+    // For each k in [K_MIN, K_MAX], 10^-k = beta 2^r with 2^125 <= beta < 2^126, and g = floor(beta) + 1 is split into
+    // its high 63 bits (G[2 * (k - K_MIN)]) and low 63 bits (G[2 * (k - K_MIN) + 1]).
+    private static final long[] G = computeG();
+
+    private ShortestDecimal() {}
+
+    /**
+     * Format a double.
+     * @param value A finite double.
+     * @param bytes The array to write to, which must have room for {@link #MAX_CHARS} bytes at {@code offset}.
+     * @param offset The offset at which to start writing.
+     * @return The offset following the last byte written.
+     */
+    static int write(double value, byte[] bytes, int offset) {
+        long bits = Double.doubleToRawLongBits(value);
+        int bq = (int) (bits >>> (DOUBLE_P - 1)) & DOUBLE_BQ_MASK;
+        if (bq == DOUBLE_BQ_MASK) {
+            throw new IllegalArgumentException("Can't format non-finite value: " + value);
+        }
+        if (bits < 0) {
+            bytes[offset++] = '-';
+        }
+        
+        long t = bits & DOUBLE_T_MASK;
+        if (bq != 0) {
+            // Normal value: value = c 2^q, where c is the significand with the implicit leading bit.
+            int mq = -DOUBLE_Q_MIN + 1 - bq;
+            long c = DOUBLE_C_MIN | t;
+            if (0 < mq && mq < DOUBLE_P) {
+                // Fast path for integers, which are formatted exactly.
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return writeDecimal(f, 0, bytes, offset);
+                }
+            }
+            return toDecimal(-mq, c, 0, bytes, offset);
+        }
+        if (t != 0) {
+            // Subnormal value.
+            return t < DOUBLE_C_TINY
+                    ? toDecimal(DOUBLE_Q_MIN, 10 * t, -1, bytes, offset)
+                    : toDecimal(DOUBLE_Q_MIN, t, 0, bytes, offset);
+        }
+        return writeDecimal(0, 0, bytes, offset);
+    }
+
+    /**
+     * Format a float.
+     * @param value A finite float.
+     * @param bytes The array to write to, which must have room for {@link #MAX_CHARS} bytes at {@code offset}.
+     * @param offset The offset at which to start writing.
+     * @return The offset following the last byte written.
+     */
+    static int write(float value, byte[] bytes, int offset) {
+        int bits = Float.floatToRawIntBits(value);
+        int bq = (bits >>> (FLOAT_P - 1)) & FLOAT_BQ_MASK;
+        if (bq == FLOAT_BQ_MASK) {
+            throw new IllegalArgumentException("Can't format non-finite value: " + value);
+        }
+        if (bits < 0) {
+            bytes[offset++] = '-';
+        }
+        
+        int t = bits & FLOAT_T_MASK;
+        if (bq != 0) {
+            int mq = -FLOAT_Q_MIN + 1 - bq;
+            int c = FLOAT_C_MIN | t;
+            if (0 < mq && mq < FLOAT_P) {
+                int f = c >> mq;
+                if (f << mq == c) {
+                    return writeDecimal(f, 0, bytes, offset);
+                }
+            }
+            return toDecimal(-mq, c, 0, bytes, offset);
+        }
+        if (t != 0) {
+            return t < FLOAT_C_TINY
+                    ? toDecimal(FLOAT_Q_MIN, 10 * t, -1, bytes, offset)
+                    : toDecimal(FLOAT_Q_MIN, t, 0, bytes, offset);
+        }
+        return writeDecimal(0, 0, bytes, offset);
+    }
+
+    /**
+     * Find the shortest decimal in the rounding interval of the double c 2^q and write it.
+     */
+    private static int toDecimal(int q, long c, int dk, byte[] bytes, int offset) {
+        // The rounding interval is [vbl, vbr] (bounds included iff c is even), scaled by 4 so its bounds are integers.
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // The interval is asymmetric when c is a power of 2 (except for the smallest exponent).
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        // Scale the interval by 10^-k, so it contains at least one integer of the form s or s + 1.
+        int index = 2 * (k - K_MIN);
+        long g1 = G[index];
+        long g0 = G[index + 1];
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Prefer a decimal with one digit less, if there is one in the interval: sp10 = 10 floor(s / 10).
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return writeDecimal(upin ? sp10 : tp10, k, bytes, offset);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return writeDecimal(uin ? s : t, k + dk, bytes, offset);
+        }
+        // Both s and t are in the interval, so pick the one closer to the value (or the even one, on a tie).
+        long cmp = vb - (s + t << 1);
+        return writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, offset);
+    }
+
+    /**
+     * Find the shortest decimal in the rounding interval of the float c 2^q and write it.
+     */
+    private static int toDecimal(int q, int c, int dk, byte[] bytes, int offset) {
+        int out = c & 0x1;
+        long cb = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        // Floats only need the high 64 bits of g.
+        long g = G[2 * (k - K_MIN)] + 1;
+        int vb = roundToOdd(g, cb << h);
+        int vbl = roundToOdd(g, cbl << h);
+        int vbr = roundToOdd(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return writeDecimal(upin ? sp10 : tp10, k, bytes, offset);
+            }
+        }
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return writeDecimal(uin ? s : t, k + dk, bytes, offset);
+        }
+        int cmp = vb - (s + t << 1);
+        return writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, bytes, offset);
+    }
+
+    /**
+     * Compute g cp / 2^127, rounded to odd, where g = g1 2^63 + g0.
+     */
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * Compute g cp / 2^95, rounded to odd.
+     */
+    private static int roundToOdd(long g, long cp) {
+        long x1 = Math.multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    /**
+     * Write the decimal f 10^e using the same layout as {@link Double#toString(double)}: plain notation with at least
+     * one digit after the decimal point for values in [10^-3, 10^7), and computerized scientific notation otherwise.
+     */
+    private static int writeDecimal(long f, int e, byte[] bytes, int offset) {
+        if (f == 0) {
+            bytes[offset++] = '0';
+            bytes[offset++] = '.';
+            bytes[offset++] = '0';
+            return offset;
+        }
+        
+        // Remove trailing zeros, so the significand only has significant digits.
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int length = digitCount(f);
+        
+        // The exponent of the decimal in scientific notation (i.e., d.ddd * 10^exponent).
+        int exponent = e + length - 1;
+        if (exponent >= 0 && exponent < 7) {
+            // Plain notation, with the point after exponent + 1 digits (padded with zeros if there aren't enough).
+            int integerLength = exponent + 1;
+            if (length <= integerLength) {
+                offset = writeDigits(f, length, bytes, offset);
+                for (int i = length; i < integerLength; i++) {
+                    bytes[offset++] = '0';
+                }
+                bytes[offset++] = '.';
+                bytes[offset++] = '0';
+                return offset;
+            }
+            writeDigits(f, length, bytes, offset + 1);
+            // Shift the integer digits left by one to make room for the point.
+            System.arraycopy(bytes, offset + 1, bytes, offset, integerLength);
+            bytes[offset + integerLength] = '.';
+            return offset + length + 1;
+        }
+        if (exponent < 0 && exponent >= -3) {
+            // Plain notation with leading zeros (e.g., 0.00123).
+            bytes[offset++] = '0';
+            bytes[offset++] = '.';
+            for (int i = -1; i > exponent; i--) {
+                bytes[offset++] = '0';
+            }
+            return writeDigits(f, length, bytes, offset);
+        }
+        
+        // Scientific notation (e.g., 1.234E10).
+        writeDigits(f, length, bytes, offset + 1);
+        bytes[offset] = bytes[offset + 1];
+        bytes[offset + 1] = '.';
+        offset += length + 1;
+        if (length == 1) {
+            bytes[offset++] = '0';
+        }
+        bytes[offset++] = 'E';
+        if (exponent < 0) {
+            bytes[offset++] = '-';
+            exponent = -exponent;
+        }
+        return writeDigits(exponent, digitCount(exponent), bytes, offset);
+    }
+
+    /**
+     * Write the {@code length} decimal digits of a positive value, two digits at a time.
+     */
+    private static int writeDigits(long value, int length, byte[] bytes, int offset) {
+        int position = offset + length;
+        while (value > Integer.MAX_VALUE) {
+            long quotient = value / 100;
+            position = writeDigitPair((int) (value - quotient * 100), bytes, position);
+            value = quotient;
+        }
+        int remaining = (int) value;
+        while (remaining >= 10) {
+            int quotient = remaining / 100;
+            position = writeDigitPair(remaining - quotient * 100, bytes, position);
+            remaining = quotient;
+        }
+        if (position > offset) {
+            bytes[--position] = (byte) ('0' + remaining);
+        }
+        return offset + length;
+    }
+
+    private static int writeDigitPair(int pair, byte[] bytes, int position) {
+        bytes[--position] = DIGIT_PAIRS[2 * pair + 1];
+        bytes[--position] = DIGIT_PAIRS[2 * pair];
+        return position;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        for (long limit = 10; digits < 19 && value >= limit; limit *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * floor(log10(2^e)), for |e| <= 5456721.
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * floor(log10(3/4 2^e)), for |e| <= 5456721.
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * floor(log2(10^e)), for |e| <= 1233.
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    private static byte[] digitPairs() {
+        byte[] digitPairs = new byte[200];
+        for (int i = 0; i < 100; i++) {
+            digitPairs[2 * i] = (byte) ('0' + i / 10);
+            digitPairs[2 * i + 1] = (byte) ('0' + i % 10);
+        }
+        return digitPairs;
+    }
+
+    /**
+     * Compute the table of 126-bit approximations of the powers of ten 10^-k, for k in [K_MIN, K_MAX].
+     */
+    private static long[] computeG() {
+        long[] g = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger mask63 = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            // 10^-k = beta 2^r, so beta = 10^-k 2^-r.
+            int r = flog2pow10(-k) - 125;
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger pow10 = BigInteger.TEN.pow(-k);
+                beta = r >= 0 ? pow10.shiftRight(r) : pow10.shiftLeft(-r);
+            } else {
+                // r is negative here, since 10^-k < 1 < 2^125.
+                beta = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            }
+            BigInteger gk = beta.add(BigInteger.ONE);
+            int index = 2 * (k - K_MIN);
+            g[index] = gk.shiftRight(63).longValueExact();
+            g[index + 1] = gk.and(mask63).longValueExact();
+        }
+        return g;
+    }
+    
+}
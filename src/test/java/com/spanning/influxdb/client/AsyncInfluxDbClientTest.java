@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+
+    @Test
+    public void testWritePointsAsyncRunsOnExecutor() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        AtomicReference<Thread> writeThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            writeThread.set(Thread.currentThread());
+            return null;
+        }).when(delegate).writePoints(eq(DATABASE), eq(RETENTION_POLICY), any());
+        List<DataPoint> points = Collections.singletonList(mock(DataPoint.class));
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (AsyncInfluxDbClient client = new AsyncInfluxDbClient(delegate, executor)) {
+            client.writePointsAsync(DATABASE, RETENTION_POLICY, points).join();
+        }
+        
+        // The write should have run on the executor, which the client doesn't own.
+        verify(delegate).writePoints(DATABASE, RETENTION_POLICY, points);
+        assertNotSame(Thread.currentThread(), writeThread.get());
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testWriteFailureCompletesFutureExceptionally() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        IllegalStateException failure = new IllegalStateException("write failed");
+        doThrow(failure).when(delegate).writePoints(any(), any(), any());
+        
+        try (AsyncInfluxDbClient client = AsyncInfluxDbClient.onVirtualThreads(delegate)) {
+            CompletableFuture<Void> future = client.writePointsAsync(DATABASE, RETENTION_POLICY,
+                    Collections.singletonList(mock(DataPoint.class)));
+            future.join();
+            fail("Expected CompletionException");
+        } catch (CompletionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testOnVirtualThreads() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<QueryResult> results = Collections.singletonList(mock(QueryResult.class));
+        AtomicReference<Thread> queryThread = new AtomicReference<>();
+        when(delegate.executeQuery(DATABASE, "SELECT * FROM m")).thenAnswer(invocation -> {
+            queryThread.set(Thread.currentThread());
+            return results;
+        });
+        
+        try (AsyncInfluxDbClient client = AsyncInfluxDbClient.onVirtualThreads(delegate)) {
+            assertSame(results, client.executeQueryAsync(DATABASE, "SELECT * FROM m").join());
+        }
+        
+        // The query should have run on a virtual thread if the JDK supports them, or a platform thread otherwise.
+        assertEquals(VirtualThreads.isSupported(), VirtualThreads.isVirtual(queryThread.get()));
+        assertNotSame(Thread.currentThread(), queryThread.get());
+    }
+    
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import com.spanning.influxdb.model.FieldType;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.PointTemplate;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class InfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    
+    private final InfluxDbClient client = mock(InfluxDbClient.class, CALLS_REAL_METHODS);
+
+    @Test
+    public void testWriteBatchEncodesLineProtocol() {
+        doNothing().when(client).writeLineProtocol(any(), any(), any(), any());
+        PointTemplate template = new PointTemplate.Builder("measurementName")
+                .withField("value", FieldType.INTEGER)
+                .withTimestampPrecision(TimestampPrecision.SECONDS)
+                .build();
+        PointBatch batch = new PointBatch(template);
+        batch.setInteger(batch.addRow(1L), 0, 1L);
+        batch.setInteger(batch.addRow(2L), 0, 2L);
+        client.writeBatch(DATABASE, "rp", batch);
+        
+        ArgumentCaptor<LineProtocolBuffer> lines = ArgumentCaptor.forClass(LineProtocolBuffer.class);
+        verify(client).writeLineProtocol(eq(DATABASE), eq("rp"), eq(TimestampPrecision.SECONDS), lines.capture());
+        assertEquals("measurementName value=1i 1\nmeasurementName value=2i 2", lines.getValue().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteBatchEmpty() {
+        PointTemplate template = new PointTemplate.Builder("measurementName")
+                .withField("value", FieldType.INTEGER)
+                .build();
+        client.writeBatch(DATABASE, null, new PointBatch(template));
+    }
+    
+}
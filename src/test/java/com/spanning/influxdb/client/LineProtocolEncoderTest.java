@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineProtocolEncoderTest {
+    
+    @Test
+    public void testEncodeSequential() {
+        List<DataPoint> points = points(10);
+        List<LineProtocolBuffer> chunks = new LineProtocolEncoder().encode(points);
+        assertEquals(1, chunks.size());
+        assertEquals(expected(points), chunks.get(0).toString());
+    }
+    
+    @Test
+    public void testEncodeParallel() {
+        List<DataPoint> points = points(1_003);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<LineProtocolBuffer> chunks = new LineProtocolEncoder(pool, 1_000, 100).encode(points);
+            assertEquals(11, chunks.size());
+            assertEquals(expected(points),
+                    chunks.stream().map(LineProtocolBuffer::toString).collect(Collectors.joining("\n")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new LineProtocolEncoder(ForkJoinPool.commonPool(), 1_000, 0);
+    }
+    
+    private static List<DataPoint> points(int count) {
+        List<DataPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(new DataPoint.Builder("measurement")
+                    .withTag("host", "host" + (i % 7))
+                    .withField("value", i)
+                    .withTimestamp(i, TimestampPrecision.SECONDS)
+                    .build());
+        }
+        return points;
+    }
+    
+    private static String expected(List<DataPoint> points) {
+        return points.stream().map(DataPoint::lineProtocolString).collect(Collectors.joining("\n"));
+    }
+    
+}
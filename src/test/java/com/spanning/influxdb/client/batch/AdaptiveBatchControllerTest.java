@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchControllerTest {
+    
+    private static final long TARGET = 100;
+
+    @Test
+    public void testAdditiveIncreasePerRound() {
+        AdaptiveBatchController controller = AdaptiveBatchController.adaptive(10, 35, 4, TARGET);
+        assertEquals(10, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        
+        succeed(controller, true, true);
+        assertEquals(20, controller.getBatchSize());
+        assertEquals(2, controller.getConcurrency());
+        
+        // With a concurrency of 2, a round is 2 writes.
+        succeed(controller, true, true);
+        assertEquals(20, controller.getBatchSize());
+        succeed(controller, true, true);
+        assertEquals(30, controller.getBatchSize());
+        assertEquals(3, controller.getConcurrency());
+        
+        for (int i = 0; i < 10; i++) {
+            succeed(controller, true, true);
+        }
+        assertEquals(35, controller.getBatchSize());
+        assertEquals(4, controller.getConcurrency());
+    }
+
+    @Test
+    public void testNoIncreaseWhenUnused() {
+        AdaptiveBatchController controller = AdaptiveBatchController.adaptive(10, 100, 4, TARGET);
+        succeed(controller, false, false);
+        assertEquals(10, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        
+        succeed(controller, true, false);
+        assertEquals(20, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() {
+        AdaptiveBatchController controller = AdaptiveBatchController.adaptive(10, 100, 8, TARGET);
+        for (int i = 0; i < 20; i++) {
+            succeed(controller, true, true);
+        }
+        assertEquals(60, controller.getBatchSize());
+        assertEquals(6, controller.getConcurrency());
+        
+        // Too slow.
+        complete(controller, 1000, 1000 + TARGET * 2, false);
+        assertEquals(30, controller.getBatchSize());
+        assertEquals(3, controller.getConcurrency());
+        // Overloaded.
+        complete(controller, 2000, 2010, true);
+        assertEquals(15, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        complete(controller, 3000, 3010, true);
+        assertEquals(10, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+        assertEquals(3, controller.getDecreaseCount());
+    }
+
+    @Test
+    public void testWritesInFlightBeforeDecreaseIgnored() {
+        AdaptiveBatchController controller = AdaptiveBatchController.adaptive(10, 100, 8, TARGET);
+        for (int i = 0; i < 20; i++) {
+            succeed(controller, true, true);
+        }
+        
+        // Both writes started at 1000; only the first to complete backs off.
+        complete(controller, 1000, 2000, true);
+        complete(controller, 1000, 2100, true);
+        assertEquals(30, controller.getBatchSize());
+        assertEquals(3, controller.getConcurrency());
+        assertEquals(1, controller.getDecreaseCount());
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        AdaptiveBatchController controller = AdaptiveBatchController.fixed(10, 2);
+        assertTrue(controller.tryAcquire());
+        assertTrue(controller.tryAcquire());
+        assertFalse(controller.tryAcquire());
+        assertEquals(2, controller.getInFlight());
+        
+        controller.release();
+        assertTrue(controller.tryAcquire());
+    }
+
+    @Test
+    public void testFixed() {
+        AdaptiveBatchController controller = AdaptiveBatchController.fixed(10, 2);
+        succeed(controller, true, true);
+        complete(controller, 1000, 2000, true);
+        assertEquals(10, controller.getBatchSize());
+        assertEquals(2, controller.getConcurrency());
+        assertEquals(0, controller.getDecreaseCount());
+        assertEquals(Long.MAX_VALUE, controller.getTargetLatencyNanos());
+    }
+
+    @Test
+    public void testSmoothedLatency() {
+        AdaptiveBatchController controller = AdaptiveBatchController.fixed(10, 1);
+        assertTrue(controller.tryAcquire());
+        controller.onWriteCompleted(0, 100, false, false, false);
+        assertEquals(100, controller.getSmoothedLatencyNanos());
+        assertTrue(controller.tryAcquire());
+        controller.onWriteCompleted(0, 200, false, false, false);
+        assertEquals(120, controller.getSmoothedLatencyNanos());
+    }
+
+    /**
+     * Make a write that succeeds within the target latency.
+     */
+    private static void succeed(AdaptiveBatchController controller, boolean batchFull, boolean backlogged) {
+        assertTrue(controller.tryAcquire());
+        controller.onWriteCompleted(0, TARGET / 2, false, batchFull, backlogged);
+    }
+
+    private static void complete(AdaptiveBatchController controller, long startNanos, long endNanos,
+                                 boolean overloaded) {
+        assertTrue(controller.tryAcquire());
+        controller.onWriteCompleted(startNanos, endNanos, overloaded, false, false);
+    }
+    
+}
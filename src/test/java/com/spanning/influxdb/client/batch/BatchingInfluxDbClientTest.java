@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class BatchingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+
+    @Test
+    public void testPointsBatchedByDestination() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build();
+        
+        client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2)));
+        client.writePoint(DATABASE, RETENTION_POLICY, point("c", 3));
+        client.writePoint(DATABASE, point("d", 4));
+        client.flush();
+        
+        // One write per destination, in the order the destinations were first seen.
+        assertEquals(Arrays.asList(
+                "database/null/ms: m,host=a value=1i 1\nm,host=b value=1i 2\nm,host=d value=1i 4",
+                "database/retentionPolicy/ms: m,host=c value=1i 3"), writes);
+        client.close();
+    }
+
+    @Test
+    public void testMaxBatchSize() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(2)
+                .withRingBufferSize(4)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build()) {
+            for (int i = 0; i < 5; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            client.flush();
+        }
+        
+        assertEquals(Arrays.asList(
+                "database/null/ms: m,host=a value=1i 0\nm,host=a value=1i 1",
+                "database/null/ms: m,host=a value=1i 2\nm,host=a value=1i 3",
+                "database/null/ms: m,host=a value=1i 4"), writes);
+    }
+
+    @Test
+    public void testBuilderWrittenWithoutBuildingPoint() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        DataPoint.Builder builder = new DataPoint.Builder("m");
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate).build()) {
+            for (int i = 0; i < 2; i++) {
+                client.writePoint(DATABASE, null, builder.reset("m")
+                        .withTag("host", "a")
+                        .withField("value", i)
+                        .withTimestamp(i, TimestampPrecision.SECONDS));
+            }
+        }
+        
+        // Closing the client should have written the buffered points.
+        assertEquals(Collections.singletonList("database/null/s: m,host=a value=0i 0\nm,host=a value=1i 1"), writes);
+    }
+
+    @Test
+    public void testCoalescing() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withCoalescing(true)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            client.writePoint(DATABASE, point("b", 1));
+            client.writePoint(DATABASE, new DataPoint.Builder("m")
+                    .withTag("host", "a")
+                    .withField("value", 2)
+                    .withField("other", "x y")
+                    .withTimestamp(1, TimestampPrecision.MILLISECONDS)
+                    .build());
+            client.writePoint(DATABASE, point("a", 2));
+            client.flush();
+            
+            assertEquals(1, client.getMetrics().getCoalescedPoints());
+            assertEquals(4, client.getMetrics().getPointsWritten());
+        }
+        
+        assertEquals(Collections.singletonList(
+                "database/null/ms: m,host=a value=2i,other=\"x y\" 1\nm,host=b value=1i 1\nm,host=a value=1i 2"),
+                writes);
+    }
+
+    @Test
+    public void testFailedBatchDropped() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        doThrow(new IllegalStateException("write failed")).doAnswer(invocation -> {
+            writes.add(invocation.<LineProtocolBuffer>getArgument(3).toString());
+            return null;
+        }).when(delegate).writeLineProtocol(eq(DATABASE), any(), any(), any());
+        
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate).build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            client.flush();
+            client.writePoint(DATABASE, point("b", 2));
+            client.flush();
+        }
+        
+        // The first batch failed, so only the second one should have been written.
+        assertEquals(Collections.singletonList("m,host=b value=1i 2"), writes);
+    }
+
+    @Test
+    public void testWriteAfterClose() {
+        BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(mock(InfluxDbClient.class)).build();
+        client.close();
+        try {
+            client.writePoint(DATABASE, point("a", 1));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("client is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withRingBufferSize(256)
+                .withMaxBatchSize(1000)
+                .withWaitStrategy(WaitStrategies.parking())
+                .build();
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String host = "host" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    client.writePoint(DATABASE, point(host, i));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        client.close();
+        
+        // Every point should have been written exactly once.
+        int lineCount = writes.stream()
+                .mapToInt(write -> write.split("\n").length)
+                .sum();
+        assertEquals(40_000, lineCount);
+    }
+    
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, writeStarted, release);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(1)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            writeStarted.await();
+            client.writePoint(DATABASE, point("b", 2));
+            client.writePoint(DATABASE, point("c", 3));
+            assertEquals(2, client.getPendingPointCount());
+            
+            release.countDown();
+            client.flush();
+            assertEquals(0, client.getPendingPointCount());
+            assertEquals(0, client.getPendingBytes());
+            assertEquals(1, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_NEWEST));
+        }
+        
+        assertEquals(Arrays.asList("m,host=a value=1i 1", "m,host=b value=1i 2"), writes);
+    }
+
+    @Test
+    public void testMaxPendingBytes() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, new CountDownLatch(1), release);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxPending(Long.MAX_VALUE, 40)
+                .withOverflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build()) {
+            // Each point is 19 bytes, so the third one is the last to be accepted.
+            for (int i = 0; i < 4; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            assertEquals(57, client.getPendingBytes());
+            assertEquals(1, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_NEWEST));
+            release.countDown();
+        }
+        
+        assertEquals(Collections.singletonList("m,host=a value=1i 0\nm,host=a value=1i 1\nm,host=a value=1i 2"),
+                writes);
+    }
+
+    @Test(timeout = 10_000)
+    public void testDropOldest() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, writeStarted, release);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(1)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            writeStarted.await();
+            client.writePoint(DATABASE, point("b", 2));
+            client.writePoint(DATABASE, point("c", 3));
+            // Wait for the writer thread to evict b.
+            while (client.getPendingPointCount() > 2) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            
+            release.countDown();
+            client.flush();
+            assertEquals(1, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_OLDEST));
+        }
+        
+        // a was being written, so it couldn't be dropped; b was the oldest batch waiting to be written.
+        assertEquals(Arrays.asList("m,host=a value=1i 1", "m,host=c value=1i 3"), writes);
+    }
+
+    @Test
+    public void testBlockTimesOut() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, writeStarted, release);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(1)
+                .withMaxPending(1, Long.MAX_VALUE)
+                .withBlockTimeout(50, TimeUnit.MILLISECONDS)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            writeStarted.await();
+            long start = System.nanoTime();
+            client.writePoint(DATABASE, point("b", 2));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(1, (long) client.getDroppedPointCounts().get(OverflowPolicy.BLOCK));
+            release.countDown();
+        }
+        
+        assertEquals(Collections.singletonList("m,host=a value=1i 1"), writes);
+    }
+
+    @Test
+    public void testBlockWaitsForRoom() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, writeStarted, release);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(1)
+                .withMaxPending(1, Long.MAX_VALUE)
+                .withBlockTimeout(1, TimeUnit.MINUTES)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            writeStarted.await();
+            new Thread(() -> {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                release.countDown();
+            }).start();
+            client.writePoint(DATABASE, point("b", 2));
+            assertEquals(0, (long) client.getDroppedPointCounts().get(OverflowPolicy.BLOCK));
+        }
+        
+        assertEquals(Arrays.asList("m,host=a value=1i 1", "m,host=b value=1i 2"), writes);
+    }
+
+    @Test
+    public void testBlockedWriterRequestsFlush() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(10)
+                .withMaxPending(10, 1024 * 1024)
+                .withBlockTimeout(10, TimeUnit.SECONDS)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build()) {
+            // The points go to two destinations, so neither batch fills up before the buffer does.
+            for (int i = 0; i < 15; i++) {
+                client.writePoint(i % 2 == 0 ? DATABASE : "other", point("a", i));
+            }
+            
+            // The 11th point requested a flush rather than waiting for the flush interval.
+            assertEquals(0, (long) client.getDroppedPointCounts().get(OverflowPolicy.BLOCK));
+            client.flush();
+        }
+        
+        assertEquals(15, writes.stream().mapToInt(write -> write.split("\n").length).sum());
+    }
+
+    @Test
+    public void testMaxPendingPointsBelowBatchSize() {
+        try {
+            new BatchingInfluxDbClient.Builder(mock(InfluxDbClient.class))
+                    .withMaxBatchSize(100)
+                    .withMaxPending(10, Long.MAX_VALUE)
+                    .build();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("maxPendingPoints can't be less than maxBatchSize", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSample() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> writes = recordBlockedWrites(delegate, new CountDownLatch(1), release);
+        long dropped;
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(100)
+                .withMaxPending(100, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.SAMPLE)
+                .withSampleThreshold(0.5)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build()) {
+            for (int i = 0; i < 1000; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            // The first half of the buffer always fills up, and the buffer never overflows.
+            long pending = client.getPendingPointCount();
+            assertTrue(pending >= 50 && pending <= 100);
+            dropped = client.getDroppedPointCounts().get(OverflowPolicy.SAMPLE);
+            assertEquals(1000 - pending, dropped);
+            release.countDown();
+        }
+        
+        int lineCount = writes.stream()
+                .mapToInt(write -> write.split("\n").length)
+                .sum();
+        assertEquals(1000 - dropped, lineCount);
+    }
+    
+    @Test
+    public void testMetrics() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withSenderThreads(2)
+                .build()) {
+            client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2), point("c", 3)));
+            client.flush();
+            
+            BatchingMetrics metrics = client.getMetrics();
+            assertEquals(BatchingInfluxDbClient.DEFAULT_MAX_BATCH_SIZE, metrics.getBatchSize());
+            assertEquals(2, metrics.getConcurrency());
+            assertEquals(1, metrics.getBatchesWritten());
+            assertEquals(3, metrics.getPointsWritten());
+            assertEquals(0, metrics.getPendingPoints());
+            assertEquals(0, metrics.getDecreaseCount());
+            assertTrue(metrics.getSmoothedLatencyNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testAdaptiveBatchingBacksOffOnServerError() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        doThrow(new InfluxDbHttpWriteException(503, "overloaded"))
+                .doThrow(new InfluxDbHttpWriteException(400, "bad point"))
+                .doNothing()
+                .when(delegate).writeLineProtocol(any(), any(), any(), any());
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withAdaptiveBatching(10, 1, TimeUnit.HOURS)
+                .build()) {
+            client.writePoint(DATABASE, point("a", 1));
+            client.flush();
+            assertEquals(1, client.getMetrics().getDecreaseCount());
+            
+            // A client error says nothing about load.
+            client.writePoint(DATABASE, point("b", 2));
+            client.flush();
+            client.writePoint(DATABASE, point("c", 3));
+            client.flush();
+            BatchingMetrics metrics = client.getMetrics();
+            assertEquals(1, metrics.getDecreaseCount());
+            assertEquals(10, metrics.getBatchSize());
+            assertEquals(2, metrics.getFailedPoints());
+            assertEquals(1, metrics.getPointsWritten());
+        }
+    }
+
+    @Test
+    public void testRateLimit() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        long start = System.nanoTime();
+        BatchingMetrics metrics;
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(500)
+                .withRateLimit(DATABASE, null, 1000, Long.MAX_VALUE)
+                .build()) {
+            for (int i = 0; i < 2000; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            client.writePoint("other", point("a", 0));
+            client.flush();
+            metrics = client.getMetrics();
+        }
+        
+        // The first second's worth of points is written immediately, and the rest at 1000 points per second.
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(metrics.getThrottledNanos() >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(2001, metrics.getPointsWritten());
+        assertEquals(5, writes.size());
+    }
+    
+    @Test
+    public void testThrottledDatabaseDoesNotDelayOthers() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> throttledWrites = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch otherWritten = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (DATABASE.equals(invocation.getArgument(0))) {
+                throttledWrites.add(invocation.<LineProtocolBuffer>getArgument(3).toString());
+            } else {
+                otherWritten.countDown();
+            }
+            return null;
+        }).when(delegate).writeLineProtocol(any(), any(), any(), any());
+        
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(100)
+                .withFlushInterval(10, TimeUnit.MILLISECONDS)
+                .withRateLimit(DATABASE, null, 100, Long.MAX_VALUE)
+                .build()) {
+            // The second batch has to wait a second for the rate limit, without holding up the only sender thread.
+            for (int i = 0; i < 200; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            client.writePoint("other", point("a", 0));
+            assertTrue(otherWritten.await(500, TimeUnit.MILLISECONDS));
+            assertEquals(1, throttledWrites.size());
+        }
+        
+        assertEquals(2, throttledWrites.size());
+    }
+    
+    @Test
+    public void testLanes() throws InterruptedException {
+        InfluxDbClient bulkDelegate = mock(InfluxDbClient.class);
+        CountDownLatch bulkWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseBulk = new CountDownLatch(1);
+        List<String> bulkWrites = recordBlockedWrites(bulkDelegate, bulkWriteStarted, releaseBulk);
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        CountDownLatch criticalWritten = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            criticalWritten.countDown();
+            return null;
+        }).when(delegate).writeLineProtocol(any(), any(), any(), any());
+        
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withMaxBatchSize(1)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .withSenderThreads(2)
+                .withLane("bulk", 1, 1, bulkDelegate)
+                .build()) {
+            BatchingInfluxDbClient.LaneClient bulk = client.lane("bulk");
+            bulk.writePoint(DATABASE, point("a", 1));
+            bulkWriteStarted.await();
+            for (int i = 2; i <= 5; i++) {
+                bulk.writePoint(DATABASE, point("a", i));
+            }
+            assertEquals(2, bulk.getPendingPointCount());
+            
+            // The bulk lane is full and its write is stuck, but the default lane has its own budget and senders.
+            client.writePoint(DATABASE, point("b", 1));
+            assertTrue(criticalWritten.await(10, TimeUnit.SECONDS));
+            assertEquals(3, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_NEWEST));
+            releaseBulk.countDown();
+        }
+        
+        assertEquals(Arrays.asList("m,host=a value=1i 1", "m,host=a value=1i 2"), bulkWrites);
+    }
+
+    @Test
+    public void testLanesReserveSenderThreads() {
+        // With the default single sender thread, a bulk lane would leave no sender thread for the default lane.
+        BatchingInfluxDbClient.Builder builder = new BatchingInfluxDbClient.Builder(mock(InfluxDbClient.class))
+                .withLane("bulk", 1, 1);
+        try {
+            builder.build();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("the other lanes' maxConcurrency must leave a sender thread for the default lane",
+                    e.getMessage());
+        }
+        
+        builder.withLane(BatchingInfluxDbClient.DEFAULT_LANE, 1, 2).withSenderThreads(2);
+        try {
+            builder.build();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("the lanes' maxConcurrency can't add up to more than senderThreads", e.getMessage());
+        }
+        
+        builder.withSenderThreads(3).build().close();
+    }
+
+    @Test
+    public void testUnknownLane() {
+        try (BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(mock(InfluxDbClient.class)).build()) {
+            assertEquals(BatchingInfluxDbClient.DEFAULT_LANE,
+                    client.lane(BatchingInfluxDbClient.DEFAULT_LANE).getName());
+            try {
+                client.lane("bulk");
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertEquals("unknown lane: bulk", e.getMessage());
+            }
+        }
+    }
+    
+    private static DataPoint point(String host, long timestamp) {
+        return new DataPoint.Builder("m")
+                .withTag("host", host)
+                .withField("value", 1)
+                .withTimestamp(timestamp, TimestampPrecision.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Record the writes made to a mocked client as "database/retentionPolicy/precision: lines" strings.
+     */
+    private static List<String> recordWrites(InfluxDbClient delegate) {
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            writes.add(String.format("%s/%s/%s: %s", invocation.getArgument(0), invocation.getArgument(1),
+                    invocation.<TimestampPrecision>getArgument(2).getStringValue(), invocation.getArgument(3)));
+            return null;
+        }).when(delegate).writeLineProtocol(any(), any(), any(), any());
+        return writes;
+    }
+
+    /**
+     * Record the lines written to a mocked client, blocking each write until {@code release} is counted down.
+     */
+    private static List<String> recordBlockedWrites(InfluxDbClient delegate, CountDownLatch writeStarted,
+                                                    CountDownLatch release) {
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            writeStarted.countDown();
+            release.await();
+            writes.add(invocation.<LineProtocolBuffer>getArgument(3).toString());
+            return null;
+        }).when(delegate).writeLineProtocol(any(), any(), any(), any());
+        return writes;
+    }
+    
+}
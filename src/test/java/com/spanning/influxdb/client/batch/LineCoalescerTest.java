@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineCoalescerTest {
+
+    @Test
+    public void testMergesFieldsLastValueWins() {
+        LineCoalescer coalescer = new LineCoalescer();
+        assertFalse(add(coalescer, "m,host=a a=1i,b=1i 1"));
+        assertFalse(add(coalescer, "m,host=b a=2i 1"));
+        assertFalse(add(coalescer, "m,host=a a=3i 2"));
+        assertTrue(add(coalescer, "m,host=a b=4i,c=4i 1"));
+        assertTrue(add(coalescer, "m,host=a a=5i 1"));
+        assertEquals(3, coalescer.size());
+        
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        coalescer.writeTo(lines);
+        assertEquals("m,host=a a=5i,b=4i,c=4i 1\nm,host=b a=2i 1\nm,host=a a=3i 2", lines.toString());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testEscapedAndQuotedCharacters() {
+        LineCoalescer coalescer = new LineCoalescer();
+        add(coalescer, "m,host=a\\ b f\\,1=\"x, y=z\",f2=1i 1");
+        add(coalescer, "m,host=a\\ b f2=2i,f\\ 3=\"q\\\" \" 1");
+        // A different series key that only differs after an escaped space.
+        add(coalescer, "m,host=a\\ c f2=3i 1");
+        
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        coalescer.writeTo(lines);
+        assertEquals("m,host=a\\ b f\\,1=\"x, y=z\",f2=2i,f\\ 3=\"q\\\" \" 1\nm,host=a\\ c f2=3i 1",
+                lines.toString());
+    }
+
+    @Test
+    public void testQuotesInSeriesKey() {
+        LineCoalescer coalescer = new LineCoalescer();
+        // Quotes aren't escaped in measurements, tag values and field names, so they don't start a quoted string.
+        assertFalse(add(coalescer, "m,t=a\"b s=\"x y\" 100"));
+        assertFalse(add(coalescer, "m,t=a\"b s=\"x y\" 200"));
+        assertTrue(add(coalescer, "m,t=a\"b s=\"x y\" 200"));
+        assertFalse(add(coalescer, "m\"q,t=\"c f\"g=1i,h=\"v\" 1"));
+        assertTrue(add(coalescer, "m\"q,t=\"c f\"g=2i 1"));
+        
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        coalescer.writeTo(lines);
+        assertEquals("m,t=a\"b s=\"x y\" 100\nm,t=a\"b s=\"x y\" 200\nm\"q,t=\"c f\"g=2i,h=\"v\" 1",
+                lines.toString());
+    }
+
+    private static boolean add(LineCoalescer coalescer, String line) {
+        return coalescer.add(line.getBytes(StandardCharsets.UTF_8));
+    }
+    
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.model.TimestampPrecision;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void testTryClaimWhenFull() {
+        MpscRingBuffer ringBuffer = new MpscRingBuffer(4, 16, WaitStrategies.busySpin());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, publish(ringBuffer, ringBuffer.tryClaim(), "line" + i));
+        }
+        
+        // The ring buffer is full until the consumer is done with the first lap.
+        assertEquals(-1, ringBuffer.tryClaim());
+        assertEquals(4, ringBuffer.size());
+        List<String> lines = new ArrayList<>();
+        assertEquals(2, ringBuffer.drain(slot -> lines.add(slot.lines.toString()), 2));
+        assertEquals(4, ringBuffer.tryClaim());
+        assertEquals(5, ringBuffer.tryClaim());
+        assertEquals(-1, ringBuffer.tryClaim());
+        assertEquals(List.of("line0", "line1"), lines);
+    }
+
+    @Test(timeout = 10_000)
+    public void testClaimGivesUpWhenConsumerDone() throws InterruptedException {
+        MpscRingBuffer ringBuffer = new MpscRingBuffer(4, 16, WaitStrategies.busySpin());
+        for (int i = 0; i < 4; i++) {
+            publish(ringBuffer, ringBuffer.claim(), "line" + i);
+        }
+        
+        // A producer waiting for a slot in a full ring buffer gives up once the consumer is done.
+        long[] claimed = new long[1];
+        Thread producer = new Thread(() -> claimed[0] = ringBuffer.claim());
+        producer.start();
+        ringBuffer.markConsumerDone();
+        producer.join();
+        assertEquals(-1, claimed[0]);
+    }
+
+    @Test
+    public void testConsumerStopsAtUnpublishedSlot() {
+        MpscRingBuffer ringBuffer = new MpscRingBuffer(8, 16, WaitStrategies.busySpin());
+        long first = ringBuffer.claim();
+        long second = ringBuffer.claim();
+        publish(ringBuffer, second, "second");
+        
+        // The second slot was published first, but slots are consumed in sequence order.
+        List<String> lines = new ArrayList<>();
+        assertEquals(0, ringBuffer.drain(slot -> lines.add(slot.lines.toString()), 8));
+        publish(ringBuffer, first, "first");
+        assertEquals(2, ringBuffer.drain(slot -> lines.add(slot.lines.toString()), 8));
+        assertEquals(List.of("first", "second"), lines);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int pointsPerProducer = 20_000;
+        MpscRingBuffer ringBuffer = new MpscRingBuffer(1024, 16, WaitStrategies.yielding());
+        
+        // Each producer publishes its id and a counter.
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < pointsPerProducer; i++) {
+                    publish(ringBuffer, ringBuffer.claim(), producer + ":" + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        
+        // Every point should be consumed exactly once, in each producer's order.
+        int[] nextCounters = new int[producers];
+        int consumed = 0;
+        int idleCount = 0;
+        while (consumed < producers * pointsPerProducer) {
+            int drained = ringBuffer.drain(slot -> {
+                String[] parts = new String(slot.lines.toByteArray(), StandardCharsets.UTF_8).split(":");
+                int producer = Integer.parseInt(parts[0]);
+                assertEquals(nextCounters[producer]++, Integer.parseInt(parts[1]));
+            }, 256);
+            consumed += drained;
+            if (drained == 0) {
+                ringBuffer.idle(idleCount++, 1_000_000);
+            } else {
+                idleCount = 0;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        int[] expectedCounters = new int[producers];
+        Arrays.fill(expectedCounters, pointsPerProducer);
+        assertArrayEquals(expectedCounters, nextCounters);
+        assertEquals(0, ringBuffer.size());
+        assertTrue(ringBuffer.tryClaim() >= 0);
+    }
+
+    @Test
+    public void testParkingWaitStrategyWakesConsumer() throws InterruptedException {
+        MpscRingBuffer ringBuffer = new MpscRingBuffer(8, 16, WaitStrategies.parking());
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            publish(ringBuffer, ringBuffer.claim(), "line");
+        });
+        producer.start();
+        
+        // The consumer parks for up to 10 seconds, but should be woken up as soon as the point is published.
+        long start = System.nanoTime();
+        int idleCount = 0;
+        while (ringBuffer.drain(slot -> {}, 1) == 0) {
+            ringBuffer.idle(idleCount++, 10_000_000_000L);
+        }
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        producer.join();
+    }
+    
+    private static long publish(MpscRingBuffer ringBuffer, long sequence, String line) {
+        PointSlot slot = ringBuffer.get(sequence);
+        slot.lines.writeUtf8(line);
+        slot.set("database", null, TimestampPrecision.MILLISECONDS, 0);
+        ringBuffer.publish(sequence);
+        return sequence;
+    }
+    
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.test.IntegrationTest;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures the latency of enqueueing a point as the number of producer threads grows, for the
+ * {@link BatchingInfluxDbClient} ring buffer, the {@link StripedBatchingInfluxDbClient} stripes, and a
+ * {@link LinkedBlockingQueue} of encoded points with the same capacity as the ring buffer. Run with:
+ * <pre>
+ * mvn verify -Dit.test=RingBufferEnqueueBenchmark
+ * </pre>
+ * Results depend heavily on the number of cores: with fewer cores than producers, both mostly measure scheduling.
+ */
+@Category(IntegrationTest.class)
+public class RingBufferEnqueueBenchmark {
+    
+    private static final int POINTS_PER_PRODUCER = Integer.getInteger("benchmark.pointsPerProducer", 200_000);
+    private static final int[] PRODUCER_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int CAPACITY = 64 * 1024;
+    
+    @Test
+    public void compareEnqueueLatency() throws InterruptedException {
+        // Warm up.
+        ringBuffer(4);
+        stripes(4);
+        blockingQueue(4);
+        
+        System.out.printf("%d cores, %d points per producer, mean / p99 ns per enqueue%n",
+                Runtime.getRuntime().availableProcessors(), POINTS_PER_PRODUCER);
+        System.out.printf("%-10s %22s %22s %22s%n", "producers", "ring buffer", "stripes", "LinkedBlockingQueue");
+        for (int producers : PRODUCER_COUNTS) {
+            System.out.printf("%-10d %22s %22s %22s%n", producers, ringBuffer(producers), stripes(producers),
+                    blockingQueue(producers));
+        }
+    }
+    
+    private static String ringBuffer(int producers) throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class, withSettings().stubOnly());
+        BatchingInfluxDbClient client = new BatchingInfluxDbClient.Builder(delegate)
+                .withRingBufferSize(CAPACITY)
+                .build();
+        try {
+            return measure(producers, builder -> client.writePoint("benchmark", null, builder));
+        } finally {
+            client.close();
+        }
+    }
+    
+    private static String stripes(int producers) throws InterruptedException {
+        StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(
+                mock(InfluxDbClient.class, withSettings().stubOnly()))
+                .build();
+        try {
+            return measure(producers, builder -> client.writePoint("benchmark", null, builder));
+        } finally {
+            client.close();
+        }
+    }
+    
+    private static String blockingQueue(int producers) throws InterruptedException {
+        BlockingQueue<LineProtocolBuffer> queue = new LinkedBlockingQueue<>(CAPACITY);
+        Thread consumer = new Thread(() -> {
+            try {
+                while (true) {
+                    queue.take();
+                }
+            } catch (InterruptedException e) {
+                // Done.
+            }
+        });
+        consumer.start();
+        try {
+            return measure(producers, builder -> {
+                // Encode on the producer side, as the ring buffer does.
+                LineProtocolBuffer lines = new LineProtocolBuffer();
+                builder.writeLineProtocol(lines);
+                try {
+                    queue.put(lines);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            consumer.interrupt();
+            consumer.join();
+        }
+    }
+    
+    private static String measure(int producers, Consumer<DataPoint.Builder> enqueue)
+            throws InterruptedException {
+        long[][] latencies = new long[producers][POINTS_PER_PRODUCER];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long[] producerLatencies = latencies[p];
+            String host = "host" + p;
+            threads[p] = new Thread(() -> {
+                DataPoint.Builder builder = new DataPoint.Builder("m");
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < POINTS_PER_PRODUCER; i++) {
+                    builder.reset("m")
+                            .withTag("host", host)
+                            .withField("value", i)
+                            .withTimestamp(i, TimestampPrecision.MILLISECONDS);
+                    long enqueueStart = System.nanoTime();
+                    enqueue.accept(builder);
+                    producerLatencies[i] = System.nanoTime() - enqueueStart;
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return String.format("%d / %d", (long) Arrays.stream(all).average().orElse(0), all[(int) (all.length * 0.99)]);
+    }
+    
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class StripedBatchingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+
+    @Test
+    public void testPointsWrittenPerDestination() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .build()) {
+            client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2)));
+            client.writePoint(DATABASE, RETENTION_POLICY, point("c", 3));
+            client.flush();
+            
+            assertEquals(Arrays.asList(
+                    "database/null/ms: m,host=a value=1i 1\nm,host=b value=1i 2",
+                    "database/retentionPolicy/ms: m,host=c value=1i 3"), writes);
+            
+            // Nothing is written if nothing was buffered since the last flush.
+            client.flush();
+            assertEquals(2, writes.size());
+        }
+    }
+
+    @Test
+    public void testFailedEncodingLeavesNoPartialLine() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate).build()) {
+            client.writePoint(DATABASE, null, point("a", 1));
+            try {
+                // A point without fields can't be encoded.
+                client.writePoint(DATABASE, null, new DataPoint.Builder("m").withTag("host", "b"));
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+            client.writePoint(DATABASE, null, point("c", 3));
+        }
+        
+        // Closing the client should have written the buffered points.
+        assertEquals(Collections.singletonList("database/null/ms: m,host=a value=1i 1\nm,host=c value=1i 3"),
+                writes);
+    }
+
+    @Test
+    public void testFlushThreshold() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .withFlushThresholdBytes(64)
+                .build()) {
+            for (int i = 0; i < 4; i++) {
+                client.writePoint(DATABASE, point("a", i));
+            }
+            
+            // The stripe went over the threshold, so a flush should happen well before the interval.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (writes.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(writes.isEmpty());
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withStripes(4)
+                .withFlushInterval(1, TimeUnit.MILLISECONDS)
+                .withMaxBatchBytes(4096)
+                .build();
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String host = "host" + t;
+            Thread thread = new Thread(() -> {
+                DataPoint.Builder builder = new DataPoint.Builder("m");
+                for (int i = 0; i < 5_000; i++) {
+                    client.writePoint(DATABASE, null, builder.reset("m")
+                            .withTag("host", host)
+                            .withField("value", i)
+                            .withTimestamp(i, TimestampPrecision.MILLISECONDS));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        client.close();
+        
+        // Every point should have been written exactly once.
+        int lineCount = writes.stream()
+                .mapToInt(write -> write.split("\n").length)
+                .sum();
+        assertEquals(40_000, lineCount);
+    }
+    
+    @Test
+    public void testDropNewest() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build()) {
+            client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2), point("c", 3)));
+            assertEquals(2, client.getPendingPointCount());
+            assertEquals(1, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_NEWEST));
+            
+            client.flush();
+            assertEquals(0, client.getPendingPointCount());
+            assertEquals(0, client.getPendingBytes());
+        }
+        
+        assertEquals(Collections.singletonList("database/null/ms: m,host=a value=1i 1\nm,host=b value=1i 2"), writes);
+    }
+
+    @Test
+    public void testDropOldest() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withStripes(1)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build()) {
+            client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2), point("c", 3)));
+            
+            // The stripe's buffered points are dropped along with the one that went over the limit.
+            assertEquals(0, client.getPendingPointCount());
+            assertEquals(0, client.getPendingBytes());
+            assertEquals(3, (long) client.getDroppedPointCounts().get(OverflowPolicy.DROP_OLDEST));
+            
+            client.writePoint(DATABASE, point("d", 4));
+            client.flush();
+        }
+        
+        assertEquals(Collections.singletonList("database/null/ms: m,host=d value=1i 4"), writes);
+    }
+
+    @Test
+    public void testBlockFlushesEarly() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        List<String> writes = recordWrites(delegate);
+        try (StripedBatchingInfluxDbClient client = new StripedBatchingInfluxDbClient.Builder(delegate)
+                .withFlushInterval(1, TimeUnit.HOURS)
+                .withMaxPending(2, Long.MAX_VALUE)
+                .withBlockTimeout(1, TimeUnit.MINUTES)
+                .build()) {
+            client.writePoints(DATABASE, Arrays.asList(point("a", 1), point("b", 2), point("c", 3)));
+            
+            // The third point waited for a flush, which was triggered ahead of the flush interval.
+            assertEquals(1, client.getPendingPointCount());
+            assertEquals(0, (long) client.getDroppedPointCounts().get(OverflowPolicy.BLOCK));
+            client.flush();
+        }
+        
+        assertEquals(Arrays.asList(
+                "database/null/ms: m,host=a value=1i 1\nm,host=b value=1i 2",
+                "database/null/ms: m,host=c value=1i 3"), writes);
+    }
+    
+    private static DataPoint point(String host, long timestamp) {
+        return new DataPoint.Builder("m")
+                .withTag("host", host)
+                .withField("value", 1)
+                .withTimestamp(timestamp, TimestampPrecision.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Record the writes made to a mocked client as "database/retentionPolicy/precision: lines" strings, with the
+     * buffers of each write joined by newlines.
+     */
+    private static List<String> recordWrites(InfluxDbClient delegate) {
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            String lines = invocation.<List<LineProtocolBuffer>>getArgument(3).stream()
+                    .map(LineProtocolBuffer::toString)
+                    .collect(Collectors.joining("\n"));
+            writes.add(String.format("%s/%s/%s: %s", invocation.getArgument(0), invocation.getArgument(1),
+                    invocation.<TimestampPrecision>getArgument(2).getStringValue(), lines));
+            return null;
+        }).when(delegate).writeLineProtocolBuffers(any(), any(), any(), any());
+        return writes;
+    }
+    
+}
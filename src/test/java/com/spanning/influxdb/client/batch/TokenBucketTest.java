@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenBucketTest {
+    
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstUpToOneSecond() {
+        TokenBucket bucket = new TokenBucket(100, 0);
+        assertEquals(0, bucket.take(60, 0));
+        assertEquals(0, bucket.take(40, 0));
+        // The bucket is empty, so the next token takes 10ms to refill.
+        assertEquals(SECOND / 100, bucket.take(1, 0));
+    }
+
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(100, 0);
+        assertEquals(0, bucket.take(100, 0));
+        assertEquals(0, bucket.take(50, SECOND / 2));
+        
+        // However long the bucket is idle, it only refills to a second's worth of tokens.
+        assertEquals(0, bucket.take(100, 10 * SECOND));
+        assertEquals(SECOND / 100, bucket.take(1, 10 * SECOND));
+    }
+
+    @Test
+    public void testLargeRequestWaits() {
+        TokenBucket bucket = new TokenBucket(100, 0);
+        assertEquals(2 * SECOND, bucket.take(300, 0));
+        // Later requests wait behind it.
+        assertEquals(3 * SECOND, bucket.take(100, 0));
+    }
+
+    @Test
+    public void testConcurrentTakes() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 0);
+        AtomicLong maxWait = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    maxWait.accumulateAndGet(bucket.take(1, 0), Math::max);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        // 4000 tokens at 1000 per second: the first 1000 are free, and the last one waits 3 seconds.
+        assertEquals(3 * SECOND, maxWait.get());
+    }
+    
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WeightedLaneSchedulerTest {
+
+    @Test
+    public void testWeightedRoundRobin() throws InterruptedException {
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {5, 1},
+                new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE});
+        for (int i = 0; i < 12; i++) {
+            scheduler.offer(0, "a" + i);
+            scheduler.offer(1, "b" + i);
+        }
+        
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            order.append(scheduler.poll(0, TimeUnit.MILLISECONDS).charAt(0));
+        }
+        // The lane with the smaller weight is interleaved, rather than waiting for a run of the other lane's items.
+        assertEquals("aaabaaaaabaa", order.toString());
+    }
+
+    @Test
+    public void testOrderWithinLane() throws InterruptedException {
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {1}, new int[] {2});
+        scheduler.offer(0, "a");
+        scheduler.offer(0, "b");
+        assertEquals("a", scheduler.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals("b", scheduler.poll(0, TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws InterruptedException {
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {10, 1}, new int[] {1, 1});
+        scheduler.offer(0, "a0");
+        scheduler.offer(0, "a1");
+        scheduler.offer(1, "b0");
+        
+        assertEquals("a0", scheduler.poll(0, TimeUnit.MILLISECONDS));
+        // Lane 0 is at its limit, so lane 1 goes next despite its weight, and then nothing is available.
+        assertEquals("b0", scheduler.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(scheduler.poll(10, TimeUnit.MILLISECONDS));
+        assertFalse(scheduler.isEmpty());
+        
+        scheduler.complete(0);
+        assertEquals("a1", scheduler.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPollWaitsForOffer() throws InterruptedException {
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {1}, new int[] {1});
+        Thread offerer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler.offer(0, "a");
+        });
+        offerer.start();
+        assertEquals("a", scheduler.poll(10, TimeUnit.SECONDS));
+        offerer.join();
+    }
+
+    @Test
+    public void testItemsNotReadyAreSkipped() throws InterruptedException {
+        long now = System.nanoTime();
+        long readyAt = now + TimeUnit.MILLISECONDS.toNanos(50);
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {1}, new int[] {2},
+                item -> item.equals("late") ? readyAt : now);
+        scheduler.offer(0, "late");
+        scheduler.offer(0, "a");
+        
+        // The item behind the one that isn't ready goes first, and the poll then waits for the other to be ready.
+        assertEquals("a", scheduler.poll(0, TimeUnit.MILLISECONDS));
+        assertNull(scheduler.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals("late", scheduler.poll(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - readyAt >= 0);
+    }
+
+    @Test
+    public void testPollOldest() {
+        WeightedLaneScheduler<String> scheduler = new WeightedLaneScheduler<>(new int[] {1, 1}, new int[] {1, 1});
+        scheduler.offer(0, "a0");
+        scheduler.offer(0, "a1");
+        assertEquals("a0", scheduler.pollOldest(0));
+        assertNull(scheduler.pollOldest(1));
+        assertFalse(scheduler.isEmpty());
+    }
+    
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.batch;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteRateLimiterTest {
+    
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testLimitsPerDatabaseAndRetentionPolicy() {
+        WriteRateLimiter limiter = new WriteRateLimiter(
+                Collections.singletonMap(new WriteRateLimiter.Key("db", "rp"), new WriteRateLimiter.Limit(10, 1000)),
+                new WriteRateLimiter.Limit(100, Long.MAX_VALUE));
+        assertTrue(limiter.isEnabled());
+        
+        assertEquals(0, limiter.acquire("db", "rp", 10, 100, 0));
+        assertEquals(SECOND / 10, limiter.acquire("db", "rp", 1, 10, 0));
+        // The byte limit applies too: 2000 bytes at 1000 per second, less the first second's worth.
+        assertEquals(SECOND, limiter.acquire("db", "rp", 0, 1890, 0));
+        
+        // Other destinations get their own buckets with the default limit, and unlimited bytes.
+        assertEquals(0, limiter.acquire("db", null, 100, Long.MAX_VALUE / 2, 0));
+        assertEquals(0, limiter.acquire("other", "rp", 100, 0, 0));
+        assertEquals(SECOND / 100, limiter.acquire("other", "rp", 1, 0, 0));
+    }
+
+    @Test
+    public void testUnlimited() {
+        WriteRateLimiter limiter = new WriteRateLimiter(Collections.emptyMap(), null);
+        assertFalse(limiter.isEnabled());
+        assertEquals(0, limiter.acquire("db", null, Long.MAX_VALUE, Long.MAX_VALUE, 0));
+    }
+    
+}
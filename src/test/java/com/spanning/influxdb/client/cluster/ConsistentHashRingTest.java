@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+    
+    private static final int KEYS = 30_000;
+
+    @Test
+    public void testSpreadsKeysEvenly() {
+        ConsistentHashRing<String> ring = newRing("a", "b", "c");
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.get(hash(i)), 1, Integer::sum);
+        }
+        
+        assertEquals(3, counts.size());
+        counts.forEach((node, count) ->
+                assertTrue(node + " owns " + count + " keys", count > KEYS / 3 * 0.75 && count < KEYS / 3 * 1.25));
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesKeysToNewNode() {
+        ConsistentHashRing<String> before = newRing("a", "b", "c");
+        ConsistentHashRing<String> after = newRing("a", "b", "c", "d");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String node = after.get(hash(i));
+            if (!node.equals(before.get(hash(i)))) {
+                assertEquals("d", node);
+                moved++;
+            }
+        }
+        
+        // About a quarter of the keys should move to the new node.
+        assertTrue("moved " + moved, moved > KEYS * 0.15 && moved < KEYS * 0.35);
+    }
+
+    @Test
+    public void testRemovingNodeOnlyMovesItsKeys() {
+        ConsistentHashRing<String> before = newRing("a", "b", "c");
+        ConsistentHashRing<String> after = newRing("a", "c");
+        for (int i = 0; i < KEYS; i++) {
+            String node = before.get(hash(i));
+            if (!node.equals("b")) {
+                assertEquals(node, after.get(hash(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testIndependentOfNodeOrder() {
+        ConsistentHashRing<String> ring = newRing("a", "b", "c");
+        ConsistentHashRing<String> reordered = newRing("c", "a", "b");
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.get(hash(i)), reordered.get(hash(i)));
+        }
+    }
+
+    @Test
+    public void testHashUsesRemainingBytes() {
+        ByteBuffer buffer = ByteBuffer.wrap("xxkeyxx".getBytes(StandardCharsets.UTF_8));
+        buffer.position(2).limit(5);
+        
+        assertEquals(ConsistentHashRing.hash(ByteBuffer.wrap("key".getBytes(StandardCharsets.UTF_8))),
+                ConsistentHashRing.hash(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    private static ConsistentHashRing<String> newRing(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return new ConsistentHashRing<>(nodes, ShardingInfluxDbClient.DEFAULT_VIRTUAL_NODES);
+    }
+
+    private static long hash(int key) {
+        return ConsistentHashRing.hash(ByteBuffer.wrap(("cpu,host=host-" + key).getBytes(StandardCharsets.UTF_8)));
+    }
+    
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoadBalancingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final DataPoint POINT = new DataPoint.Builder("m")
+            .withField("value", 1)
+            .withTimestamp(1L, TimestampPrecision.SECONDS)
+            .build();
+    
+    private final List<StandInNode> servers = new ArrayList<>();
+    private LoadBalancingInfluxDbClient client;
+    
+    @Before
+    public void startServers() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            servers.add(new StandInNode());
+        }
+    }
+    
+    @After
+    public void stopServers() {
+        if (client != null) {
+            client.close();
+        }
+        servers.forEach(server -> server.server.stop(0));
+    }
+
+    @Test
+    public void testSpreadsConcurrentWrites() throws InterruptedException {
+        servers.forEach(server -> server.delayMillis = 20);
+        client = newClient(LoadBalancingStrategy.LEAST_OUTSTANDING);
+        awaitStatuses(status -> status.getLatencyNanos() > 0);
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    client.writePoint(DATABASE, POINT);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        // Both nodes have the same latency, so outstanding requests spread the writes over both of them.
+        assertEquals(40, servers.get(0).writes.get() + servers.get(1).writes.get());
+        assertTrue(servers.get(0).writes.get() > 0);
+        assertTrue(servers.get(1).writes.get() > 0);
+    }
+
+    @Test
+    public void testPrefersLowerLatency() {
+        servers.get(1).delayMillis = 50;
+        client = newClient(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        // The first health checks include connecting and warming up, so wait for the latencies to settle.
+        awaitStatuses(status -> status.getLatencyNanos() > 0);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (client.getNodeStatuses().get(0).getLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(10)) {
+            assertTrue("Timed out waiting for latencies: " + client.getNodeStatuses(), System.nanoTime() < deadline);
+            sleep(5);
+        }
+        
+        for (int i = 0; i < 20; i++) {
+            client.writePoint(DATABASE, POINT);
+        }
+        assertEquals(20, servers.get(0).writes.get());
+        assertEquals(0, servers.get(1).writes.get());
+    }
+
+    @Test
+    public void testFailoverEjectAndReadmit() {
+        client = newClient(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        awaitStatuses(status -> status.getLatencyNanos() > 0);
+        StandInNode failing = servers.get(1);
+        failing.pingStatusCode = 503;
+        failing.writeStatusCode = 503;
+        
+        // Every write succeeds, by failing over to the healthy node, and the failing node is ejected.
+        for (int i = 0; i < 20; i++) {
+            client.writePoint(DATABASE, POINT);
+        }
+        assertEquals(20, servers.get(0).writes.get());
+        awaitStatuses(status -> status.isHealthy() != status.getBaseUrl().equals(failing.baseUrl));
+        int failedWrites = failing.writes.get();
+        for (int i = 0; i < 10; i++) {
+            client.writePoint(DATABASE, POINT);
+        }
+        assertEquals(failedWrites, failing.writes.get());
+        
+        // Once its health checks succeed again, it's readmitted.
+        failing.pingStatusCode = 204;
+        awaitStatuses(NodeStatus::isHealthy);
+    }
+
+    @Test
+    public void testAllNodesDown() {
+        client = newClient(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        servers.forEach(server -> server.server.stop(0));
+        try {
+            client.writePoint(DATABASE, POINT);
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            // The failure from the other node is suppressed.
+            assertEquals(1, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void testClientErrorNotRetried() {
+        client = newClient(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        awaitStatuses(status -> status.getLatencyNanos() > 0);
+        servers.forEach(server -> server.writeStatusCode = 400);
+        try {
+            client.writePoint(DATABASE, POINT);
+            fail("Expected InfluxDbHttpWriteException");
+        } catch (InfluxDbHttpWriteException e) {
+            assertEquals(400, e.getStatusCode());
+        }
+        assertEquals(1, servers.get(0).writes.get() + servers.get(1).writes.get());
+        for (NodeStatus status : client.getNodeStatuses()) {
+            assertTrue(status.isHealthy());
+            assertEquals(0, status.getOutstandingRequests());
+            assertEquals(0, status.getFailures());
+        }
+    }
+    
+    @Test
+    public void testSubMillisecondHealthCheckInterval() {
+        List<String> baseUrls = new ArrayList<>();
+        servers.forEach(server -> baseUrls.add(server.baseUrl));
+        client = new LoadBalancingInfluxDbClient.Builder(baseUrls)
+                .withHealthCheckInterval(500, TimeUnit.MICROSECONDS)
+                .build();
+        awaitStatuses(status -> status.getLatencyNanos() > 0);
+    }
+    
+    private LoadBalancingInfluxDbClient newClient(LoadBalancingStrategy strategy) {
+        List<String> baseUrls = new ArrayList<>();
+        servers.forEach(server -> baseUrls.add(server.baseUrl));
+        return new LoadBalancingInfluxDbClient.Builder(baseUrls)
+                .withStrategy(strategy)
+                .withHealthCheckInterval(20, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Wait until every node's status matches a condition.
+     */
+    private void awaitStatuses(Predicate<NodeStatus> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!client.getNodeStatuses().stream().allMatch(condition)) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Timed out waiting for node statuses: " + client.getNodeStatuses());
+            }
+            sleep(5);
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Stand-in for an InfluxDB node that answers pings and writes with configurable status codes and a delay.
+     */
+    private static class StandInNode {
+        
+        private final HttpServer server;
+        private final String baseUrl;
+        private final AtomicInteger writes = new AtomicInteger();
+        private volatile int pingStatusCode = 204;
+        private volatile int writeStatusCode = 204;
+        private volatile long delayMillis;
+
+        StandInNode() throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            baseUrl = "http://localhost:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            boolean write = exchange.getRequestURI().getPath().equals("/write");
+            if (write) {
+                writes.incrementAndGet();
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(write ? writeStatusCode : pingStatusCode, -1);
+            exchange.close();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.cluster;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.Series;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShardingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "rp";
+    private static final String QUERY = "SELECT value FROM cpu GROUP BY host";
+    
+    @Mock
+    private InfluxDbClient nodeA;
+    @Mock
+    private InfluxDbClient nodeB;
+    @Mock
+    private InfluxDbClient nodeC;
+    private ShardingInfluxDbClient client;
+    
+    @Before
+    public void createClient() {
+        client = new ShardingInfluxDbClient.Builder()
+                .withNode("a", nodeA)
+                .withNode("b", nodeB)
+                .withNode("c", nodeC)
+                .build();
+    }
+    
+    @After
+    public void closeClient() {
+        client.close();
+    }
+
+    @Test
+    public void testWritePointsSplitsPerNode() {
+        List<DataPoint> points = points(100);
+        client.writePoints(DATABASE, RETENTION_POLICY, points);
+        
+        int written = 0;
+        for (String name : Arrays.asList("a", "b", "c")) {
+            List<DataPoint> nodePoints = capturePoints(node(name));
+            for (DataPoint point : nodePoints) {
+                assertEquals(name, client.getNodeName(point.getSeriesKey()));
+            }
+            written += nodePoints.size();
+        }
+        assertEquals(points.size(), written);
+    }
+
+    @Test
+    public void testWritePointRoutesBySeries() {
+        DataPoint point = points(1).get(0);
+        client.writePoint(DATABASE, point);
+        
+        verify(node(client.getNodeName(point.getSeriesKey()))).writePoint(DATABASE, null, point);
+    }
+
+    @Test
+    public void testLineProtocolRoutedLikePoints() {
+        List<DataPoint> points = points(100);
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        points.forEach(point -> point.writeLineProtocol(lines.beginLine()));
+        client.writeLineProtocol(DATABASE, RETENTION_POLICY, TimestampPrecision.SECONDS, lines);
+        
+        Set<String> written = new HashSet<>();
+        for (String name : Arrays.asList("a", "b", "c")) {
+            ArgumentCaptor<LineProtocolBuffer> captor = ArgumentCaptor.forClass(LineProtocolBuffer.class);
+            verify(node(name)).writeLineProtocol(eq(DATABASE), eq(RETENTION_POLICY), eq(TimestampPrecision.SECONDS),
+                    captor.capture());
+            written.addAll(Arrays.asList(captor.getValue().toString().split("\n")));
+            for (DataPoint point : points) {
+                if (name.equals(client.getNodeName(point.getSeriesKey()))) {
+                    assertTrue(captor.getValue().toString().contains(point.lineProtocolString()));
+                }
+            }
+        }
+        assertEquals(points.size(), written.size());
+    }
+
+    @Test
+    public void testEmptyWritesRejected() {
+        try {
+            client.writePoints(DATABASE, Collections.emptyList());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("points must contain at least one DataPoint", e.getMessage());
+        }
+        try {
+            client.writePoints(DATABASE, null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("points must contain at least one DataPoint", e.getMessage());
+        }
+        try {
+            client.writeLineProtocol(DATABASE, null, TimestampPrecision.SECONDS, new LineProtocolBuffer());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("lines must contain at least one line protocol string", e.getMessage());
+        }
+        try {
+            client.writeLineProtocolBuffers(DATABASE, null, TimestampPrecision.SECONDS, Collections.emptyList());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("lines must contain at least one buffer", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testEmptyBuffersNotWritten() {
+        client.writeLineProtocolBuffers(DATABASE, null, TimestampPrecision.SECONDS,
+                Arrays.asList(new LineProtocolBuffer(), new LineProtocolBuffer()));
+        
+        for (String name : Arrays.asList("a", "b", "c")) {
+            verify(node(name), never()).writeLineProtocol(any(), any(), any(), any());
+        }
+    }
+
+    @Test
+    public void testWriteFailures() {
+        RuntimeException failureA = new RuntimeException("a");
+        RuntimeException failureB = new RuntimeException("b");
+        doThrow(failureA).when(nodeA).writePoints(eq(DATABASE), eq(RETENTION_POLICY), anyList());
+        doThrow(failureB).when(nodeB).writePoints(eq(DATABASE), eq(RETENTION_POLICY), anyList());
+        
+        try {
+            client.writePoints(DATABASE, RETENTION_POLICY, points(100));
+            fail("expected the write to fail");
+        } catch (RuntimeException e) {
+            assertTrue(e == failureA || e == failureB);
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertFalse(capturePoints(nodeC).isEmpty());
+    }
+
+    @Test
+    public void testAddNode() {
+        List<DataPoint> points = points(1000);
+        List<String> before = new ArrayList<>();
+        points.forEach(point -> before.add(client.getNodeName(point.getSeriesKey())));
+        
+        client.addNode("d", nodeA);
+        int moved = 0;
+        for (int i = 0; i < points.size(); i++) {
+            String node = client.getNodeName(points.get(i).getSeriesKey());
+            if (!node.equals(before.get(i))) {
+                assertEquals("d", node);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > 0 && moved < points.size() / 2);
+        
+        client.removeNode("d");
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(before.get(i), client.getNodeName(points.get(i).getSeriesKey()));
+        }
+    }
+
+    @Test
+    public void testQueryMergesResults() {
+        when(nodeA.executeQuery(DATABASE, QUERY)).thenReturn(Collections.singletonList(new QueryResult(Arrays.asList(
+                series("host-1", Arrays.asList(1L, 1.0), Arrays.asList(3L, 1.0)),
+                series("host-2", Arrays.asList(2L, 2.0))), null)));
+        when(nodeB.executeQuery(DATABASE, QUERY)).thenReturn(Collections.singletonList(new QueryResult(
+                Collections.singletonList(series("host-1", Arrays.asList(2L, 3.0))), null)));
+        when(nodeC.executeQuery(DATABASE, QUERY)).thenReturn(Collections.singletonList(new QueryResult(
+                Collections.emptyList(), "partial failure")));
+        
+        List<QueryResult> results = client.executeQuery(DATABASE, QUERY);
+        
+        assertEquals(1, results.size());
+        assertEquals("partial failure", results.get(0).getError());
+        List<Series> series = results.get(0).getSeries();
+        assertEquals(2, series.size());
+        assertEquals(Collections.singletonMap("host", "host-1"), series.get(0).getTags());
+        assertEquals(Arrays.asList(Arrays.asList(1L, 1.0), Arrays.asList(2L, 3.0), Arrays.asList(3L, 1.0)),
+                series.get(0).getValues());
+        assertEquals(Collections.singletonList(Arrays.asList(2L, 2.0)), series.get(1).getValues());
+    }
+
+    @Test
+    public void testQueryMergesDescendingResults() {
+        String query = "SELECT value FROM cpu GROUP BY host ORDER BY time DESC LIMIT 1";
+        when(nodeA.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(new QueryResult(
+                Collections.singletonList(series("host-1", Arrays.asList(1L, 1.0))), null)));
+        when(nodeB.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(new QueryResult(
+                Collections.singletonList(series("host-1", Arrays.asList(3L, 3.0))), null)));
+        when(nodeC.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(new QueryResult(
+                Collections.singletonList(series("host-1", Arrays.asList(2L, 2.0))), null)));
+        
+        List<Series> series = client.executeQuery(DATABASE, query).get(0).getSeries();
+        
+        // LIMIT applies on each node, so there's a row from each of them, latest first.
+        assertEquals(Arrays.asList(Arrays.asList(3L, 3.0), Arrays.asList(2L, 2.0), Arrays.asList(1L, 1.0)),
+                series.get(0).getValues());
+    }
+
+    @Test
+    public void testMergeKeepsEachNodesOrder() {
+        QueryResult a = new QueryResult(Collections.singletonList(
+                series("host-1", Arrays.asList(5L, 1.0), Arrays.asList(2L, 1.0))), null);
+        QueryResult b = new QueryResult(Collections.singletonList(
+                series("host-1", Arrays.asList(4L, 2.0), Arrays.asList(2L, 2.0), Arrays.asList(1L, 2.0))), null);
+        
+        List<QueryResult> results = ShardingInfluxDbClient.merge(Arrays.asList(
+                Collections.singletonList(a), Collections.singletonList(b)), false);
+        
+        assertEquals(Arrays.asList(Arrays.asList(5L, 1.0), Arrays.asList(4L, 2.0), Arrays.asList(2L, 1.0),
+                Arrays.asList(2L, 2.0), Arrays.asList(1L, 2.0)), results.get(0).getSeries().get(0).getValues());
+    }
+
+    @Test
+    public void testQueryMergesShowResultsWithoutDuplicates() {
+        String query = "SHOW MEASUREMENTS";
+        when(nodeA.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(measurements("cpu", "mem")));
+        when(nodeB.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(measurements("cpu", "disk")));
+        when(nodeC.executeQuery(DATABASE, query)).thenReturn(Collections.singletonList(measurements("cpu")));
+        
+        List<Series> series = client.executeQuery(DATABASE, query).get(0).getSeries();
+        
+        assertEquals(1, series.size());
+        assertEquals(Arrays.asList(Collections.singletonList("cpu"), Collections.singletonList("mem"),
+                Collections.singletonList("disk")), series.get(0).getValues());
+    }
+
+    @Test
+    public void testMergeStatements() {
+        QueryResult empty = new QueryResult(Collections.emptyList(), null);
+        QueryResult second = new QueryResult(Collections.singletonList(series("host-1", Arrays.asList(1L, 1.0))),
+                null);
+        
+        List<QueryResult> results = ShardingInfluxDbClient.merge(Arrays.asList(
+                Arrays.asList(empty, second), Collections.singletonList(empty)), false);
+        
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).getSeries().isEmpty());
+        assertNull(results.get(1).getError());
+        assertEquals(1, results.get(1).getSeries().size());
+    }
+
+    @Test
+    public void testSingleNode() {
+        ShardingInfluxDbClient single = new ShardingInfluxDbClient.Builder().withNode("a", nodeA).build();
+        try {
+            single.writePoints(DATABASE, RETENTION_POLICY, points(10));
+            verify(nodeA).writePoints(eq(DATABASE), eq(RETENTION_POLICY), anyList());
+            verify(nodeB, never()).writePoints(any(), any(), anyList());
+        } finally {
+            single.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveLastNode() {
+        ShardingInfluxDbClient single = new ShardingInfluxDbClient.Builder().withNode("a", nodeA).build();
+        try {
+            single.removeNode("a");
+        } finally {
+            single.close();
+        }
+    }
+
+    private InfluxDbClient node(String name) {
+        switch (name) {
+            case "a":
+                return nodeA;
+            case "b":
+                return nodeB;
+            default:
+                return nodeC;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DataPoint> capturePoints(InfluxDbClient node) {
+        ArgumentCaptor<List<DataPoint>> captor = ArgumentCaptor.forClass(List.class);
+        verify(node).writePoints(eq(DATABASE), eq(RETENTION_POLICY), captor.capture());
+        return captor.getValue();
+    }
+
+    private static List<DataPoint> points(int count) {
+        List<DataPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Spaces in the tag value are escaped, which the line protocol routing has to skip over.
+            points.add(new DataPoint.Builder("cpu")
+                    .withTag("host", "host " + i)
+                    .withTag("region", "us-east")
+                    .withField("value", (long) i)
+                    .withTimestamp(i, TimestampPrecision.SECONDS)
+                    .build());
+        }
+        return points;
+    }
+
+    @SafeVarargs
+    private static QueryResult measurements(String... names) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (String name : names) {
+            rows.add(Collections.singletonList(name));
+        }
+        return new QueryResult(Collections.singletonList(new Series("measurements", Collections.emptyMap(),
+                Collections.singletonList("name"), rows)), null);
+    }
+    
+    @SafeVarargs
+    private static Series series(String host, List<Object>... rows) {
+        return new Series("cpu", Collections.singletonMap("host", host), Arrays.asList("time", "value"),
+                Arrays.asList(rows));
+    }
+    
+}
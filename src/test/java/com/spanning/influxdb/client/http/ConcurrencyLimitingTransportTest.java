@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConcurrencyLimitingTransportTest {
+
+    @Test
+    public void testRequestWaitsForPermit() throws Exception {
+        HttpTransport delegate = mock(HttpTransport.class);
+        HttpTransportResponse delegateResponse = mock(HttpTransportResponse.class);
+        when(delegateResponse.getStatusCode()).thenReturn(204);
+        when(delegate.post(any(), any())).thenReturn(delegateResponse);
+        HttpTransport transport = new ConcurrencyLimitingTransport(delegate, 1);
+        HttpTransport.RequestTemplate template = mock(HttpTransport.RequestTemplate.class);
+        
+        // Hold the only permit with an open response.
+        HttpTransportResponse first = transport.post(template, Collections.emptyList());
+        assertEquals(204, first.getStatusCode());
+        
+        // A second request should wait until the first response is closed.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Future<HttpTransportResponse> second = executor.submit(() -> {
+                started.countDown();
+                return transport.post(template, Collections.emptyList());
+            });
+            started.await();
+            Thread.sleep(100);
+            assertFalse(second.isDone());
+            
+            first.close();
+            second.get(5, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // Closing a response again shouldn't release another permit.
+        first.close();
+        verify(delegateResponse, times(2)).close();
+    }
+
+    @Test
+    public void testPermitReleasedOnFailure() throws Exception {
+        HttpTransport delegate = mock(HttpTransport.class);
+        HttpTransportResponse delegateResponse = mock(HttpTransportResponse.class);
+        when(delegate.get(any())).thenThrow(new IOException("connection refused")).thenReturn(delegateResponse);
+        HttpTransport transport = new ConcurrencyLimitingTransport(delegate, 1);
+        HttpTransport.RequestTemplate template = mock(HttpTransport.RequestTemplate.class);
+        
+        try {
+            transport.get(template);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("connection refused", e.getMessage());
+        }
+        
+        // The failed request's permit should have been released, so this shouldn't block.
+        transport.get(template).close();
+        verify(delegateResponse).close();
+    }
+    
+}
@@ -18,22 +18,32 @@ package com.spanning.influxdb.client.http;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.net.Socket;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spanning.influxdb.client.LineProtocolEncoder;
 import com.spanning.influxdb.client.exception.InfluxDbHttpQueryException;
 import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
 import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.FieldType;
+import com.spanning.influxdb.model.PointBatch;
+import com.spanning.influxdb.model.PointTemplate;
 import com.spanning.influxdb.model.QueryResponse;
 import com.spanning.influxdb.model.QueryResult;
 import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
 import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Credentials;
 import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.OkHttpClient;
@@ -51,10 +61,15 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -83,6 +98,13 @@ public class InfluxDbHttpClientTest {
         influxDbHttpClient = new InfluxDbHttpClient(BASE_URL, credentials, httpClient, objectMapper);
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testHttpClientKeptForSubclasses() {
+        assertSame(httpClient, influxDbHttpClient.httpClient);
+        assertNull(new InfluxDbHttpClient(BASE_URL, mock(HttpTransport.class)).httpClient);
+    }
+
     @Test
     public void testWritePoint() throws IOException {
         // When a request is executed using httpClient, answer with a response indicating the request was executed
@@ -175,7 +197,7 @@ public class InfluxDbHttpClientTest {
         String responseBody = "Internal server error occurred, oh no!";
         int statusCode = 500;
         Answer<Response> executeWriteRequestAnswer = responseAnswer(
-                statusCode, ResponseBody.create(InfluxDbHttpClient.TEXT_PLAIN, responseBody));
+                statusCode, ResponseBody.create(OkHttpTransport.TEXT_PLAIN_UTF_8, responseBody));
         Call call = mockHttpClientResponse(executeWriteRequestAnswer);
 
         // Write a list of data points using the InfluxDB client.
@@ -195,6 +217,156 @@ public class InfluxDbHttpClientTest {
         }
     }
 
+    @Test
+    public void testWriteLineProtocol() throws IOException {
+        // When a request is executed using httpClient, answer with a response indicating the request was executed
+        // successfully.
+        Call call = mockHttpClientResponse(responseAnswer(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, null));
+
+        // Write pre-encoded points using the InfluxDB client.
+        List<DataPoint> points = getMockedDataPoints("lineProtocolString");
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        points.forEach(point -> point.writeLineProtocol(lines.beginLine()));
+        influxDbHttpClient.writeLineProtocol(DATABASE, RETENTION_POLICY, TimestampPrecision.MILLISECONDS, lines);
+
+        // The request should be the same as if the points had been written with writePoints.
+        verify(httpClient, times(1)).newCall(writePointsRequest(points, RETENTION_POLICY));
+        verify(call, times(1)).execute();
+    }
+
+    @Test
+    public void testWritePointsEncodedInParallel() throws IOException {
+        // When a request is executed using httpClient, answer with a response indicating the request was executed
+        // successfully.
+        Call call = mockHttpClientResponse(responseAnswer(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, null));
+
+        // Write points using a client that encodes them in chunks of 3 points.
+        InfluxDbHttpClient client = new InfluxDbHttpClient(BASE_URL,
+                Optional.of(new InfluxDbHttpClient.InfluxDbCredentials(USERNAME, PASSWORD)), httpClient, objectMapper,
+                new LineProtocolEncoder(ForkJoinPool.commonPool(), 1, 3));
+        List<DataPoint> points = getMockedDataPoints("lineProtocolString");
+        client.writePoints(DATABASE, RETENTION_POLICY, points);
+
+        // The chunks should be joined so that the request is the same as if the points were encoded sequentially.
+        verify(httpClient, times(1)).newCall(writePointsRequest(points, RETENTION_POLICY));
+        verify(call, times(1)).execute();
+    }
+
+    @Test
+    public void testWriteRequestTemplatesReused() throws IOException {
+        // Use a transport that records prepared templates, and responds to every request with 204.
+        HttpTransport transport = mock(HttpTransport.class);
+        HttpTransportResponse response = mock(HttpTransportResponse.class);
+        when(response.getStatusCode()).thenReturn(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE);
+        when(transport.prepare(any(), any())).thenAnswer(invocation -> mock(HttpTransport.RequestTemplate.class));
+        when(transport.post(any(), any())).thenReturn(response);
+        InfluxDbHttpClient client = new InfluxDbHttpClient(BASE_URL,
+                Optional.of(new InfluxDbHttpClient.InfluxDbCredentials(USERNAME, PASSWORD)), transport, objectMapper,
+                new LineProtocolEncoder());
+        
+        // Write to the same database and retention policy several times, and to a different retention policy once.
+        for (int i = 0; i < 3; i++) {
+            client.writePoints(DATABASE, RETENTION_POLICY, getMockedDataPoints("lineProtocolString"));
+        }
+        client.writePoints(DATABASE, getMockedDataPoints("lineProtocolString"));
+        
+        // A template should only have been prepared once per retention policy, with a precomputed auth header.
+        verify(transport, times(2)).prepare(any(), eq(Optional.of(Credentials.basic(USERNAME, PASSWORD))));
+        verify(transport, times(4)).post(any(), any());
+    }
+
+    @Test
+    public void testWritePointsAsync() throws IOException {
+        // When a call is enqueued, answer from the callback with a response indicating the write succeeded.
+        Call call = mock(Call.class);
+        Answer<Response> responseAnswer = responseAnswer(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, null);
+        doAnswer(invocation -> {
+            invocation.<Callback>getArgument(0).onResponse(responseAnswer.answer(invocation));
+            return null;
+        }).when(call).enqueue(any());
+        when(httpClient.newCall(any())).thenReturn(call);
+        
+        List<DataPoint> points = getMockedDataPoints("lineProtocolString");
+        influxDbHttpClient.writePointsAsync(DATABASE, RETENTION_POLICY, points).join();
+        
+        // The request should have been enqueued rather than executed on the calling thread.
+        verify(httpClient).newCall(writePointsRequest(points, RETENTION_POLICY));
+        verify(call, never()).execute();
+    }
+
+    @Test
+    public void testBuilderConfiguresOkHttpClient() throws IOException {
+        ConnectionPool sharedPool = new ConnectionPool(8, 1000);
+        OkHttpClient builtHttpClient = new InfluxDbHttpClient.Builder(BASE_URL)
+                .withConnectionPool(sharedPool)
+                .withReadTimeout(1, TimeUnit.MINUTES)
+                .withSocketSendBufferSize(64 * 1024)
+                .buildOkHttpClient();
+        
+        // The shared pool and the timeouts (explicit or default) should have been applied.
+        assertSame(sharedPool, builtHttpClient.getConnectionPool());
+        assertEquals(InfluxDbHttpClient.DEFAULT_CONNECT_TIMEOUT_MILLIS, builtHttpClient.getConnectTimeout());
+        assertEquals(TimeUnit.MINUTES.toMillis(1), builtHttpClient.getReadTimeout());
+        assertEquals(InfluxDbHttpClient.DEFAULT_WRITE_TIMEOUT_MILLIS, builtHttpClient.getWriteTimeout());
+        
+        // Sockets should be created with TCP_NODELAY and (at least) the requested send buffer size.
+        try (Socket socket = builtHttpClient.getSocketFactory().createSocket()) {
+            assertTrue(socket.getTcpNoDelay());
+            assertTrue(socket.getSendBufferSize() >= 64 * 1024);
+        }
+    }
+
+    @Test
+    public void testBuilderWithTransport() throws IOException {
+        HttpTransport transport = mock(HttpTransport.class);
+        HttpTransportResponse response = mock(HttpTransportResponse.class);
+        when(response.getStatusCode()).thenReturn(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE);
+        when(transport.post(any(), any())).thenReturn(response);
+        InfluxDbHttpClient client = new InfluxDbHttpClient.Builder(BASE_URL)
+                .withCredentials(USERNAME, PASSWORD)
+                .withTransport(transport)
+                .withMaxConcurrentRequests(2)
+                .build();
+        
+        // Requests should be sent with the transport, through a concurrency limit, with the auth header.
+        assertTrue(client.transport instanceof ConcurrencyLimitingTransport);
+        client.writePoints(DATABASE, getMockedDataPoints("lineProtocolString"));
+        verify(transport).prepare(any(), eq(Optional.of(Credentials.basic(USERNAME, PASSWORD))));
+        verify(response).close();
+    }
+
+    @Test
+    public void testWriteBatch() throws IOException {
+        // When a request is executed using httpClient, answer with a response indicating the request was executed
+        // successfully.
+        Call call = mockHttpClientResponse(responseAnswer(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, null));
+
+        // Write a batch using the InfluxDB client.
+        PointTemplate template = new PointTemplate.Builder("measurementName")
+                .withField("value", FieldType.INTEGER)
+                .build();
+        PointBatch batch = new PointBatch(template);
+        batch.setInteger(batch.addRow(1L), 0, 1L);
+        batch.setInteger(batch.addRow(2L), 0, 2L);
+        influxDbHttpClient.writeBatch(DATABASE, RETENTION_POLICY, batch);
+
+        // Verify that a write request with the encoded batch was executed.
+        InfluxDbRequestMatcher matcher = new InfluxDbRequestMatcher(InfluxDbHttpClient.Endpoint.WRITE,
+                "measurementName value=1i 1\nmeasurementName value=2i 2", "POST")
+                .withExpectedQueryParam(InfluxDbHttpClient.QueryParam.PRECISION,
+                        TimestampPrecision.MILLISECONDS.getStringValue())
+                .withExpectedQueryParam(InfluxDbHttpClient.QueryParam.RETENTION_POLICY, RETENTION_POLICY);
+        verify(httpClient, times(1)).newCall(argThat(matcher));
+        verify(call, times(1)).execute();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteLineProtocolEmptyBuffer() {
+        // Attempt to write an empty buffer. This should cause the client to throw an IllegalArgumentException.
+        influxDbHttpClient.writeLineProtocol(DATABASE, RETENTION_POLICY, TimestampPrecision.MILLISECONDS,
+                new LineProtocolBuffer());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testWritePointsNullDatabase() {
         // Attempt to call writePoint with a null database. This should cause the client to throw an IllegalArgumentException.
@@ -225,7 +397,7 @@ public class InfluxDbHttpClientTest {
         // Mock httpClient to return a successful response with a known response body.
         String responseBody = "responseBody";
         Call call = mockHttpClientResponse(
-                responseAnswer(200, ResponseBody.create(InfluxDbHttpClient.TEXT_PLAIN, responseBody)));
+                responseAnswer(200, ResponseBody.create(OkHttpTransport.TEXT_PLAIN_UTF_8, responseBody)));
 
         // Mock objectMapper to parse responseBody into a known QueryResponse with no error message.
         List<QueryResult> results = Collections.singletonList(mock(QueryResult.class));
@@ -270,7 +442,7 @@ public class InfluxDbHttpClientTest {
         int statusCode = 400;
         String responseBody = "responseBody";
         Call call = mockHttpClientResponse(
-                responseAnswer(statusCode, ResponseBody.create(InfluxDbHttpClient.TEXT_PLAIN, responseBody)));
+                responseAnswer(statusCode, ResponseBody.create(OkHttpTransport.TEXT_PLAIN_UTF_8, responseBody)));
 
         // Mock objectMapper to parse responseBody into a known QueryResponse containing an error message.
         String errorMessage = "errorMessage";
@@ -300,7 +472,7 @@ public class InfluxDbHttpClientTest {
         int statusCode = 200;
         String responseBody = "responseBody";
         Call call = mockHttpClientResponse(
-                responseAnswer(statusCode, ResponseBody.create(InfluxDbHttpClient.TEXT_PLAIN, responseBody)));
+                responseAnswer(statusCode, ResponseBody.create(OkHttpTransport.TEXT_PLAIN_UTF_8, responseBody)));
 
         // Mock objectMapper to parse responseBody into a known QueryResponse containing an error message.
         String errorMessage = "errorMessage";
@@ -450,6 +622,8 @@ public class InfluxDbHttpClientTest {
     private static DataPoint mockDataPoint(String lineProtocolString) {
         DataPoint dataPoint = mock(DataPoint.class);
         when(dataPoint.lineProtocolString()).thenReturn(lineProtocolString);
+        doAnswer(invocation -> invocation.<LineProtocolBuffer>getArgument(0).writeUtf8(lineProtocolString))
+                .when(dataPoint).writeLineProtocol(any());
         when(dataPoint.getTimestampPrecision()).thenReturn(TimestampPrecision.MILLISECONDS);
         return dataPoint;
     }
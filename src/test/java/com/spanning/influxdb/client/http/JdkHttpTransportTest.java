@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.QueryResult;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.squareup.okhttp.Credentials;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JdkHttpTransportTest {
+    
+    private static final String DATABASE = "database";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+    
+    private HttpServer server;
+    private BlockingQueue<RecordedRequest> requests;
+    private volatile int responseStatusCode;
+    private volatile String responseBody;
+    private InfluxDbHttpClient client;
+    
+    @Before
+    public void startServer() throws IOException {
+        // Stand-in for the InfluxDB HTTP API that records requests and sends a fixed response.
+        requests = new LinkedBlockingQueue<>();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+        client = new InfluxDbHttpClient(baseUrl, USERNAME, PASSWORD, new JdkHttpTransport());
+    }
+    
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testWritePoints() throws InterruptedException {
+        respondWith(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, "");
+        List<DataPoint> points = Arrays.asList(
+                new DataPoint.Builder("m").withField("value", 1).withTimestamp(1L, TimestampPrecision.SECONDS).build(),
+                new DataPoint.Builder("m").withField("value", 2).withTimestamp(2L, TimestampPrecision.SECONDS).build());
+        
+        client.writePoints(DATABASE, "rp", points);
+        
+        RecordedRequest request = requests.take();
+        assertEquals("POST", request.method);
+        assertEquals("/write?db=database&precision=s&rp=rp", request.uri);
+        assertEquals(Credentials.basic(USERNAME, PASSWORD), request.authorization);
+        assertEquals(JdkHttpTransport.TEXT_PLAIN_UTF_8, request.contentType);
+        assertEquals("m value=1i 1\nm value=2i 2", request.body);
+    }
+    
+    @Test
+    public void testPing() throws InterruptedException {
+        respondWith(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, "");
+        assertTrue(client.ping());
+        
+        RecordedRequest request = requests.take();
+        assertEquals("GET", request.method);
+        assertEquals("/ping", request.uri);
+        
+        respondWith(503, "");
+        assertFalse(client.ping());
+    }
+    
+    @Test
+    public void testWritePointsError() {
+        respondWith(400, "{\"error\":\"unable to parse\"}");
+        try {
+            client.writePoint(DATABASE, new DataPoint.Builder("m").withField("value", 1).build());
+            fail("Expected InfluxDbHttpWriteException");
+        } catch (InfluxDbHttpWriteException e) {
+            assertEquals(400, e.getStatusCode());
+            assertEquals("{\"error\":\"unable to parse\"}", e.getResponseBody());
+        }
+    }
+    
+    @Test
+    public void testWritePointsAsync() throws InterruptedException {
+        respondWith(400, "{\"error\":\"unable to parse\"}");
+        List<DataPoint> points = Arrays.asList(
+                new DataPoint.Builder("m").withField("value", 1).withTimestamp(1L, TimestampPrecision.SECONDS).build());
+        
+        try {
+            client.writePointsAsync(DATABASE, null, points).join();
+            fail("Expected CompletionException");
+        } catch (CompletionException e) {
+            assertEquals(400, ((InfluxDbHttpWriteException) e.getCause()).getStatusCode());
+        }
+        
+        RecordedRequest request = requests.take();
+        assertEquals("/write?db=database&precision=s", request.uri);
+        assertEquals("m value=1i 1", request.body);
+    }
+    
+    @Test
+    public void testExecuteQuery() throws InterruptedException {
+        respondWith(200, "{\"results\":[{\"series\":[{\"name\":\"m\",\"columns\":[\"time\",\"value\"]," +
+                "\"values\":[[\"1970-01-01T00:00:01Z\",1]]}]}]}");
+        
+        List<QueryResult> results = client.executeQuery(DATABASE, "SELECT * FROM m");
+        
+        assertEquals("m", results.get(0).getSeries().get(0).getName());
+        assertEquals(Arrays.asList("time", "value"), results.get(0).getSeries().get(0).getColumns());
+        RecordedRequest request = requests.take();
+        assertEquals("GET", request.method);
+        assertEquals("/query?db=database&q=SELECT%20*%20FROM%20m", request.uri);
+    }
+    
+    private void respondWith(int statusCode, String body) {
+        this.responseStatusCode = statusCode;
+        this.responseBody = body;
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(new RecordedRequest(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+                exchange.getRequestHeaders().getFirst(InfluxDbHttpClient.AUTH_HEADER_NAME),
+                exchange.getRequestHeaders().getFirst(JdkHttpTransport.CONTENT_TYPE_HEADER_NAME),
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+        byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseStatusCode, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    private static class RecordedRequest {
+        
+        private final String method;
+        private final String uri;
+        private final String authorization;
+        private final String contentType;
+        private final String body;
+
+        RecordedRequest(String method, String uri, String authorization, String contentType, String body) {
+            this.method = method;
+            this.uri = uri;
+            this.authorization = authorization;
+            this.contentType = contentType;
+            this.body = body;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineProtocolBodyPublisherTest {
+    
+    @Test
+    public void testPublishesBuffersJoinedWithNewlines() {
+        LineProtocolBodyPublisher publisher = new LineProtocolBodyPublisher(Arrays.asList(
+                new LineProtocolBuffer().writeUtf8("a x=1i"),
+                new LineProtocolBuffer().writeUtf8("b x=2i").beginLine().writeUtf8("c x=3i")));
+        assertEquals(20, publisher.contentLength());
+        
+        // Subscribe twice, requesting one item at a time from within onNext.
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            boolean[] completed = { false };
+            publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                private Flow.Subscription subscription;
+                
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    byte[] bytes = new byte[item.remaining()];
+                    item.get(bytes);
+                    body.write(bytes, 0, bytes.length);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throw new AssertionError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    completed[0] = true;
+                }
+            });
+            assertTrue(completed[0]);
+            assertEquals("a x=1i\nb x=2i\nc x=3i", new String(body.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+    
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.http;
+
+import com.spanning.influxdb.client.AsyncInfluxDbClient;
+import com.spanning.influxdb.client.VirtualThreads;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.test.IntegrationTest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the throughput and thread usage of many concurrent writers when the client's blocking calls run on
+ * platform threads, on virtual threads (with {@link AsyncInfluxDbClient#onVirtualThreads}), and when writes are sent
+ * with the transport's asynchronous callbacks ({@link InfluxDbHttpClient#writePointsAsync}). Requires JDK 21. Run
+ * with:
+ * <pre>
+ * mvn verify -Dit.test=VirtualThreadBenchmark -Dbenchmark.writers=10000 -Djdk.tracePinnedThreads=full
+ * </pre>
+ * The stand-in server answers every write after a fixed delay, without tying up a thread per request, so the
+ * results reflect how the client waits for responses rather than how fast the server is.
+ */
+@Category(IntegrationTest.class)
+public class VirtualThreadBenchmark {
+    
+    private static final int WRITERS = Integer.getInteger("benchmark.writers", 10_000);
+    private static final int MAX_CONCURRENT_REQUESTS = Integer.getInteger("benchmark.maxConcurrentRequests", 128);
+    private static final long SERVER_LATENCY_MILLIS = Long.getLong("benchmark.serverLatencyMillis", 20);
+    private static final String DATABASE = "benchmark";
+    
+    private HttpServer server;
+    private ScheduledExecutorService responseScheduler;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger writesReceived = new AtomicInteger();
+    private InfluxDbHttpClient client;
+    
+    @Before
+    public void startServer() throws IOException {
+        assumeTrue("Virtual threads require JDK 21", VirtualThreads.isSupported());
+        
+        responseScheduler = Executors.newSingleThreadScheduledExecutor();
+        serverExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor().get();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+        
+        client = new InfluxDbHttpClient.Builder("http://localhost:" + server.getAddress().getPort())
+                .withTransport(new JdkHttpTransport())
+                .withMaxConcurrentRequests(MAX_CONCURRENT_REQUESTS)
+                .build();
+    }
+    
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+            responseScheduler.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void compareExecutionModes() throws Exception {
+        // Warm up the connections and JIT with each mode before measuring.
+        run("warm-up", this::platformThreads);
+        run("warm-up", this::virtualThreads);
+        run("warm-up", this::asyncCallbacks);
+        
+        System.out.printf("%d writers, %d max concurrent requests, %d ms server latency%n", WRITERS,
+                MAX_CONCURRENT_REQUESTS, SERVER_LATENCY_MILLIS);
+        System.out.printf("%-16s %10s %12s %12s%n", "mode", "elapsed ms", "writes/s", "peak threads");
+        run("platform threads", this::platformThreads);
+        run("virtual threads", this::virtualThreads);
+        run("async callbacks", this::asyncCallbacks);
+    }
+    
+    private void run(String mode, Function<List<DataPoint>, List<CompletableFuture<Void>>> writers) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        writesReceived.set(0);
+        List<DataPoint> points = Collections.singletonList(new DataPoint.Builder("benchmark")
+                .withTag("mode", mode.replace(' ', '_'))
+                .withField("value", 1)
+                .withTimestamp(System.currentTimeMillis(), TimestampPrecision.MILLISECONDS)
+                .build());
+        
+        long start = System.nanoTime();
+        CompletableFuture.allOf(writers.apply(points).toArray(new CompletableFuture<?>[0])).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertEquals(WRITERS, writesReceived.get());
+        if (!"warm-up".equals(mode)) {
+            System.out.printf("%-16s %10d %12d %12d%n", mode, elapsedMillis,
+                    WRITERS * 1000L / Math.max(elapsedMillis, 1), threads.getPeakThreadCount());
+        }
+    }
+    
+    /**
+     * Each writer blocks a platform thread for the duration of its write.
+     */
+    private List<CompletableFuture<Void>> platformThreads(List<DataPoint> points) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            return submitWriters(() -> CompletableFuture.runAsync(
+                    () -> client.writePoints(DATABASE, null, points), executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Each writer blocks a virtual thread for the duration of its write.
+     */
+    private List<CompletableFuture<Void>> virtualThreads(List<DataPoint> points) {
+        AsyncInfluxDbClient asyncClient = AsyncInfluxDbClient.onVirtualThreads(client);
+        try {
+            return submitWriters(() -> asyncClient.writePointsAsync(DATABASE, null, points));
+        } finally {
+            asyncClient.close();
+        }
+    }
+    
+    /**
+     * Writes are sent from a single thread, and completed by the transport's callbacks.
+     */
+    private List<CompletableFuture<Void>> asyncCallbacks(List<DataPoint> points) {
+        return submitWriters(() -> client.writePointsAsync(DATABASE, null, points));
+    }
+    
+    private static List<CompletableFuture<Void>> submitWriters(
+            Supplier<CompletableFuture<Void>> writer) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(WRITERS);
+        for (int i = 0; i < WRITERS; i++) {
+            futures.add(writer.get());
+        }
+        return futures;
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        writesReceived.incrementAndGet();
+        
+        // Respond after the simulated latency, without blocking a thread in the meantime.
+        responseScheduler.schedule(() -> {
+            try {
+                exchange.sendResponseHeaders(InfluxDbHttpClient.NO_CONTENT_STATUS_CODE, -1);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                exchange.close();
+            }
+        }, SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+}
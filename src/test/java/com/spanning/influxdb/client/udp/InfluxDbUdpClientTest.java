@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.udp;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InfluxDbUdpClientTest {
+    
+    private static final int MTU = 128;
+    
+    private DatagramSocket listener;
+    private InfluxDbUdpClient client;
+    
+    @Before
+    public void setup() throws IOException {
+        // Stand-in for the InfluxDB UDP listener.
+        listener = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        listener.setSoTimeout(5_000);
+        client = new InfluxDbUdpClient(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getLocalPort()), MTU);
+    }
+    
+    @After
+    public void teardown() {
+        client.close();
+        listener.close();
+    }
+    
+    @Test
+    public void testWritePointsPacksDatagrams() throws IOException {
+        List<DataPoint> points = IntStream.range(0, 20)
+                .mapToObj(i -> new DataPoint.Builder("measurement")
+                        .withTag("host", "host" + i)
+                        .withField("value", i)
+                        .withTimestamp(i, TimestampPrecision.SECONDS)
+                        .build())
+                .collect(Collectors.toList());
+        client.writePoints("ignored", points);
+        
+        // Receive datagrams until all lines have arrived.
+        UdpClientMetrics metrics = client.getMetrics();
+        List<String> datagrams = receive((int) metrics.getDatagramsSent());
+        datagrams.forEach(datagram -> assertTrue(datagram.length() <= MTU - InfluxDbUdpClient.IP_AND_UDP_HEADER_SIZE));
+        assertTrue(datagrams.size() > 1 && datagrams.size() < points.size());
+        assertEquals(points.stream().map(DataPoint::lineProtocolString).collect(Collectors.toList()),
+                datagrams.stream().flatMap(datagram -> Arrays.stream(datagram.split("\n")))
+                        .collect(Collectors.toList()));
+        
+        assertEquals(20, metrics.getLinesSent());
+        assertEquals(datagrams.stream().mapToInt(String::length).sum(), metrics.getBytesSent());
+        assertEquals(0, metrics.getLinesDropped());
+    }
+    
+    @Test
+    public void testOversizedLineDropped() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < MTU; i++) {
+            longValue.append('x');
+        }
+        LineProtocolBuffer lines = new LineProtocolBuffer()
+                .writeUtf8("m value=1i").beginLine()
+                .writeUtf8("m value=\"" + longValue + "\"").beginLine()
+                .writeUtf8("m value=2i");
+        client.writeLineProtocol("ignored", null, TimestampPrecision.SECONDS, lines);
+        
+        assertEquals(Arrays.asList("m value=1i\nm value=2i"), receive(1));
+        assertEquals(1, client.getMetrics().getLinesDropped());
+        assertEquals(2, client.getMetrics().getLinesSent());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testExecuteQueryUnsupported() {
+        client.executeQuery("database", "SELECT * FROM m");
+    }
+    
+    private List<String> receive(int count) throws IOException {
+        List<String> datagrams = new ArrayList<>();
+        byte[] buffer = new byte[MTU];
+        for (int i = 0; i < count; i++) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            listener.receive(packet);
+            datagrams.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+        }
+        return datagrams;
+    }
+    
+}
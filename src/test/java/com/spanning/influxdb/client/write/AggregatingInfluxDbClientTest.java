@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.Field;
+import com.spanning.influxdb.model.TimestampPrecision;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AggregatingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+    
+    @Mock
+    private InfluxDbClient delegate;
+    
+    private AggregatingInfluxDbClient client;
+    
+    @Before
+    public void setupClient() {
+        // Use a long interval, so points are only flushed explicitly.
+        client = new AggregatingInfluxDbClient.Builder(delegate)
+                .withInterval(1, TimeUnit.HOURS)
+                .withQuantiles(0.5, 0.999)
+                .build();
+    }
+    
+    @After
+    public void closeClient() {
+        client.close();
+    }
+    
+    @Test
+    public void testFlushAggregatesPerSeries() {
+        for (int i = 1; i <= 100; i++) {
+            client.writePoint(DATABASE, RETENTION_POLICY, point("host1", i));
+            client.writePoint(DATABASE, RETENTION_POLICY, point("host2", -i));
+        }
+        verify(delegate, never()).writePoints(any(), any(), anyList());
+        
+        client.flush();
+        List<DataPoint> points = captureWrittenPoints();
+        points.sort(Comparator.comparing(point -> point.getTags().get(0).getValue()));
+        assertEquals(2, points.size());
+        
+        Map<String, Object> fields = fields(points.get(0));
+        assertEquals("host1", points.get(0).getTags().get(0).getValue());
+        assertEquals(5050.0, fields.get("value_sum"));
+        assertEquals(100L, fields.get("value_count"));
+        assertEquals(1.0, fields.get("value_min"));
+        assertEquals(100.0, fields.get("value_max"));
+        assertEquals(100.0, fields.get("value_last"));
+        assertEquals(50.0, (Double) fields.get("value_p50"), 0.5);
+        assertEquals(99.0, (Double) fields.get("value_p99.9"), 1.0);
+        assertEquals("ok", fields.get("status"));
+        assertEquals(TimestampPrecision.MILLISECONDS, points.get(0).getTimestampPrecision());
+        
+        assertEquals(-100.0, fields(points.get(1)).get("value_min"));
+    }
+    
+    @Test
+    public void testFlushResetsAccumulators() {
+        client.writePoint(DATABASE, point("host1", 1));
+        client.flush();
+        client.flush();
+        verify(delegate, times(1)).writePoints(eq(DATABASE), eq(null), anyList());
+    }
+    
+    @Test
+    public void testFlushesWithinIntervalHaveDistinctTimestamps() {
+        client.writePoint(DATABASE, point("host1", 1));
+        client.flush();
+        client.writePoint(DATABASE, point("host1", 2));
+        client.flush();
+        
+        List<DataPoint> points = captureWrittenPoints();
+        assertEquals(2, points.size());
+        assertEquals(TimeUnit.HOURS.toMillis(1), points.get(1).getTimestamp() - points.get(0).getTimestamp());
+    }
+    
+    @Test
+    public void testSelectedAggregations() {
+        AggregatingInfluxDbClient sumClient = new AggregatingInfluxDbClient.Builder(delegate)
+                .withInterval(1, TimeUnit.HOURS)
+                .withAggregations(EnumSet.of(AggregatingInfluxDbClient.Aggregation.SUM))
+                .build();
+        sumClient.writePoint(DATABASE, point("host1", 2));
+        sumClient.close();
+        
+        Map<String, Object> fields = fields(captureWrittenPoints().get(0));
+        assertEquals(2, fields.size());
+        assertEquals(2.0, fields.get("value_sum"));
+    }
+    
+    @Test
+    public void testConcurrentWritesAndFlushes() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    client.writePoint(DATABASE, point("host1", 1));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            client.flush();
+        }
+        client.flush();
+        
+        // Every sample should be counted exactly once across all flushes, in points that InfluxDB won't collapse.
+        List<DataPoint> points = captureWrittenPoints();
+        long count = points.stream()
+                .mapToLong(point -> (Long) fields(point).get("value_count"))
+                .sum();
+        assertEquals(40_000L, count);
+        assertEquals(points.size(), points.stream().mapToLong(DataPoint::getTimestamp).distinct().count());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<DataPoint> captureWrittenPoints() {
+        ArgumentCaptor<List<DataPoint>> captor = ArgumentCaptor.forClass(List.class);
+        verify(delegate, atLeastOnce()).writePoints(eq(DATABASE), any(), captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+    
+    private static Map<String, Object> fields(DataPoint point) {
+        assertTrue(point.getFields().size() > 0);
+        return point.getFields().stream().collect(Collectors.toMap(Field::getFieldName, Field::getFieldValue));
+    }
+    
+    private static DataPoint point(String host, long value) {
+        return new DataPoint.Builder("requests")
+                .withTag("host", host)
+                .withField("value", value)
+                .withField("status", "ok")
+                .build();
+    }
+    
+}
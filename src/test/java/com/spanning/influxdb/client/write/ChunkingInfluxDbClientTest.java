@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbChunkedWriteException;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ChunkingInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+
+    @Test
+    public void testWritePointsSplitByPointCount() {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        InfluxDbClient delegate = recordingDelegate(requests, line -> false);
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxPointsPerChunk(4)
+                .build();
+        
+        List<DataPoint> points = points(10);
+        ChunkedWriteResult result = client.writePointsChunked(DATABASE, RETENTION_POLICY, points);
+        
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getChunks().size());
+        assertEquals(10, result.getPointCount());
+        assertEquals(4, result.getChunks().get(0).getPointCount());
+        assertEquals(2, result.getChunks().get(2).getPointCount());
+        assertSameLines(points, requests);
+    }
+
+    @Test
+    public void testWritePointsSplitByByteCount() {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        InfluxDbClient delegate = recordingDelegate(requests, line -> false);
+        List<DataPoint> points = points(10);
+        int lineLength = points.get(0).lineProtocolString().length();
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxBytesPerChunk(3 * lineLength + 2)
+                .build();
+
+        ChunkedWriteResult result = client.writePointsChunked(DATABASE, RETENTION_POLICY, points);
+
+        // Each chunk can hold 3 newline-separated lines.
+        assertEquals(4, result.getChunks().size());
+        result.getChunks().forEach(chunk -> assertTrue(chunk.getByteCount() <= 3 * lineLength + 2));
+        assertSameLines(points, requests);
+    }
+
+    @Test
+    public void testWriteLineProtocolSplitsLines() {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        InfluxDbClient delegate = recordingDelegate(requests, line -> false);
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxPointsPerChunk(2)
+                .build();
+        
+        List<DataPoint> points = points(5);
+        LineProtocolBuffer lines = new LineProtocolBuffer();
+        points.forEach(point -> point.writeLineProtocol(lines.beginLine()));
+        client.writeLineProtocol(DATABASE, RETENTION_POLICY, TimestampPrecision.SECONDS, lines);
+        
+        assertEquals(3, requests.size());
+        assertSameLines(points, requests);
+    }
+
+    @Test
+    public void testFailedChunkRetriedAlone() {
+        // The first attempt to write the chunk containing point 5 fails with a server error.
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        InfluxDbClient delegate = recordingDelegate(requests,
+                lines -> lines.contains("value=5i") && failures.getAndIncrement() == 0);
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxPointsPerChunk(2)
+                .withRetries(2, 0L)
+                .build();
+        
+        ChunkedWriteResult result = client.writePointsChunked(DATABASE, RETENTION_POLICY, points(10));
+        
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getChunks().get(2).getAttempts());
+        assertEquals(1, result.getChunks().get(0).getAttempts());
+        // Only the failed chunk should have been resent, so each chunk was written successfully exactly once.
+        assertEquals(5, requests.size());
+    }
+
+    @Test
+    public void testFailedChunkReported() {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        InfluxDbClient delegate = recordingDelegate(requests, lines -> lines.contains("value=5i"));
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxPointsPerChunk(2)
+                .withRetries(1, 0L)
+                .build();
+
+        try {
+            client.writePoints(DATABASE, RETENTION_POLICY, points(10));
+            fail("Expected InfluxDbChunkedWriteException");
+        } catch (InfluxDbChunkedWriteException e) {
+            ChunkedWriteResult result = e.getResult();
+            assertFalse(result.isSuccessful());
+            assertEquals(1, result.getFailedChunks().size());
+            assertEquals(2, result.getFailedChunks().get(0).getIndex());
+            assertEquals(2, result.getFailedChunks().get(0).getAttempts());
+            assertTrue(e.getCause() instanceof InfluxDbHttpWriteException);
+        }
+    }
+
+    @Test
+    public void testBackoffSaturates() {
+        assertEquals(100L, ChunkingInfluxDbClient.backoffMillis(100L, 1));
+        assertEquals(400L, ChunkingInfluxDbClient.backoffMillis(100L, 3));
+        assertEquals(100L << 16, ChunkingInfluxDbClient.backoffMillis(100L, 40));
+        assertEquals(Long.MAX_VALUE, ChunkingInfluxDbClient.backoffMillis(Long.MAX_VALUE / 4, 10));
+    }
+
+    @Test
+    public void testClientErrorNotRetried() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        doAnswer(invocation -> {
+            throw new InfluxDbHttpWriteException(400, "unable to parse");
+        }).when(delegate).writeLineProtocol(eq(DATABASE), eq(RETENTION_POLICY), any(), any());
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withRetries(3, 0L)
+                .build();
+
+        ChunkedWriteResult result = client.writePointsChunked(DATABASE, RETENTION_POLICY, points(1));
+        assertEquals(1, result.getChunks().get(0).getAttempts());
+        assertFalse(result.isSuccessful());
+    }
+
+    @Test
+    public void testMaxConcurrency() {
+        // Track how many chunks are being written at the same time.
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5L);
+            inFlight.decrementAndGet();
+            return null;
+        }).when(delegate).writeLineProtocol(eq(DATABASE), eq(RETENTION_POLICY), any(), any());
+        ChunkingInfluxDbClient client = new ChunkingInfluxDbClient.Builder(delegate)
+                .withMaxPointsPerChunk(1)
+                .withMaxConcurrency(3)
+                .build();
+
+        ChunkedWriteResult result = client.writePointsChunked(DATABASE, RETENTION_POLICY, points(20));
+        assertTrue(result.isSuccessful());
+        assertTrue(maxInFlight.get() <= 3);
+        assertTrue(threads.size() <= 3);
+    }
+    
+    private static InfluxDbClient recordingDelegate(List<String> requests,
+                                                    Predicate<String> failWhen) {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        doAnswer(invocation -> {
+            String lines = invocation.<LineProtocolBuffer>getArgument(3).toString();
+            if (failWhen.test(lines)) {
+                throw new InfluxDbHttpWriteException(500, "timeout");
+            }
+            requests.add(lines);
+            return null;
+        }).when(delegate).writeLineProtocol(eq(DATABASE), eq(RETENTION_POLICY), eq(TimestampPrecision.SECONDS), any());
+        return delegate;
+    }
+
+    private static void assertSameLines(List<DataPoint> points, List<String> requests) {
+        assertEquals(points.stream().map(DataPoint::lineProtocolString).sorted().collect(Collectors.toList()),
+                requests.stream().flatMap(request -> Stream.of(request.split("\n"))).sorted()
+                        .collect(Collectors.toList()));
+    }
+
+    private static List<DataPoint> points(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new DataPoint.Builder("measurement")
+                        .withTag("host", "host" + i)
+                        .withField("value", i)
+                        .withTimestamp(1_000L + i, TimestampPrecision.SECONDS)
+                        .build())
+                .collect(Collectors.toList());
+    }
+    
+}
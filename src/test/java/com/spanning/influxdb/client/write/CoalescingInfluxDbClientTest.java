@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class CoalescingInfluxDbClientTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritePointsCoalescesDuplicates() {
+        InfluxDbClient delegate = mock(InfluxDbClient.class);
+        DataPoint first = new DataPoint.Builder("m").withField("a", 1L).withTimestamp(1L, TimestampPrecision.SECONDS)
+                .build();
+        DataPoint second = new DataPoint.Builder("m").withField("a", 2L).withTimestamp(1L, TimestampPrecision.SECONDS)
+                .build();
+        
+        new CoalescingInfluxDbClient(delegate).writePoints("database", "rp", Arrays.asList(first, second));
+        
+        ArgumentCaptor<List<DataPoint>> points = ArgumentCaptor.forClass(List.class);
+        verify(delegate).writePoints(eq("database"), eq("rp"), points.capture());
+        assertEquals(1, points.getValue().size());
+        assertEquals("m a=2i 1", points.getValue().get(0).lineProtocolString());
+    }
+    
+}
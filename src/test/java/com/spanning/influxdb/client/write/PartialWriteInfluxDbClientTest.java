@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.client.InfluxDbClient;
+import com.spanning.influxdb.client.exception.InfluxDbHttpWriteException;
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PartialWriteInfluxDbClientTest {
+    
+    private static final String DATABASE = "database";
+    private static final String RETENTION_POLICY = "retentionPolicy";
+    private static final String FIELD_TYPE_CONFLICT = "{\"error\":\"field type conflict: input field \\\"value\\\" " +
+            "on measurement \\\"cpu\\\" is type integer, already exists as type float\"}";
+    
+    @Mock
+    private InfluxDbClient delegate;
+    
+    @Mock
+    private RejectedLinesHandler rejectedLinesHandler;
+    
+    private PartialWriteInfluxDbClient client;
+    private List<String> writes;
+    
+    @Before
+    public void setupClient() {
+        client = new PartialWriteInfluxDbClient(delegate, rejectedLinesHandler);
+        writes = new ArrayList<>();
+    }
+    
+    @Test
+    public void testWholeWriteRejectedResendsRemainingLines() {
+        // The first write fails with a field type conflict; the second succeeds.
+        failFirstWrite(FIELD_TYPE_CONFLICT);
+        
+        client.writePoints(DATABASE, RETENTION_POLICY, Arrays.asList(point("cpu", 1.5), point("cpu", 2L),
+                point("mem", 3L)));
+        
+        verify(rejectedLinesHandler, times(1)).onRejected(eq(DATABASE), eq(RETENTION_POLICY),
+                eq(Collections.singletonList("cpu value=2i 1")), anyString());
+        assertEquals(Arrays.asList("cpu value=1.5 1\ncpu value=2i 1\nmem value=3i 1",
+                "cpu value=1.5 1\nmem value=3i 1"), writes);
+    }
+    
+    @Test
+    public void testPartialWriteDoesNotResend() {
+        failFirstWrite("{\"error\":\"partial write: unable to parse 'cpu value=': missing field value dropped=0\"}");
+        
+        LineProtocolBuffer lines = new LineProtocolBuffer().writeUtf8("cpu value=").beginLine()
+                .writeUtf8("cpu value=1i");
+        client.writeLineProtocol(DATABASE, null, TimestampPrecision.SECONDS, lines);
+        
+        ArgumentCaptor<String> error = ArgumentCaptor.forClass(String.class);
+        verify(rejectedLinesHandler, times(1)).onRejected(eq(DATABASE), eq(null),
+                eq(Collections.singletonList("cpu value=")), error.capture());
+        assertEquals("partial write: unable to parse 'cpu value=': missing field value dropped=0", error.getValue());
+        assertEquals(1, writes.size());
+    }
+    
+    @Test
+    public void testUnrecognizedErrorRethrown() {
+        InfluxDbHttpWriteException exception = new InfluxDbHttpWriteException(400, "{\"error\":\"bad timestamp\"}");
+        doAnswer(invocation -> {
+            throw exception;
+        }).when(delegate).writeLineProtocol(eq(DATABASE), eq(RETENTION_POLICY), any(), any());
+        
+        try {
+            client.writePoint(DATABASE, RETENTION_POLICY, point("cpu", 1L));
+            fail("Expected InfluxDbHttpWriteException");
+        } catch (InfluxDbHttpWriteException e) {
+            assertSame(exception, e);
+        }
+        verify(rejectedLinesHandler, never()).onRejected(anyString(), anyString(), anyList(), anyString());
+    }
+    
+    @Test
+    public void testUnmatchedConflictRethrown() {
+        // None of the lines writes an integer to cpu.value, so none can be blamed for the error.
+        failFirstWrite(FIELD_TYPE_CONFLICT);
+        
+        try {
+            client.writePoint(DATABASE, RETENTION_POLICY, point("cpu", 1.5));
+            fail("Expected InfluxDbHttpWriteException");
+        } catch (InfluxDbHttpWriteException e) {
+            assertEquals(400, e.getStatusCode());
+        }
+        assertEquals(1, writes.size());
+    }
+    
+    private void failFirstWrite(String responseBody) {
+        doAnswer(invocation -> {
+            writes.add(invocation.<LineProtocolBuffer>getArgument(3).toString());
+            if (writes.size() == 1) {
+                throw new InfluxDbHttpWriteException(400, responseBody);
+            }
+            return null;
+        }).when(delegate).writeLineProtocol(eq(DATABASE), any(), eq(TimestampPrecision.SECONDS), any());
+    }
+    
+    private static DataPoint point(String measurement, Object value) {
+        DataPoint.Builder builder = new DataPoint.Builder(measurement).withTimestamp(1L, TimestampPrecision.SECONDS);
+        if (value instanceof Long) {
+            builder.withField("value", (Long) value);
+        } else {
+            builder.withField("value", (Double) value);
+        }
+        return builder.build();
+    }
+    
+}
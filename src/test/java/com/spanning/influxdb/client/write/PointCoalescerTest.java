@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import com.spanning.influxdb.model.DataPoint;
+import com.spanning.influxdb.model.TimestampPrecision;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PointCoalescerTest {
+    
+    @Test
+    public void testCoalesceMergesFieldsLastValueWins() {
+        List<DataPoint> batch = Arrays.asList(
+                point("host1", 1L).withField("a", 1L).withField("b", 1L).build(),
+                point("host2", 1L).withField("a", 2L).build(),
+                point("host1", 2L).withField("a", 3L).build(),
+                point("host1", 1L).withField("b", 4L).withField("c", 4L).build(),
+                point("host1", 1L).withField("a", 5L).build());
+        
+        List<String> coalesced = new PointCoalescer().coalesce(batch).stream()
+                .map(DataPoint::lineProtocolString)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(
+                "m,host=host1 a=5i,b=4i,c=4i 1",
+                "m,host=host2 a=2i 1",
+                "m,host=host1 a=3i 2"), coalesced);
+    }
+    
+    @Test
+    public void testCoalesceWithoutDuplicatesReturnsBatch() {
+        List<DataPoint> batch = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            batch.add(point("host" + (i % 10), i / 10).withField("a", 1L).build());
+        }
+        PointCoalescer coalescer = new PointCoalescer();
+        assertSame(batch, coalescer.coalesce(batch));
+        
+        // The coalescer should be reusable after growing its table.
+        List<DataPoint> duplicates = Arrays.asList(batch.get(0), batch.get(0));
+        assertEquals(1, coalescer.coalesce(duplicates).size());
+        assertSame(batch, coalescer.coalesce(batch));
+    }
+    
+    @Test
+    public void testTableShrinksAfterLargeBatch() {
+        List<DataPoint> batch = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            batch.add(point("host" + (i % 10), i / 10).withField("a", 1L).build());
+        }
+        batch.add(batch.get(0));
+        PointCoalescer coalescer = new PointCoalescer();
+        assertEquals(10_000, coalescer.coalesce(batch).size());
+        assertTrue(coalescer.getTableCapacity() >= 20_000);
+        
+        // A small batch afterwards shouldn't see any of the large batch's entries, or keep its table.
+        List<DataPoint> small = Arrays.asList(batch.get(0), batch.get(1), batch.get(0));
+        assertEquals(2, coalescer.coalesce(small).size());
+        assertTrue(coalescer.getTableCapacity() <= 16);
+        List<DataPoint> distinct = batch.subList(0, 2);
+        assertSame(distinct, coalescer.coalesce(distinct));
+    }
+    
+    private static DataPoint.Builder point(String host, long timestamp) {
+        return new DataPoint.Builder("m")
+                .withTag("host", host)
+                .withTimestamp(timestamp, TimestampPrecision.SECONDS);
+    }
+    
+}
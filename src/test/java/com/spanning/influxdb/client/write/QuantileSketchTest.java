@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+    
+    @Test
+    public void testQuantilesWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        SplittableRandom random = new SplittableRandom(0L);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Values spanning several orders of magnitude, with some negative values and zeros.
+            values[i] = i % 100 == 0 ? 0 : Math.exp(random.nextDouble(-5, 10)) * (i % 10 == 1 ? -1 : 1);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        
+        assertEquals(values.length, sketch.getCount());
+        for (double quantile : new double[] { 0, 0.01, 0.05, 0.1, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            double expected = values[(int) (quantile * (values.length - 1))];
+            double actual = sketch.getQuantile(quantile);
+            assertTrue(quantile + ": " + expected + " vs. " + actual,
+                    Math.abs(actual - expected) <= 0.01 * Math.abs(expected));
+        }
+    }
+    
+    @Test
+    public void testEmptySketch() {
+        assertTrue(Double.isNaN(new QuantileSketch(0.01).getQuantile(0.5)));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAccuracy() {
+        new QuantileSketch(1.0);
+    }
+    
+}
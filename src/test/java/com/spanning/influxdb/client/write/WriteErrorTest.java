@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.client.write;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteErrorTest {
+    
+    @Test
+    public void testParseUnableToParse() {
+        WriteError error = WriteError.parse("partial write: unable to parse 'cpu,host=a value=': missing field " +
+                "value\nunable to parse 'cpu value=\"x': unbalanced quotes dropped=0").get();
+        assertTrue(error.isPartialWrite());
+        assertTrue(error.rejects("cpu,host=a value="));
+        assertTrue(error.rejects("cpu value=\"x"));
+        assertFalse(error.rejects("cpu,host=a value=1"));
+    }
+    
+    @Test
+    public void testParseFieldTypeConflict() {
+        WriteError error = WriteError.parse("field type conflict: input field \"value\" on measurement \"cpu load\" " +
+                "is type integer, already exists as type float").get();
+        assertFalse(error.isPartialWrite());
+        assertTrue(error.rejects("cpu\\ load,host=a value=1i 1"));
+        assertTrue(error.rejects("cpu\\ load other=\"a, b\",value=2i"));
+        assertFalse(error.rejects("cpu\\ load,host=a value=1.5 1"));
+        assertFalse(error.rejects("cpu,host=a value=1i 1"));
+        assertFalse(error.rejects("cpu\\ load,host=a other=1i 1"));
+    }
+    
+    @Test
+    public void testParseUnrecognizedError() {
+        assertEquals(Optional.empty(), WriteError.parse("database not found: \"db\""));
+    }
+    
+    @Test
+    public void testFieldValue() {
+        String line = "m,t=a\\ b f\\=1=\"x \\\" y\",g=2i,h=t 10";
+        assertEquals(Optional.of("\"x \\\" y\""), WriteError.fieldValue(line, "f=1"));
+        assertEquals(Optional.of("2i"), WriteError.fieldValue(line, "g"));
+        assertEquals(Optional.of("t"), WriteError.fieldValue(line, "h"));
+        assertEquals(Optional.empty(), WriteError.fieldValue(line, "t"));
+    }
+    
+    @Test
+    public void testFieldType() {
+        assertEquals("string", WriteError.fieldType("\"1i\""));
+        assertEquals("integer", WriteError.fieldType("-12i"));
+        assertEquals("boolean", WriteError.fieldType("false"));
+        assertEquals("float", WriteError.fieldType("1.5e3"));
+    }
+    
+}
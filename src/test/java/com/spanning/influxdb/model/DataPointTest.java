@@ -16,13 +16,18 @@
  */
 package com.spanning.influxdb.model;
 
+import com.spanning.influxdb.util.LineProtocolBuffer;
 import com.spanning.influxdb.util.LineProtocolStringUtils;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -38,10 +43,13 @@ public class DataPointTest {
         // Mock a Tag to indicate its line protocol string is tagLineProtocolString.
         Tag tag = mock(Tag.class);
         when(tag.lineProtocolString()).thenReturn(tagLineProtocolString);
+        when(tag.lineProtocolBytes()).thenReturn(tagLineProtocolString.getBytes(StandardCharsets.UTF_8));
 
         // Mock a Field to indicate its line protocol string is fieldLineProtocolString.
         Field field = mock(Field.class);
         when(field.lineProtocolString()).thenReturn(fieldLineProtocolString);
+        doAnswer(invocation -> invocation.<LineProtocolBuffer>getArgument(0).writeUtf8(fieldLineProtocolString))
+                .when(field).writeLineProtocol(any());
 
         // Create a DataPoint and assert its line protocol string is expected.
         DataPoint dataPoint = new DataPoint(measurementName, Collections.singletonList(tag),
@@ -56,6 +64,84 @@ public class DataPointTest {
         assertEquals(expectedLineProtocolString, dataPoint.lineProtocolString());
     }
     
+    @Test
+    public void testBuilderSortsTags() {
+        DataPoint dataPoint = new DataPoint.Builder("measurementName")
+                .withTag("region", "us-east")
+                .withTag("host", "server01")
+                .withTag("az", "1a")
+                .withField("value", 1L)
+                .withTimestamp(1444940098741L, TimestampPrecision.MILLISECONDS)
+                .build();
+        assertEquals("measurementName,az=1a,host=server01,region=us-east value=1i 1444940098741",
+                dataPoint.lineProtocolString());
+    }
+    
+    @Test
+    public void testSeriesKeyIgnoresTagOrder() {
+        DataPoint dataPoint1 = new DataPoint.Builder("measurementName")
+                .withTag("host", "server01")
+                .withTag("region", "us-east")
+                .withField("value", 1L)
+                .build();
+        DataPoint dataPoint2 = new DataPoint.Builder("measurementName")
+                .withTag("region", "us-east")
+                .withTag("host", "server01")
+                .withField("value", 2L)
+                .build();
+        assertEquals(dataPoint1.getSeriesKey(), dataPoint2.getSeriesKey());
+        assertEquals(dataPoint1.getSeriesKey().hashCode(), dataPoint2.getSeriesKey().hashCode());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildDataPointWithDuplicateTagNames() {
+        new DataPoint.Builder("measurementName")
+                .withTag("host", "server01")
+                .withTag("host", "server02")
+                .withField("value", 1L)
+                .build();
+    }
+    
+    @Test
+    public void testReuseBuilder() {
+        DataPoint.Builder builder = DataPoint.Builder.forCurrentThread("measurement1")
+                .withTag("host", "server01")
+                .withField("value", 1L)
+                .withTimestamp(1L, TimestampPrecision.SECONDS);
+        DataPoint dataPoint1 = builder.build();
+        
+        // Modifying the builder after building a point shouldn't affect the point.
+        builder.withTag("region", "us-east");
+        assertEquals("measurement1,host=server01 value=1i 1", dataPoint1.lineProtocolString());
+        
+        // The thread's builder should be reset the next time it's retrieved.
+        assertSame(builder, DataPoint.Builder.forCurrentThread("measurement2"));
+        DataPoint dataPoint2 = builder
+                .withField("value", 2L)
+                .withTimestamp(2L, TimestampPrecision.MILLISECONDS)
+                .build();
+        assertEquals("measurement2 value=2i 2", dataPoint2.lineProtocolString());
+        assertEquals(TimestampPrecision.MILLISECONDS, dataPoint2.getTimestampPrecision());
+        assertEquals("measurement1,host=server01 value=1i 1", dataPoint1.lineProtocolString());
+    }
+    
+    @Test
+    public void testBuilderWriteLineProtocol() {
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        DataPoint.Builder builder = new DataPoint.Builder("measurementName");
+        for (int i = 0; i < 3; i++) {
+            builder.reset("measurementName")
+                    .withTag("region", "us-east")
+                    .withTag("host", "server0" + i)
+                    .withField("value", (long) i)
+                    .withTimestamp(i, TimestampPrecision.MILLISECONDS)
+                    .writeLineProtocol(buffer.beginLine());
+        }
+        assertEquals("measurementName,host=server00,region=us-east value=0i 0\n" +
+                "measurementName,host=server01,region=us-east value=1i 1\n" +
+                "measurementName,host=server02,region=us-east value=2i 2", buffer.toString());
+    }
+    
     @Test(expected = IllegalArgumentException.class)
     public void testBuilderConstructorNullMeasurementName() {
         new DataPoint.Builder(null);
@@ -55,6 +55,28 @@ public class FieldTest {
         assertEquals("field\\,\\ name\\,\\ =true", new Field("field, name, ", true).lineProtocolString());
     }
     
+    @Test
+    public void testLineProtocolStringShortestFloatingPoint() {
+        // Floats should be formatted with the digits of the float, not of the float widened to a double.
+        assertEquals("value=0.1", new Field("value", 0.1F).lineProtocolString());
+        assertEquals("value=1.0E-5", new Field("value", 1.0E-5F).lineProtocolString());
+        // Doubles should be formatted with the fewest digits that round back to the same double.
+        assertEquals("value=0.002", new Field("value", 2.0E-3D).lineProtocolString());
+        assertEquals("value=1.0E23", new Field("value", 1.0E23D).lineProtocolString());
+        assertEquals("value=2.82879384806159E17", new Field("value", 2.82879384806159E17D).lineProtocolString());
+        assertEquals("value=-0.0", new Field("value", -0.0D).lineProtocolString());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNaNFieldValue() {
+        new Field("fieldName", Double.NaN);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorInfiniteFieldValue() {
+        new Field("fieldName", Float.NEGATIVE_INFINITY);
+    }
+    
     @Test(expected = IllegalArgumentException.class)
     public void testConstructorNullFieldName() {
         new Field(null, new Object());
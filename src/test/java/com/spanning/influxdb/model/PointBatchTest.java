@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PointBatchTest {
+    
+    private static final PointTemplate TEMPLATE = new PointTemplate.Builder("cpu")
+            .withTag("region")
+            .withTag("host")
+            .withField("usage", FieldType.FLOAT)
+            .withField("processes", FieldType.INTEGER)
+            .withField("healthy", FieldType.BOOLEAN)
+            .withField("status", FieldType.STRING)
+            .build();
+    
+    @Test
+    public void testWriteLineProtocol() {
+        // Use a small initial capacity so the columns have to grow.
+        PointBatch batch = new PointBatch(TEMPLATE, 1);
+        LineProtocolBuffer expected = new LineProtocolBuffer();
+        PointTemplate.PointWriter writer = TEMPLATE.newPointWriter(expected);
+        for (int i = 0; i < 100; i++) {
+            int row = batch.addRow(i);
+            batch.setTag(row, 0, "us east");
+            batch.setTag(row, 1, "server" + (i % 3));
+            batch.setFloat(row, 0, i / 4.0);
+            batch.setInteger(row, 1, i);
+            writer.setTag(0, "us east").setTag(1, "server" + (i % 3)).setFloat(0, i / 4.0).setInteger(1, i);
+            
+            // Only set the boolean/string fields for some rows.
+            if (i % 2 == 0) {
+                batch.setBoolean(row, 2, true);
+                batch.setString(row, 3, "ok, \"good\"");
+                writer.setBoolean(2, true).setString(3, "ok, \"good\"");
+            }
+            writer.write(i);
+        }
+        
+        // The batch should be encoded the same way as the equivalent points written with a PointWriter.
+        LineProtocolBuffer actual = new LineProtocolBuffer();
+        batch.writeLineProtocol(actual);
+        assertEquals(100, batch.size());
+        assertEquals(expected.toString(), actual.toString());
+    }
+    
+    @Test
+    public void testClear() {
+        PointBatch batch = new PointBatch(TEMPLATE);
+        int row = batch.addRow(1L);
+        batch.setTag(row, 1, "server01");
+        batch.setInteger(row, 1, 1L);
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        
+        // Values from before the batch was cleared shouldn't be written.
+        row = batch.addRow(2L);
+        batch.setFloat(row, 0, 0.5);
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        batch.writeLineProtocol(buffer);
+        assertEquals("cpu usage=0.5 2", buffer.toString());
+    }
+    
+    @Test
+    public void testWriteRowWithNoFields() {
+        PointBatch batch = new PointBatch(TEMPLATE);
+        batch.setFloat(batch.addRow(1L), 0, 0.5);
+        batch.addRow(2L);
+        LineProtocolBuffer buffer = new LineProtocolBuffer().writeUtf8("cpu usage=0.25 0");
+        try {
+            batch.writeLineProtocol(buffer);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Point at row 1 has no fields", e.getMessage());
+        }
+        
+        // Nothing was appended to the buffer.
+        assertEquals("cpu usage=0.25 0", buffer.toString());
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSetFieldOfMissingRow() {
+        new PointBatch(TEMPLATE).setFloat(0, 0, 1.0);
+    }
+    
+}
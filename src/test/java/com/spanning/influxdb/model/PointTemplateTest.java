@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PointTemplateTest {
+    
+    private static final PointTemplate TEMPLATE = new PointTemplate.Builder("cpu load")
+            .withTag("region")
+            .withTag("host")
+            .withField("usage", FieldType.FLOAT)
+            .withField("processes", FieldType.INTEGER)
+            .withField("healthy", FieldType.BOOLEAN)
+            .withField("status", FieldType.STRING)
+            .build();
+    
+    @Test
+    public void testWrite() {
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        PointTemplate.PointWriter writer = TEMPLATE.newPointWriter(buffer);
+        writer.setTag(0, "us east")
+                .setTag(1, "server01")
+                .setFloat(0, 0.64)
+                .setInteger(1, 120)
+                .setBoolean(2, true)
+                .setString(3, "all \"good\"")
+                .write(1444940098741L);
+        
+        // Tags/fields that aren't set should be omitted.
+        writer.setTag(1, "server02")
+                .setInteger(1, -1)
+                .write(1444940098742L);
+        
+        // The output should match the output of an equivalent DataPoint.
+        DataPoint dataPoint1 = new DataPoint.Builder("cpu load")
+                .withTag("region", "us east")
+                .withTag("host", "server01")
+                .withField("usage", 0.64)
+                .withField("processes", 120)
+                .withField("healthy", true)
+                .withField("status", "all \"good\"")
+                .withTimestamp(1444940098741L, TimestampPrecision.MILLISECONDS)
+                .build();
+        DataPoint dataPoint2 = new DataPoint.Builder("cpu load")
+                .withTag("host", "server02")
+                .withField("processes", -1)
+                .withTimestamp(1444940098742L, TimestampPrecision.MILLISECONDS)
+                .build();
+        assertEquals(dataPoint1.lineProtocolString() + "\n" + dataPoint2.lineProtocolString(), buffer.toString());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetWrongFieldType() {
+        TEMPLATE.newPointWriter(new LineProtocolBuffer()).setInteger(0, 1L);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testWriteWithNoFields() {
+        TEMPLATE.newPointWriter(new LineProtocolBuffer()).setTag(0, "us-east").write(0L);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateTagName() {
+        new PointTemplate.Builder("cpu").withTag("host").withTag("host");
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testBuildTemplateWithNoFields() {
+        new PointTemplate.Builder("cpu").withTag("host").build();
+    }
+    
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import com.spanning.influxdb.util.LineProtocolBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SeriesKeyCacheTest {
+    
+    @Test
+    public void testWriteSeriesKey() {
+        // The measurement name and tags should be escaped and joined with commas, with tags sorted by name.
+        List<Tag> tags = Arrays.asList(new Tag("tag name", "tag,value"), new Tag("host", "server01"));
+        LineProtocolBuffer buffer = new LineProtocolBuffer();
+        new SeriesKeyCache(10).writeSeriesKey(new SeriesKey("measurement name", TagSet.of(tags)), buffer);
+        assertEquals("measurement\\ name,host=server01,tag\\ name=tag\\,value", buffer.toString());
+    }
+    
+    @Test
+    public void testSeriesKeyIsMemoized() {
+        SeriesKeyCache cache = new SeriesKeyCache(10);
+        byte[] encodedSeriesKey = cache.getEncodedSeriesKey(seriesKey("a"));
+        
+        // Getting an equal series key should return the cached array.
+        assertSame(encodedSeriesKey, cache.getEncodedSeriesKey(seriesKey("a")));
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+    
+    @Test
+    public void testMaximumSize() {
+        // Cache many more series keys than the cache can hold and assert the size is capped.
+        SeriesKeyCache cache = new SeriesKeyCache(10);
+        for (int i = 0; i < 1000; i++) {
+            cache.getEncodedSeriesKey(seriesKey(String.valueOf(i)));
+        }
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.stats().evictionCount() >= 990);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaximumSize() {
+        new SeriesKeyCache(-1);
+    }
+    
+    private static SeriesKey seriesKey(String host) {
+        return new SeriesKey("measurementName", TagSet.of(Collections.singletonList(new Tag("host", host))));
+    }
+    
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TagInternerTest {
+    
+    @Test
+    public void testIntern() {
+        TagInterner tagInterner = new TagInterner();
+        Tag tag = tagInterner.intern("host", "server01");
+        assertEquals(new Tag("host", "server01"), tag);
+        
+        // Interning an equal tag should return the same instance, even if the strings aren't the same instances.
+        assertSame(tag, tagInterner.intern(new String("host"), new String("server01")));
+        assertNotSame(tag, tagInterner.intern("host", "server02"));
+        
+        // Tags with the same name should share the name string.
+        assertSame(tag.getName(), tagInterner.intern(new String("host"), "server03").getName());
+        
+        assertEquals(1, tagInterner.stats().hitCount());
+        assertEquals(3, tagInterner.stats().missCount());
+        assertEquals(3, tagInterner.size());
+    }
+    
+    @Test
+    public void testEviction() {
+        // Intern many more values for a tag name than the interner can hold and assert the size is capped.
+        TagInterner tagInterner = new TagInterner(2, 10);
+        for (int i = 0; i < 1000; i++) {
+            tagInterner.intern("host", String.valueOf(i));
+        }
+        assertTrue(tagInterner.size() <= 10);
+        assertTrue(tagInterner.stats().evictionCount() >= 990);
+    }
+    
+    @Test
+    public void testBuilderWithTagInterner() {
+        TagInterner tagInterner = new TagInterner();
+        DataPoint dataPoint1 = new DataPoint.Builder("measurementName")
+                .withTagInterner(tagInterner)
+                .withTag("host", "server01")
+                .withField("value", 1L)
+                .build();
+        DataPoint dataPoint2 = new DataPoint.Builder("measurementName")
+                .withTagInterner(tagInterner)
+                .withTag("host", "server01")
+                .withField("value", 2L)
+                .build();
+        assertSame(dataPoint1.getTags().get(0), dataPoint2.getTags().get(0));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInternEmptyTagValue() {
+        new TagInterner().intern("host", "");
+    }
+    
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.util;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineProtocolBufferTest {
+    
+    @Test
+    public void testWriteLong() {
+        long[] values = { 0L, 7L, -7L, 10L, 1444940098741L, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long value : values) {
+            LineProtocolBuffer buffer = new LineProtocolBuffer(0);
+            assertEquals(String.valueOf(value), buffer.writeLong(value).toString());
+        }
+    }
+    
+    @Test
+    public void testWriteDouble() {
+        // Random doubles should round trip, and never have more characters than Double.toString's representation.
+        SplittableRandom random = new SplittableRandom(0L);
+        for (int i = 0; i < 100_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isFinite(value)) {
+                String string = new LineProtocolBuffer(0).writeDouble(value).toString();
+                assertEquals(value, Double.parseDouble(string), 0.0);
+                assertTrue(string.length() <= Double.toString(value).length());
+            }
+        }
+        assertEquals("1.0E-5 1234.4321 1.0 -0.0 4.9E-324 1.7976931348623157E308",
+                new LineProtocolBuffer().writeDouble(1.0E-5).writeByte(' ').writeDouble(1234.4321).writeByte(' ')
+                        .writeDouble(1.0).writeByte(' ').writeDouble(-0.0).writeByte(' ')
+                        .writeDouble(Double.MIN_VALUE).writeByte(' ').writeDouble(Double.MAX_VALUE).toString());
+    }
+    
+    @Test
+    public void testWriteFloat() {
+        for (int bits = 0; bits < Integer.MAX_VALUE - 99_991; bits += 99_991) {
+            float value = Float.intBitsToFloat(bits);
+            if (Float.isFinite(value)) {
+                String string = new LineProtocolBuffer(0).writeFloat(value).toString();
+                assertEquals(value, Float.parseFloat(string), 0.0F);
+                assertTrue(string.length() <= Float.toString(value).length());
+            }
+        }
+    }
+    
+    @Test
+    public void testIndexOfAndTruncate() {
+        LineProtocolBuffer buffer = new LineProtocolBuffer().writeUtf8("a b=1i").beginLine().writeUtf8("c d=2i");
+        int newline = buffer.indexOf('\n', 0);
+        assertEquals(6, newline);
+        assertEquals(-1, buffer.indexOf('\n', newline + 1));
+        
+        LineProtocolBuffer copy = new LineProtocolBuffer(0).write(buffer, newline + 1, buffer.size() - newline - 1);
+        buffer.truncate(newline);
+        assertEquals("a b=1i", buffer.toString());
+        assertEquals("c d=2i", copy.toString());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteDoubleNaN() {
+        new LineProtocolBuffer().writeDouble(Double.NaN);
+    }
+    
+    @Test
+    public void testWriteEscaped() {
+        String string = "a \"quoted\", spaced string with ümlauts and \uD83D\uDE00";
+        assertEquals(LineProtocolStringUtils.escapeSpacesAndCommas(string),
+                new LineProtocolBuffer(0).writeEscapingSpacesAndCommas(string).toString());
+        assertEquals(LineProtocolStringUtils.escapeQuotes(string),
+                new LineProtocolBuffer(0).writeEscapingQuotes(string).toString());
+    }
+    
+    @Test
+    public void testGrowAndReset() {
+        // Start with a tiny buffer so it has to grow.
+        LineProtocolBuffer buffer = new LineProtocolBuffer(1);
+        buffer.writeUtf8("méasurement").writeByte(' ').write(new byte[] { 'a', 'b', 'c' }, 1, 2);
+        assertEquals("méasurement bc", buffer.toString());
+        assertEquals(15, buffer.size());
+        
+        // After a reset, the buffer should be empty.
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        assertArrayEquals(new byte[0], buffer.toByteArray());
+    }
+    
+}
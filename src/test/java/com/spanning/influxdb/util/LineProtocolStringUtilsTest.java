@@ -33,4 +33,11 @@ public class LineProtocolStringUtilsTest {
         assertEquals("hello \\\"world\\\"", LineProtocolStringUtils.escapeQuotes("hello \"world\""));
     }
     
+    @Test
+    public void testUnescape() {
+        assertEquals("hello world, InfluxDB is awesome!",
+                LineProtocolStringUtils.unescape("hello\\ world\\,\\ InfluxDB\\ is\\ awesome!"));
+        assertEquals("a=\"b\" c\\d", LineProtocolStringUtils.unescape("a\\=\\\"b\\\" c\\d"));
+    }
+    
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.util;
+
+import com.spanning.influxdb.test.IntegrationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the time it takes to append a double field value to a {@link LineProtocolBuffer} with
+ * {@link LineProtocolBuffer#writeDouble} (which formats with {@link ShortestDecimal}) and with
+ * {@link String#valueOf(double)}, which is how values were encoded before. Run with:
+ * <pre>
+ * mvn verify -Dit.test=ShortestDecimalBenchmark
+ * </pre>
+ * The values are a mix of random bit patterns and values with few significant digits, which are common in metrics.
+ * Before JDK 19, {@link String#valueOf(double)} doesn't always produce the shortest decimal, so its output can be
+ * longer.
+ */
+@Category(IntegrationTest.class)
+public class ShortestDecimalBenchmark {
+    
+    private static final int VALUES = Integer.getInteger("benchmark.values", 1_000_000);
+    private static final int ROUNDS = 10;
+    private static final int WARM_UP_ROUNDS = 5;
+    
+    @Test
+    public void compareFormatting() {
+        double[] values = values();
+        LineProtocolBuffer buffer = new LineProtocolBuffer(64 * 1024);
+        long checksum = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            checksum += shortestDecimal(values, buffer) + stringValueOf(values, buffer);
+        }
+        
+        long shortestDecimalNanos = 0;
+        long stringValueOfNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += shortestDecimal(values, buffer);
+            long middle = System.nanoTime();
+            checksum += stringValueOf(values, buffer);
+            stringValueOfNanos += System.nanoTime() - middle;
+            shortestDecimalNanos += middle - start;
+        }
+        
+        System.out.printf("JDK %s, %d values, ns per value (checksum %d)%n", Runtime.version(), VALUES, checksum);
+        System.out.printf("%-30s %8.1f%n", "LineProtocolBuffer.writeDouble",
+                (double) shortestDecimalNanos / ROUNDS / VALUES);
+        System.out.printf("%-30s %8.1f%n", "String.valueOf + getBytes", (double) stringValueOfNanos / ROUNDS / VALUES);
+    }
+    
+    private static long shortestDecimal(double[] values, LineProtocolBuffer buffer) {
+        long size = 0;
+        for (double value : values) {
+            buffer.reset();
+            buffer.writeDouble(value);
+            size += buffer.size();
+        }
+        return size;
+    }
+    
+    private static long stringValueOf(double[] values, LineProtocolBuffer buffer) {
+        long size = 0;
+        for (double value : values) {
+            buffer.reset();
+            buffer.write(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            size += buffer.size();
+        }
+        return size;
+    }
+    
+    private static double[] values() {
+        SplittableRandom random = new SplittableRandom(0L);
+        double[] values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            double value;
+            if (i % 2 == 0) {
+                do {
+                    value = Double.longBitsToDouble(random.nextLong());
+                } while (!Double.isFinite(value));
+            } else {
+                value = random.nextInt(1_000_000) / Math.pow(10, random.nextInt(0, 6));
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+    
+}
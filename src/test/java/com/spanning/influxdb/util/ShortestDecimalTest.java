@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 EMC Corporation
+ * All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spanning.influxdb.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ShortestDecimalTest {
+    
+    // Double.toString and Float.toString produce the shortest decimal (with the same layout) since JDK 19.
+    private static final boolean JDK_IS_SHORTEST = Runtime.version().feature() >= 19;
+    private static final int RANDOM_VALUES = 200_000;
+
+    @Test
+    public void testDoubleBoundaries() {
+        List<Double> values = new ArrayList<>();
+        values.add(0.0);
+        values.add(Double.MIN_VALUE);
+        values.add(2 * Double.MIN_VALUE);
+        values.add(3 * Double.MIN_VALUE);
+        values.add(Math.nextDown(Double.MIN_NORMAL));
+        values.add(Double.MIN_NORMAL);
+        values.add(Math.nextUp(Double.MIN_NORMAL));
+        values.add(Double.MAX_VALUE);
+        values.add(Math.nextDown(Double.MAX_VALUE));
+        values.add(1.0E23);
+        values.add(2.0E-3);
+        values.add((double) (1L << 53));
+        values.add((double) ((1L << 53) + 2));
+        values.add((double) Long.MAX_VALUE);
+        for (int exponent = -324; exponent <= 308; exponent++) {
+            double power = Double.parseDouble("1.0E" + exponent);
+            values.add(power);
+            values.add(Math.nextUp(power));
+            values.add(Math.nextDown(power));
+        }
+        for (int exponent = Double.MIN_EXPONENT - 52; exponent <= Double.MAX_EXPONENT; exponent++) {
+            values.add(Math.scalb(1.0, exponent));
+        }
+        for (double value : values) {
+            assertShortestRoundTrip(value);
+            assertShortestRoundTrip(-value);
+        }
+    }
+
+    @Test
+    public void testRandomDoubles() {
+        SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isFinite(value)) {
+                assertShortestRoundTrip(value);
+            }
+            // Values with few significant digits, which are common in metrics.
+            assertShortestRoundTrip(random.nextInt(1_000_000) / Math.pow(10, random.nextInt(-20, 20)));
+        }
+    }
+
+    @Test
+    public void testFloatBoundaries() {
+        List<Float> values = new ArrayList<>();
+        values.add(0.0F);
+        values.add(Float.MIN_VALUE);
+        values.add(2 * Float.MIN_VALUE);
+        values.add(8 * Float.MIN_VALUE);
+        values.add(Math.nextDown(Float.MIN_NORMAL));
+        values.add(Float.MIN_NORMAL);
+        values.add(Float.MAX_VALUE);
+        values.add(Math.nextDown(Float.MAX_VALUE));
+        values.add((float) (1 << 24));
+        values.add(1.0E23F);
+        for (int exponent = -45; exponent <= 38; exponent++) {
+            float power = Float.parseFloat("1.0E" + exponent);
+            values.add(power);
+            values.add(Math.nextUp(power));
+            values.add(Math.nextDown(power));
+        }
+        for (int exponent = Float.MIN_EXPONENT - 23; exponent <= Float.MAX_EXPONENT; exponent++) {
+            values.add(Math.scalb(1.0F, exponent));
+        }
+        for (float value : values) {
+            assertShortestRoundTrip(value);
+            assertShortestRoundTrip(-value);
+        }
+    }
+
+    @Test
+    public void testRandomFloats() {
+        SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            if (Float.isFinite(value)) {
+                assertShortestRoundTrip(value);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNaN() {
+        ShortestDecimal.write(Double.NaN, new byte[ShortestDecimal.MAX_CHARS], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInfinity() {
+        ShortestDecimal.write(Float.NEGATIVE_INFINITY, new byte[ShortestDecimal.MAX_CHARS], 0);
+    }
+
+    /**
+     * Assert that a double's decimal parses back to the same double, and that no decimal with one less significant
+     * digit does.
+     */
+    private static void assertShortestRoundTrip(double value) {
+        byte[] bytes = new byte[ShortestDecimal.MAX_CHARS + 1];
+        String decimal = new String(bytes, 1, ShortestDecimal.write(value, bytes, 1) - 1, StandardCharsets.US_ASCII);
+        assertEquals(decimal, Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(decimal)));
+        if (JDK_IS_SHORTEST) {
+            assertEquals(Double.toString(value), decimal);
+        }
+        for (String shorter : withOneLessDigit(decimal)) {
+            assertNotEquals(decimal + " could be " + shorter, value, Double.parseDouble(shorter), 0.0);
+        }
+    }
+
+    private static void assertShortestRoundTrip(float value) {
+        byte[] bytes = new byte[ShortestDecimal.MAX_CHARS];
+        String decimal = new String(bytes, 0, ShortestDecimal.write(value, bytes, 0), StandardCharsets.US_ASCII);
+        assertEquals(decimal, Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(decimal)));
+        if (JDK_IS_SHORTEST) {
+            assertEquals(Float.toString(value), decimal);
+        }
+        for (String shorter : withOneLessDigit(decimal)) {
+            assertNotEquals(decimal + " could be " + shorter, value, Float.parseFloat(shorter), 0.0F);
+        }
+    }
+
+    /**
+     * Get the two decimals with one less significant digit that surround a decimal. Like {@link Double#toString}, the
+     * decimal is chosen among those with 2 digits when one with a single digit would do (e.g., 4.9E-324 rather than
+     * 4E-324), so there are none if it has 2 digits or less.
+     */
+    private static List<String> withOneLessDigit(String decimal) {
+        List<String> shorter = new ArrayList<>(2);
+        BigDecimal exact = new BigDecimal(decimal).stripTrailingZeros();
+        int digits = exact.precision();
+        if (digits > 2) {
+            shorter.add(exact.round(new MathContext(digits - 1, RoundingMode.FLOOR)).toString());
+            shorter.add(exact.round(new MathContext(digits - 1, RoundingMode.CEILING)).toString());
+        }
+        return shorter;
+    }
+    
+}